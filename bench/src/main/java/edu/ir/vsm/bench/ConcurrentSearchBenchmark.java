@@ -0,0 +1,123 @@
+package edu.ir.vsm.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ir.vsm.IndexBuilder;
+import edu.ir.vsm.SearchResults;
+import edu.ir.vsm.SnapshotManager;
+
+/**
+ * Benchmarks of the query throughput of readers sharing the snapshots of a
+ * synthetic collection, with one reader and with one reader per processor:
+ * readers only read immutable snapshots, so the throughput should grow
+ * almost linearly with the number of readers. Other numbers of readers are
+ * measured with -t, which overrides both.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentSearchBenchmark {
+
+	private static final int NUM_OF_QUERIES = 256;
+
+	@Param({ "10000" })
+	public int numOfDocs;
+
+	@Param({ "50000" })
+	public int vocabularySize;
+
+	@Param({ "1.0" })
+	public double skew;
+
+	@Param({ "300" })
+	public int docLength;
+
+	@Param({ "3" })
+	public int queryLength;
+
+	@Param({ "10" })
+	public int k;
+
+	private File folder;
+	private ArrayList<String> queries;
+	private SnapshotManager snapshots;
+
+	/**
+	 * Inner class, the results and the next query of a reader.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	@State(Scope.Thread)
+	public static class Reader {
+		private final SearchResults results = new SearchResults();
+		private int next;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			/* the readers start at different queries */
+			next = (int) (Thread.currentThread().getId() % NUM_OF_QUERIES);
+		}
+
+		int nextIndex() {
+			int index = next;
+			next = next + 1 == NUM_OF_QUERIES ? 0 : next + 1;
+			return index;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		SyntheticCorpus corpus = new SyntheticCorpus(numOfDocs, vocabularySize, skew, docLength, 42);
+		folder = corpus.writeTemporary();
+		queries = corpus.queries(NUM_OF_QUERIES, queryLength, 7);
+		IndexBuilder builder = new IndexBuilder(folder.getPath(), IndexBuilder.defaultNumOfThreads());
+		builder.build();
+		snapshots = new SnapshotManager(builder.getWordIndex(), builder.getBiWordIndex());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticCorpus.delete(folder);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int searchOneReader(Reader reader) {
+		return snapshots.snapshot().search(queries.get(reader.nextIndex()), k, null, reader.results, null);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public int searchAllReaders(Reader reader) {
+		return snapshots.snapshot().search(queries.get(reader.nextIndex()), k, null, reader.results, null);
+	}
+}
@@ -0,0 +1,129 @@
+package edu.ir.vsm.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ir.vsm.BiWordIndex;
+import edu.ir.vsm.IndexBuilder;
+import edu.ir.vsm.Tokenizer;
+import edu.ir.vsm.WordIndex;
+
+/**
+ * Benchmarks of the tokenization of a document and of the building of the
+ * indexes of a synthetic collection. The word index and the biword index
+ * alone are built by their constructors, with the default number of threads;
+ * numOfThreads and positional apply to the building of the indexes by an
+ * IndexBuilder, which builds a positional word index instead of a word
+ * index and a biword index if positional is true. Run with -prof gc to
+ * compare the bytes they allocate.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexingBenchmark {
+
+	@Param({ "2000" })
+	public int numOfDocs;
+
+	@Param({ "20000" })
+	public int vocabularySize;
+
+	@Param({ "1.0" })
+	public double skew;
+
+	@Param({ "300" })
+	public int docLength;
+
+	@Param({ "1" })
+	public int numOfThreads;
+
+	@Param({ "false", "true" })
+	public boolean positional;
+
+	private File folder;
+	private String[] docNames;
+	private int next;
+	private Tokenizer tokenizer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		folder = new SyntheticCorpus(numOfDocs, vocabularySize, skew, docLength, 42).writeTemporary();
+		docNames = folder.list();
+		Arrays.sort(docNames);
+		tokenizer = new Tokenizer();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticCorpus.delete(folder);
+	}
+
+	/**
+	 * Terms and biwords of one document, collected in one pass like the
+	 * IndexBuilder does, the documents taken in turn.
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public Object tokenize() {
+		File file = new File(folder, docNames[next]);
+		next = next + 1 == docNames.length ? 0 : next + 1;
+		HashMap<String, Integer> docTerms = new HashMap<String, Integer>();
+		HashSet<String> docBiWords = new HashSet<String>();
+		final WordIndex.TermCounter termCounter = new WordIndex.TermCounter(docTerms);
+		final BiWordIndex.BiWordCollector biWordCollector = new BiWordIndex.BiWordCollector(docBiWords);
+		tokenizer.tokenize(file, term -> {
+			termCounter.token(term);
+			biWordCollector.token(term);
+		});
+		return docTerms.size() + docBiWords.size();
+	}
+
+	@Benchmark
+	public Object buildWordIndex() {
+		return new WordIndex(folder.getPath());
+	}
+
+	@Benchmark
+	public Object buildBiWordIndex() {
+		return new BiWordIndex(folder.getPath());
+	}
+
+	/**
+	 * Both indexes, or the positional word index, with one pass over the
+	 * documents.
+	 */
+	@Benchmark
+	public Object buildIndexes() {
+		IndexBuilder builder = new IndexBuilder(folder.getPath(), numOfThreads, positional);
+		builder.build();
+		return builder;
+	}
+}
@@ -0,0 +1,110 @@
+package edu.ir.vsm.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ir.vsm.IndexBuilder;
+import edu.ir.vsm.PostingsCodec;
+import edu.ir.vsm.ScoringKernel;
+import edu.ir.vsm.SearchResults;
+import edu.ir.vsm.SegmentedIndex;
+import edu.ir.vsm.SnapshotManager;
+
+/**
+ * Benchmarks of the retrieval of the top 2k documents without pruning, the
+ * exact scores against the scoring kernels. The forks are started with the
+ * Vector API module, so that the vector kernel can be measured.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+
+	private static final int NUM_OF_QUERIES = 256;
+
+	@Param({ "10000" })
+	public int numOfDocs;
+
+	@Param({ "50000" })
+	public int vocabularySize;
+
+	@Param({ "1.0" })
+	public double skew;
+
+	@Param({ "300" })
+	public int docLength;
+
+	@Param({ "3" })
+	public int queryLength;
+
+	@Param({ "10" })
+	public int k;
+
+	/* none, vbyte or pfordelta */
+	@Param({ "none" })
+	public String codec;
+
+	/* exact, scalar or vector */
+	@Param({ "exact", "scalar", "vector" })
+	public String kernel;
+
+	private File folder;
+	private ArrayList<String> queries;
+	private int next;
+	private SegmentedIndex index;
+	private SearchResults results;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		SyntheticCorpus corpus = new SyntheticCorpus(numOfDocs, vocabularySize, skew, docLength, 42);
+		folder = corpus.writeTemporary();
+		queries = corpus.queries(NUM_OF_QUERIES, queryLength, 7);
+		IndexBuilder builder = new IndexBuilder(folder.getPath(), IndexBuilder.defaultNumOfThreads());
+		builder.build();
+		builder.getWordIndex().compress(codec.equals("none") ? null : PostingsCodec.forName(codec));
+		index = new SnapshotManager(builder.getWordIndex(), builder.getBiWordIndex()).snapshot().getIndex();
+		results = new SearchResults(kernel.equals("exact") ? null : ScoringKernel.forName(kernel));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticCorpus.delete(folder);
+	}
+
+	private int nextIndex() {
+		int index = next;
+		next = next + 1 == NUM_OF_QUERIES ? 0 : next + 1;
+		return index;
+	}
+
+	@Benchmark
+	public int searchTop2K() {
+		return index.searchTop2K(queries.get(nextIndex()), k, false, null, results);
+	}
+}
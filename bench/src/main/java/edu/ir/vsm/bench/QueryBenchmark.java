@@ -0,0 +1,143 @@
+package edu.ir.vsm.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.ir.vsm.BiWordIndex;
+import edu.ir.vsm.IndexBuilder;
+import edu.ir.vsm.PostingsCodec;
+import edu.ir.vsm.StringDoublePair;
+import edu.ir.vsm.WordIndex;
+
+/**
+ * Benchmarks of the queries over the indexes of a synthetic collection. The
+ * queries are drawn from the term distribution of the collection and are
+ * taken in turn, so one measurement covers frequent and rare terms alike.
+ * With positional, the collection has a positional word index, which
+ * reranks the documents from the positions of the terms, instead of a word
+ * index and a biword index.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+	private static final int NUM_OF_QUERIES = 256;
+
+	@Param({ "10000" })
+	public int numOfDocs;
+
+	@Param({ "50000" })
+	public int vocabularySize;
+
+	@Param({ "1.0" })
+	public double skew;
+
+	@Param({ "300" })
+	public int docLength;
+
+	@Param({ "3" })
+	public int queryLength;
+
+	@Param({ "10" })
+	public int k;
+
+	/* none, vbyte or pfordelta */
+	@Param({ "none" })
+	public String codec;
+
+	@Param({ "false", "true" })
+	public boolean positional;
+
+	private File folder;
+	private ArrayList<String> queries;
+	private ArrayList<String> terms;
+	private int next;
+	private WordIndex wordIndex;
+	private BiWordIndex biWordIndex;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		SyntheticCorpus corpus = new SyntheticCorpus(numOfDocs, vocabularySize, skew, docLength, 42);
+		folder = corpus.writeTemporary();
+		queries = corpus.queries(NUM_OF_QUERIES, queryLength, 7);
+		terms = corpus.queries(NUM_OF_QUERIES, 1, 11);
+		IndexBuilder builder = new IndexBuilder(folder.getPath(), IndexBuilder.defaultNumOfThreads(), positional);
+		builder.build();
+		wordIndex = builder.getWordIndex();
+		biWordIndex = builder.getBiWordIndex();
+		wordIndex.compress(codec.equals("none") ? null : PostingsCodec.forName(codec));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticCorpus.delete(folder);
+	}
+
+	private int nextIndex() {
+		int index = next;
+		next = next + 1 == NUM_OF_QUERIES ? 0 : next + 1;
+		return index;
+	}
+
+	@Benchmark
+	public Object computeSimilarities() {
+		return wordIndex.computeSimilarities(queries.get(nextIndex()));
+	}
+
+	/**
+	 * The top 2k documents, as getTop2KDocs retrieves them before printing
+	 * them.
+	 */
+	@Benchmark
+	public Object getTop2KDocs() {
+		return wordIndex.searchTop2K(queries.get(nextIndex()), k);
+	}
+
+	@Benchmark
+	public Object getTop2KDocsPruned() {
+		return wordIndex.searchTop2KPruned(queries.get(nextIndex()), k, null);
+	}
+
+	/**
+	 * The top 2k documents reranked by biwords, as BiWordIndex.getTopKDocs
+	 * ranks them before printing them, or from the positions of the terms.
+	 */
+	@Benchmark
+	public Object getTopKDocs() {
+		String query = queries.get(nextIndex());
+		ArrayList<StringDoublePair> top2K = wordIndex.searchTop2K(query, k);
+		return positional ? wordIndex.rerank(query, top2K, k) : biWordIndex.rerank(query, top2K, k);
+	}
+
+	@Benchmark
+	public Object postingsList() {
+		return wordIndex.postingsList(terms.get(nextIndex()));
+	}
+}
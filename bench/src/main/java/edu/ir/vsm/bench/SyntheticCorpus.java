@@ -0,0 +1,204 @@
+package edu.ir.vsm.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * This class generates a deterministic document collection whose term
+ * frequencies follow a Zipf distribution: the term of rank r (starting at 1)
+ * is drawn with a probability proportional to 1 / r^skew. The same
+ * parameters and seed always give the same documents and queries, so
+ * benchmark runs can be compared.
+ *
+ * The terms are made of lower case letters and are at least 4 characters
+ * long, so the Tokenizer never drops them as STOP words.
+ *
+ * Usage:
+ *
+ * <pre>
+ * SyntheticCorpus folder [number of documents [vocabulary size [skew [document length]]]]
+ * </pre>
+ *
+ * @author YAN DENG
+ *
+ */
+public class SyntheticCorpus {
+
+	private int numOfDocs;
+	private int vocabularySize;
+	private double skew;
+	private int docLength;
+	private long seed;
+	private double[] cumulative;/*cumulative probability of the terms, by rank*/
+
+	/**
+	 * @param numOfDocs
+	 * @param vocabularySize
+	 *            number of distinct terms that may be drawn
+	 * @param skew
+	 *            Zipf exponent, 0 for uniformly distributed terms
+	 * @param docLength
+	 *            average number of terms of a document
+	 * @param seed
+	 */
+	public SyntheticCorpus(int numOfDocs, int vocabularySize, double skew, int docLength, long seed) {
+		if (numOfDocs < 1 || vocabularySize < 1 || docLength < 1)
+			throw new IllegalArgumentException("The corpus sizes must be positive.");
+		if (skew < 0)
+			throw new IllegalArgumentException("The skew can not be negative.");
+		this.numOfDocs = numOfDocs;
+		this.vocabularySize = vocabularySize;
+		this.skew = skew;
+		this.docLength = docLength;
+		this.seed = seed;
+		this.cumulative = new double[vocabularySize];
+		double sum = 0;
+		for (int r = 0; r < vocabularySize; r++) {
+			sum += 1 / Math.pow(r + 1, skew);
+			cumulative[r] = sum;
+		}
+		for (int r = 0; r < vocabularySize; r++) {
+			cumulative[r] /= sum;
+		}
+	}
+
+	/**
+	 * Write the documents to the folder, one file per document, replacing
+	 * the files of the same names.
+	 *
+	 * @param folder
+	 *            created if it doesn't exist
+	 * @throws IOException
+	 */
+	public void write(File folder) throws IOException {
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IOException("Can not create " + folder);
+		Random random = new Random(seed);
+		int digits = Integer.toString(numOfDocs - 1).length();
+		for (int d = 0; d < numOfDocs; d++) {
+			File file = new File(folder, String.format("doc%0" + digits + "d.txt", d));
+			/* between half and one and a half times the average length */
+			int length = docLength / 2 + random.nextInt(docLength + 1);
+			BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+			try {
+				for (int i = 0; i < length; i++) {
+					writer.write(term(random));
+					writer.write(i % 12 == 11 ? ".\n" : " ");
+				}
+			} finally {
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * Write the documents to a new temporary folder.
+	 *
+	 * @return the folder
+	 * @throws IOException
+	 */
+	public File writeTemporary() throws IOException {
+		File folder = Files.createTempDirectory("vsm-bench").toFile();
+		write(folder);
+		return folder;
+	}
+
+	/**
+	 * Delete a folder written by writeTemporary().
+	 *
+	 * @param folder
+	 *            may be null
+	 * @throws IOException
+	 */
+	public static void delete(File folder) throws IOException {
+		if (folder == null) {
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(folder.toPath())) {
+			paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Generate queries drawn from the same distribution as the documents.
+	 *
+	 * @param numOfQueries
+	 * @param numOfTerms
+	 *            number of terms of every query
+	 * @param querySeed
+	 * @return the queries
+	 */
+	public ArrayList<String> queries(int numOfQueries, int numOfTerms, long querySeed) {
+		Random random = new Random(querySeed);
+		ArrayList<String> queries = new ArrayList<String>();
+		for (int q = 0; q < numOfQueries; q++) {
+			StringBuilder query = new StringBuilder();
+			for (int i = 0; i < numOfTerms; i++) {
+				if (i > 0) {
+					query.append(' ');
+				}
+				query.append(term(random));
+			}
+			queries.add(query.toString());
+		}
+		return queries;
+	}
+
+	/**
+	 * @param rank
+	 *            rank of the term, from 1 to the vocabulary size
+	 * @return the term of that rank
+	 */
+	public static String word(int rank) {
+		StringBuilder word = new StringBuilder();
+		int n = rank;
+		do {
+			word.append((char) ('a' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		while (word.length() < 3) {
+			word.append('a');
+		}
+		return word.append('w').reverse().toString();
+	}
+
+	/**
+	 * @return a term drawn from the Zipf distribution
+	 */
+	private String term(Random random) {
+		double p = random.nextDouble();
+		int low = 0;
+		int high = vocabularySize - 1;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (cumulative[mid] < p) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return word(low + 1);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println(
+					"Usage: SyntheticCorpus folder [number of documents [vocabulary size [skew [document length]]]]");
+			return;
+		}
+		int numOfDocs = args.length >= 2 ? Integer.parseInt(args[1]) : 10000;
+		int vocabularySize = args.length >= 3 ? Integer.parseInt(args[2]) : 50000;
+		double skew = args.length >= 4 ? Double.parseDouble(args[3]) : 1.0;
+		int docLength = args.length >= 5 ? Integer.parseInt(args[4]) : 300;
+		new SyntheticCorpus(numOfDocs, vocabularySize, skew, docLength, 42).write(new File(args[0]));
+		System.out.println(numOfDocs + " documents written to " + args[0]);
+	}
+}
@@ -0,0 +1,282 @@
+package edu.ir.vsm.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.ir.vsm.IndexSnapshot;
+import edu.ir.vsm.QueryCache;
+import edu.ir.vsm.QueryStats;
+import edu.ir.vsm.SnapshotManager;
+import edu.ir.vsm.StringDoublePair;
+
+/**
+ * This class answers a batch of queries without prompting. Every line of the
+ * input is a query, optionally followed by a tab and k (DEFAULT_K if there is
+ * none); empty lines are skipped. The queries are evaluated by a pool of
+ * workers, each against the snapshot current when it starts, and the results
+ * are written in the order of the input as soon as they are known, so the
+ * output can be streamed. A query is identified by its line number. A query
+ * that cannot be answered, whether its line is malformed or its evaluation
+ * throws, gets an error record and the batch goes on.
+ *
+ * The latency of a query is the time spent computing its top k documents,
+ * not counting the time it waited for a worker nor the formatting of its
+ * results.
+ *
+ * JSONL output, one object per query:
+ *
+ * <pre>
+ * {"id":1,"query":"...","k":10,"latency_us":412,"results":[{"doc":"...","score":0.52},...]}
+ * {"id":2,"query":"...","error":"..."}
+ * </pre>
+ *
+ * TSV output, a header and then one line per result document:
+ *
+ * <pre>
+ * id	k	latency_us	rank	doc	score
+ * </pre>
+ *
+ * in which the queries that failed are left out and reported on the error
+ * stream.
+ *
+ * @author YAN DENG
+ *
+ */
+public class BatchRunner {
+
+	public static final int DEFAULT_K = 10;
+	private static final int QUERIES_PER_WORKER = 64;/* queries in flight per worker */
+
+	public enum Format {
+		JSONL, TSV
+	}
+
+	private SnapshotManager snapshots;
+	private QueryCache cache;
+	private boolean prune;
+	private int numOfWorkers;
+	private Format format;
+
+	/**
+	 * @param snapshots
+	 * @param cache
+	 *            may be null
+	 * @param prune
+	 *            retrieve the top 2k documents with dynamic pruning
+	 * @param numOfWorkers
+	 * @param format
+	 */
+	public BatchRunner(SnapshotManager snapshots, QueryCache cache, boolean prune, int numOfWorkers, Format format) {
+		if (numOfWorkers < 1)
+			throw new IllegalArgumentException("The number of workers must be positive.");
+		this.snapshots = snapshots;
+		this.cache = cache;
+		this.prune = prune;
+		this.numOfWorkers = numOfWorkers;
+		this.format = format;
+	}
+
+	/**
+	 * @param name
+	 *            jsonl or tsv
+	 * @return the format of that name
+	 * @throws IllegalArgumentException
+	 *             if there is no such format
+	 */
+	public static Format format(String name) {
+		for (Format format : Format.values()) {
+			if (format.name().equalsIgnoreCase(name))
+				return format;
+		}
+		throw new IllegalArgumentException("Unknown output format " + name + ".");
+	}
+
+	/**
+	 * Answer all the queries of the input, and print a summary to the error
+	 * stream.
+	 *
+	 * @param in
+	 * @param out
+	 * @param log
+	 *            receives the errors and the summary
+	 * @throws IOException
+	 */
+	public void run(BufferedReader in, Writer out, PrintStream log) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(numOfWorkers);
+		ArrayDeque<Future<Outcome>> pending = new ArrayDeque<Future<Outcome>>();
+		LatencyStats latencies = new LatencyStats();
+		int errors = 0;
+		long start = System.nanoTime();
+		try {
+			if (format == Format.TSV) {
+				out.write("id\tk\tlatency_us\trank\tdoc\tscore\n");
+			}
+			String line;
+			int id = 0;
+			while ((line = in.readLine()) != null) {
+				id++;
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				final int queryId = id;
+				final String queryLine = line;
+				pending.add(pool.submit(() -> evaluate(queryId, queryLine)));
+				if (pending.size() >= numOfWorkers * QUERIES_PER_WORKER) {
+					errors += write(pending.poll().get(), out, log, latencies);
+				}
+			}
+			while (!pending.isEmpty()) {
+				errors += write(pending.poll().get(), out, log, latencies);
+			}
+			out.flush();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The batch was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to answer a query.", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		log.printf("Queries: %d, errors: %d, time: %.3f s, throughput: %.1f queries/s%n", latencies.count(), errors,
+				seconds, latencies.count() / seconds);
+		log.println(latencies);
+		if (cache != null) {
+			log.println(cache);
+		}
+	}
+
+	/**
+	 * Answer the query of a line of the input.
+	 */
+	private Outcome evaluate(int id, String line) {
+		int tab = line.lastIndexOf('\t');
+		String query = tab < 0 ? line.trim() : line.substring(0, tab).trim();
+		int k = DEFAULT_K;
+		if (tab >= 0) {
+			try {
+				k = Integer.parseInt(line.substring(tab + 1).trim());
+			} catch (NumberFormatException e) {
+				return new Outcome(id, query, 0, "k is not an integer.");
+			}
+			if (k < 1) {
+				return new Outcome(id, query, k, "k must be positive.");
+			}
+		}
+		long start = System.nanoTime();
+		IndexSnapshot snapshot = snapshots.snapshot();
+		QueryStats stats = prune ? new QueryStats() : null;
+		ArrayList<StringDoublePair> topK;
+		try {
+			if (cache != null) {
+				topK = cache.search(snapshot, query, k, stats).topK;
+			} else {
+				topK = snapshot.search(query, k, stats);
+			}
+		} catch (RuntimeException e) {
+			/* only this query fails, the rest of the batch is still answered */
+			return new Outcome(id, query, k, "Failed to answer the query: " + e);
+		}
+		Outcome outcome = new Outcome(id, query, k, null);
+		outcome.latency = System.nanoTime() - start;
+		outcome.topK = topK;
+		return outcome;
+	}
+
+	/**
+	 * @return 1 if the query failed, 0 otherwise
+	 */
+	private int write(Outcome outcome, Writer out, PrintStream log, LatencyStats latencies) throws IOException {
+		if (outcome.error != null) {
+			if (format == Format.JSONL) {
+				out.write("{\"id\":" + outcome.id + ",\"query\":" + jsonString(outcome.query) + ",\"error\":"
+						+ jsonString(outcome.error) + "}\n");
+			} else {
+				log.println("Line " + outcome.id + ": " + outcome.error);
+			}
+			return 1;
+		}
+		latencies.add(outcome.latency);
+		long latency = outcome.latency / 1000;
+		StringBuilder record = new StringBuilder();
+		if (format == Format.JSONL) {
+			record.append("{\"id\":").append(outcome.id).append(",\"query\":").append(jsonString(outcome.query))
+					.append(",\"k\":").append(outcome.k).append(",\"latency_us\":").append(latency)
+					.append(",\"results\":");
+			jsonResults(record, outcome.topK).append("}\n");
+		} else {
+			for (int i = 0; i < outcome.topK.size(); i++) {
+				StringDoublePair pair = outcome.topK.get(i);
+				record.append(outcome.id).append('\t').append(outcome.k).append('\t').append(latency).append('\t')
+						.append(i + 1).append('\t').append(tsvField(pair.docName)).append('\t').append(pair.num)
+						.append('\n');
+			}
+		}
+		out.write(record.toString());
+		return 0;
+	}
+
+	/**
+	 * Append the documents and scores of a result list as a JSON array.
+	 *
+	 * @return json
+	 */
+	static StringBuilder jsonResults(StringBuilder json, ArrayList<StringDoublePair> results) {
+		json.append('[');
+		for (int i = 0; i < results.size(); i++) {
+			StringDoublePair pair = results.get(i);
+			json.append(i == 0 ? "" : ",").append("{\"doc\":").append(jsonString(pair.docName)).append(",\"score\":")
+					.append(pair.num).append('}');
+		}
+		return json.append(']');
+	}
+
+	static String jsonString(String value) {
+		StringBuilder json = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append('"').toString();
+	}
+
+	private static String tsvField(String value) {
+		return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+	}
+
+	/**
+	 * Inner class, to store the answer of a query.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private static class Outcome {
+		final int id;
+		final String query;
+		final int k;
+		final String error;/* null unless the line could not be answered */
+		long latency;/* nanoseconds */
+		ArrayList<StringDoublePair> topK;
+
+		Outcome(int id, String query, int k, String error) {
+			this.id = id;
+			this.query = query;
+			this.k = k;
+			this.error = error;
+		}
+	}
+}
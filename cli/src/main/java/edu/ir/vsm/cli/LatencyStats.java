@@ -0,0 +1,89 @@
+package edu.ir.vsm.cli;
+
+import java.util.Arrays;
+
+/**
+ * This class collects the latencies of queries, in nanoseconds, and reports
+ * their percentiles. It keeps either all the latencies or only the last ones
+ * in a ring of fixed size, so that a long running server uses bounded memory.
+ * The methods are synchronized.
+ *
+ * @author YAN DENG
+ *
+ */
+class LatencyStats {
+
+	private long[] latencies;
+	private final boolean window;/* keep only the last latencies.length ones */
+	private int next;
+	private long count;
+
+	/**
+	 * Keep all the latencies.
+	 */
+	LatencyStats() {
+		this.latencies = new long[1024];
+		this.window = false;
+	}
+
+	/**
+	 * @param size
+	 *            number of the last latencies to keep
+	 */
+	LatencyStats(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("The size of the window must be positive.");
+		this.latencies = new long[size];
+		this.window = true;
+	}
+
+	synchronized void add(long latency) {
+		if (next == latencies.length) {
+			if (window) {
+				next = 0;
+			} else {
+				latencies = Arrays.copyOf(latencies, next * 2);
+			}
+		}
+		latencies[next++] = latency;
+		count++;
+	}
+
+	/**
+	 * @return the number of latencies added
+	 */
+	synchronized long count() {
+		return count;
+	}
+
+	/**
+	 * @param p
+	 *            between 0 and 1
+	 * @return the p-th percentile of the kept latencies in microseconds, 0 if
+	 *         there is none
+	 */
+	synchronized long percentile(double p) {
+		long[] sorted = sorted();
+		return sorted.length == 0 ? 0 : percentile(sorted, p) / 1000;
+	}
+
+	private long[] sorted() {
+		long[] sorted = Arrays.copyOf(latencies, (int) Math.min(count, latencies.length));
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1))];
+	}
+
+	@Override
+	public synchronized String toString() {
+		long[] sorted = sorted();
+		if (sorted.length == 0) {
+			return "Latency: no query";
+		}
+		return String.format("Latency: p50 %d us, p99 %d us, max %d us", percentile(sorted, 0.5) / 1000,
+				percentile(sorted, 0.99) / 1000, sorted[sorted.length - 1] / 1000);
+	}
+}
@@ -0,0 +1,95 @@
+package edu.ir.vsm.cli;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This program sends the queries of a file to the /search endpoint of a
+ * SearchServer from a number of concurrent clients, and reports the
+ * throughput and the percentiles of the latencies seen by the clients. The
+ * queries are formatted as for BatchRunner and sent in turn until the given
+ * number of requests is reached.
+ *
+ * Usage:
+ *
+ * <pre>
+ * LoadTest url queryFile [number of clients [number of requests]]
+ * </pre>
+ *
+ * @author YAN DENG
+ *
+ */
+public class LoadTest {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 2) {
+			System.out.println("Usage: LoadTest url queryFile [number of clients [number of requests]]");
+			return;
+		}
+		String url = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+		ArrayList<URI> uris = new ArrayList<URI>();
+		for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+			int tab = line.lastIndexOf('\t');
+			String query = tab < 0 ? line.trim() : line.substring(0, tab).trim();
+			String k = tab < 0 ? String.valueOf(BatchRunner.DEFAULT_K) : line.substring(tab + 1).trim();
+			uris.add(URI.create(url + "/search?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&k="
+					+ URLEncoder.encode(k, StandardCharsets.UTF_8)));
+		}
+		if (uris.isEmpty()) {
+			System.out.println("No query in " + args[1]);
+			return;
+		}
+		int numOfClients = args.length >= 3 ? Integer.parseInt(args[2].trim()) : 8;
+		int numOfRequests = args.length >= 4 ? Integer.parseInt(args[3].trim()) : uris.size();
+
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		LatencyStats latencies = new LatencyStats();
+		AtomicInteger next = new AtomicInteger();
+		AtomicLong failures = new AtomicLong();
+		Thread[] clients = new Thread[numOfClients];
+		long start = System.nanoTime();
+		for (int i = 0; i < numOfClients; i++) {
+			clients[i] = new Thread(() -> {
+				for (int request = next.getAndIncrement(); request < numOfRequests; request = next.getAndIncrement()) {
+					HttpRequest httpRequest = HttpRequest.newBuilder(uris.get(request % uris.size()))
+							.timeout(Duration.ofSeconds(30)).GET().build();
+					long sent = System.nanoTime();
+					try {
+						HttpResponse<String> response = client.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+						latencies.add(System.nanoTime() - sent);
+						if (response.statusCode() != 200) {
+							failures.incrementAndGet();
+						}
+					} catch (IOException e) {
+						failures.incrementAndGet();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			});
+			clients[i].start();
+		}
+		for (Thread thread : clients) {
+			thread.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Requests: %d, failures: %d, clients: %d, time: %.3f s, throughput: %.1f requests/s%n",
+				numOfRequests, failures.get(), numOfClients, seconds, numOfRequests / seconds);
+		System.out.println(latencies);
+	}
+}
@@ -0,0 +1,419 @@
+package edu.ir.vsm.cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Scanner;
+
+import edu.ir.vsm.BiWordIndex;
+import edu.ir.vsm.ConsoleSink;
+import edu.ir.vsm.FolderWatcher;
+import edu.ir.vsm.IndexBuilder;
+import edu.ir.vsm.IndexFile;
+import edu.ir.vsm.IndexShard;
+import edu.ir.vsm.IndexSnapshot;
+import edu.ir.vsm.Metrics;
+import edu.ir.vsm.PostingsCodec;
+import edu.ir.vsm.QueryCache;
+import edu.ir.vsm.QueryStats;
+import edu.ir.vsm.RemoteShard;
+import edu.ir.vsm.ScoringKernel;
+import edu.ir.vsm.SearchResults;
+import edu.ir.vsm.ShardServer;
+import edu.ir.vsm.ShardedIndex;
+import edu.ir.vsm.SnapshotManager;
+import edu.ir.vsm.SpimiIndexer;
+import edu.ir.vsm.StringDoublePair;
+import edu.ir.vsm.WordIndex;
+
+/**
+ * The program gets the name of a folder containing the document collection as
+ * input. Then it builds both indices (Biword, and single word). The program
+ * repeatedly prompts the user to enter a query q and an integer k and outputs
+ * (names of) top k documents that matches the query. For each document, also
+ * outputs the similarity score. The top k documents are determined as follows:
+ * Let q = ti1ti2 ···tir, i.e, the query has r terms (after removing STOP words
+ * and punctuation symbols). First retrieve a set S consisting of top 2k
+ * documents (along with cosine similarities with q) that matches the query
+ * using vector space model scoring.
+ * 
+ * Usage:
+ * 
+ * <pre>
+ * QueryProcessor [-prune] [-watch] [-positional] [-codec vbyte|pfordelta] [-cache entries] [-kernel scalar|vector|auto] [folder [number of indexing threads]]
+ * QueryProcessor [-positional] [-codec vbyte|pfordelta] [-spimi megabytes] -build folder indexFile [number of indexing threads]
+ * QueryProcessor [-prune] [-watch] [-codec vbyte|pfordelta|none] [-cache entries] [-kernel scalar|vector|auto] -index indexFile
+ * QueryProcessor [-prune] [-positional] [-codec vbyte|pfordelta] -shards n folder
+ * QueryProcessor [-prune] -shards host:port[,host:port...]
+ * QueryProcessor [-positional] [-codec vbyte|pfordelta] -shard i/n port folder [number of indexing threads]
+ * </pre>
+ * 
+ * Any of the modes answering queries also takes
+ * 
+ * <pre>
+ * -batch file|- [-format jsonl|tsv] [-workers n]
+ * -serve port [-timeout milliseconds]
+ * </pre>
+ * 
+ * and -build and -batch also take
+ * 
+ * <pre>
+ * -metrics file
+ * </pre>
+ * 
+ * to answer the queries of a file, or of the standard input, or the requests
+ * of an HTTP server, instead of prompting for them; see BatchRunner and
+ * SearchServer for the formats.
+ * 
+ * The -build mode builds both indices and writes them to an index file
+ * without prompting for queries; the -index mode answers queries from an
+ * index file built before. With -prune the top 2k documents are retrieved
+ * with MaxScore dynamic pruning, and the number of postings evaluated and
+ * skipped is printed for every query. With -watch the documents created,
+ * modified or deleted in the folder are updated in the indices while the
+ * program is running. With -positional a positional word index is built
+ * instead of the two indices: the biwords are matched with the positions of
+ * the terms, and the documents containing a query written in double quotes
+ * as an exact phrase are also printed. With -codec the documents and
+ * frequencies of the word postings are kept compressed with the given codec;
+ * an index file keeps the codec it was built with unless -codec is given.
+ * With -spimi the -build mode reads the documents with a single thread and
+ * keeps at most about the given number of megabytes of postings in memory,
+ * writing them to temporary runs merged into the index file at the end.
+ * With -cache the results of the last given number of distinct queries are
+ * cached until the indices change, and the cache metrics are printed for
+ * every query. With -batch the queries are answered by the given number of
+ * workers, the available processors by default, and only their results are
+ * written to the standard output, as JSON lines or tab separated values; the
+ * other messages go to the standard error. With -serve the queries are
+ * answered over HTTP on the given port (0 for any free one) until the
+ * program is stopped, and a search taking longer than the timeout, one
+ * second by default, is answered with an error, and the metrics of the
+ * engine are served at /metrics. With -metrics the metrics are written to the
+ * given file once the index is built or the batch answered, as JSON if its
+ * name ends with .json and in the Prometheus text format otherwise. With
+ * -shards the folder is split into n shards of consecutive documents,
+ * indexed and queried in parallel in this process, or the collection is
+ * made of the shards served by other processes started with -shard, given in
+ * the order of their documents; the results are those of a single index
+ * (see ShardedIndex). The -shard mode indexes the i-th of n shards of the
+ * folder (from 0) and serves it on the given port until the program is
+ * stopped. With -kernel the queries prompted for without -prune are scored
+ * by the given ScoringKernel, in float precision with quantized weights;
+ * the vector kernel needs java --add-modules jdk.incubator.vector, and auto
+ * falls back to the scalar kernel without it. Every query prints its time
+ * in milliseconds.
+ * 
+ * @author YAN DENG
+ *
+ */
+public class QueryProcessor {
+
+	/* options without a value, and options followed by a value */
+	private static final List<String> FLAGS = Arrays.asList("-prune", "-watch", "-positional");
+	private static final List<String> OPTIONS = Arrays.asList("-codec", "-cache", "-batch", "-format", "-workers",
+			"-serve", "-timeout", "-spimi", "-metrics", "-shards", "-kernel");
+
+	public static void main(String[] args) throws IOException {
+		boolean prune = false;
+		boolean watch = false;
+		boolean positional = false;
+		String codecName = null;
+		QueryCache cache = null;
+		String batch = null;
+		BatchRunner.Format format = BatchRunner.Format.JSONL;
+		int numOfWorkers = Runtime.getRuntime().availableProcessors();
+		int port = -1;
+		long timeout = SearchServer.DEFAULT_TIMEOUT;
+		long memoryBudget = 0;/* bytes, 0 unless the indexes are built by SPIMI */
+		String metrics = null;
+		String shards = null;
+		ScoringKernel kernel = null;/* exact scores */
+		while (args.length >= 1 && (FLAGS.contains(args[0]) || (OPTIONS.contains(args[0]) && args.length >= 2))) {
+			if (args[0].equals("-prune")) {
+				prune = true;
+			} else if (args[0].equals("-watch")) {
+				watch = true;
+			} else if (args[0].equals("-positional")) {
+				positional = true;
+			} else {
+				String value = args[1].trim();
+				if (args[0].equals("-codec")) {
+					codecName = value;
+				} else if (args[0].equals("-cache")) {
+					cache = new QueryCache(Integer.parseInt(value));
+				} else if (args[0].equals("-batch")) {
+					batch = value;
+				} else if (args[0].equals("-format")) {
+					format = BatchRunner.format(value);
+				} else if (args[0].equals("-workers")) {
+					numOfWorkers = Integer.parseInt(value);
+				} else if (args[0].equals("-serve")) {
+					port = Integer.parseInt(value);
+				} else if (args[0].equals("-timeout")) {
+					timeout = Long.parseLong(value);
+				} else if (args[0].equals("-metrics")) {
+					metrics = value;
+				} else if (args[0].equals("-shards")) {
+					shards = value;
+				} else if (args[0].equals("-kernel")) {
+					kernel = ScoringKernel.forName(value);
+				} else {
+					memoryBudget = Long.parseLong(value) << 20;
+				}
+				args = Arrays.copyOfRange(args, 1, args.length);
+			}
+			args = Arrays.copyOfRange(args, 1, args.length);
+		}
+		/*In batch mode the standard output only receives the results*/
+		PrintStream results = System.out;
+		if (batch != null) {
+			System.setOut(System.err);
+		}
+		PostingsCodec codec = codecName == null || codecName.equals("none") ? null : PostingsCodec.forName(codecName);
+		String path;
+		int numOfThreads = IndexBuilder.defaultNumOfThreads();
+		Scanner scanner = new Scanner(System.in);
+		WordIndex wordIndex;
+		BiWordIndex biWordIndex;
+		if (args.length >= 4 && args[0].equals("-shard")) {
+			/*Serve one shard of the folder to a coordinator*/
+			String[] shard = args[1].trim().split("/");
+			if (args.length >= 5) {
+				numOfThreads = Integer.parseInt(args[4].trim());
+			}
+			IndexShard indexShard = IndexShard.build(args[3].trim(), Integer.parseInt(shard[0]),
+					Integer.parseInt(shard[1]), numOfThreads, positional, codec);
+			ShardServer server = new ShardServer(indexShard,
+					e -> System.err.println("Shard server: " + e.getMessage()));
+			server.start(new InetSocketAddress(Integer.parseInt(args[2].trim())));
+			System.out.println("Serving shard " + args[1].trim() + " of " + indexShard.getNumOfDocs()
+					+ " documents on port " + server.getAddress().getPort());
+			/*The server threads are daemons*/
+			while (true) {
+				try {
+					Thread.sleep(Long.MAX_VALUE);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		} else if (shards != null) {
+			ShardedIndex index;
+			if (shards.contains(":")) {
+				ArrayList<RemoteShard> remotes = new ArrayList<RemoteShard>();
+				for (String address : shards.split(",")) {
+					remotes.add(RemoteShard.connect(address.trim()));
+				}
+				index = new ShardedIndex(remotes);
+			} else {
+				if (args.length >= 1) {
+					path = args[0].trim();
+				} else {
+					System.out.println("Please input the name of a folder containing the document collection:");
+					path = scanner.nextLine().trim();
+				}
+				index = ShardedIndex.build(path, Integer.parseInt(shards), positional, codec);
+			}
+			System.out.println("Number of files: " + index.getNumOfDocs() + ";\nNumber of terms: "
+					+ index.getNumOfTerms() + "\nNumber of shards: " + index.getShards().size());
+			promptShards(index, prune, scanner);
+			return;
+		} else if (args.length >= 2 && args[0].equals("-index")) {
+			/*Serve from an existing index file*/
+			IndexFile indexFile = IndexFile.open(new File(args[1].trim()));
+			wordIndex = indexFile.getWordIndex();
+			biWordIndex = indexFile.getBiWordIndex();
+			if (codecName != null) {
+				wordIndex.compress(codec);
+			}
+		} else if (args.length >= 3 && args[0].equals("-build")) {
+			/*Build the index file offline*/
+			if (args.length >= 4) {
+				numOfThreads = Integer.parseInt(args[3].trim());
+			}
+			if (memoryBudget > 0) {
+				SpimiIndexer indexer = new SpimiIndexer(args[1].trim(), memoryBudget, positional);
+				indexer.build(new File(args[2].trim()), codec);
+				for (String docName : indexer.getEmptyDocuments()) {
+					System.out.println(docName + " doesn't contain any term.");
+				}
+				System.out.printf("Number of runs: %d\n", indexer.getNumOfRuns());
+			} else {
+				IndexBuilder builder = new IndexBuilder(args[1].trim(), numOfThreads, positional);
+				builder.build();
+				builder.getWordIndex().compress(codec);
+				IndexFile.write(new File(args[2].trim()), builder.getWordIndex(), builder.getBiWordIndex());
+			}
+			System.out.println("Index written to " + args[2].trim());
+			writeMetrics(metrics);
+			return;
+		} else {
+			if (args.length >= 1) {
+				path = args[0].trim();
+			} else {
+				System.out.println("Please input the name of a folder containing the document collection:");
+				path = scanner.nextLine().trim();
+			}
+			if (args.length >= 2) {
+				numOfThreads = Integer.parseInt(args[1].trim());
+			}
+			/*Build the WordIndex and BiWordIndex instance with one pass over the documents*/
+			IndexBuilder builder = new IndexBuilder(path, numOfThreads, positional);
+			builder.build();
+			wordIndex = builder.getWordIndex();
+			biWordIndex = builder.getBiWordIndex();
+			wordIndex.compress(codec);
+		}
+		SnapshotManager snapshots = new SnapshotManager(wordIndex, biWordIndex);
+		if (watch) {
+			new FolderWatcher(new File(wordIndex.getPath()), snapshots).start();
+		}
+		if (batch != null) {
+			BufferedReader in = batch.equals("-")
+					? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+					: Files.newBufferedReader(Paths.get(batch), StandardCharsets.UTF_8);
+			Writer out = new BufferedWriter(new OutputStreamWriter(results, StandardCharsets.UTF_8));
+			try {
+				new BatchRunner(snapshots, cache, prune, numOfWorkers, format).run(in, out, System.err);
+			} finally {
+				in.close();
+			}
+			writeMetrics(metrics);
+			/*The watcher thread must not keep the program running*/
+			System.exit(0);
+		}
+		if (port >= 0) {
+			SearchServer server = new SearchServer(snapshots, cache, prune, timeout);
+			server.start(new InetSocketAddress(port));
+			System.out.println("Serving on http://localhost:" + server.getAddress().getPort() + "/");
+			return;
+		}
+
+		/*Reused by all the queries, which print their results through the console sink*/
+		SearchResults buffers = new SearchResults(kernel);
+		ConsoleSink console = new ConsoleSink();
+		while (true) {
+			/*Take the input.*/
+			String query;
+			int k;
+			System.out.println("Please enter a query q:");
+			query = scanner.nextLine().trim();
+			while (query.length() == 0) {
+				System.out.println("The query can not be empty. Please enter a query q:");
+				query = scanner.nextLine().trim();
+			}
+			System.out.println("Please enter an integer k to output top k documents that mathces the query:");
+			String tmpString = scanner.nextLine().trim();
+			while (tmpString.length() == 0) {
+				System.out.println("k can not be empty. Please enter an integer k:");
+				tmpString = scanner.nextLine().trim();
+			}
+			k = Integer.parseInt(tmpString);
+			
+			/*Calculate the top k matching documents.*/
+			long startTime=System.nanoTime();
+			QueryStats stats = new QueryStats();
+			/*Both steps use the same snapshot, even if the watcher publishes a new one*/
+			IndexSnapshot snapshot = snapshots.snapshot();
+			boolean phrase = snapshot.getIndex().isPositional() && query.length() > 1
+					&& query.startsWith("\"") && query.endsWith("\"");
+			if (phrase) {
+				query = query.substring(1, query.length() - 1);
+			}
+			if (cache != null) {
+				QueryCache.Result result = cache.search(snapshot, query, k, prune ? stats : null);
+				WordIndex.printTop2KResult(result.top2K, result.top2K.size());
+				BiWordIndex.printTopKResult(result.topK, result.topK.size());
+			} else {
+				snapshot.search(query, k, prune ? stats : null, buffers, console);
+			}
+			if (phrase) {
+				System.out.println("Documents containing the phrase \"" + query + "\":");
+				for (String docName : snapshot.getIndex().phraseQuery(query)) {
+					System.out.println(docName);
+				}
+				System.out.println();
+			}
+			if (cache != null) {
+				System.out.println(cache);
+			}
+			if (prune) {
+				System.out.println(stats);
+			}
+			
+			/*Calculate the time used.*/
+			long endTime=System.nanoTime();
+			double timeUsed=(endTime-startTime)/1e6;
+			System.out.printf("Time used: %.3f ms.\n", timeUsed);
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Repeatedly prompt for a query and k, and print the top 2k and the top
+	 * k documents of a sharded collection.
+	 * 
+	 * @param index
+	 * @param prune
+	 * @param scanner
+	 */
+	private static void promptShards(ShardedIndex index, boolean prune, Scanner scanner) {
+		while (true) {
+			System.out.println("Please enter a query q:");
+			String query = scanner.nextLine().trim();
+			while (query.length() == 0) {
+				System.out.println("The query can not be empty. Please enter a query q:");
+				query = scanner.nextLine().trim();
+			}
+			System.out.println("Please enter an integer k to output top k documents that mathces the query:");
+			String tmpString = scanner.nextLine().trim();
+			while (tmpString.length() == 0) {
+				System.out.println("k can not be empty. Please enter an integer k:");
+				tmpString = scanner.nextLine().trim();
+			}
+			int k = Integer.parseInt(tmpString);
+
+			long startTime = System.nanoTime();
+			QueryStats stats = new QueryStats();
+			ArrayList<StringDoublePair> top2K = index.searchTop2K(query, k, prune, stats);
+			WordIndex.printTop2KResult(top2K, top2K.size());
+			index.getTopKDocs(query, top2K, k);
+			if (prune) {
+				System.out.println(stats);
+			}
+			long endTime = System.nanoTime();
+			System.out.printf("Time used: %.3f ms.\n", (endTime - startTime) / 1e6);
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Write the metrics of the engine to a file, as JSON if its name ends
+	 * with .json and in the Prometheus text format otherwise.
+	 * 
+	 * @param file
+	 *            may be null, then nothing is written
+	 * @throws IOException
+	 */
+	private static void writeMetrics(String file) throws IOException {
+		if (file == null) {
+			return;
+		}
+		String text = file.endsWith(".json") ? Metrics.REGISTRY.toJson() + "\n" : Metrics.REGISTRY.toPrometheus();
+		Files.write(Paths.get(file), text.getBytes(StandardCharsets.UTF_8));
+		System.out.println("Metrics written to " + file);
+	}
+}
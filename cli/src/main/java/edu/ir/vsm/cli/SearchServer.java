@@ -0,0 +1,387 @@
+package edu.ir.vsm.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.ir.vsm.IndexSnapshot;
+import edu.ir.vsm.Metrics;
+import edu.ir.vsm.QueryCache;
+import edu.ir.vsm.QueryStats;
+import edu.ir.vsm.SegmentedIndex;
+import edu.ir.vsm.SnapshotManager;
+import edu.ir.vsm.StringDoublePair;
+import edu.ir.vsm.Tokenizer;
+import edu.ir.vsm.WordIndex;
+
+/**
+ * This class serves the indexes over HTTP with the server of the JDK. Every
+ * request and its search run on virtual threads when the runtime has them
+ * (Java 21 and later). On Java 17, which the project targets, they run on
+ * two bounded pools of platform threads instead: HANDLER_THREADS threads
+ * handling the requests, and one thread per processor running the
+ * searches, which are CPU bound, with at most QUEUED_SEARCHES searches
+ * waiting for one. A search the full queue can't take is answered with
+ * 503. The responses are JSON:
+ *
+ * <pre>
+ * GET /search?q=query&k=10
+ * {"query":"...","k":10,"version":0,"latency_us":412,"results":[{"doc":"...","score":0.52},...]}
+ *
+ * GET /postings?term=word
+ * {"term":"...","type":"word","postings":[{"doc":"...","freq":3},...]}
+ *
+ * GET /postings?term=two+words
+ * {"term":"...","type":"biword","postings":[{"doc":"..."},...]}
+ * (the term is tokenized as the documents are, and must give one or two terms)
+ *
+ * GET /stats
+ * {"version":0,"docs":300,"terms":...,"segments":1,"merges":0,"requests":...,"latency_us":{"p50":...,"p99":...},...}
+ *
+ * GET /metrics[?format=json]
+ * the Metrics registry, in the Prometheus text format or as JSON
+ * </pre>
+ *
+ * A request reads the snapshot current when it starts. A search taking
+ * longer than the timeout is answered with 503. If it is still waiting for
+ * a thread it never runs. Once started it is not interrupted, since the
+ * scoring loops don't check for interruption: it runs to completion and its
+ * result is discarded. A malformed request is answered with 400 and an
+ * error message.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SearchServer {
+
+	public static final long DEFAULT_TIMEOUT = 1000;/* milliseconds */
+	public static final int MAX_K = Integer.MAX_VALUE / 2;/* so that the size 2k of the candidates doesn't overflow */
+	/* seconds a connection may take to send a request or receive a response */
+	private static final String CONNECTION_TIMEOUT = "30";
+	private static final int LATENCY_WINDOW = 10000;/* searches the percentiles are computed on */
+	/* pools of platform threads, without virtual threads */
+	private static final int HANDLER_THREADS = 64;
+	private static final int SEARCH_THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int QUEUED_SEARCHES = 16 * SEARCH_THREADS;
+
+	private final SnapshotManager snapshots;
+	private final QueryCache cache;
+	private final boolean prune;
+	private final long timeout;
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final LatencyStats latencies = new LatencyStats(LATENCY_WINDOW);
+	private ExecutorService executor;/* handles the requests */
+	private ExecutorService searchExecutor;/* runs the searches */
+	private boolean virtualThreads;
+	private HttpServer server;
+
+	/**
+	 * @param snapshots
+	 * @param cache
+	 *            may be null
+	 * @param prune
+	 *            retrieve the top 2k documents with dynamic pruning
+	 * @param timeout
+	 *            milliseconds a search may take
+	 */
+	public SearchServer(SnapshotManager snapshots, QueryCache cache, boolean prune, long timeout) {
+		if (timeout < 1)
+			throw new IllegalArgumentException("The timeout must be positive.");
+		this.snapshots = snapshots;
+		this.cache = cache;
+		this.prune = prune;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Start serving.
+	 *
+	 * @param address
+	 * @throws IOException
+	 *             if the address can not be bound
+	 * @throws IllegalStateException
+	 *             if the server was already started
+	 */
+	public synchronized void start(InetSocketAddress address) throws IOException {
+		if (server != null)
+			throw new IllegalStateException("The server was already started.");
+		/*Read by the JDK server when it is first created*/
+		if (System.getProperty("sun.net.httpserver.maxReqTime") == null) {
+			System.setProperty("sun.net.httpserver.maxReqTime", CONNECTION_TIMEOUT);
+		}
+		if (System.getProperty("sun.net.httpserver.maxRspTime") == null) {
+			System.setProperty("sun.net.httpserver.maxRspTime", CONNECTION_TIMEOUT);
+		}
+		/*The headers and the body are sent separately: with Nagle's algorithm, delayed
+		  acknowledgments add about 40 ms to every response on a kept alive connection*/
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		newExecutors();
+		server = HttpServer.create(address, 0);
+		server.createContext("/search", exchange -> handle(exchange, "/search"));
+		server.createContext("/postings", exchange -> handle(exchange, "/postings"));
+		server.createContext("/stats", exchange -> handle(exchange, "/stats"));
+		server.createContext("/metrics", exchange -> handle(exchange, "/metrics"));
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return the address the server is bound to
+	 */
+	public synchronized InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Stop serving, waiting at most the timeout for the requests being
+	 * handled.
+	 */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop((int) Math.max(1, timeout / 1000));
+			executor.shutdownNow();
+			searchExecutor.shutdownNow();
+			server = null;
+		}
+	}
+
+	/**
+	 * Create the executors of the requests and of the searches: an executor
+	 * starting a virtual thread per task for both, or two bounded pools of
+	 * platform threads if the runtime has no virtual threads.
+	 */
+	private void newExecutors() {
+		try {
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			searchExecutor = executor;
+			virtualThreads = true;
+		} catch (ReflectiveOperationException e) {
+			/* Java 17: separate pools, so that the handlers waiting for searches never take all the threads */
+			executor = Executors.newFixedThreadPool(HANDLER_THREADS);
+			searchExecutor = new ThreadPoolExecutor(SEARCH_THREADS, SEARCH_THREADS, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(QUEUED_SEARCHES));
+			virtualThreads = false;
+		}
+	}
+
+	private void handle(HttpExchange exchange, String path) throws IOException {
+		requests.incrementAndGet();
+		try {
+			if (!exchange.getRequestURI().getPath().equals(path)) {
+				respond(exchange, 404, error("Not found."));
+			} else if (!exchange.getRequestMethod().equals("GET")) {
+				respond(exchange, 405, error("Only GET is supported."));
+			} else {
+				HashMap<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+				if (path.equals("/search")) {
+					search(exchange, parameters);
+				} else if (path.equals("/postings")) {
+					postings(exchange, parameters);
+				} else if (path.equals("/metrics")) {
+					metrics(exchange, parameters);
+				} else {
+					respond(exchange, 200, stats());
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			errors.incrementAndGet();
+			respond(exchange, 400, error(e.getMessage()));
+		} catch (RuntimeException e) {
+			errors.incrementAndGet();
+			respond(exchange, 500, error(String.valueOf(e)));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void search(HttpExchange exchange, HashMap<String, String> parameters) throws IOException {
+		String query = parameters.get("q");
+		if (query == null || query.trim().isEmpty())
+			throw new IllegalArgumentException("The query q is missing.");
+		int k = BatchRunner.DEFAULT_K;
+		if (parameters.containsKey("k")) {
+			try {
+				k = Integer.parseInt(parameters.get("k").trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("k is not an integer.");
+			}
+			if (k < 1 || k > MAX_K)
+				throw new IllegalArgumentException("k must be between 1 and " + MAX_K + ".");
+		}
+		final int topK = k;
+		long start = System.nanoTime();
+		IndexSnapshot snapshot = snapshots.snapshot();
+		Future<ArrayList<StringDoublePair>> future;
+		try {
+			future = searchExecutor.submit(() -> {
+				QueryStats stats = prune ? new QueryStats() : null;
+				if (cache != null) {
+					return cache.search(snapshot, query, topK, stats).topK;
+				}
+				return snapshot.search(query, topK, stats);
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			respond(exchange, 503, error("Too many searches are waiting, try again later."));
+			return;
+		}
+		ArrayList<StringDoublePair> results;
+		try {
+			results = future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			/* dropped if it has not started yet, left to complete otherwise */
+			future.cancel(false);
+			timeouts.incrementAndGet();
+			respond(exchange, 503, error("The search timed out after " + timeout + " ms."));
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The search was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to answer the query.", e.getCause());
+		}
+		long latency = System.nanoTime() - start;
+		latencies.add(latency);
+		StringBuilder json = new StringBuilder();
+		json.append("{\"query\":").append(BatchRunner.jsonString(query)).append(",\"k\":").append(k)
+				.append(",\"version\":").append(snapshot.getVersion()).append(",\"latency_us\":")
+				.append(latency / 1000).append(",\"results\":");
+		BatchRunner.jsonResults(json, results).append('}');
+		respond(exchange, 200, json.toString());
+	}
+
+	private void postings(HttpExchange exchange, HashMap<String, String> parameters) throws IOException {
+		String term = parameters.get("term");
+		if (term == null || term.trim().isEmpty())
+			throw new IllegalArgumentException("The term is missing.");
+		/* normalized as the documents are indexed, STOP words dropped */
+		ArrayList<String> terms = new ArrayList<String>();
+		new Tokenizer().tokenize(term, terms::add);
+		if (terms.isEmpty() || terms.size() > 2)
+			throw new IllegalArgumentException(
+					"The term must be a word or a biword, not counting STOP words and words shorter than 3 characters.");
+		String[] words = terms.toArray(new String[0]);
+		IndexSnapshot snapshot = snapshots.snapshot();
+		StringBuilder json = new StringBuilder();
+		json.append("{\"term\":").append(BatchRunner.jsonString(String.join(" ", words))).append(",\"type\":");
+		if (words.length == 1) {
+			json.append("\"word\",\"postings\":[");
+			ArrayList<WordIndex.PostListEntry> postings = snapshot.getIndex().postingsList(words[0]);
+			for (int i = 0; i < postings.size(); i++) {
+				json.append(i == 0 ? "" : ",").append("{\"doc\":")
+						.append(BatchRunner.jsonString(postings.get(i).docName)).append(",\"freq\":")
+						.append(postings.get(i).numAppears).append('}');
+			}
+		} else {
+			json.append("\"biword\",\"postings\":[");
+			/*A positional index has no biword index, but finds the biwords as phrases*/
+			SegmentedIndex index = snapshot.getIndex();
+			ArrayList<String> docNames = index.isPositional() ? index.phraseQuery(words[0] + " " + words[1])
+					: index.biWordPostingsList(words[0] + " " + words[1]);
+			for (int i = 0; i < docNames.size(); i++) {
+				json.append(i == 0 ? "" : ",").append("{\"doc\":").append(BatchRunner.jsonString(docNames.get(i)))
+						.append('}');
+			}
+		}
+		json.append("]}");
+		respond(exchange, 200, json.toString());
+	}
+
+	private String stats() {
+		IndexSnapshot snapshot = snapshots.snapshot();
+		SegmentedIndex index = snapshot.getIndex();
+		StringBuilder json = new StringBuilder();
+		json.append("{\"version\":").append(snapshot.getVersion()).append(",\"docs\":")
+				.append(index.getNumOfDocs()).append(",\"terms\":").append(index.getNumOfTerms())
+				.append(",\"biwords\":").append(index.getNumOfBiWords()).append(",\"segments\":")
+				.append(index.getSegments().size()).append(",\"merges\":").append(snapshots.getNumOfMerges())
+				.append(",\"positional\":").append(index.isPositional()).append(",\"codec\":")
+				.append(BatchRunner.jsonString(index.getCodec() == null ? "none" : index.getCodec().name()))
+				.append(",\"threads\":").append(virtualThreads ? "\"virtual\"" : "\"platform\"")
+				.append(",\"requests\":").append(requests.get()).append(",\"searches\":").append(latencies.count())
+				.append(",\"timeouts\":").append(timeouts.get()).append(",\"rejected\":").append(rejected.get())
+				.append(",\"errors\":").append(errors.get())
+				.append(",\"latency_us\":{\"p50\":").append(latencies.percentile(0.5)).append(",\"p99\":")
+				.append(latencies.percentile(0.99)).append('}');
+		if (cache != null) {
+			json.append(",\"cache\":{\"size\":").append(cache.size()).append(",\"hits\":").append(cache.getHits())
+					.append(",\"partial_hits\":").append(cache.getPartialHits()).append(",\"misses\":")
+					.append(cache.getMisses()).append(",\"evictions\":").append(cache.getEvictions())
+					.append(",\"invalidations\":").append(cache.getInvalidations()).append('}');
+		}
+		return json.append('}').toString();
+	}
+
+	private void metrics(HttpExchange exchange, HashMap<String, String> parameters) throws IOException {
+		String format = parameters.getOrDefault("format", "prometheus");
+		if (format.equals("json")) {
+			respond(exchange, 200, Metrics.REGISTRY.toJson());
+		} else if (format.equals("prometheus")) {
+			respond(exchange, 200, Metrics.REGISTRY.toPrometheus(), "text/plain; version=0.0.4; charset=utf-8");
+		} else {
+			throw new IllegalArgumentException("The format must be prometheus or json.");
+		}
+	}
+
+	/**
+	 * @return the decoded parameters of a query string, the last value of a
+	 *         repeated parameter winning
+	 */
+	private static HashMap<String, String> parameters(String rawQuery) {
+		HashMap<String, String> parameters = new HashMap<String, String>();
+		if (rawQuery == null) {
+			return parameters;
+		}
+		for (String pair : rawQuery.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+			int equals = pair.indexOf('=');
+			String name = equals < 0 ? pair : pair.substring(0, equals);
+			String value = equals < 0 ? "" : pair.substring(equals + 1);
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+					URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return parameters;
+	}
+
+	private static String error(String message) {
+		return "{\"error\":" + BatchRunner.jsonString(message) + "}";
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		respond(exchange, status, json, "application/json; charset=utf-8");
+	}
+
+	private static void respond(HttpExchange exchange, int status, String text, String contentType)
+			throws IOException {
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+}
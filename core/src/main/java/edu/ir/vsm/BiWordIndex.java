@@ -0,0 +1,828 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+/**
+ * This class build an index for bi-words. Like WordIndex, it is only read by
+ * queries and updated on an unpublished copy.
+ * @author YAN DENG
+ *
+ */
+public class BiWordIndex {
+	private String path;
+	private TermTable dictionary;
+	private HashMap<String, Integer> docsMap;
+	private ArrayList<String> docsList;
+	private int numOfBiWords;
+	private int numOfDocs;/*number of documents, not counting deleted ones*/
+	private ArrayList<DictEntry> invertedIndex;
+	private BitSet deletedDocs;/*indexes of deleted documents, never reused*/
+	private BitSet ownedEntries;/*entries not shared with another copy, null if none is shared*/
+	private ArrayList<int[]> docBiWordIndexes;/*biword indexes of each document, built by the first delete, null until then*/
+	private boolean shared;/*the dictionary, the documents and the list of entries are shared with another copy*/
+
+	/**
+	 * Gets the name of a folder containing document collection as parameter.
+	 * 
+	 * @param path
+	 */
+	public BiWordIndex(String path) {
+		this(path, true);
+	}
+
+	/**
+	 * Creates the index of the given folder. When build is false the index
+	 * is left empty, so that an IndexBuilder can fill it.
+	 * 
+	 * @param path
+	 * @param build
+	 */
+	BiWordIndex(String path, boolean build) {
+		this.path = path;
+		dictionary = new TermTable();
+		docsMap = new HashMap<String, Integer>();
+		docsList = new ArrayList<String>();
+		this.numOfBiWords = 0;
+		this.numOfDocs = 0;
+		this.invertedIndex = new ArrayList<DictEntry>();
+		this.deletedDocs = new BitSet();
+		if (build) {
+			this.buildIndex();
+		}
+	}
+
+	/**
+	 * This method builds the inverted index. Go through all the documents in
+	 * the given folder and collect all terms and store them in the
+	 * dictionary.
+	 */
+	public void buildIndex() {
+		if (!(invertedIndex == null || invertedIndex.isEmpty())) {
+			return;/* Inverted Index has already been builded. */
+		}
+		new IndexBuilder(path, IndexBuilder.defaultNumOfThreads()).build(null, this);
+	}
+
+	/**
+	 * Append a document while the index is being built.
+	 * 
+	 * @param docName
+	 * @param docBiWords
+	 *            the biwords of the document
+	 * @return false if the document doesn't contain any biword
+	 */
+	boolean appendDocument(String docName, HashSet<String> docBiWords) {
+		docsList.add(docName);
+		docsMap.put(docName, numOfDocs);
+		if (docBiWords == null || docBiWords.size() == 0) {
+			numOfDocs++;
+			return false;
+		}
+		for (String s : docBiWords) {
+			getOrAddEntry(s).add(numOfDocs);
+		}
+		numOfDocs++;
+		return true;
+	}
+
+	/**
+	 * Append a partial index built over the next segment of documents. The
+	 * documents of the segment get the indexes following the last indexed
+	 * document.
+	 * 
+	 * @param segment
+	 */
+	void merge(BiWordIndex segment) {
+		int offset = numOfDocs;
+		for (String docName : segment.docsList) {
+			docsList.add(docName);
+			docsMap.put(docName, numOfDocs);
+			numOfDocs++;
+		}
+		Iterator<String> biwords = segment.dictionary.iterator();
+		for (DictEntry partial : segment.invertedIndex) {
+			getOrAddEntry(biwords.next()).addAll(partial, offset);
+		}
+	}
+
+	/**
+	 * Append the documents of another index that are not deleted, with their
+	 * postings, like WordIndex.mergeLive.
+	 * 
+	 * @param segment
+	 */
+	void mergeLive(BiWordIndex segment) {
+		int[] newIds = new int[segment.docsList.size()];
+		for (int i = 0; i < newIds.length; i++) {
+			if (segment.deletedDocs.get(i)) {
+				newIds[i] = -1;
+			} else {
+				newIds[i] = docsList.size();
+				docsList.add(segment.docsList.get(i));
+				docsMap.put(segment.docsList.get(i), newIds[i]);
+				numOfDocs++;
+			}
+		}
+		Iterator<String> biwords = segment.dictionary.iterator();
+		for (DictEntry source : segment.invertedIndex) {
+			String biword = biwords.next();
+			if (source.numOfDocs == 0) {
+				continue;
+			}
+			DictEntry entry = getOrAddEntry(biword);
+			for (int i = 0; i < source.numOfDocs; i++) {
+				int doc = source.docIds.get(i);
+				if (newIds[doc] >= 0) {
+					entry.add(newIds[doc]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called once all segments were merged: trims the postings buffers and
+	 * seals the dictionary.
+	 */
+	void finishMerge() {
+		for (DictEntry entry : invertedIndex) {
+			entry.trim();
+		}
+		sealBiWords();
+	}
+
+	/**
+	 * Add a biword whose complete postings were written to a mapped file,
+	 * once all the documents were appended without their biwords.
+	 * 
+	 * @param biword
+	 *            a biword not in the dictionary yet
+	 * @param df
+	 * @param docIds
+	 */
+	void addMappedBiWord(String biword, int df, IntBuffer docIds) {
+		dictionary.add(biword);
+		invertedIndex.add(new DictEntry(df, docIds));
+		numOfBiWords++;
+	}
+
+	/**
+	 * Called once all documents were added: trims the postings buffers and
+	 * seals the dictionary.
+	 */
+	void finishBuild() {
+		for (DictEntry entry : invertedIndex) {
+			entry.trim();
+		}
+		sealBiWords();
+		System.out.printf("Number of biwords: %d\n\n",numOfBiWords);
+	}
+
+	/**
+	 * Sort the biwords into a compact TermDictionary, like
+	 * WordIndex.sealTerms. The biword indexes of the documents are built
+	 * again by the next delete.
+	 */
+	void sealBiWords() {
+		own();
+		int[] oldIndexes = dictionary.seal();
+		if (oldIndexes == null) {
+			return;
+		}
+		ArrayList<DictEntry> entries = new ArrayList<DictEntry>(numOfBiWords);
+		BitSet owned = ownedEntries == null ? null : new BitSet();
+		for (int i = 0; i < numOfBiWords; i++) {
+			entries.add(invertedIndex.get(oldIndexes[i]));
+			if (owned != null && ownedEntries.get(oldIndexes[i])) {
+				owned.set(i);
+			}
+		}
+		invertedIndex = entries;
+		if (owned != null) {
+			ownedEntries = owned;
+		}
+		docBiWordIndexes = null;
+	}
+
+	/**
+	 * Write the postings and then the dictionary and the documents to an
+	 * index file.
+	 * 
+	 * @param out
+	 * @return the position of the dictionary in the file
+	 * @throws IOException
+	 */
+	long write(IndexFile.Output out) throws IOException {
+		long[] offsets = new long[numOfBiWords];
+		for (int i = 0; i < numOfBiWords; i++) {
+			DictEntry entry = invertedIndex.get(i);
+			offsets[i] = out.putInts(entry.docIds, entry.numOfDocs);
+		}
+		long position = out.position();
+		out.putString(path == null ? "" : path);
+		out.putInt(docsList.size());
+		for (int i = 0; i < docsList.size(); i++) {
+			out.putString(docsList.get(i));
+			out.putInt(deletedDocs.get(i) ? 1 : 0);
+		}
+		out.putInt(numOfBiWords);
+		Iterator<String> biwords = dictionary.iterator();
+		for (int i = 0; i < numOfBiWords; i++) {
+			DictEntry entry = invertedIndex.get(i);
+			out.putString(biwords.next());
+			out.putInt(entry.numOfDocs);
+			out.putLong(offsets[i]);
+		}
+		return position;
+	}
+
+	/**
+	 * Read a biword index written by write(). The dictionary is loaded in
+	 * memory, the postings stay in the mapped file.
+	 * 
+	 * @param file
+	 * @param in
+	 *            positioned at the dictionary
+	 * @return the biword index
+	 * @throws IOException
+	 */
+	static BiWordIndex read(IndexFile file, IndexFile.Input in) throws IOException {
+		BiWordIndex index = new BiWordIndex(in.getString(), false);
+		int numOfSlots = in.getInt();
+		for (int i = 0; i < numOfSlots; i++) {
+			String docName = in.getString();
+			index.docsList.add(docName);
+			if (in.getInt() != 0) {
+				index.deletedDocs.set(i);
+			} else {
+				index.docsMap.put(docName, i);
+				index.numOfDocs++;
+			}
+		}
+		int numOfBiWords = in.getInt();
+		for (int i = 0; i < numOfBiWords; i++) {
+			String biword = in.getString();
+			int df = in.getInt();
+			IntBuffer docIds = file.ints(in.getLong(), df);
+			index.dictionary.add(biword);
+			index.invertedIndex.add(new DictEntry(df, docIds));
+		}
+		index.numOfBiWords = numOfBiWords;
+		index.sealBiWords();
+		return index;
+	}
+
+	/**
+	 * Copy the index so that it can be updated while this one is still being
+	 * queried. Like WordIndex.copy, the copy shares all the data of the
+	 * index, and whichever index updates a part of it first copies that part.
+	 * 
+	 * @return a copy of the index
+	 */
+	BiWordIndex copy() {
+		BiWordIndex copy = new BiWordIndex(path, false);
+		copy.dictionary = dictionary;
+		copy.docsMap = docsMap;
+		copy.docsList = docsList;
+		copy.numOfBiWords = numOfBiWords;
+		copy.numOfDocs = numOfDocs;
+		copy.invertedIndex = invertedIndex;
+		copy.deletedDocs = deletedDocs;
+		copy.docBiWordIndexes = docBiWordIndexes;
+		copy.shared = true;
+		shared = true;
+		copy.ownedEntries = new BitSet();
+		ownedEntries = new BitSet();
+		return copy;
+	}
+
+	/**
+	 * Copy the dictionary, the documents and the list of entries before
+	 * writing them, if they are shared with another copy of the index.
+	 */
+	private void own() {
+		if (!shared) {
+			return;
+		}
+		dictionary = dictionary.copy();
+		docsMap = new HashMap<String, Integer>(docsMap);
+		docsList = new ArrayList<String>(docsList);
+		invertedIndex = new ArrayList<DictEntry>(invertedIndex);
+		deletedDocs = (BitSet) deletedDocs.clone();
+		if (docBiWordIndexes != null) {
+			docBiWordIndexes = new ArrayList<int[]>(docBiWordIndexes);
+		}
+		shared = false;
+	}
+
+	/**
+	 * @param biword
+	 * @return the number of documents containing the biword
+	 */
+	int documentFrequency(String biword) {
+		int index = dictionary.indexOf(biword);
+		return index < 0 ? 0 : invertedIndex.get(index).numOfDocs;
+	}
+
+	/**
+	 * Add the biwords contained in some document to a set.
+	 * 
+	 * @param biwords
+	 */
+	void collectBiWords(HashSet<String> biwords) {
+		Iterator<String> names = dictionary.iterator();
+		for (DictEntry entry : invertedIndex) {
+			String biword = names.next();
+			if (entry.numOfDocs > 0) {
+				biwords.add(biword);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of biwords of the dictionary
+	 */
+	public int getNumOfBiWords() {
+		return numOfBiWords;
+	}
+
+	/**
+	 * Add a new document of the folder to the index.
+	 * 
+	 * @param file
+	 * @throws IllegalArgumentException
+	 *             if a document with that name is already indexed
+	 */
+	public void addDocument(File file) {
+		if (docsMap.containsKey(file.getName()))
+			throw new IllegalArgumentException(file.getName() + " is already indexed.");
+		addDocument(file.getName(), readFile(file));
+	}
+
+	/**
+	 * Index the current content of a document, replacing the indexed one if
+	 * any.
+	 * 
+	 * @param file
+	 */
+	public void replaceDocument(File file) {
+		replaceDocument(file.getName(), readFile(file));
+	}
+
+	/**
+	 * Remove a document from the index. Its index becomes a tombstone and is
+	 * never given to another document.
+	 * 
+	 * @param docName
+	 * @return false if the document was not indexed
+	 */
+	public boolean deleteDocument(String docName) {
+		Integer docId = docsMap.get(docName);
+		if (docId == null) {
+			return false;
+		}
+		own();
+		for (int i : biWordIndexesOf(docId)) {
+			DictEntry entry = ownedEntry(i);
+			entry.remove(entry.indexOf(docId));
+		}
+		docsMap.remove(docName);
+		docBiWordIndexes.set(docId, null);
+		deletedDocs.set(docId);
+		numOfDocs--;
+		return true;
+	}
+
+	void replaceDocument(String docName, HashSet<String> docBiWords) {
+		deleteDocument(docName);
+		addDocument(docName, docBiWords);
+	}
+
+	/**
+	 * Add a document to a built index, with the next unused index so that the
+	 * postings stay sorted.
+	 * 
+	 * @param docName
+	 * @param docBiWords
+	 */
+	void addDocument(String docName, HashSet<String> docBiWords) {
+		own();
+		int docId = docsList.size();
+		docsList.add(docName);
+		docsMap.put(docName, docId);
+		int[] biWordIndexes = new int[docBiWords.size()];
+		int n = 0;
+		for (String s : docBiWords) {
+			int index = addBiWord(s);
+			biWordIndexes[n++] = index;
+			ownedEntry(index).append(docId);
+		}
+		if (docBiWordIndexes != null) {
+			docBiWordIndexes.add(biWordIndexes);
+		}
+		numOfDocs++;
+	}
+
+	/**
+	 * @param docId
+	 *            a document that is not deleted
+	 * @return the indexes of the biwords of the document, collected for all
+	 *         documents the first time they are needed, like
+	 *         WordIndex.termIndexesOf
+	 */
+	private int[] biWordIndexesOf(int docId) {
+		if (docBiWordIndexes == null) {
+			int numOfSlots = docsList.size();
+			int[] counts = new int[numOfSlots];
+			for (DictEntry entry : invertedIndex) {
+				for (int i = 0; i < entry.numOfDocs; i++) {
+					counts[entry.docIds.get(i)]++;
+				}
+			}
+			int[][] indexes = new int[numOfSlots][];
+			for (int i = 0; i < numOfSlots; i++) {
+				indexes[i] = new int[counts[i]];
+				counts[i] = 0;
+			}
+			for (int b = 0; b < numOfBiWords; b++) {
+				DictEntry entry = invertedIndex.get(b);
+				for (int i = 0; i < entry.numOfDocs; i++) {
+					int doc = entry.docIds.get(i);
+					indexes[doc][counts[doc]++] = b;
+				}
+			}
+			docBiWordIndexes = new ArrayList<int[]>(Arrays.asList(indexes));
+		}
+		return docBiWordIndexes.get(docId);
+	}
+
+	/**
+	 * @param biword
+	 * @return the dictionary entry of the biword, created if it is new
+	 */
+	private DictEntry getOrAddEntry(String biword) {
+		return ownedEntry(addBiWord(biword));
+	}
+
+	/**
+	 * @param biword
+	 * @return the index of the biword, added to the dictionary with an empty
+	 *         entry if it is new
+	 */
+	private int addBiWord(String biword) {
+		int index = dictionary.indexOf(biword);
+		if (index >= 0) {
+			return index;
+		}
+		own();
+		dictionary.add(biword);
+		invertedIndex.add(new DictEntry());
+		if (ownedEntries != null) {
+			ownedEntries.set(numOfBiWords);
+		}
+		return numOfBiWords++;
+	}
+
+	/**
+	 * @param index
+	 * @return the entry of the given biword index, copied first if it is
+	 *         shared with another copy of the index
+	 */
+	private DictEntry ownedEntry(int index) {
+		DictEntry entry = invertedIndex.get(index);
+		if (ownedEntries != null && !ownedEntries.get(index)) {
+			own();
+			entry = new DictEntry(entry.numOfDocs, entry.docIds);
+			invertedIndex.set(index, entry);
+			ownedEntries.set(index);
+		}
+		return entry;
+	}
+
+	/**
+	 * Each item of the array list is a tuple consisting of document name d and
+	 * the frequency of term t in document d.
+	 * 
+	 * @param biword
+	 *            given term
+	 * @return the ArrayList, empty if the biword is not in the dictionary
+	 */
+	public ArrayList<String> postingsList(String biword) {
+		biword=biword.toLowerCase();
+		ArrayList<String> list = new ArrayList<String>();
+		int index = dictionary.indexOf(biword);
+		if(index < 0 || invertedIndex.get(index).numOfDocs == 0){
+			return list;
+		}
+		DictEntry entry = invertedIndex.get(index);
+		for (int i = 0; i < entry.numOfDocs; i++) {
+			list.add(docsList.get(entry.docIds.get(i)));
+		}
+		return list;
+	}
+
+	/**
+	 * Prints the contents of the list returned by postingsList(t) in a
+	 * human-readable form.
+	 * 
+	 * @param biword
+	 *            given term
+	 */
+	public void printPostingsList(String biword) {
+		System.out.println("Postings List of biword '" + biword + "':");
+		System.out.println("--------------------");
+		System.out.println("Document Name");
+		System.out.println("--------------------");
+		ArrayList<String> postList = this.postingsList(biword);
+		if (postList.isEmpty()) {
+			System.out.println(biword.toLowerCase() + " does not exist in biword dictionary.");
+		}
+		for (String s : postList) {
+			System.out.println(s);
+		}
+		System.out.printf("--------------------\n\n");
+	}
+
+	/**
+	 * Go through the given file, and store the non-repeated terms with their
+	 * #appears in a hash map.
+	 * 
+	 * @param file
+	 * @return Returns the hashset of terms in the given file
+	 */
+	private HashSet<String> readFile(File file) {
+		HashSet<String> docBiWords = new HashSet<String>();
+		new Tokenizer().tokenize(file, new BiWordCollector(docBiWords));
+		return docBiWords;
+	}
+
+	/**
+	 * Retrieve all the bi-words in the query, tokenized in memory.
+	 * 
+	 * @param query
+	 * @return the bi-words of the query
+	 */
+	public HashSet<String> readQuery(String query) {
+		HashSet<String> queryBiWords = new HashSet<String>();
+		new Tokenizer().tokenize(query, new BiWordCollector(queryBiWords));
+		return queryBiWords;
+	}
+
+	public ArrayList<StringDoublePair> getTopKDocs(String query, ArrayList<StringDoublePair> list, int k) {
+		ArrayList<StringDoublePair> result = rerank(query, list, k);
+		outputTopKResult(result, result.size());
+		return result;
+	}
+
+	/**
+	 * Same as getTopKDocs, without printing anything. The index is only read,
+	 * so any number of threads may call it at the same time.
+	 * 
+	 * @param query
+	 * @param list
+	 *            the top 2k documents by cosine similarity
+	 * @param k
+	 * @return the top k documents of the list by number of query biwords,
+	 *         then by cosine similarity
+	 */
+	public ArrayList<StringDoublePair> rerank(String query, ArrayList<StringDoublePair> list, int k) {
+		return selectTopK(list, countBiWords(query, list), k);
+	}
+
+	/**
+	 * @param list
+	 *            the top 2k documents by cosine similarity
+	 * @param numOfBiWords
+	 *            the number of query biwords in each document of the list
+	 * @param k
+	 * @return the top k documents of the list by number of query biwords,
+	 *         then by cosine similarity
+	 */
+	static ArrayList<StringDoublePair> selectTopK(ArrayList<StringDoublePair> list, int[] numOfBiWords, int k) {
+		double[] cosineSims = new double[list.size()];
+		for (int i = 0; i < list.size(); i++) {
+			cosineSims[i] = list.get(i).num;
+		}
+
+		int[] top = TopKSelector.select(numOfBiWords, cosineSims, list.size(), k);
+		ArrayList<StringDoublePair> result = new ArrayList<StringDoublePair>();
+		for (int l = 0; l < top.length; l++) {
+			result.add(new StringDoublePair(list.get(top[l]).docName, cosineSims[top[l]]));
+		}
+		return result;
+	}
+
+	/**
+	 * Count the biwords of the query each candidate document contains. The
+	 * candidates are sorted by document index once, and then intersected with
+	 * the postings of every query biword by galloping through the postings,
+	 * so no document name is hashed more than once.
+	 * 
+	 * @param query
+	 * @param candidates
+	 * @return the number of query biwords in each candidate, in the order of
+	 *         candidates
+	 */
+	public int[] countBiWords(String query, ArrayList<StringDoublePair> candidates) {
+		int[] counts = new int[candidates.size()];
+		/* document index in the high half, position in candidates in the low half */
+		long[] sorted = new long[candidates.size()];
+		int numOfCandidates = 0;
+		for (int j = 0; j < candidates.size(); j++) {
+			Integer doc = docsMap.get(candidates.get(j).docName);
+			if (doc != null) {
+				sorted[numOfCandidates++] = ((long) doc << 32) | j;
+			}
+		}
+		Arrays.sort(sorted, 0, numOfCandidates);
+		countBiWords(query, sorted, numOfCandidates, counts);
+		return counts;
+	}
+
+	/**
+	 * Same as countBiWords, for candidates given by document index.
+	 * 
+	 * @param query
+	 * @param sorted
+	 *            the document index of every candidate in the high half and
+	 *            its position in counts in the low half, sorted
+	 * @param numOfCandidates
+	 * @param counts
+	 *            the number of query biwords in each candidate is added to it
+	 */
+	void countBiWords(String query, long[] sorted, int numOfCandidates, int[] counts) {
+		for (String biword : readQuery(query)) {
+			int index = dictionary.indexOf(biword);
+			if (index < 0) {
+				continue;
+			}
+			DictEntry entry = invertedIndex.get(index);
+			PostingsCursor cursor = new PostingsCursor(entry.docIds, null, entry.numOfDocs);
+			for (int i = 0; i < numOfCandidates; i++) {
+				int doc = (int) (sorted[i] >>> 32);
+				int found = cursor.advance(doc);
+				if (found == PostingsCursor.NO_MORE_DOCS) {
+					break;
+				}
+				if (found == doc) {
+					counts[(int) sorted[i]]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Output the Top k result
+	 * 
+	 * @param result
+	 * @param k
+	 */
+	public void outputTopKResult(ArrayList<StringDoublePair> result, int k) {
+		printTopKResult(result, k);
+	}
+
+	public static void printTopKResult(ArrayList<StringDoublePair> result, int k) {
+		System.out.println("Top " + k + " documents that matches the query:");
+		System.out.printf("%-25s- %-30s\n", "-------------------------", "------------------------------");
+		System.out.printf("%-25s| %-30s|\n", "Document Name", "cosine similarites with query");
+		System.out.printf("%-25s+ %-30s\n", "-------------------------", "------------------------------");
+		for (StringDoublePair pair : result) {
+			System.out.printf("%-25s| %-30f|\n", pair.docName, pair.num);
+		}
+		System.out.printf("%-25s- %-30s\n\n", "-------------------------", "------------------------------");
+	}
+
+	/**
+	 * Collects the non-repeated biwords of a token stream: every two
+	 * consecutive terms form a biword.
+	 * 
+	 * @author YAN
+	 *
+	 */
+	public static class BiWordCollector implements Tokenizer.TokenHandler {
+		private HashSet<String> biWords;
+		private String lastWord;
+
+		public BiWordCollector(HashSet<String> biWords) {
+			this.biWords = biWords;
+			this.lastWord = null;
+		}
+
+		@Override
+		public void token(String term) {
+			if (lastWord != null) {
+				biWords.add(lastWord + " " + term);
+			}
+			lastWord = term;
+		}
+	}
+
+	/**
+	 * Inner class, to store the inverted list entry. The postings are kept as
+	 * an int buffer of document indexes in increasing order, filled through a
+	 * growable array while the index is being built, or pointing directly
+	 * into the mapped index file.
+	 * 
+	 * @author YAN
+	 *
+	 */
+	static class DictEntry {
+		public int numOfDocs;
+		public IntBuffer docIds;
+		private int[] docIdBuffer;/*growable buffer, only used while building*/
+
+		public DictEntry() {
+			this.numOfDocs = 0;
+			this.docIdBuffer = new int[4];
+		}
+
+		public DictEntry(int num, IntBuffer docIds) {
+			this.numOfDocs = num;
+			this.docIds = docIds;
+		}
+
+		/**
+		 * Append a posting. Documents are indexed in increasing order, so the
+		 * postings stay sorted.
+		 */
+		public void add(int docId) {
+			if (numOfDocs == docIdBuffer.length) {
+				docIdBuffer = Arrays.copyOf(docIdBuffer, numOfDocs * 2);
+			}
+			docIdBuffer[numOfDocs++] = docId;
+		}
+
+		/**
+		 * Append a posting to an entry of a built index.
+		 */
+		public void append(int docId) {
+			ensureGrowable();
+			add(docId);
+			docIds = IntBuffer.wrap(docIdBuffer, 0, numOfDocs);
+		}
+
+		/**
+		 * Remove the posting at the given position from an entry of a built
+		 * index.
+		 */
+		public void remove(int pos) {
+			ensureGrowable();
+			System.arraycopy(docIdBuffer, pos + 1, docIdBuffer, pos, numOfDocs - pos - 1);
+			numOfDocs--;
+			docIds = IntBuffer.wrap(docIdBuffer, 0, numOfDocs);
+		}
+
+		/**
+		 * Copy trimmed or mapped postings back into a growable buffer.
+		 */
+		private void ensureGrowable() {
+			if (docIdBuffer != null) {
+				return;
+			}
+			docIdBuffer = new int[Math.max(4, numOfDocs + numOfDocs / 2 + 1)];
+			docIds.duplicate().get(docIdBuffer, 0, numOfDocs);
+		}
+
+		/**
+		 * Append all postings of another entry that is still being built,
+		 * shifting its document indexes by offset.
+		 */
+		public void addAll(DictEntry other, int offset) {
+			int size = numOfDocs + other.numOfDocs;
+			if (size > docIdBuffer.length) {
+				docIdBuffer = Arrays.copyOf(docIdBuffer, Math.max(size, docIdBuffer.length * 2));
+			}
+			for (int i = 0; i < other.numOfDocs; i++) {
+				docIdBuffer[numOfDocs + i] = other.docIdBuffer[i] + offset;
+			}
+			numOfDocs = size;
+		}
+
+		/**
+		 * Shrink the growable buffer to the number of postings and make it the
+		 * postings of the entry.
+		 */
+		public void trim() {
+			if (docIdBuffer == null) {
+				return;
+			}
+			docIds = IntBuffer.wrap(Arrays.copyOf(docIdBuffer, numOfDocs));
+			docIdBuffer = null;
+		}
+
+		/**
+		 * @return the position of docId in the postings, or a negative value
+		 *         if the biword does not appear in that document
+		 */
+		public int indexOf(int docId) {
+			return WordIndex.binarySearch(docIds, numOfDocs, docId);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package edu.ir.vsm;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * This class is a compressed postings list. The postings are split into
+ * blocks of BLOCK_SIZE; a block holds the gaps between its document indexes
+ * followed by its term frequencies, each encoded by a PostingsCodec. The
+ * first gap of a block is relative to the last document of the previous
+ * block. The skip data gives the last document index and the byte offset of
+ * every block, so a cursor decodes a block only when it needs one of its
+ * postings, and jumps over the blocks that cannot contain its target. The
+ * frequencies of a block are only decoded if they are read.
+ *
+ * @author YAN DENG
+ *
+ */
+public class BlockPostings {
+
+	public static final int BLOCK_SIZE = 128;
+
+	private final PostingsCodec codec;
+	private final int size;
+	private final IntBuffer lastDocIds;/*last document index of every block*/
+	private final IntBuffer blockOffsets;/*offset of every block in data*/
+	private final ByteBuffer data;
+
+	/**
+	 * @param codec
+	 * @param size
+	 *            number of postings
+	 * @param lastDocIds
+	 * @param blockOffsets
+	 * @param data
+	 *            the encoded blocks, starting at position 0
+	 */
+	BlockPostings(PostingsCodec codec, int size, IntBuffer lastDocIds, IntBuffer blockOffsets, ByteBuffer data) {
+		this.codec = codec;
+		this.size = size;
+		this.lastDocIds = lastDocIds;
+		this.blockOffsets = blockOffsets;
+		this.data = data;
+	}
+
+	/**
+	 * Compress a postings list.
+	 *
+	 * @param docIds
+	 *            document indexes in increasing order
+	 * @param freqs
+	 * @param size
+	 *            number of postings
+	 * @param codec
+	 * @return the compressed postings
+	 */
+	public static BlockPostings encode(IntBuffer docIds, IntBuffer freqs, int size, PostingsCodec codec) {
+		int numOfBlocks = numOfBlocks(size);
+		int[] lastDocIds = new int[numOfBlocks];
+		int[] blockOffsets = new int[numOfBlocks];
+		ByteBuffer out = ByteBuffer.allocate(Math.max(16, 2 * codec.maxEncodedSize(Math.min(size, BLOCK_SIZE))));
+		int[] values = new int[BLOCK_SIZE];
+		int previous = 0;
+		for (int block = 0; block < numOfBlocks; block++) {
+			int start = block * BLOCK_SIZE;
+			int count = Math.min(BLOCK_SIZE, size - start);
+			if (out.remaining() < 2 * codec.maxEncodedSize(count)) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2,
+						out.position() + 2 * codec.maxEncodedSize(count)));
+				out.flip();
+				larger.put(out);
+				out = larger;
+			}
+			blockOffsets[block] = out.position();
+			for (int i = 0; i < count; i++) {
+				int docId = docIds.get(start + i);
+				values[i] = docId - previous;
+				previous = docId;
+			}
+			lastDocIds[block] = previous;
+			codec.encode(values, count, out);
+			for (int i = 0; i < count; i++) {
+				values[i] = freqs.get(start + i);
+			}
+			codec.encode(values, count, out);
+		}
+		out.flip();
+		ByteBuffer data = ByteBuffer.allocate(out.remaining());
+		data.put(out).flip();
+		return new BlockPostings(codec, size, IntBuffer.wrap(lastDocIds), IntBuffer.wrap(blockOffsets), data);
+	}
+
+	static int numOfBlocks(int size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	public PostingsCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * @return the number of postings
+	 */
+	public int size() {
+		return size;
+	}
+
+	IntBuffer lastDocIds() {
+		return lastDocIds;
+	}
+
+	IntBuffer blockOffsets() {
+		return blockOffsets;
+	}
+
+	/**
+	 * @return the encoded blocks
+	 */
+	ByteBuffer data() {
+		return data.duplicate();
+	}
+
+	/**
+	 * @return the number of bytes of the encoded blocks and of the skip data
+	 */
+	public long byteSize() {
+		return data.limit() + 8L * numOfBlocks(size);
+	}
+
+	/**
+	 * Decode all the postings.
+	 *
+	 * @param docIds
+	 *            receives the document indexes, at least size() long
+	 * @param freqs
+	 *            receives the frequencies, at least size() long
+	 */
+	public void decode(int[] docIds, int[] freqs) {
+		Cursor cursor = new Cursor();
+		for (int i = 0; i < size; i++, cursor.next()) {
+			docIds[i] = cursor.docId();
+			freqs[i] = cursor.freq();
+		}
+	}
+
+	/**
+	 * @return a new cursor positioned on the first posting
+	 */
+	public PostingsCursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Cursor decoding the blocks it moves to. Each cursor has its own view of
+	 * the data and its own decoding buffers.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private class Cursor extends PostingsCursor {
+		private final ByteBuffer in;
+		private final int[] docIds = new int[BLOCK_SIZE];
+		private final int[] freqs = new int[BLOCK_SIZE];
+		private int block;
+		private int blockStart;/*index of the first posting of the block*/
+		private int blockCount;
+		private int freqsPosition;/*position of the frequencies in data, or -1 once decoded*/
+		private int pos;
+
+		Cursor() {
+			super(size);
+			this.in = data.duplicate();
+			this.pos = 0;
+			if (size > 0) {
+				load(0);
+			}
+		}
+
+		@Override
+		public int docId() {
+			return pos < size ? docIds[pos - blockStart] : NO_MORE_DOCS;
+		}
+
+		@Override
+		public int freq() {
+			if (freqsPosition >= 0) {
+				in.position(freqsPosition);
+				codec.decode(in, freqs, blockCount);
+				freqsPosition = -1;
+			}
+			return freqs[pos - blockStart];
+		}
+
+		@Override
+		public int next() {
+			if (pos < size) {
+				pos++;
+				if (pos == blockStart + blockCount && pos < size) {
+					load(block + 1);
+				}
+			}
+			return docId();
+		}
+
+		@Override
+		public int advance(int target) {
+			if (pos >= size || docIds[pos - blockStart] >= target) {
+				return docId();
+			}
+			if (lastDocIds.get(block) < target) {
+				/* Skip the blocks ending before target, with a binary search over the skip data. */
+				int low = block + 1;
+				int high = lastDocIds.limit() - 1;
+				if (low > high || lastDocIds.get(high) < target) {
+					pos = size;
+					return NO_MORE_DOCS;
+				}
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (lastDocIds.get(mid) < target) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				load(low);
+			}
+			/* The block contains a document not lower than target. */
+			int i = pos - blockStart;
+			while (docIds[i] < target) {
+				i++;
+			}
+			pos = blockStart + i;
+			return docId();
+		}
+
+		@Override
+		public int index() {
+			return pos;
+		}
+
+		private void load(int block) {
+			this.block = block;
+			this.blockStart = block * BLOCK_SIZE;
+			this.blockCount = Math.min(BLOCK_SIZE, size - blockStart);
+			this.pos = blockStart;
+			in.position(blockOffsets.get(block));
+			codec.decode(in, docIds, blockCount);
+			int docId = block == 0 ? 0 : lastDocIds.get(block - 1);
+			for (int i = 0; i < blockCount; i++) {
+				docId += docIds[i];
+				docIds[i] = docId;
+			}
+			freqsPosition = in.position();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package edu.ir.vsm;
+
+/**
+ * This class prints the results of the two steps of a query to the standard
+ * output, in the tables of WordIndex.printTop2KResult and
+ * BiWordIndex.printTopKResult.
+ *
+ * @author YAN DENG
+ *
+ */
+public class ConsoleSink implements ResultSink {
+
+	@Override
+	public void top2K(String query, SearchResults results) {
+		System.out.println("Computing the cosine similarities between the query and "
+				+ results.getIndex().getNumOfDocs() + " files......");
+		WordIndex.printTop2KResult(results.toList(), results.size());
+	}
+
+	@Override
+	public void topK(String query, SearchResults results) {
+		BiWordIndex.printTopKResult(results.toList(), results.size());
+	}
+}
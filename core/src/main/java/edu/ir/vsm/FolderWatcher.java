@@ -0,0 +1,162 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * This class keeps the segmented index of a folder up to date: a daemon
+ * thread watches the folder and indexes the documents that are created or
+ * modified, and removes the deleted ones. The changes seen together are
+ * applied as one update of a SnapshotManager, so queries keep running
+ * against the previous snapshot until all segments are updated.
+ *
+ * @author YAN DENG
+ *
+ */
+public class FolderWatcher implements Runnable {
+
+	private File folder;
+	private SnapshotManager snapshots;
+	private WatchService watchService;
+	private Thread thread;
+	private long lastScan;/*time of the last scan of the folder*/
+
+	/**
+	 * @param folder
+	 *            the folder the indexes were built from
+	 * @param snapshots
+	 *            publishes the indexes of the folder
+	 */
+	public FolderWatcher(File folder, SnapshotManager snapshots) {
+		if (!folder.isDirectory())
+			throw new IllegalArgumentException(folder + " is not a folder.");
+		this.folder = folder;
+		this.snapshots = snapshots;
+		this.lastScan = System.currentTimeMillis();
+	}
+
+	/**
+	 * Start watching the folder. Documents added or removed since the indexes
+	 * were built or written are picked up by a first scan of the folder.
+	 *
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+		folder.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		rescan();
+		thread = new Thread(this, "folder-watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the folder.
+	 *
+	 * @throws IOException
+	 */
+	public void stop() throws IOException {
+		watchService.close();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				WatchKey key = watchService.take();
+				final List<WatchEvent<?>> events = key.pollEvents();
+				boolean overflow = false;
+				for (WatchEvent<?> event : events) {
+					overflow |= event.kind() == StandardWatchEventKinds.OVERFLOW;
+				}
+				if (overflow) {
+					rescan();/* some events were lost */
+				} else {
+					snapshots.update(index -> {
+						for (WatchEvent<?> event : events) {
+							File file = new File(folder, ((Path) event.context()).toString());
+							if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+								delete(file.getName(), index);
+							} else {
+								update(file, index);
+							}
+						}
+					});
+				}
+				if (!key.reset()) {
+					System.out.println(folder + " can no longer be watched.");
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ClosedWatchServiceException e) {
+			/* stopped */
+		}
+	}
+
+	/**
+	 * Index the current content of a document, if it still is a document of
+	 * the folder.
+	 *
+	 * @param file
+	 */
+	private static void update(File file, SegmentedIndex index) {
+		if (file.getName().equals(".DS_Store") || !file.isFile()) {
+			return;
+		}
+		index.replaceDocument(file);
+		System.out.println("Indexed " + file.getName());
+	}
+
+	/**
+	 * @param docName
+	 */
+	private static void delete(String docName, SegmentedIndex index) {
+		if (index.deleteDocument(docName)) {
+			System.out.println("Removed " + docName);
+		}
+	}
+
+	/**
+	 * Bring the indexes in line with the content of the folder: index the
+	 * documents modified since the last scan or missing from the indexes,
+	 * and remove the documents no longer in the folder.
+	 */
+	private void rescan() {
+		final File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		final long scanTime = System.currentTimeMillis();
+		snapshots.update(index -> {
+			HashSet<String> indexed = new HashSet<String>(index.documentNames());
+			HashSet<String> names = new HashSet<String>();
+			for (File file : files) {
+				if (file.getName().equals(".DS_Store") || !file.isFile()) {
+					continue;
+				}
+				names.add(file.getName());
+				if (!indexed.contains(file.getName()) || file.lastModified() > lastScan) {
+					update(file, index);
+				}
+			}
+			for (String docName : indexed) {
+				if (!names.contains(docName)) {
+					delete(docName, index);
+				}
+			}
+		});
+		lastScan = scanTime;
+	}
+}
@@ -0,0 +1,304 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class builds the word index and the biword index of a folder in
+ * parallel. The documents are split into segments of consecutive files; a
+ * pool of workers reads each segment once and builds a partial word index
+ * and a partial biword index for it. The partial indexes are then merged in
+ * segment order, so every document gets the same index as with a sequential
+ * build.
+ *
+ * @author YAN DENG
+ *
+ */
+public class IndexBuilder {
+
+	private static final int SEGMENTS_PER_THREAD = 4;
+
+	private String path;
+	private int numOfThreads;
+	private boolean positional;
+	private int shard;
+	private int numOfShards;
+	private WordIndex wordIndex;
+	private BiWordIndex biWordIndex;
+
+	/**
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @param numOfThreads
+	 *            number of worker threads reading the documents
+	 */
+	public IndexBuilder(String path, int numOfThreads) {
+		this(path, numOfThreads, false);
+	}
+
+	/**
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @param numOfThreads
+	 *            number of worker threads reading the documents
+	 * @param positional
+	 *            build a positional word index instead of a word index and a
+	 *            biword index
+	 */
+	public IndexBuilder(String path, int numOfThreads, boolean positional) {
+		this(path, numOfThreads, positional, 0, 1);
+	}
+
+	/**
+	 * Build the indexes of one shard of the folder: the documents are split
+	 * into numOfShards ranges of consecutive files, and only the range of the
+	 * given shard is indexed (see ShardedIndex).
+	 *
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @param numOfThreads
+	 *            number of worker threads reading the documents
+	 * @param positional
+	 *            build a positional word index instead of a word index and a
+	 *            biword index
+	 * @param shard
+	 *            number of the shard, from 0
+	 * @param numOfShards
+	 */
+	public IndexBuilder(String path, int numOfThreads, boolean positional, int shard, int numOfShards) {
+		if (numOfThreads < 1)
+			throw new IllegalArgumentException("The number of threads must be positive.");
+		if (shard < 0 || shard >= numOfShards)
+			throw new IllegalArgumentException("There is no shard " + shard + " out of " + numOfShards + ".");
+		this.path = path;
+		this.numOfThreads = numOfThreads;
+		this.positional = positional;
+		this.shard = shard;
+		this.numOfShards = numOfShards;
+	}
+
+	/**
+	 * @return the number of threads used when none is given
+	 */
+	public static int defaultNumOfThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Build both indexes with a single pass over the documents, or only the
+	 * positional word index.
+	 */
+	public void build() {
+		wordIndex = new WordIndex(path, false, positional);
+		biWordIndex = positional ? null : new BiWordIndex(path, false);
+		build(wordIndex, biWordIndex);
+	}
+
+	public WordIndex getWordIndex() {
+		return wordIndex;
+	}
+
+	/**
+	 * @return the biword index, or null if a positional index was built
+	 */
+	public BiWordIndex getBiWordIndex() {
+		return biWordIndex;
+	}
+
+	/**
+	 * Fill the given empty indexes. Either of them may be null if only the
+	 * other one is needed.
+	 *
+	 * @param words
+	 * @param biWords
+	 */
+	void build(WordIndex words, BiWordIndex biWords) {
+		Metrics.BuildEvent event = new Metrics.BuildEvent();
+		event.begin();
+		long startTime = System.nanoTime();
+		ArrayList<File> docs = shardDocuments(listDocuments(path), shard, numOfShards);
+
+		int segmentSize = (docs.size() + numOfThreads * SEGMENTS_PER_THREAD - 1)
+				/ (numOfThreads * SEGMENTS_PER_THREAD);
+		ExecutorService pool = Executors.newFixedThreadPool(numOfThreads);
+		try {
+			ArrayList<Future<SegmentIndexes>> segments = new ArrayList<Future<SegmentIndexes>>();
+			for (int from = 0; from < docs.size(); from += segmentSize) {
+				final int start = from;
+				final int end = Math.min(from + segmentSize, docs.size());
+				final boolean indexWords = words != null;
+				final boolean indexBiWords = biWords != null;
+				final boolean positional = words != null && words.isPositional();
+				segments.add(pool.submit(() -> buildSegment(docs, start, end, indexWords, indexBiWords, positional)));
+			}
+			/* Merge in segment order while the later segments are still being read. */
+			for (Future<SegmentIndexes> future : segments) {
+				SegmentIndexes segment = future.get();
+				if (words != null) {
+					for (String docName : segment.emptyDocs) {
+						System.out.println(docName + " doesn't contain any term.");
+					}
+					words.merge(segment.words);
+				}
+				if (biWords != null) {
+					biWords.merge(segment.biWords);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Index building was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to build the index.", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		if (words != null)
+			words.finishBuild();
+		if (biWords != null)
+			biWords.finishBuild();
+		Metrics.recordBuild(event, "memory", docs.size(), totalLength(docs),
+				words == null ? 0 : words.getNumOfTerms(), System.nanoTime() - startTime);
+	}
+
+	/**
+	 * @param docs
+	 * @return the number of bytes of the documents
+	 */
+	static long totalLength(ArrayList<File> docs) {
+		long length = 0;
+		for (File doc : docs) {
+			length += doc.length();
+		}
+		return length;
+	}
+
+	/**
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @return the documents of the folder, in the order they are indexed
+	 * @throws IllegalArgumentException
+	 *             if there is no such folder or it is empty
+	 */
+	static ArrayList<File> listDocuments(String path) {
+		File[] files = new File(path).listFiles();
+		if (files == null)
+			throw new IllegalArgumentException(path + " is not a folder.");
+		ArrayList<File> docs = new ArrayList<File>();
+		for (int i = 0; i < files.length; i++) {
+			if (!files[i].getName().equals(".DS_Store"))
+				docs.add(files[i]);
+		}
+		if (docs.size() == 0)
+			throw new IllegalArgumentException("The folder is empty.");
+		return docs;
+	}
+
+	/**
+	 * @param docs
+	 *            the documents of the folder, in the order they are indexed
+	 * @param shard
+	 * @param numOfShards
+	 * @return the documents of the shard, the shard-th of numOfShards ranges
+	 *         of consecutive documents of about the same size
+	 */
+	static ArrayList<File> shardDocuments(ArrayList<File> docs, int shard, int numOfShards) {
+		if (numOfShards == 1) {
+			return docs;
+		}
+		int from = (int) ((long) docs.size() * shard / numOfShards);
+		int to = (int) ((long) docs.size() * (shard + 1) / numOfShards);
+		return new ArrayList<File>(docs.subList(from, to));
+	}
+
+	/**
+	 * Read the documents from start to end (exclusive) and build the partial
+	 * indexes of the segment.
+	 */
+	private SegmentIndexes buildSegment(ArrayList<File> docs, int start, int end, boolean indexWords,
+			boolean indexBiWords, boolean positional) {
+		SegmentIndexes segment = new SegmentIndexes();
+		if (indexWords)
+			segment.words = new WordIndex(path, false, positional);
+		if (indexBiWords)
+			segment.biWords = new BiWordIndex(path, false);
+		Tokenizer tokenizer = new Tokenizer();
+		for (int i = start; i < end; i++) {
+			File file = docs.get(i);
+			HashMap<String, Integer> docTerms = new HashMap<String, Integer>();
+			HashSet<String> docBiWords = indexBiWords ? new HashSet<String>() : null;
+			HashMap<String, int[]> docPositions = positional ? new HashMap<String, int[]>() : null;
+			readFile(tokenizer, file, docTerms, docBiWords, docPositions);
+			if (indexWords && !segment.words.appendDocument(file.getName(), docTerms, docPositions))
+				segment.emptyDocs.add(file.getName());
+			if (indexBiWords)
+				segment.biWords.appendDocument(file.getName(), docBiWords);
+		}
+		return segment;
+	}
+
+	/**
+	 * Index the current content of a document of the folder in built
+	 * indexes, replacing the indexed one if any. The file is read once for
+	 * both indexes.
+	 * 
+	 * @param file
+	 * @param words
+	 *            may be null
+	 * @param biWords
+	 *            may be null
+	 */
+	static void replaceDocument(File file, WordIndex words, BiWordIndex biWords) {
+		HashMap<String, Integer> docTerms = new HashMap<String, Integer>();
+		HashSet<String> docBiWords = biWords != null ? new HashSet<String>() : null;
+		HashMap<String, int[]> docPositions = words != null && words.isPositional() ? new HashMap<String, int[]>()
+				: null;
+		readFile(new Tokenizer(), file, docTerms, docBiWords, docPositions);
+		if (words != null)
+			words.replaceDocument(file.getName(), docTerms, docPositions);
+		if (biWords != null)
+			biWords.replaceDocument(file.getName(), docBiWords);
+	}
+
+	/**
+	 * Collect the terms with their #appears, and the biwords or the positions
+	 * of the terms of a file in one pass.
+	 * 
+	 * @param docBiWords
+	 *            may be null
+	 * @param docPositions
+	 *            may be null
+	 */
+	static void readFile(Tokenizer tokenizer, File file, HashMap<String, Integer> docTerms,
+			HashSet<String> docBiWords, HashMap<String, int[]> docPositions) {
+		final WordIndex.TermCounter termCounter = new WordIndex.TermCounter(docTerms);
+		final BiWordIndex.BiWordCollector biWordCollector = docBiWords == null ? null
+				: new BiWordIndex.BiWordCollector(docBiWords);
+		final WordIndex.PositionCollector positionCollector = docPositions == null ? null
+				: new WordIndex.PositionCollector(docPositions);
+		tokenizer.tokenize(file, term -> {
+			termCounter.token(term);
+			if (biWordCollector != null)
+				biWordCollector.token(term);
+			if (positionCollector != null)
+				positionCollector.token(term);
+		});
+	}
+
+	/**
+	 * Inner class, to store the partial indexes of a segment.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	static class SegmentIndexes {
+		WordIndex words;
+		BiWordIndex biWords;
+		ArrayList<String> emptyDocs = new ArrayList<String>();
+	}
+}
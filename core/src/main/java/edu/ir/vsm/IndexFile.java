@@ -0,0 +1,369 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class stores a word index and a biword index in a binary file, and
+ * opens such a file by mapping it in memory. Only the dictionaries and the
+ * document tables are read at start up; the postings are int buffers viewing
+ * the mapped file directly.
+ *
+ * Layout (little endian):
+ *
+ * <pre>
+ * int  magic "VSMI", int version
+ * long position of the word dictionary, long position of the biword dictionary
+ * word postings, word dictionary, biword postings, biword dictionary
+ * </pre>
+ *
+ * The biword part is left out, and its position is 0, when the word index is
+ * positional and no biword index was built.
+ *
+ * Every postings list is 4-byte aligned and never crosses a boundary of
+ * CHUNK_SIZE bytes, so that the file can be mapped in chunks. When the word
+ * index is compressed, the word dictionary names the codec, and each term
+ * has the skip data and the blocks of its BlockPostings instead of its
+ * documents and frequencies; the blocks are stored as they are encoded, in
+ * big endian order.
+ *
+ * @author YAN DENG
+ *
+ */
+public class IndexFile {
+
+	static final int MAGIC = 0x56534D49;
+	static final int VERSION = 5;
+	static final long CHUNK_SIZE = 1L << 30;
+	private static final int HEADER_SIZE = 24;
+
+	private MappedByteBuffer[] chunks;
+	private WordIndex wordIndex;
+	private BiWordIndex biWordIndex;
+
+	private IndexFile() {
+	}
+
+	/**
+	 * Write both indexes to the given file, replacing it if it exists.
+	 *
+	 * @param file
+	 * @param wordIndex
+	 * @param biWordIndex
+	 *            may be null
+	 * @throws IOException
+	 */
+	public static void write(File file, WordIndex wordIndex, BiWordIndex biWordIndex) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			Output out = new Output(channel);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putLong(0);
+			out.putLong(0);
+			long wordPosition = wordIndex.write(out);
+			long biWordPosition = biWordIndex == null ? 0 : biWordIndex.write(out);
+			out.flush();
+			ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+			header.putLong(wordPosition).putLong(biWordPosition).flip();
+			channel.write(header, 8);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Open an index file written by write().
+	 *
+	 * @param file
+	 * @return the opened index file
+	 * @throws IOException
+	 *             if the file is not an index file of a supported version
+	 */
+	public static IndexFile open(File file) throws IOException {
+		IndexFile indexFile = map(file);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException(file + " is not an index file.");
+			Input in = new Input(channel, 0);
+			if (in.getInt() != MAGIC)
+				throw new IOException(file + " is not an index file.");
+			int version = in.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported index file version " + version + ".");
+			long wordPosition = in.getLong();
+			long biWordPosition = in.getLong();
+			indexFile.wordIndex = WordIndex.read(indexFile, new Input(channel, wordPosition));
+			if (biWordPosition != 0)
+				indexFile.biWordIndex = BiWordIndex.read(indexFile, new Input(channel, biWordPosition));
+		} finally {
+			raf.close();
+		}
+		return indexFile;
+	}
+
+	/**
+	 * Map a whole file in chunks without reading any index from it, so that
+	 * postings written to it with an Output can be viewed by ints().
+	 *
+	 * @param file
+	 * @return the mapped file
+	 * @throws IOException
+	 */
+	static IndexFile map(File file) throws IOException {
+		IndexFile indexFile = new IndexFile();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			int numOfChunks = (int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+			indexFile.chunks = new MappedByteBuffer[numOfChunks];
+			for (int i = 0; i < numOfChunks; i++) {
+				long start = i * CHUNK_SIZE;
+				indexFile.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(CHUNK_SIZE, size - start));
+			}
+		} finally {
+			raf.close();/* The mapping stays valid after the channel is closed. */
+		}
+		return indexFile;
+	}
+
+	public WordIndex getWordIndex() {
+		return wordIndex;
+	}
+
+	/**
+	 * @return the biword index, or null if the file only holds a positional
+	 *         word index
+	 */
+	public BiWordIndex getBiWordIndex() {
+		return biWordIndex;
+	}
+
+	/**
+	 * @param offset
+	 *            position of the first int in the file
+	 * @param count
+	 *            number of ints
+	 * @return a view of count ints of the mapped file
+	 */
+	IntBuffer ints(long offset, int count) {
+		ByteBuffer chunk = chunks[(int) (offset / CHUNK_SIZE)].duplicate();
+		int start = (int) (offset % CHUNK_SIZE);
+		chunk.position(start);
+		chunk.limit(start + 4 * count);
+		return chunk.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	/**
+	 * @param offset
+	 *            position of the first byte in the file
+	 * @param length
+	 *            number of bytes
+	 * @return a view of length bytes of the mapped file, in big endian order
+	 */
+	ByteBuffer bytes(long offset, int length) {
+		ByteBuffer chunk = chunks[(int) (offset / CHUNK_SIZE)].duplicate();
+		int start = (int) (offset % CHUNK_SIZE);
+		chunk.position(start);
+		chunk.limit(start + length);
+		return chunk.slice();
+	}
+
+	/**
+	 * Buffered little endian writer keeping track of the position in the
+	 * file.
+	 */
+	static class Output {
+		private FileChannel channel;
+		private ByteBuffer buffer;
+		private long position;
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			this.position = 0;
+		}
+
+		long position() {
+			return position;
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+			position += 4;
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+			position += 8;
+		}
+
+		void putDouble(double value) throws IOException {
+			ensure(8);
+			buffer.putDouble(value);
+			position += 8;
+		}
+
+		void putString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			for (int i = 0; i < bytes.length; i += buffer.capacity()) {
+				int length = Math.min(buffer.capacity(), bytes.length - i);
+				ensure(length);
+				buffer.put(bytes, i, length);
+			}
+			position += bytes.length;
+		}
+
+		/**
+		 * Write the first count values of an int buffer as a postings list.
+		 *
+		 * @return the position of the list in the file
+		 * @throws IOException
+		 */
+		long putInts(IntBuffer values, int count) throws IOException {
+			long start = startInts(count);
+			for (int i = 0; i < count; i++) {
+				putInt(values.get(i));
+			}
+			return start;
+		}
+
+		/**
+		 * Pad the file so that a postings list of count ints can follow, to
+		 * be written with putInt() when it is streamed rather than held in a
+		 * buffer.
+		 *
+		 * @return the position of the list in the file
+		 * @throws IOException
+		 */
+		long startInts(int count) throws IOException {
+			long bytes = 4L * count;
+			if (bytes > CHUNK_SIZE)
+				throw new IOException("Postings list of " + count + " documents is too large.");
+			long start = (position + 3) & ~3L;
+			if (bytes > 0 && start / CHUNK_SIZE != (start + bytes - 1) / CHUNK_SIZE)
+				start = (start / CHUNK_SIZE + 1) * CHUNK_SIZE;
+			while (position < start) {
+				ensure(1);
+				buffer.put((byte) 0);
+				position++;
+			}
+			return start;
+		}
+
+		/**
+		 * Write the remaining bytes of a buffer as encoded postings.
+		 *
+		 * @return the position of the bytes in the file
+		 * @throws IOException
+		 */
+		long putBytes(ByteBuffer values) throws IOException {
+			long bytes = values.remaining();
+			if (bytes > CHUNK_SIZE)
+				throw new IOException("Postings list of " + bytes + " bytes is too large.");
+			long start = position;
+			if (bytes > 0 && start / CHUNK_SIZE != (start + bytes - 1) / CHUNK_SIZE)
+				start = (start / CHUNK_SIZE + 1) * CHUNK_SIZE;
+			while (position < start) {
+				ensure(1);
+				buffer.put((byte) 0);
+				position++;
+			}
+			while (values.hasRemaining()) {
+				ensure(1);
+				int length = Math.min(buffer.remaining(), values.remaining());
+				ByteBuffer part = values.duplicate();
+				part.limit(part.position() + length);
+				buffer.put(part);
+				values.position(values.position() + length);
+				position += length;
+			}
+			return start;
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+	}
+
+	/**
+	 * Buffered little endian reader starting at a given position of the
+	 * file.
+	 */
+	static class Input {
+		private FileChannel channel;
+		private ByteBuffer buffer;
+		private long position;/* position in the file of the end of the buffer */
+
+		Input(FileChannel channel, long position) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			this.buffer.limit(0);
+			this.position = position;
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return buffer.getInt();
+		}
+
+		long getLong() throws IOException {
+			ensure(8);
+			return buffer.getLong();
+		}
+
+		double getDouble() throws IOException {
+			ensure(8);
+			return buffer.getDouble();
+		}
+
+		String getString() throws IOException {
+			int length = getInt();
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i += buffer.capacity()) {
+				int n = Math.min(buffer.capacity(), length - i);
+				ensure(n);
+				buffer.get(bytes, i, n);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes)
+				return;
+			buffer.compact();
+			while (buffer.position() < bytes) {
+				int n = channel.read(buffer, position);
+				if (n < 0)
+					throw new IOException("Unexpected end of index file.");
+				position += n;
+			}
+			buffer.flip();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class is a shard of a collection held by this process: the word
+ * index and the biword index of a range of consecutive documents of the
+ * folder, built by an IndexBuilder. Once attached to the statistics of the
+ * collection the shard is only read, so any number of threads may query it
+ * at the same time; ShardServer serves it to the coordinators of other
+ * processes.
+ *
+ * @author YAN DENG
+ *
+ */
+public class IndexShard implements ShardedIndex.Shard {
+
+	private final WordIndex wordIndex;
+	private final BiWordIndex biWordIndex;
+	private ShardedIndex.GlobalStats stats;
+
+	/**
+	 * @param wordIndex
+	 * @param biWordIndex
+	 *            null if the word index is positional
+	 */
+	IndexShard(WordIndex wordIndex, BiWordIndex biWordIndex) {
+		this.wordIndex = wordIndex;
+		this.biWordIndex = biWordIndex;
+	}
+
+	/**
+	 * Build the indexes of a shard of a folder.
+	 *
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @param shard
+	 *            number of the shard, from 0
+	 * @param numOfShards
+	 * @param numOfThreads
+	 *            number of worker threads reading the documents
+	 * @param positional
+	 *            build a positional word index instead of a word index and a
+	 *            biword index
+	 * @param codec
+	 *            the codec the word postings are compressed with, may be null
+	 * @return the shard
+	 */
+	public static IndexShard build(String path, int shard, int numOfShards, int numOfThreads, boolean positional,
+			PostingsCodec codec) {
+		IndexBuilder builder = new IndexBuilder(path, numOfThreads, positional, shard, numOfShards);
+		builder.build();
+		builder.getWordIndex().compress(codec);
+		return new IndexShard(builder.getWordIndex(), builder.getBiWordIndex());
+	}
+
+	public WordIndex getWordIndex() {
+		return wordIndex;
+	}
+
+	/**
+	 * @return the biword index, or null if the word index is positional
+	 */
+	public BiWordIndex getBiWordIndex() {
+		return biWordIndex;
+	}
+
+	/**
+	 * @return the statistics of the collection, null until the shard is
+	 *         attached to them
+	 */
+	public ShardedIndex.GlobalStats getCollectionStats() {
+		return stats;
+	}
+
+	@Override
+	public int getNumOfDocs() {
+		return wordIndex.getNumOfSlots();
+	}
+
+	@Override
+	public int[] termStats(ArrayList<String> terms) {
+		return wordIndex.termStats(terms);
+	}
+
+	@Override
+	public void attach(ShardedIndex.GlobalStats stats) {
+		this.stats = stats;
+		wordIndex.attachShard(stats);
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the shard is not attached to the statistics of the
+	 *             collection
+	 */
+	@Override
+	public ShardedIndex.Hits search(HashMap<String, Integer> queryTerms, int k, boolean prune) {
+		if (stats == null)
+			throw new IllegalStateException("The shard is not attached to a collection.");
+		QueryStats queryStats = new QueryStats();
+		TopKSelector top = new TopKSelector(0);
+		wordIndex.selectTop2K(queryTerms, k, prune, queryStats, new SearchResults(), top);
+		int n = top.size();
+		int[] docIds = new int[n];
+		double[] scores = new double[n];
+		String[] docNames = new String[n];
+		for (int i = 0; i < n; i++) {
+			docIds[i] = top.index(i);
+			scores[i] = top.score(i);
+			docNames[i] = wordIndex.documentName(docIds[i]);
+		}
+		return new ShardedIndex.Hits(n, docIds, scores, docNames, queryStats);
+	}
+
+	@Override
+	public int[] countBiWords(String query, ArrayList<StringDoublePair> candidates) {
+		return biWordIndex != null ? biWordIndex.countBiWords(query, candidates)
+				: wordIndex.countBiWords(query, candidates);
+	}
+
+	/**
+	 * Nothing to release, the indexes are in the heap.
+	 */
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public String toString() {
+		return "Shard of " + wordIndex.getNumOfDocs() + " documents";
+	}
+}
@@ -0,0 +1,118 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+
+/**
+ * This class is a read-only view of a segmented index: the word index and
+ * the biword index of all its segments in the same state. A snapshot is
+ * never updated once published, so any number of threads may query it at
+ * the same time without locking.
+ *
+ * @author YAN DENG
+ *
+ */
+public class IndexSnapshot {
+
+	private final SegmentedIndex index;
+	private final long version;
+
+	/**
+	 * @param index
+	 *            refreshed index, no longer updated
+	 * @param version
+	 */
+	IndexSnapshot(SegmentedIndex index, long version) {
+		this.index = index;
+		this.version = version;
+	}
+
+	public SegmentedIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the number of updates published before this snapshot
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Retrieve the top 2k documents by cosine similarity, and keep the k of
+	 * them containing the most biwords of the query. Nothing is printed.
+	 *
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            if not null, the top 2k documents are retrieved with dynamic
+	 *            pruning and stats receives the number of postings evaluated
+	 *            and skipped
+	 * @return the top k documents
+	 */
+	public ArrayList<StringDoublePair> search(String query, int k, QueryStats stats) {
+		long start = System.nanoTime();
+		ArrayList<StringDoublePair> top2K;
+		if (stats != null) {
+			top2K = index.searchTop2KPruned(query, k, stats);
+		} else {
+			top2K = index.searchTop2K(query, k);
+		}
+		ArrayList<StringDoublePair> topK = rerank(query, top2K, k);
+		Metrics.QUERY.record(System.nanoTime() - start);
+		return topK;
+	}
+
+	/**
+	 * Same as search, into reusable buffers: a thread reusing its
+	 * SearchResults allocates nothing that grows with the collection or
+	 * with k, and nothing is printed unless a sink prints it.
+	 *
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            if not null, the top 2k documents are retrieved with dynamic
+	 *            pruning and stats receives the number of postings evaluated
+	 *            and skipped
+	 * @param results
+	 *            receives the top k documents
+	 * @param sink
+	 *            receives the top 2k and then the top k documents, may be
+	 *            null
+	 * @return the number of documents retrieved
+	 */
+	public int search(String query, int k, QueryStats stats, SearchResults results, ResultSink sink) {
+		long start = System.nanoTime();
+		index.searchTop2K(query, k, stats != null, stats, results);
+		long retrieved = System.nanoTime();
+		if (sink != null) {
+			sink.top2K(query, results);
+		}
+		long reranking = System.nanoTime();
+		index.rerank(query, results, k);
+		Metrics.QUERY.record(retrieved - start + System.nanoTime() - reranking);
+		if (sink != null) {
+			sink.topK(query, results);
+		}
+		return results.size();
+	}
+
+	/**
+	 * Keep the k documents of the list containing the most biwords of the
+	 * query, with the biword index or else with the positional word index.
+	 *
+	 * @param query
+	 * @param top2K
+	 * @param k
+	 * @return the top k documents
+	 */
+	public ArrayList<StringDoublePair> rerank(String query, ArrayList<StringDoublePair> top2K, int k) {
+		return index.rerank(query, top2K, k);
+	}
+
+	/**
+	 * Same as rerank, and print the result.
+	 */
+	public ArrayList<StringDoublePair> getTopKDocs(String query, ArrayList<StringDoublePair> top2K, int k) {
+		return index.getTopKDocs(query, top2K, k);
+	}
+}
@@ -0,0 +1,87 @@
+package edu.ir.vsm;
+
+import java.util.List;
+
+/**
+ * This class chooses the segments of a SegmentedIndex to merge. Only
+ * adjacent sealed segments are merged, so the documents stay in the order
+ * they were added. A segment is of level l if it holds between
+ * mergeFactor^l and mergeFactor^(l+1) documents; as soon as mergeFactor
+ * adjacent segments are of the same level they are merged into one segment
+ * of the next level, so a document is rewritten about log(N) times. A
+ * segment whose deleted documents reach maxDeletedRatio of its document
+ * indexes is rewritten on its own to drop them.
+ *
+ * @author YAN DENG
+ *
+ */
+public class MergePolicy {
+
+	public static final int DEFAULT_MERGE_FACTOR = 8;
+	public static final double DEFAULT_MAX_DELETED_RATIO = 0.3;
+
+	private final int mergeFactor;
+	private final double maxDeletedRatio;
+
+	public MergePolicy() {
+		this(DEFAULT_MERGE_FACTOR, DEFAULT_MAX_DELETED_RATIO);
+	}
+
+	/**
+	 * @param mergeFactor
+	 *            number of segments of the same level merged together, at
+	 *            least 2
+	 * @param maxDeletedRatio
+	 *            share of deleted documents over which a segment is
+	 *            rewritten, between 0 and 1
+	 */
+	public MergePolicy(int mergeFactor, double maxDeletedRatio) {
+		if (mergeFactor < 2)
+			throw new IllegalArgumentException("The merge factor must be at least 2.");
+		if (!(maxDeletedRatio > 0 && maxDeletedRatio <= 1))
+			throw new IllegalArgumentException("The ratio of deleted documents must be in (0, 1].");
+		this.mergeFactor = mergeFactor;
+		this.maxDeletedRatio = maxDeletedRatio;
+	}
+
+	/**
+	 * @param segments
+	 *            the segments of an index, oldest first
+	 * @return the first and the last (exclusive) positions of the segments
+	 *         to merge, or null if there is no merge to do
+	 */
+	public int[] findMerge(List<Segment> segments) {
+		for (int i = 0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			int numOfSlots = segment.getNumOfDocs() + segment.getNumOfDeletedDocs();
+			if (segment.isSealed() && numOfSlots > 0
+					&& segment.getNumOfDeletedDocs() >= maxDeletedRatio * numOfSlots) {
+				return new int[] { i, i + 1 };
+			}
+		}
+		int start = 0;
+		for (int i = 1; i <= segments.size(); i++) {
+			if (i == segments.size() || !segments.get(i).isSealed()
+					|| level(segments.get(i)) != level(segments.get(start))) {
+				if (i - start >= mergeFactor && segments.get(start).isSealed()) {
+					return new int[] { start, start + mergeFactor };
+				}
+				start = i;
+			}
+		}
+		return null;
+	}
+
+	private int level(Segment segment) {
+		int level = 0;
+		for (long size = mergeFactor; size <= segment.getNumOfDocs(); size *= mergeFactor) {
+			level++;
+		}
+		return level;
+	}
+
+	@Override
+	public String toString() {
+		return "Merge factor: " + mergeFactor + ", max deleted ratio: " + maxDeletedRatio;
+	}
+}
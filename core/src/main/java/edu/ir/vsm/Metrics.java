@@ -0,0 +1,288 @@
+package edu.ir.vsm;
+
+import edu.ir.vsm.MetricsRegistry.Counter;
+import edu.ir.vsm.MetricsRegistry.Histogram;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * This class holds the metrics of the engine in one registry: the latency
+ * of every stage of a query (tokenization, candidate scoring, top 2k
+ * selection and biword reranking), the postings evaluated per query, the
+ * requests answered by query caches, the size of the served index, the
+ * throughput of index builds, updates and merges, and the failed
+ * connections of shard servers.
+ *
+ * The stages are timed with System.nanoTime and recorded once per query,
+ * whatever the number of segments. The same measures are also committed as
+ * JDK Flight Recorder events, in the "Vector Space Model" category, when a
+ * recording enables them; otherwise the events cost nothing.
+ *
+ * @author YAN DENG
+ *
+ */
+public final class Metrics {
+
+	public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+	static final Histogram TOKENIZE = stage("tokenize");
+	static final Histogram SCORING = stage("scoring");
+	static final Histogram SELECTION = stage("selection");
+	static final Histogram RERANK = stage("rerank");
+	static final Histogram QUERY = REGISTRY.histogram("vsm_query_seconds",
+			"Latency of whole queries, retrieval and reranking, answered from a cache or not.",
+			MetricsRegistry.NANOS_PER_SECOND);
+	static final Histogram POSTINGS_EVALUATED = REGISTRY.histogram("vsm_query_postings_evaluated",
+			"Postings whose weight was computed, per query.", 1);
+	static final Counter POSTINGS_SKIPPED = REGISTRY.counter("vsm_postings_skipped_total",
+			"Postings skipped by dynamic pruning.", 1);
+	static final Counter CACHE_HITS = cacheRequests("hit");
+	static final Counter CACHE_PARTIAL_HITS = cacheRequests("partial_hit");
+	static final Counter CACHE_MISSES = cacheRequests("miss");
+	static final Counter BUILD_DOCUMENTS = REGISTRY.counter("vsm_build_documents_total",
+			"Documents indexed by index builds.", 1);
+	static final Counter BUILD_BYTES = REGISTRY.counter("vsm_build_bytes_total",
+			"Bytes of the documents indexed by index builds.", 1);
+	static final Counter BUILD_TIME = REGISTRY.counter("vsm_build_seconds_total", "Time spent building indexes.",
+			MetricsRegistry.NANOS_PER_SECOND);
+	static final Counter UPDATES = REGISTRY.counter("vsm_index_updates_total", "Updates published.", 1);
+	static final Histogram MERGE = REGISTRY.histogram("vsm_merge_seconds", "Latency of segment merges.",
+			MetricsRegistry.NANOS_PER_SECOND);
+	static final Counter MERGED_SEGMENTS = REGISTRY.counter("vsm_merged_segments_total",
+			"Segments merged into larger ones.", 1);
+	static final Counter MERGED_DOCUMENTS = REGISTRY.counter("vsm_merged_documents_total",
+			"Documents of the segments produced by merges.", 1);
+	static final Counter SHARD_ACCEPT_ERRORS = shardServerErrors("accept");
+	static final Counter SHARD_CONNECTION_ERRORS = shardServerErrors("connection");
+
+	private static volatile double buildThroughput;/* documents per second of the last build */
+
+	static {
+		REGISTRY.gauge("vsm_cache_hit_ratio", "Share of the cached queries whose top 2k came from the cache.",
+				() -> {
+					double hits = CACHE_HITS.get() + CACHE_PARTIAL_HITS.get();
+					double total = hits + CACHE_MISSES.get();
+					return total == 0 ? 0 : hits / total;
+				});
+		REGISTRY.gauge("vsm_build_documents_per_second", "Throughput of the last index build.",
+				() -> buildThroughput);
+	}
+
+	private Metrics() {
+	}
+
+	private static Histogram stage(String stage) {
+		return REGISTRY.histogram("vsm_query_stage_seconds", "Latency of the stages of a query.",
+				MetricsRegistry.NANOS_PER_SECOND, "stage", stage);
+	}
+
+	private static Counter cacheRequests(String result) {
+		return REGISTRY.counter("vsm_cache_requests_total", "Queries looked up in a query cache.", 1, "result",
+				result);
+	}
+
+	private static Counter shardServerErrors(String stage) {
+		return REGISTRY.counter("vsm_shard_server_errors_total",
+				"Connections of shard servers that failed, when accepted or while served.", 1, "stage", stage);
+	}
+
+	/**
+	 * Export the size of the index served by a snapshot manager, in place of
+	 * the one exported so far.
+	 *
+	 * @param snapshots
+	 */
+	static void watch(SnapshotManager snapshots) {
+		REGISTRY.gauge("vsm_index_documents", "Documents in the served index.",
+				() -> snapshots.snapshot().getIndex().getNumOfDocs());
+		REGISTRY.gauge("vsm_index_terms", "Terms in the dictionary of the served index.",
+				() -> snapshots.snapshot().getIndex().getNumOfTerms());
+		REGISTRY.gauge("vsm_index_segments", "Segments of the served index.",
+				() -> snapshots.snapshot().getIndex().getSegments().size());
+		REGISTRY.gauge("vsm_index_version", "Updates published before the served snapshot.",
+				() -> snapshots.snapshot().getVersion());
+	}
+
+	/**
+	 * Record the stages of the retrieval of the top 2k documents of a query.
+	 *
+	 * @param event
+	 *            begun before the query was tokenized
+	 * @param stats
+	 *            the stages and postings of the query
+	 * @param k
+	 * @param numOfSegments
+	 */
+	static void recordSearch(QueryEvent event, QueryStats stats, int k, int numOfSegments) {
+		TOKENIZE.record(stats.tokenizeNanos);
+		SCORING.record(stats.scoringNanos);
+		SELECTION.record(stats.selectionNanos);
+		POSTINGS_EVALUATED.record(stats.postingsEvaluated);
+		POSTINGS_SKIPPED.add(stats.postingsSkipped);
+		event.end();
+		if (event.shouldCommit()) {
+			event.k = k;
+			event.segments = numOfSegments;
+			event.tokenize = stats.tokenizeNanos;
+			event.scoring = stats.scoringNanos;
+			event.selection = stats.selectionNanos;
+			event.postingsEvaluated = stats.postingsEvaluated;
+			event.postingsSkipped = stats.postingsSkipped;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param event
+	 *            begun before the reranking
+	 * @param nanos
+	 * @param numOfCandidates
+	 * @param k
+	 */
+	static void recordRerank(RerankEvent event, long nanos, int numOfCandidates, int k) {
+		RERANK.record(nanos);
+		event.end();
+		if (event.shouldCommit()) {
+			event.candidates = numOfCandidates;
+			event.k = k;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param event
+	 *            begun before the build
+	 * @param method
+	 *            how the index was built
+	 * @param numOfDocs
+	 * @param numOfBytes
+	 * @param numOfTerms
+	 * @param nanos
+	 */
+	static void recordBuild(BuildEvent event, String method, int numOfDocs, long numOfBytes, int numOfTerms,
+			long nanos) {
+		BUILD_DOCUMENTS.add(numOfDocs);
+		BUILD_BYTES.add(numOfBytes);
+		BUILD_TIME.add(nanos);
+		buildThroughput = nanos == 0 ? 0 : numOfDocs * 1e9 / nanos;
+		event.end();
+		if (event.shouldCommit()) {
+			event.method = method;
+			event.documents = numOfDocs;
+			event.bytes = numOfBytes;
+			event.terms = numOfTerms;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param event
+	 *            begun before the merge
+	 * @param nanos
+	 * @param numOfSegments
+	 *            segments merged
+	 * @param numOfDocs
+	 *            documents of the merged segment
+	 */
+	static void recordMerge(MergeEvent event, long nanos, int numOfSegments, int numOfDocs) {
+		MERGE.record(nanos);
+		MERGED_SEGMENTS.add(numOfSegments);
+		MERGED_DOCUMENTS.add(numOfDocs);
+		event.end();
+		if (event.shouldCommit()) {
+			event.segments = numOfSegments;
+			event.documents = numOfDocs;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Inner class, the JFR event of the retrieval of the top 2k documents of
+	 * a query.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	@Name("edu.ir.vsm.Query")
+	@Label("Query")
+	@Category("Vector Space Model")
+	@Description("Retrieval of the top 2k documents of a query by cosine similarity")
+	static final class QueryEvent extends Event {
+		@Label("k")
+		int k;
+		@Label("Segments")
+		int segments;
+		@Label("Tokenize")
+		@Timespan
+		long tokenize;
+		@Label("Candidate Scoring")
+		@Timespan
+		long scoring;
+		@Label("Top 2k Selection")
+		@Timespan
+		long selection;
+		@Label("Postings Evaluated")
+		long postingsEvaluated;
+		@Label("Postings Skipped")
+		long postingsSkipped;
+	}
+
+	/**
+	 * Inner class, the JFR event of the biword reranking of a query.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	@Name("edu.ir.vsm.Rerank")
+	@Label("Rerank")
+	@Category("Vector Space Model")
+	@Description("Biword reranking of the top 2k documents of a query")
+	static final class RerankEvent extends Event {
+		@Label("Candidates")
+		int candidates;
+		@Label("k")
+		int k;
+	}
+
+	/**
+	 * Inner class, the JFR event of an index build.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	@Name("edu.ir.vsm.IndexBuild")
+	@Label("Index Build")
+	@Category("Vector Space Model")
+	static final class BuildEvent extends Event {
+		@Label("Method")
+		String method;
+		@Label("Documents")
+		int documents;
+		@Label("Size")
+		@DataAmount
+		long bytes;
+		@Label("Terms")
+		int terms;
+	}
+
+	/**
+	 * Inner class, the JFR event of a segment merge.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	@Name("edu.ir.vsm.SegmentMerge")
+	@Label("Segment Merge")
+	@Category("Vector Space Model")
+	static final class MergeEvent extends Event {
+		@Label("Segments")
+		int segments;
+		@Label("Documents")
+		int documents;
+	}
+}
@@ -0,0 +1,430 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * This class holds named metrics: counters, gauges and histograms, and
+ * exports a snapshot of them as JSON or in the Prometheus text format.
+ *
+ * Recording never locks: counters are LongAdders, and a histogram counts
+ * its values in log-linear buckets, 16 per power of 2, so recording a value
+ * costs a few atomic additions and any quantile is known within 1/16 of its
+ * value. Latencies are recorded in nanoseconds and exported in seconds.
+ *
+ * A metric is named as in Prometheus, and may have labels given as pairs of
+ * a name and a value; the metrics of the same name must be registered one
+ * after the other, with different labels.
+ *
+ * @author YAN DENG
+ *
+ */
+public class MetricsRegistry {
+
+	/* The latencies are recorded in nanoseconds and exported in seconds. */
+	public static final double NANOS_PER_SECOND = 1e9;
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+	private final ArrayList<Metric> metrics = new ArrayList<Metric>();
+
+	/**
+	 * @param name
+	 * @param help
+	 * @param scale
+	 *            recorded units per exported unit, e.g. NANOS_PER_SECOND
+	 * @param labels
+	 *            pairs of a label name and a label value
+	 * @return the histogram registered with that name and labels, created if
+	 *         needed
+	 */
+	public synchronized Histogram histogram(String name, String help, double scale, String... labels) {
+		Metric metric = find(name, labels);
+		if (metric == null) {
+			metric = register(new Histogram(name, help, scale, labels));
+		}
+		if (!(metric instanceof Histogram))
+			throw new IllegalArgumentException(name + " is not a histogram.");
+		return (Histogram) metric;
+	}
+
+	/**
+	 * @param name
+	 *            should end with _total
+	 * @param help
+	 * @param scale
+	 *            counted units per exported unit
+	 * @param labels
+	 *            pairs of a label name and a label value
+	 * @return the counter registered with that name and labels, created if
+	 *         needed
+	 */
+	public synchronized Counter counter(String name, String help, double scale, String... labels) {
+		Metric metric = find(name, labels);
+		if (metric == null) {
+			metric = register(new Counter(name, help, scale, labels));
+		}
+		if (!(metric instanceof Counter))
+			throw new IllegalArgumentException(name + " is not a counter.");
+		return (Counter) metric;
+	}
+
+	/**
+	 * Register a gauge, replacing the gauge already registered with that
+	 * name and labels if any.
+	 *
+	 * @param name
+	 * @param help
+	 * @param value
+	 *            read at every export, from any thread
+	 * @param labels
+	 *            pairs of a label name and a label value
+	 */
+	public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+		Gauge gauge = new Gauge(name, help, value, labels);
+		Metric metric = find(name, labels);
+		if (metric == null) {
+			register(gauge);
+		} else if (metric instanceof Gauge) {
+			metrics.set(metrics.indexOf(metric), gauge);
+		} else {
+			throw new IllegalArgumentException(name + " is not a gauge.");
+		}
+	}
+
+	private Metric find(String name, String[] labels) {
+		String key = Metric.key(name, labels);
+		for (Metric metric : metrics) {
+			if (metric.key().equals(key)) {
+				return metric;
+			}
+		}
+		return null;
+	}
+
+	private Metric register(Metric metric) {
+		for (int i = 0; i < metrics.size() - 1; i++) {
+			if (metrics.get(i).name.equals(metric.name) && !metrics.get(i + 1).name.equals(metric.name))
+				throw new IllegalArgumentException("The metrics named " + metric.name + " must be registered together.");
+		}
+		metrics.add(metric);
+		return metric;
+	}
+
+	/**
+	 * @return the metrics in the Prometheus text exposition format; the
+	 *         histograms are exported as summaries
+	 */
+	public synchronized String toPrometheus() {
+		StringBuilder out = new StringBuilder();
+		String family = null;
+		for (Metric metric : metrics) {
+			if (!metric.name.equals(family)) {
+				family = metric.name;
+				out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+				out.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+			}
+			metric.writePrometheus(out);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * @return the metrics as a JSON object with an array of metrics, each
+	 *         with its name, labels, type and values
+	 */
+	public synchronized String toJson() {
+		StringBuilder out = new StringBuilder("{\"metrics\":[");
+		for (int i = 0; i < metrics.size(); i++) {
+			Metric metric = metrics.get(i);
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append("{\"name\":\"").append(metric.name).append("\",\"labels\":{");
+			for (int j = 0; j < metric.labels.length; j += 2) {
+				out.append(j == 0 ? "" : ",").append('"').append(metric.labels[j]).append("\":\"")
+						.append(metric.labels[j + 1]).append('"');
+			}
+			out.append("},\"type\":\"").append(metric.type()).append('"');
+			metric.writeJson(out);
+			out.append('}');
+		}
+		return out.append("]}").toString();
+	}
+
+	/**
+	 * @return the value, without a fraction if it is a whole number
+	 */
+	static String format(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return Long.toString((long) value);
+		}
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return "0";
+		}
+		return Double.toString(value);
+	}
+
+	/**
+	 * Inner class, to store the name, help and labels of a metric.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private abstract static class Metric {
+		final String name;
+		final String help;
+		final String[] labels;
+
+		Metric(String name, String help, String[] labels) {
+			if (!name.matches("[a-zA-Z_:][a-zA-Z0-9_:]*"))
+				throw new IllegalArgumentException("Invalid metric name: " + name);
+			if (labels.length % 2 != 0)
+				throw new IllegalArgumentException("Labels must be pairs of a name and a value.");
+			for (int i = 0; i < labels.length; i++) {
+				if (i % 2 == 0 ? !labels[i].matches("[a-zA-Z_][a-zA-Z0-9_]*") : !labels[i].matches("[^\"\\\\\n]*"))
+					throw new IllegalArgumentException("Invalid label: " + labels[i]);
+			}
+			this.name = name;
+			this.help = help;
+			this.labels = labels.clone();
+		}
+
+		static String key(String name, String[] labels) {
+			return name + labelSet(labels, null);
+		}
+
+		String key() {
+			return key(name, labels);
+		}
+
+		/**
+		 * @return the labels in the Prometheus format, with an extra one
+		 *         unless it is null, or an empty string if there is none
+		 */
+		static String labelSet(String[] labels, String extra) {
+			if (labels.length == 0 && extra == null) {
+				return "";
+			}
+			StringBuilder set = new StringBuilder("{");
+			for (int i = 0; i < labels.length; i += 2) {
+				set.append(i == 0 ? "" : ",").append(labels[i]).append("=\"").append(labels[i + 1]).append('"');
+			}
+			if (extra != null) {
+				set.append(labels.length == 0 ? "" : ",").append(extra);
+			}
+			return set.append('}').toString();
+		}
+
+		abstract String type();
+
+		abstract void writePrometheus(StringBuilder out);
+
+		abstract void writeJson(StringBuilder out);
+	}
+
+	/**
+	 * A count that only goes up.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	public static class Counter extends Metric {
+		private final double scale;
+		private final LongAdder count = new LongAdder();
+
+		Counter(String name, String help, double scale, String[] labels) {
+			super(name, help, labels);
+			this.scale = scale;
+		}
+
+		public void increment() {
+			count.increment();
+		}
+
+		public void add(long value) {
+			count.add(value);
+		}
+
+		/**
+		 * @return the sum of the units counted
+		 */
+		public long get() {
+			return count.sum();
+		}
+
+		@Override
+		String type() {
+			return "counter";
+		}
+
+		@Override
+		void writePrometheus(StringBuilder out) {
+			out.append(name).append(labelSet(labels, null)).append(' ').append(format(get() / scale)).append('\n');
+		}
+
+		@Override
+		void writeJson(StringBuilder out) {
+			out.append(",\"value\":").append(format(get() / scale));
+		}
+	}
+
+	/**
+	 * Inner class, to read a value at every export.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private static class Gauge extends Metric {
+		private final DoubleSupplier value;
+
+		Gauge(String name, String help, DoubleSupplier value, String[] labels) {
+			super(name, help, labels);
+			this.value = value;
+		}
+
+		@Override
+		String type() {
+			return "gauge";
+		}
+
+		@Override
+		void writePrometheus(StringBuilder out) {
+			out.append(name).append(labelSet(labels, null)).append(' ').append(format(value.getAsDouble()))
+					.append('\n');
+		}
+
+		@Override
+		void writeJson(StringBuilder out) {
+			out.append(",\"value\":").append(format(value.getAsDouble()));
+		}
+	}
+
+	/**
+	 * The distribution of non-negative values, e.g. latencies in
+	 * nanoseconds. Values below 16 have a bucket each; above, every power of
+	 * 2 is split into 16 buckets of the same width.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	public static class Histogram extends Metric {
+		private static final int SUB_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BITS;
+		private static final int NUM_OF_BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+		private final double scale;
+		private final AtomicLongArray buckets = new AtomicLongArray(NUM_OF_BUCKETS);
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		Histogram(String name, String help, double scale, String[] labels) {
+			super(name, help, labels);
+			this.scale = scale;
+		}
+
+		/**
+		 * @param value
+		 *            negative values are recorded as 0
+		 */
+		public void record(long value) {
+			if (value < 0) {
+				value = 0;
+			}
+			buckets.incrementAndGet(bucket(value));
+			count.increment();
+			sum.add(value);
+			max.accumulate(value);
+		}
+
+		static int bucket(long value) {
+			if (value < SUB_BUCKETS) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros(value);
+			int shift = exponent - SUB_BITS;
+			return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+		}
+
+		/**
+		 * @return the highest value counted in the bucket
+		 */
+		static long highestValue(int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			int shift = bucket / SUB_BUCKETS - 1;
+			long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+			return lowest + (1L << shift) - 1;
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getSum() {
+			return sum.sum();
+		}
+
+		public long getMax() {
+			return max.get();
+		}
+
+		/**
+		 * @param quantile
+		 *            between 0 and 1
+		 * @return an upper bound of the quantile of the values recorded, within
+		 *         1/16 of it, or 0 if none was recorded
+		 */
+		public long quantile(double quantile) {
+			long[] counts = new long[NUM_OF_BUCKETS];
+			long total = 0;
+			for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+				counts[i] = buckets.get(i);
+				total += counts[i];
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * total));
+			long seen = 0;
+			for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(highestValue(i), getMax());
+				}
+			}
+			return 0;
+		}
+
+		@Override
+		String type() {
+			return "summary";
+		}
+
+		@Override
+		void writePrometheus(StringBuilder out) {
+			for (double quantile : QUANTILES) {
+				out.append(name).append(labelSet(labels, "quantile=\"" + quantile + "\"")).append(' ')
+						.append(format(quantile(quantile) / scale)).append('\n');
+			}
+			out.append(name).append("_sum").append(labelSet(labels, null)).append(' ').append(format(getSum() / scale))
+					.append('\n');
+			out.append(name).append("_count").append(labelSet(labels, null)).append(' ').append(getCount())
+					.append('\n');
+		}
+
+		@Override
+		void writeJson(StringBuilder out) {
+			long count = getCount();
+			out.append(",\"count\":").append(count);
+			out.append(",\"sum\":").append(format(getSum() / scale));
+			out.append(",\"mean\":").append(format(count == 0 ? 0 : getSum() / scale / count));
+			for (double quantile : QUANTILES) {
+				out.append(",\"p").append(Math.round(quantile * 100)).append("\":").append(format(quantile(quantile) / scale));
+			}
+			out.append(",\"max\":").append(format(getMax() / scale));
+		}
+	}
+}
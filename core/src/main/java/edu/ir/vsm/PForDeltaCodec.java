@@ -0,0 +1,116 @@
+package edu.ir.vsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class packs a block of values on the same number of bits b, chosen
+ * so that about 90% of the values fit; the high bits of the other values,
+ * the exceptions, are patched in afterwards. Unpacking fixed width values is
+ * a tight loop over 64-bit words with no per value branch on the data, the
+ * layout SIMD implementations of PForDelta use.
+ *
+ * Layout of a block: a byte b, the number of exceptions as a VByte, the
+ * count values packed on b bits into little endian longs, then for every
+ * exception its index and its value shifted right by b, as VBytes. The
+ * values are unpacked one 64-bit word at a time, without any per block
+ * buffer, so the codec is stateless.
+ *
+ * @author YAN DENG
+ *
+ */
+public class PForDeltaCodec implements PostingsCodec {
+
+	static final String NAME = "pfordelta";
+
+	/** Part of the values that must fit in b bits. */
+	private static final double COVERAGE = 0.9;
+
+	@Override
+	public String name() {
+		return NAME;
+	}
+
+	@Override
+	public void encode(int[] values, int count, ByteBuffer out) {
+		int bits = bitWidth(values, count);
+		int numOfExceptions = 0;
+		for (int i = 0; i < count; i++) {
+			if (bits < 32 && (values[i] >>> bits) != 0) {
+				numOfExceptions++;
+			}
+		}
+		out.put((byte) bits);
+		VByteCodec.putVInt(numOfExceptions, out);
+		long mask = bits == 64 ? -1L : (1L << bits) - 1;
+		long word = 0;
+		int used = 0;
+		for (int i = 0; i < count; i++) {
+			long value = values[i] & mask & 0xFFFFFFFFL;
+			word |= value << used;
+			used += bits;
+			if (used >= 64) {
+				out.putLong(word);
+				used -= 64;
+				word = used == 0 ? 0 : value >>> (bits - used);
+			}
+		}
+		if (used > 0) {
+			out.putLong(word);
+		}
+		for (int i = 0; i < count && numOfExceptions > 0; i++) {
+			if (bits < 32 && (values[i] >>> bits) != 0) {
+				VByteCodec.putVInt(i, out);
+				VByteCodec.putVInt(values[i] >>> bits, out);
+			}
+		}
+	}
+
+	@Override
+	public void decode(ByteBuffer in, int[] values, int count) {
+		int bits = in.get();
+		int numOfExceptions = VByteCodec.getVInt(in);
+		long mask = (1L << bits) - 1;
+		long word = 0;
+		int available = 0;/* bits of word not consumed yet */
+		for (int i = 0; i < count; i++) {
+			if (available >= bits) {
+				values[i] = (int) (word & mask);
+				word >>>= bits;
+				available -= bits;
+			} else {
+				long next = in.getLong();
+				values[i] = (int) ((available == 0 ? next : word | (next << available)) & mask);
+				word = next >>> (bits - available);
+				available = 64 - (bits - available);
+			}
+		}
+		for (int e = 0; e < numOfExceptions; e++) {
+			int i = VByteCodec.getVInt(in);
+			values[i] |= VByteCodec.getVInt(in) << bits;
+		}
+	}
+
+	@Override
+	public int maxEncodedSize(int count) {
+		/* b = 0 with count exceptions of 5 + 5 bytes is the worst case */
+		return 1 + 5 + 8 * ((count * 32 + 63) / 64) + 10 * count;
+	}
+
+	/**
+	 * @return the smallest number of bits holding COVERAGE of the values
+	 */
+	private static int bitWidth(int[] values, int count) {
+		int[] numOfValues = new int[33];/* by number of bits */
+		for (int i = 0; i < count; i++) {
+			numOfValues[32 - Integer.numberOfLeadingZeros(values[i])]++;
+		}
+		int fitting = 0;
+		for (int bits = 0; bits <= 32; bits++) {
+			fitting += numOfValues[bits];
+			if (fitting >= COVERAGE * count) {
+				return bits;
+			}
+		}
+		return 32;
+	}
+}
@@ -0,0 +1,61 @@
+package edu.ir.vsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface encodes blocks of non-negative ints, such as the gaps
+ * between the document indexes of a postings list or the term frequencies.
+ * An encoded block doesn't store its length: the decoder is given the
+ * number of values, and reads exactly the bytes the encoder wrote. Codecs
+ * are stateless, so one instance may be used by any number of threads.
+ *
+ * @author YAN DENG
+ *
+ */
+public interface PostingsCodec {
+
+	/**
+	 * @return the name the codec is stored under in an index file
+	 */
+	String name();
+
+	/**
+	 * Encode count values at the position of out, and move it past them.
+	 *
+	 * @param values
+	 * @param count
+	 * @param out
+	 *            must have enough room left, see maxEncodedSize()
+	 */
+	void encode(int[] values, int count, ByteBuffer out);
+
+	/**
+	 * Decode count values from the position of in, and move it past them.
+	 *
+	 * @param in
+	 * @param values
+	 *            receives the values, at least count long
+	 * @param count
+	 */
+	void decode(ByteBuffer in, int[] values, int count);
+
+	/**
+	 * @param count
+	 * @return an upper bound of the number of bytes of count encoded values
+	 */
+	int maxEncodedSize(int count);
+
+	/**
+	 * @param name
+	 * @return the codec stored under the given name
+	 * @throws IllegalArgumentException
+	 *             if there is no such codec
+	 */
+	static PostingsCodec forName(String name) {
+		if (name.equals(VByteCodec.NAME))
+			return new VByteCodec();
+		if (name.equals(PForDeltaCodec.NAME))
+			return new PForDeltaCodec();
+		throw new IllegalArgumentException("Unknown postings codec " + name + ".");
+	}
+}
@@ -0,0 +1,127 @@
+package edu.ir.vsm;
+
+import java.nio.IntBuffer;
+
+/**
+ * This class iterates over a postings list sorted by document index. It
+ * can move to the next posting or jump forward to the first posting of a
+ * document index not lower than a target, using a galloping search. A
+ * subclass iterates over compressed postings (see BlockPostings).
+ *
+ * @author YAN DENG
+ *
+ */
+public class PostingsCursor {
+
+	/** Document index returned once the cursor is past the last posting. */
+	public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+	private IntBuffer docIds;
+	private IntBuffer freqs;
+	private int size;
+	private int pos;
+
+	/**
+	 * @param docIds
+	 * @param freqs
+	 *            may be null if the postings have no frequencies
+	 * @param size
+	 *            number of postings
+	 */
+	public PostingsCursor(IntBuffer docIds, IntBuffer freqs, int size) {
+		this.docIds = docIds;
+		this.freqs = freqs;
+		this.size = size;
+		this.pos = 0;
+	}
+
+	/**
+	 * For cursors over other representations of the postings, which override
+	 * all the methods reading them.
+	 *
+	 * @param size
+	 *            number of postings
+	 */
+	protected PostingsCursor(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @return the document index of the current posting, or NO_MORE_DOCS
+	 */
+	public int docId() {
+		return pos < size ? docIds.get(pos) : NO_MORE_DOCS;
+	}
+
+	/**
+	 * @return the frequency of the current posting
+	 */
+	public int freq() {
+		return freqs.get(pos);
+	}
+
+	/**
+	 * Move to the next posting.
+	 *
+	 * @return the new document index, or NO_MORE_DOCS
+	 */
+	public int next() {
+		if (pos < size) {
+			pos++;
+		}
+		return docId();
+	}
+
+	/**
+	 * Move to the first posting whose document index is not lower than
+	 * target. The cursor never moves backwards.
+	 *
+	 * @return the new document index, or NO_MORE_DOCS
+	 */
+	public int advance(int target) {
+		if (pos >= size || docIds.get(pos) >= target) {
+			return docId();
+		}
+		/* Gallop until a posting not lower than target is bracketed. */
+		int low = pos;
+		int step = 1;
+		int high = pos + step;
+		while (high < size && docIds.get(high) < target) {
+			low = high;
+			step <<= 1;
+			high = pos + step;
+		}
+		if (high >= size) {
+			high = size - 1;
+			if (docIds.get(high) < target) {
+				pos = size;
+				return NO_MORE_DOCS;
+			}
+		}
+		/* docIds[low] < target <= docIds[high] */
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (docIds.get(mid) < target) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+		pos = high;
+		return docId();
+	}
+
+	/**
+	 * @return the position of the current posting in the list
+	 */
+	public int index() {
+		return pos;
+	}
+
+	/**
+	 * @return the number of postings in the list
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,223 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class caches the results of the two steps of a query: the top 2k
+ * documents by cosine similarity, and the top k documents once they are
+ * reranked by biwords.
+ *
+ * The cosine similarities only depend on the terms of the query and their
+ * #appears, so the top 2k documents are cached under the sorted terms of
+ * the query, STOP words removed. The documents are sorted by decreasing
+ * similarity with ties broken by document index, so the top 2j documents are
+ * the first 2j of the top 2k for any j not greater than k: an entry answers
+ * the queries with the same terms and any k up to its own. The reranking
+ * depends on the order of the terms, so the reranked top k is only reused
+ * for the same terms in the same order and the same k; otherwise it is
+ * recomputed from the cached top 2k, which is cheap.
+ *
+ * The least recently used entries are evicted once there are more than the
+ * given number of entries. The entries hold the version of the snapshot
+ * they were computed from; the cache is cleared as soon as a query reads a
+ * newer snapshot, and the results of queries reading an older one are not
+ * cached. The methods are synchronized, but the queries are computed outside
+ * of the lock.
+ *
+ * @author YAN DENG
+ *
+ */
+public class QueryCache {
+
+	private final int capacity;
+	private final LinkedHashMap<String, Entry> entries;
+	private long version;
+	private long hits;/* both steps answered from the cache */
+	private long partialHits;/* only the top 2k answered from the cache */
+	private long misses;
+	private long evictions;
+	private long invalidations;/* entries dropped because the index changed */
+
+	/**
+	 * @param capacity
+	 *            maximum number of cached queries
+	 */
+	public QueryCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of the cache must be positive.");
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > QueryCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+		this.version = -1;
+	}
+
+	/**
+	 * Retrieve the top 2k documents and the top k documents of a query, from
+	 * the cache if possible.
+	 *
+	 * @param snapshot
+	 *            the indexes to query
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            retrieve the top 2k documents with dynamic pruning and
+	 *            receive the number of postings evaluated and skipped, may be
+	 *            null; left unchanged if the top 2k come from the cache
+	 * @return the results of both steps; the lists must not be modified
+	 */
+	public Result search(IndexSnapshot snapshot, String query, int k, QueryStats stats) {
+		long start = System.nanoTime();
+		ArrayList<String> terms = new ArrayList<String>();
+		new Tokenizer().tokenize(query, term -> terms.add(term));
+		String sequence = String.join(" ", terms);
+		String[] sortedTerms = terms.toArray(new String[terms.size()]);
+		Arrays.sort(sortedTerms);
+		String key = String.join(" ", sortedTerms);
+
+		Entry entry;
+		synchronized (this) {
+			entry = lookUp(snapshot.getVersion(), key);
+			if (entry != null && entry.k >= k) {
+				if (entry.k == k && sequence.equals(entry.sequence)) {
+					hits++;
+					Metrics.CACHE_HITS.increment();
+					Metrics.QUERY.record(System.nanoTime() - start);
+					return new Result(entry.top2K, entry.topK, true);
+				}
+				partialHits++;
+				Metrics.CACHE_PARTIAL_HITS.increment();
+			} else {
+				entry = null;
+				misses++;
+				Metrics.CACHE_MISSES.increment();
+			}
+		}
+		ArrayList<StringDoublePair> top2K;
+		if (entry != null) {
+			top2K = new ArrayList<StringDoublePair>(entry.top2K.subList(0, Math.min(2 * k, entry.top2K.size())));
+		} else if (stats != null) {
+			top2K = snapshot.getIndex().searchTop2KPruned(query, k, stats);
+		} else {
+			top2K = snapshot.getIndex().searchTop2K(query, k);
+		}
+		ArrayList<StringDoublePair> topK = snapshot.rerank(query, top2K, k);
+		if (entry == null) {
+			store(snapshot.getVersion(), key, new Entry(k, top2K, sequence, topK));
+		} else if (entry.k == k) {
+			store(snapshot.getVersion(), key, new Entry(k, entry.top2K, sequence, topK));
+		}
+		Metrics.QUERY.record(System.nanoTime() - start);
+		return new Result(top2K, topK, false);
+	}
+
+	/**
+	 * @return the entry of the key, or null if the snapshot is older than the
+	 *         cached entries
+	 */
+	private Entry lookUp(long snapshotVersion, String key) {
+		if (snapshotVersion > version) {
+			invalidations += entries.size();
+			entries.clear();
+			version = snapshotVersion;
+		}
+		return snapshotVersion == version ? entries.get(key) : null;
+	}
+
+	private synchronized void store(long snapshotVersion, String key, Entry entry) {
+		Entry cached = lookUp(snapshotVersion, key);
+		if (snapshotVersion != version || (cached != null && cached.k > entry.k)) {
+			return;/* the index changed, or another query cached a larger k meanwhile */
+		}
+		entries.put(key, entry);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getPartialHits() {
+		return partialHits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * @return the fraction of the queries whose top 2k documents came from
+	 *         the cache
+	 */
+	public synchronized double hitRatio() {
+		long total = hits + partialHits + misses;
+		return total == 0 ? 0 : (hits + partialHits) / (double) total;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("Cache: %d entries, hits: %d, partial hits: %d, misses: %d, evictions: %d, invalidations: %d",
+				entries.size(), hits, partialHits, misses, evictions, invalidations);
+	}
+
+	/**
+	 * The results of both steps of a query.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	public static class Result {
+		public final ArrayList<StringDoublePair> top2K;
+		public final ArrayList<StringDoublePair> topK;
+		public final boolean cached;/* both steps were answered from the cache */
+
+		Result(ArrayList<StringDoublePair> top2K, ArrayList<StringDoublePair> topK, boolean cached) {
+			this.top2K = top2K;
+			this.topK = topK;
+			this.cached = cached;
+		}
+	}
+
+	/**
+	 * Inner class, to store the results of the last query with given terms.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private static class Entry {
+		final int k;
+		final ArrayList<StringDoublePair> top2K;
+		final String sequence;/* the terms in the order the top k were reranked for */
+		final ArrayList<StringDoublePair> topK;
+
+		Entry(int k, ArrayList<StringDoublePair> top2K, String sequence, ArrayList<StringDoublePair> topK) {
+			this.k = k;
+			this.top2K = top2K;
+			this.sequence = sequence;
+			this.topK = topK;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package edu.ir.vsm;
+
+/**
+ * This class counts how much of the postings of the query terms a query
+ * had to look at, and how long each stage of the retrieval of its top 2k
+ * documents took, in nanoseconds, added up over the segments.
+ *
+ * @author YAN DENG
+ *
+ */
+public class QueryStats {
+	public long postingsEvaluated;/* postings whose weight was computed */
+	public long postingsSkipped;/* postings skipped by dynamic pruning */
+	public long tokenizeNanos;
+	public long scoringNanos;/* scoring the candidate documents */
+	public long selectionNanos;/* keeping the top 2k of the scored documents */
+
+	public void reset() {
+		postingsEvaluated = 0;
+		postingsSkipped = 0;
+		tokenizeNanos = 0;
+		scoringNanos = 0;
+		selectionNanos = 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Postings evaluated: %d, skipped: %d; tokenize: %.3f ms, scoring: %.3f ms, selection: %.3f ms",
+				postingsEvaluated, postingsSkipped, tokenizeNanos / 1e6, scoringNanos / 1e6, selectionNanos / 1e6);
+	}
+}
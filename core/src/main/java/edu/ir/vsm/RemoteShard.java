@@ -0,0 +1,181 @@
+package edu.ir.vsm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * This class is a shard of a collection served by a ShardServer of another
+ * process. The requests of a RemoteShard go through a single connection, so
+ * the queries of several threads are answered one after the other by the
+ * shard.
+ *
+ * @author YAN DENG
+ *
+ */
+public class RemoteShard implements ShardedIndex.Shard {
+
+	private final String address;
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final int numOfDocs;
+
+	/**
+	 * Connect to a shard server.
+	 *
+	 * @param host
+	 * @param port
+	 * @throws IOException
+	 *             if the server can't be reached
+	 */
+	public RemoteShard(String host, int port) throws IOException {
+		this.address = host + ":" + port;
+		this.socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		out.writeByte(ShardServer.NUM_OF_DOCS);
+		this.numOfDocs = response().readInt();
+	}
+
+	/**
+	 * @param address
+	 *            host:port of a shard server
+	 * @return the shard served at the address
+	 * @throws IllegalArgumentException
+	 *             if the address has no port
+	 * @throws IOException
+	 *             if the server can't be reached
+	 */
+	public static RemoteShard connect(String address) throws IOException {
+		int colon = address.lastIndexOf(':');
+		if (colon < 0)
+			throw new IllegalArgumentException(address + " is not a host:port address.");
+		return new RemoteShard(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+	}
+
+	@Override
+	public int getNumOfDocs() {
+		return numOfDocs;
+	}
+
+	@Override
+	public synchronized int[] termStats(ArrayList<String> terms) {
+		try {
+			out.writeByte(ShardServer.TERM_STATS);
+			DataInputStream response = response();
+			int n = response.readInt();
+			int[] docFreqs = new int[n];
+			for (int i = 0; i < n; i++) {
+				terms.add(ShardServer.getString(response));
+				docFreqs[i] = response.readInt();
+			}
+			return docFreqs;
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public synchronized void attach(ShardedIndex.GlobalStats stats) {
+		try {
+			out.writeByte(ShardServer.ATTACH);
+			out.writeInt(stats.numOfDocs());
+			int[] docFreqs = stats.getDocFreqs();
+			out.writeInt(docFreqs.length);
+			Iterator<String> terms = stats.getTerms().iterator();
+			for (int i = 0; i < docFreqs.length; i++) {
+				ShardServer.putString(out, terms.next());
+				out.writeInt(docFreqs[i]);
+			}
+			response();
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public synchronized ShardedIndex.Hits search(HashMap<String, Integer> queryTerms, int k, boolean prune) {
+		try {
+			out.writeByte(ShardServer.SEARCH);
+			out.writeInt(k);
+			out.writeBoolean(prune);
+			out.writeInt(queryTerms.size());
+			for (String term : queryTerms.keySet()) {
+				ShardServer.putString(out, term);
+				out.writeInt(queryTerms.get(term));
+			}
+			DataInputStream response = response();
+			int n = response.readInt();
+			int[] docIds = new int[n];
+			double[] scores = new double[n];
+			String[] docNames = new String[n];
+			for (int i = 0; i < n; i++) {
+				docIds[i] = response.readInt();
+				scores[i] = response.readDouble();
+				docNames[i] = ShardServer.getString(response);
+			}
+			QueryStats stats = new QueryStats();
+			stats.postingsEvaluated = response.readLong();
+			stats.postingsSkipped = response.readLong();
+			return new ShardedIndex.Hits(n, docIds, scores, docNames, stats);
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	@Override
+	public synchronized int[] countBiWords(String query, ArrayList<StringDoublePair> candidates) {
+		try {
+			out.writeByte(ShardServer.COUNT_BIWORDS);
+			ShardServer.putString(out, query);
+			out.writeInt(candidates.size());
+			for (StringDoublePair candidate : candidates) {
+				ShardServer.putString(out, candidate.docName);
+			}
+			DataInputStream response = response();
+			int[] counts = new int[candidates.size()];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = response.readInt();
+			}
+			return counts;
+		} catch (IOException e) {
+			throw failed(e);
+		}
+	}
+
+	/**
+	 * Send the request written to out and read the status of its response.
+	 *
+	 * @return the stream of the rest of the response
+	 * @throws IllegalStateException
+	 *             if the shard failed to answer the request
+	 */
+	private DataInputStream response() throws IOException {
+		out.flush();
+		if (in.readByte() != ShardServer.OK)
+			throw new IllegalStateException("Shard " + address + ": " + ShardServer.getString(in));
+		return in;
+	}
+
+	private IllegalStateException failed(IOException e) {
+		return new IllegalStateException("Lost the connection to shard " + address + ".", e);
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	@Override
+	public String toString() {
+		return "Shard " + address + " of " + numOfDocs + " documents";
+	}
+}
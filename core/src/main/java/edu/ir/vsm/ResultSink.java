@@ -0,0 +1,26 @@
+package edu.ir.vsm;
+
+/**
+ * Callback receiving the results of the two steps of a query answered into
+ * a SearchResults, e.g. to print them. The results are only valid during
+ * the call: the buffers are reused by the next step and the next query.
+ *
+ * @author YAN DENG
+ *
+ */
+public interface ResultSink {
+
+	/**
+	 * @param query
+	 * @param results
+	 *            the top 2k documents by cosine similarity
+	 */
+	void top2K(String query, SearchResults results);
+
+	/**
+	 * @param query
+	 * @param results
+	 *            the top k documents once reranked by biwords
+	 */
+	void topK(String query, SearchResults results);
+}
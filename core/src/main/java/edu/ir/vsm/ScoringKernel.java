@@ -0,0 +1,271 @@
+package edu.ir.vsm;
+
+import java.util.BitSet;
+
+/**
+ * This class is the scoring kernel of the exhaustive retrieval of
+ * WordIndex when a SearchResults asks for one: an approximate, faster
+ * evaluation of the cosine similarities in float precision.
+ *
+ * The weight log2(1 + tf) of every posting is quantized to 15 bits relative
+ * to the largest one of its term, so the quantized postings of a term don't
+ * depend on the statistics of the collection and are built once, the first
+ * time a kernel reads the term (see QuantizedPostings). A query turns them
+ * into weights with a single factor per term, idf * w(t,q) times the scale
+ * of the term.
+ *
+ * The documents are scored term at a time in blocks of BLOCK_SIZE
+ * documents, so the accumulator of a block stays in the cache: every term
+ * adds its postings in the block to the accumulator, the accumulator is
+ * normalized by the norms of the documents and of the query, and only the
+ * documents scoring at least the worst of the top documents are offered to
+ * the selector.
+ *
+ * This class runs these loops one document at a time, which the JIT may
+ * still vectorize in part. VectorScoringKernel runs them with the Vector API
+ * of the JDK, which is an incubator module: fastest() picks it only when the
+ * program was started with --add-modules jdk.incubator.vector, and falls
+ * back to this class otherwise. Both kernels compute exactly the same float
+ * scores; they may differ from the exact scores by about 1e-5 of the
+ * largest weights, so documents whose exact scores are that close may be
+ * ranked the other way round.
+ *
+ * @author YAN DENG
+ *
+ */
+public class ScoringKernel {
+
+	public static final int BLOCK_SIZE = 4096;
+
+	/* quantized weights go from 0 to MAX_QUANTUM, the largest weight of the term */
+	static final int MAX_QUANTUM = Short.MAX_VALUE;
+
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+	private static final ScoringKernel SCALAR = new ScoringKernel();
+
+	ScoringKernel() {
+	}
+
+	/**
+	 * @return the kernel running its loops one document at a time
+	 */
+	public static ScoringKernel scalar() {
+		return SCALAR;
+	}
+
+	/**
+	 * @return the kernel running its loops with the Vector API
+	 * @throws IllegalStateException
+	 *             if the Vector API is not available
+	 */
+	public static ScoringKernel vector() {
+		if (!isVectorAvailable())
+			throw new IllegalStateException(
+					"The Vector API is not available: start the program with --add-modules " + VECTOR_MODULE + ".");
+		try {
+			/* loaded by name, so that this class never links against the incubator module */
+			return (ScoringKernel) Class.forName("edu.ir.vsm.VectorScoringKernel").getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			throw new IllegalStateException("Failed to load the vector kernel.", e);
+		}
+	}
+
+	/**
+	 * @return the vector kernel if the Vector API is available, the scalar
+	 *         kernel otherwise
+	 */
+	public static ScoringKernel fastest() {
+		return isVectorAvailable() ? vector() : scalar();
+	}
+
+	/**
+	 * @return true if the program was started with the Vector API module
+	 */
+	public static boolean isVectorAvailable() {
+		return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+	}
+
+	/**
+	 * @param name
+	 *            scalar, vector or auto
+	 * @return the kernel of the given name, fastest() for auto
+	 * @throws IllegalArgumentException
+	 *             if there is no such kernel
+	 */
+	public static ScoringKernel forName(String name) {
+		if (name.equalsIgnoreCase("scalar")) {
+			return scalar();
+		} else if (name.equalsIgnoreCase("vector")) {
+			return vector();
+		} else if (name.equalsIgnoreCase("auto")) {
+			return fastest();
+		}
+		throw new IllegalArgumentException("Unknown scoring kernel " + name + ", expected scalar, vector or auto.");
+	}
+
+	public String name() {
+		return "scalar";
+	}
+
+	@Override
+	public String toString() {
+		return name();
+	}
+
+	/**
+	 * Add the weights of the postings from to to (exclusive) of a term to
+	 * the scores of their documents.
+	 *
+	 * @param scores
+	 *            the scores of the documents of the block from base on
+	 * @param base
+	 *            the first document of the block
+	 * @param docIds
+	 *            the documents of the postings of the term, all in the block
+	 * @param quanta
+	 *            the quantized weights of the postings
+	 * @param from
+	 * @param to
+	 * @param scale
+	 *            the weight of a quantum
+	 */
+	void accumulate(float[] scores, int base, int[] docIds, short[] quanta, int from, int to, float scale) {
+		for (int i = from; i < to; i++) {
+			scores[docIds[i] - base] += quanta[i] * scale;
+		}
+	}
+
+	/**
+	 * Turn the scores of the documents of a block into cosine similarities.
+	 *
+	 * @param scores
+	 *            the scores of the documents of the block from base on
+	 * @param base
+	 * @param n
+	 *            the number of documents of the block
+	 * @param inverseNorms
+	 *            1 / ||v(d)|| of all documents, see InverseNorms
+	 * @param inverseQueryNorm
+	 *            1 / ||v(q)||, 0 if the query has no weighted term
+	 */
+	void normalize(float[] scores, int base, int n, float[] inverseNorms, float inverseQueryNorm) {
+		for (int i = 0; i < n; i++) {
+			scores[i] = scores[i] * inverseNorms[base + i] * inverseQueryNorm;
+		}
+	}
+
+	/**
+	 * Offer the documents of a block to the selector, in document order.
+	 * Once the selector is full, only the documents scoring at least its
+	 * worst score can be kept, so only these are offered. Documents scoring
+	 * NaN, the deleted ones, are never offered.
+	 *
+	 * @param scores
+	 *            the cosine similarities of the documents of the block
+	 * @param base
+	 * @param n
+	 * @param top
+	 */
+	void select(float[] scores, int base, int n, TopKSelector top) {
+		int i = fill(scores, base, n, top);
+		if (i == n) {
+			return;
+		}
+		float min = (float) top.minScore();
+		for (; i < n; i++) {
+			if (scores[i] >= min) {
+				top.offer(base + i, scores[i]);
+				min = (float) top.minScore();
+			}
+		}
+	}
+
+	/**
+	 * Offer the documents of a block until the selector is full.
+	 *
+	 * @return the number of documents of the block read
+	 */
+	static int fill(float[] scores, int base, int n, TopKSelector top) {
+		int i = 0;
+		for (; i < n && !top.isFull(); i++) {
+			if (scores[i] == scores[i]) {
+				top.offer(base + i, scores[i]);
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * @param freq
+	 * @return log2(1 + freq), the weight of a term in a document before idf
+	 */
+	static double logWeight(int freq) {
+		return Math.log(1 + freq) / Math.log(2);
+	}
+
+	/**
+	 * Inner class, to hold the postings of a term with their weights
+	 * quantized: the document indexes as an array, and the weights
+	 * log2(1 + tf) as multiples of maxWeight / MAX_QUANTUM. Immutable, so
+	 * it may be built by any query reading the term and shared by all the
+	 * others.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	static final class QuantizedPostings {
+		final int size;
+		final int[] docIds;
+		final short[] quanta;
+		final double maxWeight;/*the largest log2(1 + tf) of the term*/
+
+		QuantizedPostings(PostingsCursor cursor, int size) {
+			this.size = size;
+			this.docIds = new int[size];
+			this.quanta = new short[size];
+			int[] freqs = new int[size];
+			int maxFreq = 1;
+			int i = 0;
+			for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+				docIds[i] = doc;
+				freqs[i] = cursor.freq();
+				maxFreq = Math.max(maxFreq, freqs[i]);
+				i++;
+			}
+			this.maxWeight = logWeight(maxFreq);
+			for (i = 0; i < size; i++) {
+				quanta[i] = (short) Math.round(MAX_QUANTUM * logWeight(freqs[i]) / maxWeight);
+			}
+		}
+
+		/**
+		 * @return the weight of a quantum
+		 */
+		double scale() {
+			return maxWeight / MAX_QUANTUM;
+		}
+	}
+
+	/**
+	 * Inner class, to hold 1 / ||v(d)|| of the documents of an index as
+	 * floats, computed from its norms: 0 for a document without any
+	 * weighted term, whose similarity is 0, and NaN for a deleted document,
+	 * which is never selected.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	static final class InverseNorms {
+		final double[] norms;/*the norms these were computed from*/
+		final float[] inverses;
+
+		InverseNorms(double[] norms, int numOfSlots, BitSet deletedDocs) {
+			this.norms = norms;
+			this.inverses = new float[numOfSlots];
+			for (int i = 0; i < numOfSlots; i++) {
+				inverses[i] = deletedDocs.get(i) ? Float.NaN : norms[i] == 0 ? 0 : (float) (1 / norms[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class receives the results of a query into arrays reused from one
+ * query to the next: the ids of the documents and their cosine similarities
+ * as floats, best first. The id of a document is its number in the
+ * SegmentedIndex queried, in the order the documents were added; it only
+ * holds for the snapshot queried, since a merge renumbers the documents.
+ *
+ * A SearchResults also holds the scratch space of a query: the score
+ * accumulator, the selectors of the top documents and the buffers of the
+ * reranking. A thread reusing the same SearchResults for all its queries
+ * allocates nothing that grows with the collection or with k, and nothing
+ * is printed or formatted. A SearchResults must not be shared by threads.
+ *
+ * A SearchResults may also carry a ScoringKernel, which then scores the
+ * documents of the queries run without pruning in float precision, instead
+ * of the exact scores of the index.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SearchResults {
+
+	private int[] docIds = new int[16];
+	private float[] scores = new float[16];
+	private double[] similarities = new double[16];/* the exact scores, which order the results */
+	private int size;
+	private SegmentedIndex index;/* the index the ids refer to */
+	private final ScoringKernel kernel;/* null for the exact scores */
+
+	/* scratch space of the queries */
+	private final QueryStats stats = new QueryStats();
+	private final Tokenizer tokenizer = new Tokenizer();
+	private final HashMap<String, Integer> queryTerms = new HashMap<String, Integer>();
+	private final WordIndex.TermCounter termCounter = new WordIndex.TermCounter(queryTerms);
+	private double[] accumulator = new double[0];
+	private final TopKSelector segmentTop = new TopKSelector(0);
+	private final TopKSelector top = new TopKSelector(0);
+	private long[] candidates = new long[0];
+	private int[] counts = new int[0];
+	private int[] spareIds = new int[0];
+	private double[] spareSimilarities = new double[0];
+	private float[] blockScores;
+
+	/**
+	 * Results of queries scored exactly.
+	 */
+	public SearchResults() {
+		this(null);
+	}
+
+	/**
+	 * @param kernel
+	 *            the kernel scoring the queries run without pruning, null
+	 *            for the exact scores
+	 */
+	public SearchResults(ScoringKernel kernel) {
+		this.kernel = kernel;
+	}
+
+	/**
+	 * @return the kernel scoring the queries, null if they are scored exactly
+	 */
+	public ScoringKernel getScoringKernel() {
+		return kernel;
+	}
+
+	/**
+	 * @return the number of results
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i
+	 *            rank of the result, from 0
+	 * @return the id of the document, see SegmentedIndex.documentName
+	 */
+	public int docId(int i) {
+		checkRank(i);
+		return docIds[i];
+	}
+
+	/**
+	 * @param i
+	 *            rank of the result, from 0
+	 * @return the cosine similarity of the document with the query
+	 */
+	public float score(int i) {
+		checkRank(i);
+		return scores[i];
+	}
+
+	/**
+	 * @return the ids of the documents, best first; only the first size()
+	 *         are results, and the array is reused by the next query
+	 */
+	public int[] docIds() {
+		return docIds;
+	}
+
+	/**
+	 * @return the scores of the documents, in the order of docIds()
+	 */
+	public float[] scores() {
+		return scores;
+	}
+
+	/**
+	 * @param i
+	 *            rank of the result, from 0
+	 * @return the name of the document
+	 */
+	public String docName(int i) {
+		checkRank(i);
+		return index.documentName(docIds[i]);
+	}
+
+	/**
+	 * @return the results as new pairs of a document name and its exact
+	 *         cosine similarity, as returned by the list based methods
+	 */
+	public ArrayList<StringDoublePair> toList() {
+		ArrayList<StringDoublePair> list = new ArrayList<StringDoublePair>();
+		for (int i = 0; i < size; i++) {
+			list.add(new StringDoublePair(index.documentName(docIds[i]), similarities[i]));
+		}
+		return list;
+	}
+
+	private void checkRank(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Rank " + i + " out of " + size + " results.");
+	}
+
+	/**
+	 * Drop the results before a query of the index.
+	 */
+	void clear(SegmentedIndex index) {
+		this.index = index;
+		this.size = 0;
+	}
+
+	void add(int docId, double similarity) {
+		if (size == docIds.length) {
+			docIds = Arrays.copyOf(docIds, 2 * size);
+			scores = Arrays.copyOf(scores, 2 * size);
+			similarities = Arrays.copyOf(similarities, 2 * size);
+		}
+		docIds[size] = docId;
+		scores[size] = (float) similarity;
+		similarities[size] = similarity;
+		size++;
+	}
+
+	double similarity(int i) {
+		return similarities[i];
+	}
+
+	/**
+	 * Keep the results in the given order.
+	 *
+	 * @param order
+	 *            the ranks of the results to keep, best first
+	 * @param n
+	 *            number of results kept
+	 */
+	void reorder(TopKSelector order, int n) {
+		if (spareIds.length < docIds.length) {
+			spareIds = new int[docIds.length];
+			spareSimilarities = new double[docIds.length];
+		}
+		for (int i = 0; i < n; i++) {
+			spareIds[i] = docIds[order.index(i)];
+			spareSimilarities[i] = similarities[order.index(i)];
+		}
+		int[] ids = docIds;
+		docIds = spareIds;
+		spareIds = ids;
+		double[] sims = similarities;
+		similarities = spareSimilarities;
+		spareSimilarities = sims;
+		for (int i = 0; i < n; i++) {
+			scores[i] = (float) similarities[i];
+		}
+		size = n;
+	}
+
+	/**
+	 * @return the index the ids refer to, null before the first query
+	 */
+	public SegmentedIndex getIndex() {
+		return index;
+	}
+
+	QueryStats stats() {
+		return stats;
+	}
+
+	/**
+	 * @param query
+	 * @return the terms of the query with their #appears, in a map reused by
+	 *         the next query
+	 */
+	HashMap<String, Integer> readQuery(String query) {
+		queryTerms.clear();
+		tokenizer.tokenize(query, termCounter);
+		return queryTerms;
+	}
+
+	/**
+	 * @param n
+	 * @return an array of at least n zeros
+	 */
+	double[] accumulator(int n) {
+		if (accumulator.length < n) {
+			accumulator = new double[Math.max(n, 2 * accumulator.length)];
+		} else {
+			Arrays.fill(accumulator, 0, n, 0);
+		}
+		return accumulator;
+	}
+
+	/**
+	 * @return the scores of a block of ScoringKernel.BLOCK_SIZE documents
+	 */
+	float[] blockScores() {
+		if (blockScores == null) {
+			blockScores = new float[ScoringKernel.BLOCK_SIZE];
+		}
+		return blockScores;
+	}
+
+	TopKSelector segmentTop() {
+		return segmentTop;
+	}
+
+	TopKSelector top() {
+		return top;
+	}
+
+	long[] candidates(int n) {
+		if (candidates.length < n) {
+			candidates = new long[Math.max(n, 2 * candidates.length)];
+		}
+		return candidates;
+	}
+
+	/**
+	 * @param n
+	 * @return an array of at least n zeros
+	 */
+	int[] counts(int n) {
+		if (counts.length < n) {
+			counts = new int[Math.max(n, 2 * counts.length)];
+		} else {
+			Arrays.fill(counts, 0, n, 0);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,106 @@
+package edu.ir.vsm;
+
+/**
+ * This class is one segment of a SegmentedIndex: a word index and a biword
+ * index of the same documents. Only the last segment of a collection, its
+ * buffer, receives new documents; once the buffer is full it is sealed and
+ * a new buffer is started. Documents of a sealed segment may still be
+ * deleted, on a copy like any update, until a merge rewrites the segment
+ * without them.
+ *
+ * @author YAN DENG
+ *
+ */
+public class Segment {
+
+	private final long id;/*kept by the copies of the segment*/
+	private final WordIndex wordIndex;
+	private final BiWordIndex biWordIndex;
+	private boolean sealed;
+
+	/**
+	 * @param id
+	 * @param wordIndex
+	 * @param biWordIndex
+	 *            null if the word index is positional
+	 * @param sealed
+	 */
+	Segment(long id, WordIndex wordIndex, BiWordIndex biWordIndex, boolean sealed) {
+		this.id = id;
+		this.wordIndex = wordIndex;
+		this.biWordIndex = biWordIndex;
+		this.sealed = sealed;
+	}
+
+	/**
+	 * @return the identifier of the segment in its collection
+	 */
+	public long getId() {
+		return id;
+	}
+
+	public WordIndex getWordIndex() {
+		return wordIndex;
+	}
+
+	/**
+	 * @return the biword index, or null if the word index is positional
+	 */
+	public BiWordIndex getBiWordIndex() {
+		return biWordIndex;
+	}
+
+	/**
+	 * @return false if the segment is the buffer receiving the new documents
+	 */
+	public boolean isSealed() {
+		return sealed;
+	}
+
+	/**
+	 * Stop adding documents to the segment, and seal the dictionaries of its
+	 * indexes, see TermTable.
+	 */
+	void seal() {
+		sealed = true;
+		wordIndex.sealTerms();
+		if (biWordIndex != null) {
+			biWordIndex.sealBiWords();
+		}
+	}
+
+	/**
+	 * @return the number of documents, not counting deleted ones
+	 */
+	public int getNumOfDocs() {
+		return wordIndex.getNumOfDocs();
+	}
+
+	/**
+	 * @return the number of deleted documents still taking an index
+	 */
+	public int getNumOfDeletedDocs() {
+		return wordIndex.getNumOfSlots() - wordIndex.getNumOfDocs();
+	}
+
+	/**
+	 * @param docName
+	 * @return true if the document is indexed in this segment
+	 */
+	boolean contains(String docName) {
+		return wordIndex.docIndex(docName) >= 0;
+	}
+
+	/**
+	 * @return a copy of the segment sharing its postings, see WordIndex.copy
+	 */
+	Segment copy() {
+		return new Segment(id, wordIndex.copy(), biWordIndex == null ? null : biWordIndex.copy(), sealed);
+	}
+
+	@Override
+	public String toString() {
+		return "Segment " + id + ": " + getNumOfDocs() + " documents, " + getNumOfDeletedDocs() + " deleted"
+				+ (sealed ? "" : ", buffer");
+	}
+}
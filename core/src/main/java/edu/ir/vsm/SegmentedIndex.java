@@ -0,0 +1,735 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class indexes a collection as a list of segments, oldest first. The
+ * documents are in the order they were added: a segment holds documents
+ * added after those of the segments before it. New documents go to the
+ * last segment, a small buffer that is sealed once it holds bufferSize
+ * documents; a replaced document is deleted from its segment and added to
+ * the buffer. Adjacent sealed segments are merged into one, without their
+ * deleted documents, by the merges SnapshotManager runs in the background
+ * (see MergePolicy).
+ *
+ * Every segment weighs its terms with the df and N of the whole collection,
+ * so the scores of the documents of all segments are the ones a single
+ * index of the collection would give them: a query is evaluated on every
+ * segment and the top documents of all segments are merged. When the df of
+ * a term changes, the norm sums of the documents containing it are updated
+ * in every segment. N and the df of the terms queried are added up over
+ * the segments once per version of the index and kept, not once per
+ * segment and query.
+ *
+ * Like the indexes of its segments, a SegmentedIndex is only read by
+ * queries once refreshed, and updated on an unpublished copy.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SegmentedIndex {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1000;
+
+	private String path;
+	private boolean positional;
+	private boolean biWords;/*the segments have biword indexes*/
+	private PostingsCodec codec;
+	private int bufferSize;/*number of documents the buffer receives before it is sealed*/
+	private ArrayList<Segment> segments;
+	private long nextSegmentId;
+	private final GlobalStats stats = new GlobalStats();
+
+	/**
+	 * @param wordIndex
+	 * @param biWordIndex
+	 *            the indexes of the collection, which become its first,
+	 *            sealed, segment; the biword index is null if the word index
+	 *            is positional
+	 * @param bufferSize
+	 *            number of documents the buffer receives before it is sealed
+	 */
+	SegmentedIndex(WordIndex wordIndex, BiWordIndex biWordIndex, int bufferSize) {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("The size of the buffer must be positive.");
+		this.path = wordIndex.getPath();
+		this.positional = wordIndex.isPositional();
+		this.biWords = biWordIndex != null;
+		this.codec = wordIndex.getCodec();
+		this.bufferSize = bufferSize;
+		this.segments = new ArrayList<Segment>();
+		/* The statistics of the collection are those of its only segment: the norms are left as they are. */
+		wordIndex.setCollectionStats(stats);
+		segments.add(new Segment(nextSegmentId++, wordIndex, biWordIndex, true));
+	}
+
+	private SegmentedIndex(SegmentedIndex index) {
+		this.path = index.path;
+		this.positional = index.positional;
+		this.biWords = index.biWords;
+		this.codec = index.codec;
+		this.bufferSize = index.bufferSize;
+		this.nextSegmentId = index.nextSegmentId;
+		this.segments = new ArrayList<Segment>();
+		for (Segment segment : index.segments) {
+			Segment copy = segment.copy();
+			copy.getWordIndex().setCollectionStats(stats);
+			segments.add(copy);
+		}
+	}
+
+	/**
+	 * Copy the index so that it can be updated while this one is still being
+	 * queried. The copy of a segment shares all its data until the update
+	 * writes it (see WordIndex.copy), so the segments an update doesn't
+	 * touch stay shared between the two indexes.
+	 *
+	 * @return a copy of the index
+	 */
+	SegmentedIndex copy() {
+		return new SegmentedIndex(this);
+	}
+
+	/**
+	 * Refresh the word indexes of the segments, see WordIndex.refresh: only
+	 * those whose norm sums were updated have something to do.
+	 */
+	void refresh() {
+		for (Segment segment : segments) {
+			segment.getWordIndex().refresh();
+		}
+	}
+
+	/**
+	 * @return the segments, oldest first
+	 */
+	public List<Segment> getSegments() {
+		return Collections.unmodifiableList(segments);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return true if the postings keep the positions of the terms
+	 */
+	public boolean isPositional() {
+		return positional;
+	}
+
+	/**
+	 * @return the codec of the postings, or null if they are not compressed
+	 */
+	public PostingsCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * @return the number of documents, not counting deleted ones
+	 */
+	public int getNumOfDocs() {
+		return stats.numOfDocs();
+	}
+
+	/**
+	 * @return the number of distinct terms of the documents
+	 */
+	public int getNumOfTerms() {
+		if (segments.size() == 1) {
+			return segments.get(0).getWordIndex().getNumOfTerms();
+		}
+		HashSet<String> terms = new HashSet<String>();
+		for (Segment segment : segments) {
+			segment.getWordIndex().collectTerms(terms);
+		}
+		return terms.size();
+	}
+
+	/**
+	 * @return the number of distinct biwords of the documents, 0 if the
+	 *         index is positional
+	 */
+	public int getNumOfBiWords() {
+		if (!biWords) {
+			return 0;
+		}
+		if (segments.size() == 1) {
+			return segments.get(0).getBiWordIndex().getNumOfBiWords();
+		}
+		HashSet<String> biwords = new HashSet<String>();
+		for (Segment segment : segments) {
+			segment.getBiWordIndex().collectBiWords(biwords);
+		}
+		return biwords.size();
+	}
+
+	/**
+	 * @return the names of the indexed documents, in the order they were
+	 *         added
+	 */
+	public ArrayList<String> documentNames() {
+		ArrayList<String> names = new ArrayList<String>();
+		for (Segment segment : segments) {
+			names.addAll(segment.getWordIndex().documentNames());
+		}
+		return names;
+	}
+
+	/**
+	 * Index the current content of a document, replacing the indexed one if
+	 * any. The document goes to the buffer.
+	 *
+	 * @param file
+	 */
+	public void replaceDocument(File file) {
+		HashMap<String, Integer> docTerms = new HashMap<String, Integer>();
+		HashSet<String> docBiWords = biWords ? new HashSet<String>() : null;
+		HashMap<String, int[]> docPositions = positional ? new HashMap<String, int[]>() : null;
+		IndexBuilder.readFile(new Tokenizer(), file, docTerms, docBiWords, docPositions);
+		prepareUpdate();
+		remove(file.getName());
+		Segment buffer = buffer();
+		buffer.getWordIndex().addDocument(file.getName(), docTerms, docPositions);
+		stats.docsChanged();
+		if (biWords) {
+			buffer.getBiWordIndex().addDocument(file.getName(), docBiWords);
+		}
+	}
+
+	/**
+	 * Remove a document from the segment holding it.
+	 *
+	 * @param docName
+	 * @return false if the document was not indexed
+	 */
+	public boolean deleteDocument(String docName) {
+		prepareUpdate();
+		return remove(docName);
+	}
+
+	private boolean remove(String docName) {
+		for (Segment segment : segments) {
+			if (segment.contains(docName)) {
+				segment.getWordIndex().deleteDocument(docName);
+				stats.docsChanged();
+				if (biWords) {
+					segment.getBiWordIndex().deleteDocument(docName);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The statistics of the collection are about to change, which changes
+	 * the norms of the documents of every segment: every segment needs its
+	 * norm sums. A segment not holding the document and none of its terms
+	 * keeps them, and computes its norms for the new N when first queried.
+	 */
+	private void prepareUpdate() {
+		for (Segment segment : segments) {
+			segment.getWordIndex().prepareUpdate();
+		}
+	}
+
+	/**
+	 * @return the buffer, started if the last segment is sealed or full
+	 */
+	private Segment buffer() {
+		Segment last = segments.get(segments.size() - 1);
+		if (!last.isSealed() && last.getWordIndex().getNumOfSlots() < bufferSize) {
+			return last;
+		}
+		last.seal();
+		WordIndex words = new WordIndex(path, false, positional);
+		words.compress(codec);
+		Segment buffer = new Segment(nextSegmentId++, words, biWords ? new BiWordIndex(path, false) : null, false);
+		segments.add(buffer);
+		words.attach(stats);
+		return buffer;
+	}
+
+	/**
+	 * Merge adjacent sealed segments of a published index into one segment
+	 * holding their documents that are not deleted, in the same order. The
+	 * segments are only read, so queries may run meanwhile. The merged
+	 * segment is not attached to a collection yet.
+	 *
+	 * @param sources
+	 * @return the merged segment
+	 */
+	static Segment merge(List<Segment> sources) {
+		WordIndex first = sources.get(0).getWordIndex();
+		WordIndex words = new WordIndex(first.getPath(), false, first.isPositional());
+		BiWordIndex biWordIndex = sources.get(0).getBiWordIndex() == null ? null
+				: new BiWordIndex(first.getPath(), false);
+		for (Segment source : sources) {
+			words.mergeLive(source.getWordIndex());
+			if (biWordIndex != null) {
+				biWordIndex.mergeLive(source.getBiWordIndex());
+			}
+		}
+		words.finishMerge();
+		if (biWordIndex != null) {
+			biWordIndex.finishMerge();
+		}
+		return new Segment(-1, words, biWordIndex, true);
+	}
+
+	/**
+	 * Replace the segments a merge started from by the merged segment. The
+	 * documents deleted from these segments since the merge started are
+	 * deleted from the merged segment first; a merged segment left without
+	 * documents is dropped. The statistics of the collection don't change.
+	 *
+	 * @param sources
+	 *            the segments as they were when the merge started
+	 * @param merged
+	 *            returned by merge(sources)
+	 * @throws IllegalStateException
+	 *             if the segments are no longer in the index
+	 */
+	void replaceSegments(List<Segment> sources, Segment merged) {
+		int from = 0;
+		while (from < segments.size() && segments.get(from).getId() != sources.get(0).getId()) {
+			from++;
+		}
+		for (int i = 0; i < sources.size(); i++) {
+			if (from + i >= segments.size() || segments.get(from + i).getId() != sources.get(i).getId())
+				throw new IllegalStateException("The merged segments are no longer in the index.");
+			Segment current = segments.get(from + i);
+			if (current.getNumOfDocs() == sources.get(i).getNumOfDocs()) {
+				continue;/* sealed segments receive no document, so none was deleted */
+			}
+			for (String docName : sources.get(i).getWordIndex().documentNames()) {
+				if (!current.contains(docName)) {
+					merged.getWordIndex().deleteDocument(docName);
+					if (merged.getBiWordIndex() != null) {
+						merged.getBiWordIndex().deleteDocument(docName);
+					}
+				}
+			}
+		}
+		segments.subList(from, from + sources.size()).clear();
+		if (merged.getNumOfDocs() > 0) {
+			Segment segment = new Segment(nextSegmentId++, merged.getWordIndex(), merged.getBiWordIndex(), true);
+			segments.add(from, segment);
+			segment.getWordIndex().attach(stats);
+		}
+	}
+
+	/**
+	 * Returns the weight of term t in document d, with the df and N of the
+	 * collection.
+	 *
+	 * @param term
+	 * @param doc
+	 * @return the weight of term t in document d, 0 if d is not indexed
+	 */
+	public double weight(String term, String doc) {
+		for (Segment segment : segments) {
+			if (segment.contains(doc)) {
+				return segment.getWordIndex().weight(term, doc);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Retrieve a set S consisting of top 2k documents, or of all documents if
+	 * there are less than 2k of them, and print it with a ConsoleSink.
+	 *
+	 * @param query
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> getTop2KDocs(String query, int k) {
+		SearchResults results = new SearchResults();
+		searchTop2K(query, k, false, null, results);
+		new ConsoleSink().top2K(query, results);
+		return results.toList();
+	}
+
+	/**
+	 * Same as getTop2KDocs, with MaxScore dynamic pruning.
+	 *
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            receives the number of postings evaluated and skipped, may be
+	 *            null
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> getTop2KDocsPruned(String query, int k, QueryStats stats) {
+		SearchResults results = new SearchResults();
+		searchTop2K(query, k, true, stats, results);
+		new ConsoleSink().top2K(query, results);
+		return results.toList();
+	}
+
+	/**
+	 * Same as getTop2KDocs, without printing anything.
+	 *
+	 * @param query
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> searchTop2K(String query, int k) {
+		SearchResults results = new SearchResults();
+		searchTop2K(query, k, false, null, results);
+		return results.toList();
+	}
+
+	/**
+	 * Same as getTop2KDocsPruned, without printing anything. Every segment
+	 * prunes against its own top 2k documents.
+	 *
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            receives the number of postings evaluated and skipped and
+	 *            the time spent on every stage, over all segments, may be
+	 *            null
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> searchTop2KPruned(String query, int k, QueryStats stats) {
+		SearchResults results = new SearchResults();
+		searchTop2K(query, k, true, stats, results);
+		return results.toList();
+	}
+
+	/**
+	 * Retrieve the top 2k documents of every segment and keep the 2k best,
+	 * into reusable buffers. The documents are numbered in the order they
+	 * were added, so ties are broken as in a single index: the later
+	 * document first. The query is tokenized once for all segments, and its
+	 * stages are recorded in the Metrics. Nothing is printed.
+	 *
+	 * @param query
+	 * @param k
+	 * @param prune
+	 *            retrieve the documents with MaxScore dynamic pruning
+	 * @param stats
+	 *            receives the number of postings evaluated and skipped and
+	 *            the time spent on every stage, may be null
+	 * @param results
+	 *            receives the top 2k documents, best first
+	 * @return the number of documents retrieved
+	 */
+	public int searchTop2K(String query, int k, boolean prune, QueryStats stats, SearchResults results) {
+		Metrics.QueryEvent event = new Metrics.QueryEvent();
+		event.begin();
+		if (stats == null) {
+			stats = results.stats();
+		}
+		stats.reset();
+		results.clear(this);
+		long start = System.nanoTime();
+		HashMap<String, Integer> queryTerms = results.readQuery(query);
+		if (WordIndex.hasWildcard(queryTerms)) {
+			queryTerms = WordIndex.expandWildcards(queryTerms, wordIndexes());
+		}
+		stats.tokenizeNanos = System.nanoTime() - start;
+		TopKSelector top = results.top();
+		if (segments.size() == 1) {
+			segments.get(0).getWordIndex().selectTop2K(queryTerms, k, prune, stats, results, top);
+		} else {
+			top.reset(Math.min(2 * k, getNumOfDocs()));
+			TopKSelector segmentTop = results.segmentTop();
+			long merging = 0;
+			int base = 0;
+			for (Segment segment : segments) {
+				WordIndex words = segment.getWordIndex();
+				if (words.getNumOfDocs() > 0) {
+					words.selectTop2K(queryTerms, k, prune, stats, results, segmentTop);
+					long offering = System.nanoTime();
+					for (int i = 0; i < segmentTop.size(); i++) {
+						top.offer(base + segmentTop.index(i), segmentTop.score(i));
+					}
+					merging += System.nanoTime() - offering;
+				}
+				base += words.getNumOfSlots();
+			}
+			long sorting = System.nanoTime();
+			top.sort();
+			stats.selectionNanos += merging + System.nanoTime() - sorting;
+		}
+		for (int i = 0; i < top.size(); i++) {
+			results.add(top.index(i), top.score(i));
+		}
+		Metrics.recordSearch(event, stats, k, segments.size());
+		return results.size();
+	}
+
+	/**
+	 * Find the terms of all segments matching a wildcard pattern, see
+	 * WordIndex.expand.
+	 *
+	 * @param pattern
+	 * @return the matching terms contained in some document, sorted, at most
+	 *         the first WordIndex.MAX_EXPANSIONS of them
+	 */
+	public ArrayList<String> expand(String pattern) {
+		TreeSet<String> terms = new TreeSet<String>(TermDictionary::compare);
+		for (Segment segment : segments) {
+			segment.getWordIndex().expand(pattern.toLowerCase(), terms);
+		}
+		return new ArrayList<String>(terms);
+	}
+
+	/**
+	 * @return the word indexes of the segments, oldest first
+	 */
+	private List<WordIndex> wordIndexes() {
+		ArrayList<WordIndex> indexes = new ArrayList<WordIndex>();
+		for (Segment segment : segments) {
+			indexes.add(segment.getWordIndex());
+		}
+		return indexes;
+	}
+
+	/**
+	 * @param docId
+	 *            the number of a document in this index, as given by
+	 *            SearchResults
+	 * @return the name of the document
+	 */
+	public String documentName(int docId) {
+		int doc = docId;
+		for (Segment segment : segments) {
+			WordIndex words = segment.getWordIndex();
+			if (doc < words.getNumOfSlots()) {
+				return words.documentName(doc);
+			}
+			doc -= words.getNumOfSlots();
+		}
+		throw new IllegalArgumentException("There is no document " + docId + ".");
+	}
+
+	/**
+	 * Keep the k documents of the list containing the most biwords of the
+	 * query, counted in the segment of every document with its biword index
+	 * or else with the positions of its word index.
+	 *
+	 * @param query
+	 * @param top2K
+	 * @param k
+	 * @return the top k documents
+	 */
+	public ArrayList<StringDoublePair> rerank(String query, ArrayList<StringDoublePair> top2K, int k) {
+		Metrics.RerankEvent event = new Metrics.RerankEvent();
+		event.begin();
+		long start = System.nanoTime();
+		int[] counts = new int[top2K.size()];
+		for (Segment segment : segments) {
+			int[] segmentCounts = biWords ? segment.getBiWordIndex().countBiWords(query, top2K)
+					: segment.getWordIndex().countBiWords(query, top2K);
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += segmentCounts[i];
+			}
+		}
+		ArrayList<StringDoublePair> result = BiWordIndex.selectTopK(top2K, counts, k);
+		Metrics.recordRerank(event, System.nanoTime() - start, top2K.size(), k);
+		return result;
+	}
+
+	/**
+	 * Same as rerank, for the documents of a SearchResults: they are
+	 * reranked in place, and nothing is allocated nor printed.
+	 *
+	 * @param query
+	 * @param results
+	 *            the top 2k documents retrieved from this index
+	 * @param k
+	 * @return the number of documents kept
+	 */
+	public int rerank(String query, SearchResults results, int k) {
+		Metrics.RerankEvent event = new Metrics.RerankEvent();
+		event.begin();
+		long start = System.nanoTime();
+		int n = results.size();
+		int[] docIds = results.docIds();
+		int[] counts = results.counts(n);
+		long[] candidates = results.candidates(n);
+		int base = 0;
+		for (Segment segment : segments) {
+			int numOfSlots = segment.getWordIndex().getNumOfSlots();
+			/* document index in the segment in the high half, rank in the low half */
+			int numOfCandidates = 0;
+			for (int i = 0; i < n; i++) {
+				int doc = docIds[i] - base;
+				if (doc >= 0 && doc < numOfSlots) {
+					candidates[numOfCandidates++] = ((long) doc << 32) | i;
+				}
+			}
+			if (numOfCandidates > 0) {
+				Arrays.sort(candidates, 0, numOfCandidates);
+				if (biWords) {
+					segment.getBiWordIndex().countBiWords(query, candidates, numOfCandidates, counts);
+				} else {
+					segment.getWordIndex().countBiWords(query, candidates, numOfCandidates, counts);
+				}
+			}
+			base += numOfSlots;
+		}
+		TopKSelector top = results.top();
+		top.reset(Math.min(k, n));
+		for (int i = 0; i < n; i++) {
+			top.offer(i, counts[i], results.similarity(i));
+		}
+		results.reorder(top, top.sort());
+		Metrics.recordRerank(event, System.nanoTime() - start, n, k);
+		return results.size();
+	}
+
+	/**
+	 * Same as rerank, and print the result.
+	 */
+	public ArrayList<StringDoublePair> getTopKDocs(String query, ArrayList<StringDoublePair> top2K, int k) {
+		ArrayList<StringDoublePair> result = rerank(query, top2K, k);
+		BiWordIndex.printTopKResult(result, result.size());
+		return result;
+	}
+
+	/**
+	 * @param t
+	 *            given term
+	 * @return the postings of the term in all segments, in document order,
+	 *         empty if the term is not in the dictionary
+	 */
+	public ArrayList<WordIndex.PostListEntry> postingsList(String t) {
+		t = t.toLowerCase();
+		ArrayList<WordIndex.PostListEntry> postingsList = new ArrayList<WordIndex.PostListEntry>();
+		if (stats.docFreq(t) == 0) {
+			return postingsList;
+		}
+		for (Segment segment : segments) {
+			if (segment.getWordIndex().documentFrequency(t) > 0) {
+				postingsList.addAll(segment.getWordIndex().postingsList(t));
+			}
+		}
+		return postingsList;
+	}
+
+	/**
+	 * @param biword
+	 * @return the documents containing the biword in all segments, in
+	 *         document order
+	 * @throws IllegalStateException
+	 *             if the index is positional
+	 */
+	public ArrayList<String> biWordPostingsList(String biword) {
+		if (!biWords)
+			throw new IllegalStateException("The index has no biword index.");
+		biword = biword.toLowerCase();
+		ArrayList<String> list = new ArrayList<String>();
+		for (Segment segment : segments) {
+			if (segment.getBiWordIndex().documentFrequency(biword) > 0) {
+				list.addAll(segment.getBiWordIndex().postingsList(biword));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Retrieve the documents containing the terms of the phrase one after
+	 * the other. The index must be positional.
+	 *
+	 * @param phrase
+	 * @return the names of the matching documents, in document order
+	 */
+	public ArrayList<String> phraseQuery(String phrase) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (Segment segment : segments) {
+			names.addAll(segment.getWordIndex().phraseQuery(phrase));
+		}
+		return names;
+	}
+
+	/**
+	 * Retrieve the documents containing all the terms of the query within
+	 * window consecutive positions. The index must be positional.
+	 *
+	 * @param query
+	 * @param window
+	 * @return the names of the matching documents, in document order
+	 */
+	public ArrayList<String> proximityQuery(String query, int window) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (Segment segment : segments) {
+			names.addAll(segment.getWordIndex().proximityQuery(query, window));
+		}
+		return names;
+	}
+
+	/**
+	 * Inner class, the df and N of the collection, added up over the
+	 * segments the first time they are read and kept for the version of the
+	 * index: every segment of the version reads the same values. Queries read
+	 * them from several threads, so the df are kept in a concurrent map and N
+	 * may be added up by several of them. An update keeps the df of the
+	 * terms it changes, see docFreqChanged, and drops N when it adds or
+	 * removes a document.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private class GlobalStats implements WordIndex.CollectionStats {
+		private final ConcurrentHashMap<String, Integer> docFreqs = new ConcurrentHashMap<String, Integer>();
+		private volatile int numOfDocs = -1;/*-1 until added up*/
+
+		@Override
+		public int numOfDocs() {
+			int n = numOfDocs;
+			if (n < 0) {
+				n = 0;
+				for (Segment segment : segments) {
+					n += segment.getNumOfDocs();
+				}
+				numOfDocs = n;
+			}
+			return n;
+		}
+
+		@Override
+		public int docFreq(String term) {
+			Integer df = docFreqs.get(term);
+			if (df == null) {
+				df = docFreqs.computeIfAbsent(term, t -> {
+					int sum = 0;
+					for (Segment segment : segments) {
+						sum += segment.getWordIndex().documentFrequency(t);
+					}
+					return sum;
+				});
+			}
+			return df;
+		}
+
+		@Override
+		public void docFreqChanged(String term, int oldDf, int newDf) {
+			docFreqs.put(term, newDf);
+			for (Segment segment : segments) {
+				segment.getWordIndex().updateNormSums(term, oldDf, newDf);
+			}
+		}
+
+		/**
+		 * A document was added or removed: N is added up again when next
+		 * read.
+		 */
+		void docsChanged() {
+			numOfDocs = -1;
+		}
+	}
+}
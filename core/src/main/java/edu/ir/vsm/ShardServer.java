@@ -0,0 +1,230 @@
+package edu.ir.vsm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * This class serves an IndexShard to the coordinators of other processes,
+ * which query it through a RemoteShard. Every connection gets its own
+ * thread and sends requests one after the other, each answered before the
+ * next one is read:
+ *
+ * <pre>
+ * NUM_OF_DOCS                                  -> OK numOfDocs
+ * TERM_STATS                                   -> OK n (term df)*n
+ * ATTACH numOfDocs n (term df)*n               -> OK
+ * SEARCH k prune n (term count)*n              -> OK n (docId score docName)*n evaluated skipped
+ * COUNT_BIWORDS query n (docName)*n            -> OK (count)*n
+ * </pre>
+ *
+ * in network byte order, with strings as their length followed by their
+ * UTF-8 bytes. A request that fails is answered with ERROR and a message,
+ * and the connection stays open. A connection that can't be accepted or
+ * fails while served is counted in Metrics and given to the error handler
+ * of the server, if any; the server itself prints nothing.
+ *
+ * @author YAN DENG
+ *
+ */
+public class ShardServer {
+
+	static final byte NUM_OF_DOCS = 1;
+	static final byte TERM_STATS = 2;
+	static final byte ATTACH = 3;
+	static final byte SEARCH = 4;
+	static final byte COUNT_BIWORDS = 5;
+	static final byte OK = 0;
+	static final byte ERROR = -1;
+
+	private final IndexShard shard;
+	private final Consumer<IOException> errorHandler;
+	private ServerSocket server;
+
+	/**
+	 * @param shard
+	 */
+	public ShardServer(IndexShard shard) {
+		this(shard, null);
+	}
+
+	/**
+	 * @param shard
+	 * @param errorHandler
+	 *            receives the errors of the connections, on the thread of the
+	 *            connection or of the server; may be null
+	 */
+	public ShardServer(IndexShard shard, Consumer<IOException> errorHandler) {
+		this.shard = shard;
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Start accepting connections on a background thread.
+	 *
+	 * @param address
+	 *            port 0 for any free port
+	 * @throws IOException
+	 *             if the address can't be bound
+	 */
+	public void start(InetSocketAddress address) throws IOException {
+		server = new ServerSocket();
+		server.bind(address);
+		Thread acceptor = new Thread(this::accept, "shard-server");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * @return the address the server is bound to
+	 */
+	public InetSocketAddress getAddress() {
+		return (InetSocketAddress) server.getLocalSocketAddress();
+	}
+
+	/**
+	 * Stop accepting connections. The open connections are closed by the
+	 * coordinators.
+	 */
+	public void stop() throws IOException {
+		server.close();
+	}
+
+	private void accept() {
+		while (!server.isClosed()) {
+			try {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				Thread connection = new Thread(() -> serve(socket), "shard-connection");
+				connection.setDaemon(true);
+				connection.start();
+			} catch (IOException e) {
+				if (!server.isClosed()) {
+					Metrics.SHARD_ACCEPT_ERRORS.increment();
+					report(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Answer the requests of a connection until it is closed.
+	 */
+	private void serve(Socket socket) {
+		try (socket) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			while (true) {
+				byte request;
+				try {
+					request = in.readByte();
+				} catch (EOFException e) {
+					return;
+				}
+				try {
+					answer(request, in, out);
+				} catch (RuntimeException e) {
+					out.writeByte(ERROR);
+					putString(out, String.valueOf(e.getMessage()));
+				}
+				out.flush();
+			}
+		} catch (IOException e) {
+			Metrics.SHARD_CONNECTION_ERRORS.increment();
+			report(e);
+		}
+	}
+
+	private void report(IOException e) {
+		if (errorHandler != null) {
+			errorHandler.accept(e);
+		}
+	}
+
+	/**
+	 * Read the arguments of a request and write its response. A request
+	 * whose arguments were read may throw before writing anything.
+	 */
+	private void answer(byte request, DataInputStream in, DataOutputStream out) throws IOException {
+		if (request == NUM_OF_DOCS) {
+			int numOfDocs = shard.getNumOfDocs();
+			out.writeByte(OK);
+			out.writeInt(numOfDocs);
+		} else if (request == TERM_STATS) {
+			ArrayList<String> terms = new ArrayList<String>();
+			int[] docFreqs = shard.termStats(terms);
+			out.writeByte(OK);
+			out.writeInt(terms.size());
+			for (int i = 0; i < terms.size(); i++) {
+				putString(out, terms.get(i));
+				out.writeInt(docFreqs[i]);
+			}
+		} else if (request == ATTACH) {
+			int numOfDocs = in.readInt();
+			int n = in.readInt();
+			ArrayList<String> terms = new ArrayList<String>(n);
+			int[] docFreqs = new int[n];
+			for (int i = 0; i < n; i++) {
+				terms.add(getString(in));
+				docFreqs[i] = in.readInt();
+			}
+			shard.attach(new ShardedIndex.GlobalStats(new TermDictionary(terms), docFreqs, numOfDocs));
+			out.writeByte(OK);
+		} else if (request == SEARCH) {
+			int k = in.readInt();
+			boolean prune = in.readBoolean();
+			int n = in.readInt();
+			HashMap<String, Integer> queryTerms = new HashMap<String, Integer>();
+			for (int i = 0; i < n; i++) {
+				String term = getString(in);
+				queryTerms.put(term, in.readInt());
+			}
+			ShardedIndex.Hits hits = shard.search(queryTerms, k, prune);
+			out.writeByte(OK);
+			out.writeInt(hits.size);
+			for (int i = 0; i < hits.size; i++) {
+				out.writeInt(hits.docIds[i]);
+				out.writeDouble(hits.scores[i]);
+				putString(out, hits.docNames[i]);
+			}
+			out.writeLong(hits.stats.postingsEvaluated);
+			out.writeLong(hits.stats.postingsSkipped);
+		} else if (request == COUNT_BIWORDS) {
+			String query = getString(in);
+			int n = in.readInt();
+			ArrayList<StringDoublePair> candidates = new ArrayList<StringDoublePair>(n);
+			for (int i = 0; i < n; i++) {
+				candidates.add(new StringDoublePair(getString(in), 0));
+			}
+			int[] counts = shard.countBiWords(query, candidates);
+			out.writeByte(OK);
+			for (int count : counts) {
+				out.writeInt(count);
+			}
+		} else {
+			throw new IOException("Unknown request " + request + ".");
+		}
+	}
+
+	static void putString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String getString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
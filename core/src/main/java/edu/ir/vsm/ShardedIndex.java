@@ -0,0 +1,513 @@
+package edu.ir.vsm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class answers queries over a collection split into shards, each
+ * holding the indexes of a range of consecutive documents of the folder. A
+ * shard may be an IndexShard of this process or a RemoteShard served by
+ * another process, so the collection needs neither a single heap nor a
+ * single machine.
+ *
+ * The coordinator first gathers the terms of all shards with their df, and
+ * sends every shard the df of the collection and N: the shards weigh their
+ * terms and compute their norms with these statistics, so a document scores
+ * exactly as in a single index of the collection. The coordinator keeps the
+ * terms of the collection in a TermDictionary, which it expands the wildcard
+ * patterns of the queries with.
+ *
+ * A query is tokenized once and sent to all the shards in parallel; every
+ * shard returns its top 2k documents, and the coordinator keeps the 2k best
+ * of them. The documents are numbered in the order of the shards, so ties
+ * are broken as in a single index: the later document first. The merged
+ * candidates are then reranked by the biwords of the query, every shard
+ * counting them in its own documents.
+ *
+ * @author YAN DENG
+ *
+ */
+public class ShardedIndex implements Closeable {
+
+	private final ArrayList<Shard> shards;
+	private final int[] bases;/*number of the first document of every shard*/
+	private final GlobalStats stats;
+	private final ExecutorService pool;
+
+	/**
+	 * A shard of a collection, as seen by the coordinator.
+	 */
+	public interface Shard extends Closeable {
+		/**
+		 * @return the number of documents of the shard
+		 */
+		int getNumOfDocs();
+
+		/**
+		 * @param terms
+		 *            receives the terms of the shard, sorted as
+		 *            TermDictionary.compare sorts them
+		 * @return the df of every term in the shard
+		 */
+		int[] termStats(ArrayList<String> terms);
+
+		/**
+		 * Weigh the terms with the statistics of the collection.
+		 *
+		 * @param stats
+		 */
+		void attach(GlobalStats stats);
+
+		/**
+		 * Retrieve the top 2k documents of the shard.
+		 *
+		 * @param queryTerms
+		 *            the terms of the query with their #appears, without
+		 *            wildcard
+		 * @param k
+		 * @param prune
+		 *            retrieve the documents with MaxScore dynamic pruning
+		 * @return the top 2k documents, best first
+		 */
+		Hits search(HashMap<String, Integer> queryTerms, int k, boolean prune);
+
+		/**
+		 * @param query
+		 * @param candidates
+		 *            documents of the collection
+		 * @return the number of query biwords in each candidate, in the
+		 *         order of candidates, 0 for the documents of other shards
+		 */
+		int[] countBiWords(String query, ArrayList<StringDoublePair> candidates);
+	}
+
+	/**
+	 * The top documents of a shard, numbered in the shard.
+	 */
+	public static class Hits {
+		public final int size;
+		public final int[] docIds;
+		public final double[] scores;
+		public final String[] docNames;
+		public final QueryStats stats;/*postings evaluated and skipped by the shard*/
+
+		public Hits(int size, int[] docIds, double[] scores, String[] docNames, QueryStats stats) {
+			this.size = size;
+			this.docIds = docIds;
+			this.scores = scores;
+			this.docNames = docNames;
+			this.stats = stats;
+		}
+	}
+
+	/**
+	 * Gather the statistics of the collection and attach every shard to
+	 * them.
+	 *
+	 * @param shards
+	 *            in the order of their documents in the folder
+	 * @throws IllegalArgumentException
+	 *             if there is no shard
+	 */
+	public ShardedIndex(List<? extends Shard> shards) {
+		if (shards.isEmpty())
+			throw new IllegalArgumentException("There must be at least one shard.");
+		this.shards = new ArrayList<Shard>(shards);
+		this.bases = new int[shards.size()];
+		int numOfDocs = 0;
+		for (int i = 0; i < shards.size(); i++) {
+			bases[i] = numOfDocs;
+			numOfDocs += shards.get(i).getNumOfDocs();
+		}
+		this.pool = Executors.newFixedThreadPool(shards.size(), runnable -> {
+			Thread thread = new Thread(runnable, "shard-query");
+			thread.setDaemon(true);
+			return thread;
+		});
+		ArrayList<ArrayList<String>> terms = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < shards.size(); i++) {
+			terms.add(new ArrayList<String>());
+		}
+		ArrayList<int[]> docFreqs = fanOut((i, shard) -> shard.termStats(terms.get(i)));
+		this.stats = GlobalStats.merge(terms, docFreqs, numOfDocs);
+		fanOut((i, shard) -> {
+			shard.attach(stats);
+			return null;
+		});
+	}
+
+	/**
+	 * Build the shards of a folder in this process, in parallel.
+	 *
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @param numOfShards
+	 * @param positional
+	 *            build positional word indexes instead of word indexes and
+	 *            biword indexes
+	 * @param codec
+	 *            the codec the word postings are compressed with, may be null
+	 * @return the sharded index of the folder
+	 */
+	public static ShardedIndex build(String path, int numOfShards, boolean positional, PostingsCodec codec) {
+		if (numOfShards < 1)
+			throw new IllegalArgumentException("The number of shards must be positive.");
+		int numOfThreads = Math.max(1, IndexBuilder.defaultNumOfThreads() / numOfShards);
+		ExecutorService builders = Executors.newFixedThreadPool(numOfShards);
+		try {
+			ArrayList<Future<IndexShard>> futures = new ArrayList<Future<IndexShard>>();
+			for (int i = 0; i < numOfShards; i++) {
+				final int shard = i;
+				futures.add(builders.submit(
+						() -> IndexShard.build(path, shard, numOfShards, numOfThreads, positional, codec)));
+			}
+			ArrayList<IndexShard> shards = new ArrayList<IndexShard>();
+			for (Future<IndexShard> future : futures) {
+				shards.add(future.get());
+			}
+			return new ShardedIndex(shards);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Index building was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Failed to build the shards.", e.getCause());
+		} finally {
+			builders.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the shards, in the order of their documents
+	 */
+	public List<Shard> getShards() {
+		return new ArrayList<Shard>(shards);
+	}
+
+	/**
+	 * @return the number of documents of the collection
+	 */
+	public int getNumOfDocs() {
+		return stats.numOfDocs();
+	}
+
+	/**
+	 * @return the number of distinct terms of the collection
+	 */
+	public int getNumOfTerms() {
+		return stats.getTerms().size();
+	}
+
+	/**
+	 * Retrieve the top 2k documents by cosine similarity, and keep the k of
+	 * them containing the most biwords of the query. Nothing is printed.
+	 *
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            if not null, the top 2k documents are retrieved with dynamic
+	 *            pruning and stats receives the number of postings evaluated
+	 *            and skipped over all shards
+	 * @return the top k documents
+	 */
+	public ArrayList<StringDoublePair> search(String query, int k, QueryStats stats) {
+		long start = System.nanoTime();
+		ArrayList<StringDoublePair> topK = rerank(query, searchTop2K(query, k, stats != null, stats), k);
+		Metrics.QUERY.record(System.nanoTime() - start);
+		return topK;
+	}
+
+	/**
+	 * Retrieve the top 2k documents of every shard and keep the 2k best.
+	 * Nothing is printed.
+	 *
+	 * @param query
+	 * @param k
+	 * @param prune
+	 *            retrieve the documents with MaxScore dynamic pruning
+	 * @param stats
+	 *            receives the number of postings evaluated and skipped over
+	 *            all shards, may be null
+	 * @return the top 2k documents, best first
+	 */
+	public ArrayList<StringDoublePair> searchTop2K(String query, int k, boolean prune, QueryStats stats) {
+		Metrics.QueryEvent event = new Metrics.QueryEvent();
+		event.begin();
+		if (stats == null) {
+			stats = new QueryStats();
+		}
+		stats.reset();
+		long start = System.nanoTime();
+		HashMap<String, Integer> queryTerms = expandWildcards(WordIndex.readQuery(query));
+		long tokenized = System.nanoTime();
+		ArrayList<Hits> hits = fanOut((i, shard) -> shard.search(queryTerms, k, prune));
+		long selecting = System.nanoTime();
+		TopKSelector top = new TopKSelector(Math.min(2 * k, getNumOfDocs()));
+		HashMap<Integer, String> names = new HashMap<Integer, String>();
+		for (int i = 0; i < hits.size(); i++) {
+			Hits shardHits = hits.get(i);
+			for (int j = 0; j < shardHits.size; j++) {
+				top.offer(bases[i] + shardHits.docIds[j], shardHits.scores[j]);
+				names.put(bases[i] + shardHits.docIds[j], shardHits.docNames[j]);
+			}
+			stats.postingsEvaluated += shardHits.stats.postingsEvaluated;
+			stats.postingsSkipped += shardHits.stats.postingsSkipped;
+		}
+		ArrayList<StringDoublePair> result = new ArrayList<StringDoublePair>();
+		int n = top.sort();
+		for (int i = 0; i < n; i++) {
+			result.add(new StringDoublePair(names.get(top.index(i)), top.score(i)));
+		}
+		/* the shards score in parallel, so scoring is the time the slowest shard took */
+		stats.tokenizeNanos = tokenized - start;
+		stats.scoringNanos = selecting - tokenized;
+		stats.selectionNanos = System.nanoTime() - selecting;
+		Metrics.recordSearch(event, stats, k, shards.size());
+		return result;
+	}
+
+	/**
+	 * Keep the k documents of the list containing the most biwords of the
+	 * query: every shard counts the biwords of its own candidates.
+	 *
+	 * @param query
+	 * @param top2K
+	 *            the top 2k documents retrieved from this index
+	 * @param k
+	 * @return the top k documents
+	 */
+	public ArrayList<StringDoublePair> rerank(String query, ArrayList<StringDoublePair> top2K, int k) {
+		Metrics.RerankEvent event = new Metrics.RerankEvent();
+		event.begin();
+		long start = System.nanoTime();
+		/* a shard counts nothing for the candidates it doesn't hold */
+		ArrayList<int[]> shardCounts = fanOut((i, shard) -> shard.countBiWords(query, top2K));
+		int[] counts = new int[top2K.size()];
+		for (int[] counted : shardCounts) {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += counted[i];
+			}
+		}
+		ArrayList<StringDoublePair> result = BiWordIndex.selectTopK(top2K, counts, k);
+		Metrics.recordRerank(event, System.nanoTime() - start, top2K.size(), k);
+		return result;
+	}
+
+	/**
+	 * Same as searchTop2K without pruning, and print the result.
+	 */
+	public ArrayList<StringDoublePair> getTop2KDocs(String query, int k) {
+		ArrayList<StringDoublePair> result = searchTop2K(query, k, false, null);
+		WordIndex.printTop2KResult(result, result.size());
+		return result;
+	}
+
+	/**
+	 * Same as rerank, and print the result.
+	 */
+	public ArrayList<StringDoublePair> getTopKDocs(String query, ArrayList<StringDoublePair> top2K, int k) {
+		ArrayList<StringDoublePair> result = rerank(query, top2K, k);
+		BiWordIndex.printTopKResult(result, result.size());
+		return result;
+	}
+
+	/**
+	 * Find the terms of the collection matching a wildcard pattern, see
+	 * WordIndex.expand.
+	 *
+	 * @param pattern
+	 * @return the matching terms, sorted, at most the first
+	 *         WordIndex.MAX_EXPANSIONS of them
+	 */
+	public ArrayList<String> expand(String pattern) {
+		ArrayList<String> terms = new ArrayList<String>();
+		stats.getTerms().expand(pattern.toLowerCase(), (ordinal, term) -> {
+			if (terms.size() < WordIndex.MAX_EXPANSIONS) {
+				terms.add(term);
+			}
+		});
+		return terms;
+	}
+
+	/**
+	 * Replace the wildcard patterns of a query by the terms of the collection
+	 * matching them, like WordIndex.expandWildcards, so that all the shards
+	 * are queried with the same terms.
+	 */
+	private HashMap<String, Integer> expandWildcards(HashMap<String, Integer> queryTerms) {
+		if (!WordIndex.hasWildcard(queryTerms)) {
+			return queryTerms;
+		}
+		HashMap<String, Integer> expanded = new HashMap<String, Integer>();
+		for (String term : queryTerms.keySet()) {
+			int count = queryTerms.get(term);
+			if (term.indexOf(TermDictionary.WILDCARD) < 0) {
+				expanded.merge(term, count, Integer::sum);
+				continue;
+			}
+			TreeSet<String> terms = new TreeSet<String>(TermDictionary::compare);
+			terms.addAll(expand(term));
+			for (String match : terms) {
+				expanded.merge(match, count, Integer::sum);
+			}
+		}
+		return expanded;
+	}
+
+	/**
+	 * Inner class, to run a request on one shard.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private interface Request<T> {
+		T run(int index, Shard shard) throws Exception;
+	}
+
+	/**
+	 * Run a request on every shard in parallel.
+	 *
+	 * @return the results of the shards, in the order of the shards
+	 * @throws IllegalStateException
+	 *             if a shard failed
+	 */
+	private <T> ArrayList<T> fanOut(Request<T> request) {
+		ArrayList<Future<T>> futures = new ArrayList<Future<T>>();
+		for (int i = 0; i < shards.size(); i++) {
+			final int index = i;
+			futures.add(pool.submit(() -> request.run(index, shards.get(index))));
+		}
+		ArrayList<T> results = new ArrayList<T>();
+		try {
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The query was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A shard failed to answer.", e.getCause());
+		}
+		return results;
+	}
+
+	/**
+	 * Close the shards and stop the threads querying them.
+	 */
+	@Override
+	public void close() throws IOException {
+		pool.shutdownNow();
+		for (Shard shard : shards) {
+			shard.close();
+		}
+	}
+
+	/**
+	 * Inner class, the df and N of a sharded collection: the terms of all the
+	 * shards in a TermDictionary, with their df by ordinal. The statistics
+	 * never change, since shards are not updated.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	public static class GlobalStats implements WordIndex.CollectionStats {
+		private final TermDictionary terms;
+		private final int[] docFreqs;
+		private final int numOfDocs;
+
+		/**
+		 * @param terms
+		 *            the terms of the collection
+		 * @param docFreqs
+		 *            the df of every term, by ordinal
+		 * @param numOfDocs
+		 */
+		public GlobalStats(TermDictionary terms, int[] docFreqs, int numOfDocs) {
+			if (docFreqs.length != terms.size())
+				throw new IllegalArgumentException("There must be one df per term.");
+			this.terms = terms;
+			this.docFreqs = docFreqs;
+			this.numOfDocs = numOfDocs;
+		}
+
+		/**
+		 * Add up the df of the terms of the shards, with a merge of their
+		 * sorted terms.
+		 *
+		 * @param terms
+		 *            the terms of every shard, sorted
+		 * @param docFreqs
+		 *            the df of the terms of every shard
+		 * @param numOfDocs
+		 * @return the statistics of the collection
+		 */
+		static GlobalStats merge(List<ArrayList<String>> terms, List<int[]> docFreqs, int numOfDocs) {
+			ArrayList<String> merged = new ArrayList<String>();
+			int[] mergedDocFreqs = new int[16];
+			int[] next = new int[terms.size()];
+			while (true) {
+				String term = null;
+				for (int i = 0; i < terms.size(); i++) {
+					if (next[i] < terms.get(i).size()
+							&& (term == null || TermDictionary.compare(terms.get(i).get(next[i]), term) < 0)) {
+						term = terms.get(i).get(next[i]);
+					}
+				}
+				if (term == null) {
+					break;
+				}
+				int df = 0;
+				for (int i = 0; i < terms.size(); i++) {
+					if (next[i] < terms.get(i).size() && terms.get(i).get(next[i]).equals(term)) {
+						df += docFreqs.get(i)[next[i]++];
+					}
+				}
+				if (merged.size() == mergedDocFreqs.length) {
+					mergedDocFreqs = Arrays.copyOf(mergedDocFreqs, 2 * merged.size());
+				}
+				mergedDocFreqs[merged.size()] = df;
+				merged.add(term);
+			}
+			return new GlobalStats(new TermDictionary(merged),
+					Arrays.copyOf(mergedDocFreqs, merged.size()), numOfDocs);
+		}
+
+		/**
+		 * @return the terms of the collection
+		 */
+		public TermDictionary getTerms() {
+			return terms;
+		}
+
+		/**
+		 * @return the df of every term, by ordinal
+		 */
+		public int[] getDocFreqs() {
+			return docFreqs;
+		}
+
+		@Override
+		public int numOfDocs() {
+			return numOfDocs;
+		}
+
+		@Override
+		public int docFreq(String term) {
+			int ordinal = terms.ordinal(term);
+			return ordinal < 0 ? 0 : docFreqs[ordinal];
+		}
+
+		@Override
+		public void docFreqChanged(String term, int oldDf, int newDf) {
+			throw new IllegalStateException("The shards of a collection are not updated.");
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class publishes the successive snapshots of a segmented index.
+ * Readers get the current snapshot with a single volatile read and never
+ * wait for an update. An update is applied to a copy of the current index,
+ * which shares all the postings the update doesn't touch, and the new
+ * snapshot is published atomically once it is complete. Updates are applied
+ * one at a time.
+ *
+ * After every update the merge policy is asked for segments to merge. A
+ * merge runs on a daemon thread against the snapshot current when it
+ * starts, without blocking updates, and is then published like an update;
+ * the documents deleted from the merged segments meanwhile are deleted from
+ * the merged segment at that point. One merge runs at a time.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SnapshotManager {
+
+	private volatile IndexSnapshot current;
+	private final MergePolicy mergePolicy;
+	private final ExecutorService merger;
+	private boolean merging;/*a merge is scheduled or running*/
+	private long numOfMerges;
+
+	/**
+	 * Callback updating the copy of the index.
+	 */
+	public interface Update {
+		void apply(SegmentedIndex index);
+	}
+
+	/**
+	 * @param wordIndex
+	 * @param biWordIndex
+	 *            the indexes to publish first, as the first segment of the
+	 *            index; they must not be updated directly any more. The
+	 *            biword index is null if the word index is positional
+	 */
+	public SnapshotManager(WordIndex wordIndex, BiWordIndex biWordIndex) {
+		this(wordIndex, biWordIndex, SegmentedIndex.DEFAULT_BUFFER_SIZE, new MergePolicy());
+	}
+
+	/**
+	 * @param wordIndex
+	 * @param biWordIndex
+	 * @param bufferSize
+	 *            number of new documents a segment receives before it is
+	 *            sealed
+	 * @param mergePolicy
+	 */
+	public SnapshotManager(WordIndex wordIndex, BiWordIndex biWordIndex, int bufferSize, MergePolicy mergePolicy) {
+		SegmentedIndex index = new SegmentedIndex(wordIndex, biWordIndex, bufferSize);
+		index.refresh();
+		this.current = new IndexSnapshot(index, 0);
+		this.mergePolicy = mergePolicy;
+		this.merger = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "segment-merger");
+			thread.setDaemon(true);
+			return thread;
+		});
+		Metrics.watch(this);
+	}
+
+	/**
+	 * @return the last published snapshot
+	 */
+	public IndexSnapshot snapshot() {
+		return current;
+	}
+
+	/**
+	 * Apply an update to a copy of the current index and publish it.
+	 *
+	 * @param update
+	 * @return the new snapshot
+	 */
+	public synchronized IndexSnapshot update(Update update) {
+		IndexSnapshot snapshot = current;
+		SegmentedIndex index = snapshot.getIndex().copy();
+		update.apply(index);
+		index.refresh();
+		current = new IndexSnapshot(index, snapshot.getVersion() + 1);
+		Metrics.UPDATES.increment();
+		scheduleMerge();
+		return current;
+	}
+
+	/**
+	 * Wait until no merge is running nor needed.
+	 *
+	 * @throws InterruptedException
+	 */
+	public synchronized void awaitMerges() throws InterruptedException {
+		while (merging) {
+			wait();
+		}
+	}
+
+	/**
+	 * @return the number of merges published
+	 */
+	public synchronized long getNumOfMerges() {
+		return numOfMerges;
+	}
+
+	private synchronized void scheduleMerge() {
+		if (!merging && mergePolicy.findMerge(current.getIndex().getSegments()) != null) {
+			merging = true;
+			merger.execute(this::merge);
+		}
+	}
+
+	/**
+	 * Merge the segments the policy chooses in the current snapshot, and
+	 * publish the result.
+	 */
+	private void merge() {
+		boolean done = false;
+		try {
+			IndexSnapshot snapshot = current;
+			List<Segment> segments = snapshot.getIndex().getSegments();
+			int[] range = mergePolicy.findMerge(segments);
+			if (range != null) {
+				Metrics.MergeEvent event = new Metrics.MergeEvent();
+				event.begin();
+				long start = System.nanoTime();
+				ArrayList<Segment> sources = new ArrayList<Segment>(segments.subList(range[0], range[1]));
+				Segment merged = SegmentedIndex.merge(sources);
+				synchronized (this) {
+					SegmentedIndex index = current.getIndex().copy();
+					index.replaceSegments(sources, merged);
+					index.refresh();
+					current = new IndexSnapshot(index, current.getVersion() + 1);
+					numOfMerges++;
+				}
+				Metrics.recordMerge(event, System.nanoTime() - start, sources.size(), merged.getNumOfDocs());
+			}
+			done = true;
+		} finally {
+			synchronized (this) {
+				merging = false;
+				if (done) {
+					scheduleMerge();/* the merge may call for another one; a failed one waits for the next update */
+				}
+				notifyAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package edu.ir.vsm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * This class builds the word index and the biword index of a folder into an
+ * index file with bounded memory, by single-pass in-memory indexing (SPIMI).
+ * The documents are read in the order of IndexBuilder, and their postings are
+ * collected in an in-memory run until its estimated size reaches the memory
+ * budget; the run is then written to a temporary file with its terms sorted,
+ * and dropped. Once all the documents are read, the runs are merged term by
+ * term with a k-way merge into a file of postings, which is mapped to compute
+ * the norms of the documents and then written as an index file.
+ *
+ * The heap holds the current run, the dictionaries of the merged indexes and
+ * a buffer per run, whatever the size of the postings; the dictionaries are
+ * loaded by IndexFile.open anyway. The temporary files are written next to
+ * the index file and take about twice its uncompressed size. The index file
+ * answers queries like the one IndexBuilder and IndexFile.write produce, only
+ * the terms are in sorted order in the dictionaries. Nothing is printed:
+ * the number of runs and the documents without any term are kept for the
+ * caller.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SpimiIndexer {
+
+	/* Estimated heap bytes of a term of a run, besides its characters, and of an int of its postings
+	   including the unused capacity of the growable arrays */
+	private static final int TERM_BYTES = 120;
+	private static final int INT_BYTES = 6;
+
+	private String path;
+	private long memoryBudget;
+	private boolean positional;
+	private int numOfRuns;
+	private ArrayList<String> emptyDocs = new ArrayList<String>();/*documents without any term, of the last build*/
+
+	/**
+	 * @param path
+	 *            the name of a folder containing document collection
+	 * @param memoryBudget
+	 *            estimated bytes of postings collected in memory before they
+	 *            are written to a run
+	 * @param positional
+	 *            build a positional word index instead of a word index and a
+	 *            biword index
+	 */
+	public SpimiIndexer(String path, long memoryBudget, boolean positional) {
+		if (memoryBudget < 1)
+			throw new IllegalArgumentException("The memory budget must be positive.");
+		this.path = path;
+		this.memoryBudget = memoryBudget;
+		this.positional = positional;
+	}
+
+	/**
+	 * Build the indexes of the folder into an index file, replacing it if it
+	 * exists.
+	 *
+	 * @param file
+	 * @param codec
+	 *            codec of the word postings in the file, may be null
+	 * @throws IOException
+	 */
+	public void build(File file, PostingsCodec codec) throws IOException {
+		Metrics.BuildEvent event = new Metrics.BuildEvent();
+		event.begin();
+		long start = System.nanoTime();
+		ArrayList<File> docs = IndexBuilder.listDocuments(path);
+		File folder = file.getAbsoluteFile().getParentFile();
+		ArrayList<File> wordRuns = new ArrayList<File>();
+		ArrayList<File> biWordRuns = new ArrayList<File>();
+		File postingsFile = null;
+		numOfRuns = 0;
+		emptyDocs = new ArrayList<String>();
+		try {
+			/* Invert the documents into runs */
+			Tokenizer tokenizer = new Tokenizer();
+			Run run = new Run();
+			for (int i = 0; i < docs.size(); i++) {
+				File doc = docs.get(i);
+				HashMap<String, Integer> docTerms = new HashMap<String, Integer>();
+				HashSet<String> docBiWords = positional ? null : new HashSet<String>();
+				HashMap<String, int[]> docPositions = positional ? new HashMap<String, int[]>() : null;
+				IndexBuilder.readFile(tokenizer, doc, docTerms, docBiWords, docPositions);
+				if (docTerms.isEmpty()) {
+					emptyDocs.add(doc.getName());
+				}
+				run.add(i, docTerms, docBiWords, docPositions);
+				if (run.memory >= memoryBudget) {
+					run.write(folder, wordRuns, biWordRuns);
+					run = new Run();
+				}
+			}
+			if (run.memory > 0) {
+				run.write(folder, wordRuns, biWordRuns);
+			}
+
+			/* Merge the runs into a file of postings */
+			postingsFile = File.createTempFile("postings", ".tmp", folder);
+			ArrayList<MergedTerm> words;
+			ArrayList<MergedTerm> biWords;
+			RandomAccessFile raf = new RandomAccessFile(postingsFile, "rw");
+			try {
+				IndexFile.Output out = new IndexFile.Output(raf.getChannel());
+				words = merge(wordRuns, out, true);
+				biWords = positional ? null : merge(biWordRuns, out, false);
+				out.flush();
+			} finally {
+				raf.close();
+			}
+			deleteAll(wordRuns);
+			deleteAll(biWordRuns);
+
+			/* Compute the norms over the mapped postings and write the index file */
+			IndexFile postings = IndexFile.map(postingsFile);
+			WordIndex wordIndex = new WordIndex(path, false, positional);
+			for (File doc : docs) {
+				wordIndex.appendDocument(doc.getName(), null, null);
+			}
+			/* The merged terms are dropped as soon as the indexes hold them */
+			for (int i = 0; i < words.size(); i++) {
+				MergedTerm term = words.set(i, null);
+				wordIndex.addMappedTerm(term.term, term.df, postings.ints(term.docIdsOffset, term.df),
+						postings.ints(term.freqsOffset, term.df), term.numOfPositions,
+						positional ? postings.ints(term.positionsOffset, term.numOfPositions) : null,
+						positional ? postings.ints(term.positionStartsOffset, term.df) : null);
+			}
+			wordIndex.finishBuild();
+			wordIndex.setWriteCodec(codec);
+			BiWordIndex biWordIndex = null;
+			if (!positional) {
+				biWordIndex = new BiWordIndex(path, false);
+				for (File doc : docs) {
+					biWordIndex.appendDocument(doc.getName(), null);
+				}
+				for (int i = 0; i < biWords.size(); i++) {
+					MergedTerm biWord = biWords.set(i, null);
+					biWordIndex.addMappedBiWord(biWord.term, biWord.df, postings.ints(biWord.docIdsOffset, biWord.df));
+				}
+				biWordIndex.finishBuild();
+			}
+			IndexFile.write(file, wordIndex, biWordIndex);
+			Metrics.recordBuild(event, "spimi", docs.size(), IndexBuilder.totalLength(docs), wordIndex.getNumOfTerms(),
+					System.nanoTime() - start);
+		} finally {
+			deleteAll(wordRuns);
+			deleteAll(biWordRuns);
+			if (postingsFile != null) {
+				postingsFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of runs written by the last build
+	 */
+	public int getNumOfRuns() {
+		return numOfRuns;
+	}
+
+	/**
+	 * @return the names of the documents of the last build that don't contain
+	 *         any term
+	 */
+	public ArrayList<String> getEmptyDocuments() {
+		return emptyDocs;
+	}
+
+	/**
+	 * Merge the runs term by term, in sorted order. The postings of a term
+	 * are concatenated in run order, which is document order.
+	 *
+	 * @param runs
+	 * @param out
+	 * @param words
+	 *            word runs, otherwise biword runs
+	 * @return the merged terms, in sorted order, with the positions of their
+	 *         postings in out
+	 * @throws IOException
+	 */
+	private ArrayList<MergedTerm> merge(ArrayList<File> runs, IndexFile.Output out, boolean words)
+			throws IOException {
+		ArrayList<MergedTerm> merged = new ArrayList<MergedTerm>();
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+		ArrayList<RunReader> readers = new ArrayList<RunReader>();
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				RunReader reader = new RunReader(runs.get(i), i);
+				readers.add(reader);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			ArrayList<RunReader> group = new ArrayList<RunReader>();
+			while (!queue.isEmpty()) {
+				group.clear();
+				String term = queue.peek().term;
+				while (!queue.isEmpty() && queue.peek().term.equals(term)) {
+					group.add(queue.poll());/* in run order */
+				}
+				MergedTerm entry = new MergedTerm(term);
+				for (RunReader reader : group) {
+					entry.df += reader.df;
+					entry.numOfPositions += reader.numOfPositions;
+				}
+				entry.docIdsOffset = out.startInts(entry.df);
+				for (RunReader reader : group) {
+					reader.copy(out, reader.df, 0);
+				}
+				if (words) {
+					entry.freqsOffset = out.startInts(entry.df);
+					for (RunReader reader : group) {
+						reader.copy(out, reader.df, 0);
+					}
+				}
+				if (words && positional) {
+					entry.positionStartsOffset = out.startInts(entry.df);
+					int base = 0;
+					for (RunReader reader : group) {
+						reader.copy(out, reader.df, base);
+						base += reader.numOfPositions;
+					}
+					entry.positionsOffset = out.startInts(entry.numOfPositions);
+					for (RunReader reader : group) {
+						reader.copy(out, reader.numOfPositions, 0);
+					}
+				}
+				merged.add(entry);
+				for (RunReader reader : group) {
+					if (reader.next()) {
+						queue.add(reader);
+					}
+				}
+			}
+		} finally {
+			for (RunReader reader : readers) {
+				reader.close();
+			}
+		}
+		return merged;
+	}
+
+	private static void deleteAll(ArrayList<File> files) {
+		for (File file : files) {
+			file.delete();
+		}
+		files.clear();
+	}
+
+	/**
+	 * Inner class, to collect the postings of the documents of a run.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private class Run {
+		HashMap<String, RunPostings> words = new HashMap<String, RunPostings>();
+		HashMap<String, RunPostings> biWords = new HashMap<String, RunPostings>();
+		long memory;/* estimated heap bytes */
+
+		void add(int docId, HashMap<String, Integer> docTerms, HashSet<String> docBiWords,
+				HashMap<String, int[]> docPositions) {
+			for (String term : docTerms.keySet()) {
+				RunPostings postings = words.get(term);
+				if (postings == null) {
+					postings = new RunPostings(true, positional);
+					words.put(term, postings);
+					memory += TERM_BYTES + 2 * term.length();
+				}
+				int freq = docTerms.get(term);
+				postings.add(docId, freq, positional ? docPositions.get(term) : null);
+				memory += (positional ? 3 + freq : 2) * INT_BYTES;
+			}
+			if (docBiWords != null) {
+				for (String biWord : docBiWords) {
+					RunPostings postings = biWords.get(biWord);
+					if (postings == null) {
+						postings = new RunPostings(false, false);
+						biWords.put(biWord, postings);
+						memory += TERM_BYTES + 2 * biWord.length();
+					}
+					postings.add(docId, 0, null);
+					memory += INT_BYTES;
+				}
+			}
+		}
+
+		void write(File folder, ArrayList<File> wordRuns, ArrayList<File> biWordRuns) throws IOException {
+			wordRuns.add(write(words, folder));
+			if (!positional) {
+				biWordRuns.add(write(biWords, folder));
+			}
+			numOfRuns++;
+		}
+
+		/**
+		 * Write the postings of a run to a temporary file, by term order.
+		 *
+		 * Layout of a term: its name, df and number of positions, followed by
+		 * its documents, its frequencies, the starts of the positions of the
+		 * documents relative to the term and the positions, as far as they are
+		 * kept.
+		 */
+		private File write(HashMap<String, RunPostings> postingsMap, File folder) throws IOException {
+			String[] terms = postingsMap.keySet().toArray(new String[postingsMap.size()]);
+			Arrays.sort(terms);
+			File file = File.createTempFile("run", ".tmp", folder);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			try {
+				out.writeInt(terms.length);
+				for (String term : terms) {
+					RunPostings postings = postingsMap.get(term);
+					byte[] name = term.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(name.length);
+					out.write(name);
+					out.writeInt(postings.numOfDocs);
+					out.writeInt(postings.numOfPositions);
+					writeInts(out, postings.docIds, postings.numOfDocs);
+					if (postings.freqs != null) {
+						writeInts(out, postings.freqs, postings.numOfDocs);
+					}
+					if (postings.positions != null) {
+						writeInts(out, postings.positionStarts, postings.numOfDocs);
+						writeInts(out, postings.positions, postings.numOfPositions);
+					}
+				}
+			} finally {
+				out.close();
+			}
+			return file;
+		}
+
+		private void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				out.writeInt(values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Inner class, to store the growable postings of a term in a run. The
+	 * positions are stored as in WordIndex: the first position of the term
+	 * in a document, then the gaps between its positions.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private static class RunPostings {
+		int[] docIds = new int[4];
+		int[] freqs;/* null for a biword */
+		int[] positionStarts;/* null unless the index is positional */
+		int[] positions;
+		int numOfDocs;
+		int numOfPositions;
+
+		RunPostings(boolean withFreqs, boolean withPositions) {
+			if (withFreqs) {
+				freqs = new int[4];
+			}
+			if (withPositions) {
+				positionStarts = new int[4];
+				positions = new int[4];
+			}
+		}
+
+		/**
+		 * @param termPositions
+		 *            #appears followed by the positions of the term in the
+		 *            document, null unless the index is positional
+		 */
+		void add(int docId, int freq, int[] termPositions) {
+			if (numOfDocs == docIds.length) {
+				docIds = Arrays.copyOf(docIds, numOfDocs * 2);
+				if (freqs != null) {
+					freqs = Arrays.copyOf(freqs, numOfDocs * 2);
+				}
+				if (positionStarts != null) {
+					positionStarts = Arrays.copyOf(positionStarts, numOfDocs * 2);
+				}
+			}
+			docIds[numOfDocs] = docId;
+			if (freqs != null) {
+				freqs[numOfDocs] = freq;
+			}
+			if (positions != null) {
+				positionStarts[numOfDocs] = numOfPositions;
+				if (numOfPositions + freq > positions.length) {
+					positions = Arrays.copyOf(positions, Math.max(numOfPositions + freq, positions.length * 2));
+				}
+				for (int i = 1; i <= freq; i++) {
+					positions[numOfPositions++] = i == 1 ? termPositions[i] : termPositions[i] - termPositions[i - 1];
+				}
+			}
+			numOfDocs++;
+		}
+	}
+
+	/**
+	 * Inner class, to read the terms of a run in order.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private class RunReader implements Comparable<RunReader> {
+		private DataInputStream in;
+		private final int number;/* runs are numbered in document order */
+		private int remaining;/* terms not read yet */
+		String term;
+		int df;
+		int numOfPositions;
+
+		RunReader(File file, int number) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+			this.number = number;
+			this.remaining = in.readInt();
+		}
+
+		/**
+		 * Read the header of the next term, once the postings of the current
+		 * one were copied.
+		 *
+		 * @return false if there is no more term
+		 */
+		boolean next() throws IOException {
+			if (remaining == 0) {
+				return false;
+			}
+			remaining--;
+			byte[] name = new byte[in.readInt()];
+			in.readFully(name);
+			term = new String(name, StandardCharsets.UTF_8);
+			df = in.readInt();
+			numOfPositions = in.readInt();
+			return true;
+		}
+
+		/**
+		 * Copy the next count ints of the current term to out, adding base to
+		 * each of them.
+		 */
+		void copy(IndexFile.Output out, int count, int base) throws IOException {
+			for (int i = 0; i < count; i++) {
+				out.putInt(base + in.readInt());
+			}
+		}
+
+		void close() throws IOException {
+			in.close();
+		}
+
+		@Override
+		public int compareTo(RunReader o) {
+			int c = term.compareTo(o.term);
+			return c != 0 ? c : Integer.compare(number, o.number);
+		}
+	}
+
+	/**
+	 * Inner class, to store a merged term and the positions of its postings.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private static class MergedTerm {
+		final String term;
+		int df;
+		int numOfPositions;
+		long docIdsOffset;
+		long freqsOffset;
+		long positionStartsOffset;
+		long positionsOffset;
+
+		MergedTerm(String term) {
+			this.term = term;
+		}
+	}
+}
@@ -1,3 +1,5 @@
+package edu.ir.vsm;
+
 /**
  * This class store the docName, value pairs.
  * @author YAN
@@ -0,0 +1,423 @@
+package edu.ir.vsm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is an immutable dictionary of sorted terms, mapping every term
+ * to its ordinal, its rank in the dictionary, and back. The terms are
+ * sorted by code point, which is the order of their UTF-8 bytes, and
+ * front-coded in blocks of BLOCK_SIZE terms: the first term of a block is
+ * stored whole, and every other term as the length of the prefix it shares
+ * with the term before it followed by the rest of its bytes. All the blocks
+ * are held in a single byte array, so the dictionary costs a few bytes per
+ * term and no object per term.
+ *
+ * A term is looked up by a binary search over the first terms of the
+ * blocks, compared in place, followed by a scan of one block. The term
+ * looked up is compared to the bytes of the block as it is encoded, so a
+ * lookup allocates no byte array for it. The terms
+ * starting with a prefix are a range of ordinals, which lets wildcard
+ * patterns such as comput* be expanded without scanning the dictionary.
+ *
+ * A TermDictionary is immutable, so any number of threads may read it.
+ *
+ * @author YAN DENG
+ *
+ */
+public class TermDictionary implements Iterable<String> {
+
+	public static final int BLOCK_SIZE = 16;
+
+	/* The wildcard of the patterns, matching any sequence of characters. */
+	public static final char WILDCARD = '*';
+
+	private final int size;
+	private final byte[] data;
+	private final int[] blockOffsets;/*offset of the first term of every block in data*/
+
+	/**
+	 * Callback receiving the terms matching a pattern, see expand.
+	 */
+	public interface TermHandler {
+		void term(int ordinal, String term);
+	}
+
+	/**
+	 * @param terms
+	 *            distinct terms, sorted as compare sorts them
+	 * @throws IllegalArgumentException
+	 *             if the terms are not sorted or not distinct
+	 */
+	public TermDictionary(List<String> terms) {
+		this.size = terms.size();
+		this.blockOffsets = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+		byte[] data = new byte[Math.max(16, size * 4)];
+		int length = 0;
+		byte[] previous = null;
+		String previousTerm = null;
+		for (int i = 0; i < size; i++) {
+			String term = terms.get(i);
+			if (previousTerm != null && compare(previousTerm, term) >= 0)
+				throw new IllegalArgumentException("The terms must be distinct and sorted: " + previousTerm
+						+ " comes before " + term + ".");
+			byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+			/* at most two var ints of 5 bytes before the bytes of the term */
+			if (length + 10 + bytes.length > data.length) {
+				data = Arrays.copyOf(data, Math.max(length + 10 + bytes.length, data.length * 2));
+			}
+			int shared = 0;
+			if (i % BLOCK_SIZE == 0) {
+				blockOffsets[i / BLOCK_SIZE] = length;
+			} else {
+				int max = Math.min(previous.length, bytes.length);
+				while (shared < max && previous[shared] == bytes[shared]) {
+					shared++;
+				}
+				length = putVInt(data, length, shared);
+			}
+			length = putVInt(data, length, bytes.length - shared);
+			System.arraycopy(bytes, shared, data, length, bytes.length - shared);
+			length += bytes.length - shared;
+			previous = bytes;
+			previousTerm = term;
+		}
+		this.data = Arrays.copyOf(data, length);
+	}
+
+	/**
+	 * @return the number of terms
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of bytes of the arrays holding the terms
+	 */
+	public long sizeInBytes() {
+		return data.length + 4L * blockOffsets.length;
+	}
+
+	/**
+	 * @param term
+	 * @return the ordinal of the term, or -1 if it is not in the dictionary
+	 */
+	public int ordinal(String term) {
+		int ordinal = ceiling(term, false);
+		if (ordinal == size) {
+			return -1;
+		}
+		Cursor cursor = new Cursor(ordinal);
+		cursor.next();
+		return cursor.compareTo(term, false) == 0 ? ordinal : -1;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return the term of the given ordinal
+	 * @throws IndexOutOfBoundsException
+	 *             if there is no such term
+	 */
+	public String term(int ordinal) {
+		if (ordinal < 0 || ordinal >= size)
+			throw new IndexOutOfBoundsException("Ordinal " + ordinal + " out of " + size + " terms.");
+		Cursor cursor = new Cursor(ordinal);
+		cursor.next();
+		return cursor.term();
+	}
+
+	/**
+	 * @param prefix
+	 * @return the first (inclusive) and last (exclusive) ordinals of the
+	 *         terms starting with the prefix
+	 */
+	public int[] prefixRange(String prefix) {
+		int from = ceiling(prefix, false);
+		/* the terms starting with the prefix compare equal to it, the range ends at the first term after them */
+		int to = prefix.isEmpty() ? size : ceiling(prefix, true);
+		return new int[] { from, to };
+	}
+
+	/**
+	 * Pass the terms matching a pattern to the handler, in the order of the
+	 * dictionary. WILDCARD matches any sequence of characters, the other
+	 * characters themselves; only the terms starting with the characters
+	 * before the first WILDCARD are read, so a pattern starting with a
+	 * WILDCARD reads the whole dictionary.
+	 *
+	 * @param pattern
+	 * @param handler
+	 */
+	public void expand(String pattern, TermHandler handler) {
+		int wildcard = pattern.indexOf(WILDCARD);
+		if (wildcard < 0) {
+			int ordinal = ordinal(pattern);
+			if (ordinal >= 0) {
+				handler.term(ordinal, pattern);
+			}
+			return;
+		}
+		int[] range = prefixRange(pattern.substring(0, wildcard));
+		Cursor cursor = new Cursor(range[0]);
+		for (int ordinal = range[0]; ordinal < range[1]; ordinal++) {
+			cursor.next();
+			String term = cursor.term();
+			if (matches(pattern, term)) {
+				handler.term(ordinal, term);
+			}
+		}
+	}
+
+	/**
+	 * @return the terms in the order of their ordinals
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return iterator(0);
+	}
+
+	/**
+	 * @param from
+	 *            ordinal of the first term
+	 * @return the terms from the given ordinal on
+	 */
+	public Iterator<String> iterator(int from) {
+		Cursor cursor = new Cursor(Math.min(from, size));
+		return new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return cursor.ordinal + 1 < size;
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				cursor.next();
+				return cursor.term();
+			}
+		};
+	}
+
+	/**
+	 * @param key
+	 * @param prefix
+	 *            true to compare the terms starting with the key equal to it
+	 * @return the ordinal of the first term not before the key, or of the
+	 *         first term after the key if prefix is true, size if there is
+	 *         none
+	 */
+	private int ceiling(String key, boolean prefix) {
+		/* the last block whose first term is not after the key */
+		int low = 0;
+		int high = blockOffsets.length - 1;
+		int block = -1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int offset = blockOffsets[middle];
+			int length = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[offset++];
+				length |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			if (compare(data, offset, offset + length, key, prefix) <= 0) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if (block < 0) {
+			return 0;
+		}
+		Cursor cursor = new Cursor(block * BLOCK_SIZE);
+		int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+		for (int ordinal = block * BLOCK_SIZE; ordinal < end; ordinal++) {
+			cursor.next();
+			if (cursor.compareTo(key, prefix) >= (prefix ? 1 : 0)) {
+				return ordinal;
+			}
+		}
+		return end;
+	}
+
+	/**
+	 * @return true if the term matches the pattern, where WILDCARD matches
+	 *         any sequence of characters
+	 */
+	public static boolean matches(String pattern, String term) {
+		int p = 0;
+		int t = 0;
+		int star = -1;/*position of the last WILDCARD met in the pattern*/
+		int mark = 0;/*position in the term that WILDCARD was matched from*/
+		while (t < term.length()) {
+			if (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+				star = p++;
+				mark = t;
+			} else if (p < pattern.length() && pattern.charAt(p) == term.charAt(t)) {
+				p++;
+				t++;
+			} else if (star >= 0) {
+				p = star + 1;
+				t = ++mark;
+			} else {
+				return false;
+			}
+		}
+		while (p < pattern.length() && pattern.charAt(p) == WILDCARD) {
+			p++;
+		}
+		return p == pattern.length();
+	}
+
+	/**
+	 * Compare two terms in the order of the dictionary, the order of their
+	 * code points: it only differs from String.compareTo for the characters
+	 * encoded by surrogate pairs, which come after all the other ones.
+	 *
+	 * @param a
+	 * @param b
+	 * @return a negative number, zero or a positive number if a comes before,
+	 *         is equal to or comes after b
+	 */
+	public static int compare(String a, String b) {
+		int n = Math.min(a.length(), b.length());
+		for (int i = 0; i < n; i++) {
+			char x = a.charAt(i);
+			char y = b.charAt(i);
+			if (x != y) {
+				if (x >= Character.MIN_SURROGATE && y >= Character.MIN_SURROGATE) {
+					/* move the surrogates after U+E000..U+FFFF */
+					x += x >= 0xE000 ? -0x800 : 0x2000;
+					y += y >= 0xE000 ? -0x800 : 0x2000;
+				}
+				return x - y;
+			}
+		}
+		return a.length() - b.length();
+	}
+
+	/**
+	 * Compare UTF-8 bytes to a term, encoding the term as it goes: an
+	 * unpaired surrogate is encoded as '?', as String.getBytes encodes it.
+	 *
+	 * @param bytes
+	 * @param from
+	 *            offset of the first byte (inclusive)
+	 * @param to
+	 *            offset of the last byte (exclusive)
+	 * @param key
+	 * @param prefix
+	 *            true to compare the bytes starting with the key equal to it
+	 * @return a negative number, zero or a positive number if the bytes come
+	 *         before, are equal to or come after the key
+	 */
+	private static int compare(byte[] bytes, int from, int to, String key, boolean prefix) {
+		int i = from;
+		for (int k = 0; k < key.length();) {
+			int c = key.codePointAt(k);
+			k += Character.charCount(c);
+			if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				c = '?';
+			}
+			int n = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+			for (int j = n - 1; j >= 0; j--) {
+				int b;
+				if (n == 1) {
+					b = c;
+				} else if (j == n - 1) {
+					b = (0xFF00 >> n) & 0xFF | c >> 6 * j;/*0xC0, 0xE0 or 0xF0 with the high bits*/
+				} else {
+					b = 0x80 | (c >> 6 * j) & 0x3F;
+				}
+				if (i == to) {
+					return -1;
+				}
+				int d = (bytes[i++] & 0xFF) - b;
+				if (d != 0) {
+					return d;
+				}
+			}
+		}
+		return i == to || prefix ? 0 : 1;
+	}
+
+	private static int putVInt(byte[] data, int offset, int value) {
+		while ((value & ~0x7F) != 0) {
+			data[offset++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data[offset++] = (byte) value;
+		return offset;
+	}
+
+	/**
+	 * Inner class, to decode the terms one after the other from the start of
+	 * the block of an ordinal. The bytes of the current term are rebuilt in a
+	 * buffer from the prefix shared with the term before it.
+	 *
+	 * @author YAN DENG
+	 *
+	 */
+	private class Cursor {
+		private int ordinal;/*ordinal of the current term*/
+		private int offset;/*offset of the next term in data*/
+		private byte[] term = new byte[32];
+		private int length;
+
+		/**
+		 * @param target
+		 *            the ordinal of the term the first next() moves to
+		 */
+		Cursor(int target) {
+			int block = Math.min(target / BLOCK_SIZE, Math.max(0, blockOffsets.length - 1));
+			this.ordinal = block * BLOCK_SIZE - 1;
+			this.offset = blockOffsets.length == 0 ? 0 : blockOffsets[block];
+			while (this.ordinal + 1 < target && this.ordinal + 1 < size) {
+				next();
+			}
+		}
+
+		/**
+		 * Move to the next term.
+		 */
+		void next() {
+			ordinal++;
+			int shared = ordinal % BLOCK_SIZE == 0 ? 0 : getVInt();
+			int suffix = getVInt();
+			if (shared + suffix > term.length) {
+				term = Arrays.copyOf(term, Math.max(shared + suffix, term.length * 2));
+			}
+			System.arraycopy(data, offset, term, shared, suffix);
+			offset += suffix;
+			length = shared + suffix;
+		}
+
+		private int getVInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[offset++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+
+		int compareTo(String key, boolean prefix) {
+			return compare(term, 0, length, key, prefix);
+		}
+
+		String term() {
+			return new String(term, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
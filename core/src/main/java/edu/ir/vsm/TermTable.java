@@ -0,0 +1,175 @@
+package edu.ir.vsm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class maps the terms of a WordIndex or a BiWordIndex to their term
+ * indexes. The terms of a sealed index are held by a TermDictionary, whose
+ * ordinals are the term indexes; the terms added since are held by a
+ * HashMap and take the following indexes, until seal() sorts all the terms
+ * into a new dictionary. An index that is no longer updated thus keeps its
+ * terms front-coded, without a String nor a HashMap node per term.
+ *
+ * Like the index it belongs to, a TermTable is only read once published,
+ * and updated on an unpublished copy.
+ *
+ * @author YAN DENG
+ *
+ */
+class TermTable {
+
+	private static final TermDictionary EMPTY = new TermDictionary(new ArrayList<String>());
+
+	private TermDictionary dictionary;
+	private HashMap<String, Integer> addedMap;/*the terms added since the dictionary was built*/
+	private ArrayList<String> addedList;
+
+	TermTable() {
+		this.dictionary = EMPTY;
+		this.addedMap = new HashMap<String, Integer>();
+		this.addedList = new ArrayList<String>();
+	}
+
+	/**
+	 * @return the number of terms
+	 */
+	int size() {
+		return dictionary.size() + addedList.size();
+	}
+
+	/**
+	 * @param term
+	 * @return the index of the term, or -1 if it is not in the table
+	 */
+	int indexOf(String term) {
+		if (!addedMap.isEmpty()) {
+			Integer index = addedMap.get(term);
+			if (index != null) {
+				return index;
+			}
+		}
+		return dictionary.ordinal(term);
+	}
+
+	/**
+	 * @param index
+	 * @return the term of the given index
+	 */
+	String term(int index) {
+		return index < dictionary.size() ? dictionary.term(index) : addedList.get(index - dictionary.size());
+	}
+
+	/**
+	 * @param term
+	 *            a term not in the table
+	 * @return the index of the term, the last one
+	 */
+	int add(String term) {
+		int index = size();
+		addedMap.put(term, index);
+		addedList.add(term);
+		return index;
+	}
+
+	/**
+	 * @return the terms in the order of their indexes
+	 */
+	Iterator<String> iterator() {
+		Iterator<String> sealed = dictionary.iterator();
+		Iterator<String> added = addedList.iterator();
+		return new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return sealed.hasNext() || added.hasNext();
+			}
+
+			@Override
+			public String next() {
+				return sealed.hasNext() ? sealed.next() : added.next();
+			}
+		};
+	}
+
+	/**
+	 * Pass the terms matching a pattern to the handler with their indexes,
+	 * see TermDictionary.expand. The terms added since the last seal() are
+	 * scanned.
+	 *
+	 * @param pattern
+	 * @param handler
+	 */
+	void expand(String pattern, TermDictionary.TermHandler handler) {
+		dictionary.expand(pattern, handler);
+		for (int i = 0; i < addedList.size(); i++) {
+			if (TermDictionary.matches(pattern, addedList.get(i))) {
+				handler.term(dictionary.size() + i, addedList.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Sort all the terms into a new dictionary. The terms of the old
+	 * dictionary are already sorted, so only the added terms are sorted
+	 * before both are merged.
+	 *
+	 * @return the old index of the term of every new index, or null if no
+	 *         term changed its index
+	 */
+	int[] seal() {
+		if (addedList.isEmpty()) {
+			return null;
+		}
+		int numOfSealed = dictionary.size();
+		Integer[] added = new Integer[addedList.size()];
+		for (int i = 0; i < added.length; i++) {
+			added[i] = i;
+		}
+		Arrays.sort(added, (a, b) -> TermDictionary.compare(addedList.get(a), addedList.get(b)));
+		List<String> terms = new ArrayList<String>(size());
+		int[] oldIndexes = new int[size()];
+		Iterator<String> sealed = dictionary.iterator();
+		String next = sealed.hasNext() ? sealed.next() : null;
+		int i = 0;
+		int a = 0;
+		while (next != null || a < added.length) {
+			if (next != null && (a == added.length || TermDictionary.compare(next, addedList.get(added[a])) < 0)) {
+				oldIndexes[terms.size()] = i++;
+				terms.add(next);
+				next = sealed.hasNext() ? sealed.next() : null;
+			} else {
+				oldIndexes[terms.size()] = numOfSealed + added[a];
+				terms.add(addedList.get(added[a++]));
+			}
+		}
+		boolean moved = false;
+		for (int index = 0; index < oldIndexes.length; index++) {
+			moved |= oldIndexes[index] != index;
+		}
+		dictionary = new TermDictionary(terms);
+		addedMap = new HashMap<String, Integer>();
+		addedList = new ArrayList<String>();
+		return moved ? oldIndexes : null;
+	}
+
+	/**
+	 * @return a copy of the table sharing its dictionary
+	 */
+	TermTable copy() {
+		TermTable copy = new TermTable();
+		copy.dictionary = dictionary;
+		copy.addedMap.putAll(addedMap);
+		copy.addedList.addAll(addedList);
+		return copy;
+	}
+
+	/**
+	 * @return the number of bytes of the sealed terms
+	 */
+	long sizeInBytes() {
+		return dictionary.sizeInBytes();
+	}
+}
@@ -0,0 +1,181 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Locale;
+
+/**
+ * This class splits a text into terms. A term is a maximal run of characters
+ * that are neither white space nor one of , . : ; ' and is lower-cased.
+ * Terms shorter than 3 characters and the word "the" are STOP words and are
+ * dropped. The text is scanned character by character from a reusable
+ * buffer, and the terms are passed to a TokenHandler in the order they
+ * appear. The read buffer is only allocated by the first reader tokenized,
+ * so a Tokenizer of short texts such as queries is cheap.
+ *
+ * A Tokenizer reuses its buffers and must not be shared between threads.
+ *
+ * @author YAN DENG
+ *
+ */
+public class Tokenizer {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private CharBuffer buffer;/* null until a reader is tokenized */
+	private char[] token;
+	private int length;
+	private boolean ascii;
+	/* ASCII letters can be lower-cased in place unless the locale has special rules for them */
+	private boolean asciiLowerCase;
+
+	public Tokenizer() {
+		this.token = new char[64];
+		this.length = 0;
+		this.ascii = true;
+		String language = Locale.getDefault().getLanguage();
+		this.asciiLowerCase = !(language.equals("tr") || language.equals("az") || language.equals("lt"));
+	}
+
+	/**
+	 * Callback receiving the terms of a text.
+	 */
+	public interface TokenHandler {
+		void token(String term);
+	}
+
+	/**
+	 * Tokenize the given file, decoded with the default charset.
+	 *
+	 * @param file
+	 * @param handler
+	 */
+	public void tokenize(File file, TokenHandler handler) {
+		try {
+			Reader reader = new InputStreamReader(new FileInputStream(file));
+			try {
+				tokenize(reader, handler);
+			} finally {
+				reader.close();
+			}
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Tokenize all the characters of the reader.
+	 *
+	 * @param reader
+	 * @param handler
+	 * @throws IOException
+	 */
+	public void tokenize(Reader reader, TokenHandler handler) throws IOException {
+		length = 0;
+		ascii = true;
+		if (buffer == null) {
+			buffer = CharBuffer.allocate(BUFFER_SIZE);
+		}
+		buffer.clear();
+		while (reader.read(buffer) != -1) {
+			scan(buffer.array(), 0, buffer.position(), handler);
+			buffer.clear();
+		}
+		emit(handler);
+	}
+
+	/**
+	 * Tokenize a text held in memory.
+	 *
+	 * @param text
+	 * @param handler
+	 */
+	public void tokenize(CharSequence text, TokenHandler handler) {
+		length = 0;
+		ascii = true;
+		for (int i = 0; i < text.length(); i++) {
+			next(text.charAt(i), handler);
+		}
+		emit(handler);
+	}
+
+	private void scan(char[] chars, int from, int to, TokenHandler handler) {
+		for (int i = from; i < to; i++) {
+			next(chars[i], handler);
+		}
+	}
+
+	private void next(char c, TokenHandler handler) {
+		if (isDelimiter(c)) {
+			emit(handler);
+			return;
+		}
+		if (c >= 128) {
+			ascii = false;
+		} else if (c >= 'A' && c <= 'Z' && asciiLowerCase) {
+			c = (char) (c + ('a' - 'A'));
+		}
+		if (length == token.length) {
+			char[] larger = new char[length * 2];
+			System.arraycopy(token, 0, larger, 0, length);
+			token = larger;
+		}
+		token[length++] = c;
+	}
+
+	/**
+	 * Pass the term in the token buffer to the handler unless it is a STOP
+	 * word, and clear the buffer.
+	 */
+	private void emit(TokenHandler handler) {
+		if (length == 0) {
+			return;
+		}
+		if (ascii && asciiLowerCase) {
+			if (!(length < 3 || (length == 3 && token[0] == 't' && token[1] == 'h' && token[2] == 'e'))) {
+				handler.token(new String(token, 0, length));
+			}
+		} else {
+			/* Lower-casing may change the length of non ASCII terms. */
+			String word = new String(token, 0, length).toLowerCase();
+			if (!(word.length() < 3 || (word.length() == 3 && word.equals("the")))) {
+				handler.token(word);
+			}
+		}
+		length = 0;
+		ascii = true;
+	}
+
+	/**
+	 * @return true for the characters terms are split on: , . : ; ' white
+	 *         space and line separators
+	 */
+	private static boolean isDelimiter(char c) {
+		switch (c) {
+		case ',':
+		case '.':
+		case ':':
+		case ';':
+		case '\'':
+		case ' ':
+		case '\t':
+		case '\n':
+		case '\u000B':
+		case '\f':
+		case '\r':
+		case '\u0085':
+		case '\u2028':
+		case '\u2029':
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package edu.ir.vsm;
+
+/**
+ * This class selects the k best entries out of a stream of scored entries
+ * with a bounded min-heap of primitive arrays, in O(n log k) time and
+ * without allocating anything per entry. An entry is better than another if
+ * it has a higher count, then a higher score, then a higher index. This is
+ * the order the documents had when the whole list was sorted in ascending
+ * order and read from the end. A selector may be reset and reused, keeping
+ * its arrays.
+ *
+ * @author YAN DENG
+ *
+ */
+public class TopKSelector {
+
+	private int[] indexes;
+	private int[] counts;
+	private double[] scores;
+	private int k;
+	private int size;
+
+	/**
+	 * @param k
+	 *            number of entries to keep
+	 */
+	public TopKSelector(int k) {
+		k = Math.max(0, k);
+		this.indexes = new int[k];
+		this.counts = new int[k];
+		this.scores = new double[k];
+		this.k = k;
+		this.size = 0;
+	}
+
+	/**
+	 * Drop the kept entries, growing the arrays only if they are too small.
+	 *
+	 * @param k
+	 *            number of entries to keep from now on
+	 */
+	public void reset(int k) {
+		k = Math.max(0, k);
+		if (k > indexes.length) {
+			indexes = new int[k];
+			counts = new int[k];
+			scores = new double[k];
+		}
+		this.k = k;
+		this.size = 0;
+	}
+
+	/**
+	 * @param scores
+	 * @param n
+	 *            number of entries of scores to select from
+	 * @param k
+	 * @return the indexes of the min(k, n) best entries, best first
+	 */
+	public static int[] select(double[] scores, int n, int k) {
+		return select(null, scores, n, k);
+	}
+
+	/**
+	 * @param counts
+	 *            compared before the scores, may be null
+	 * @param scores
+	 * @param n
+	 *            number of entries to select from
+	 * @param k
+	 * @return the indexes of the min(k, n) best entries, best first
+	 */
+	public static int[] select(int[] counts, double[] scores, int n, int k) {
+		TopKSelector selector = new TopKSelector(Math.min(k, n));
+		for (int i = 0; i < n; i++) {
+			selector.offer(i, counts == null ? 0 : counts[i], scores[i]);
+		}
+		int[] result = new int[selector.sort()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = selector.index(i);
+		}
+		return result;
+	}
+
+	public void offer(int index, double score) {
+		offer(index, 0, score);
+	}
+
+	/**
+	 * Keep the entry if the heap is not full or if it is better than the
+	 * worst entry kept.
+	 */
+	public void offer(int index, int count, double score) {
+		if (size < k) {
+			indexes[size] = index;
+			counts[size] = count;
+			scores[size] = score;
+			siftUp(size++);
+		} else if (size > 0 && better(index, count, score, 0)) {
+			indexes[0] = index;
+			counts[0] = count;
+			scores[0] = score;
+			siftDown(0);
+		}
+	}
+
+	public boolean isFull() {
+		return size == k;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the score of the worst entry kept
+	 */
+	public double minScore() {
+		return scores[0];
+	}
+
+	/**
+	 * Sort the kept entries best first. After this call the selector is no
+	 * longer a heap and only index() and score() may be used.
+	 *
+	 * @return the number of entries kept
+	 */
+	public int sort() {
+		int n = size;
+		while (size > 1) {
+			swap(0, --size);
+			siftDown(0);
+		}
+		size = n;
+		return n;
+	}
+
+	/**
+	 * @return the index of the i-th best entry, once sorted
+	 */
+	public int index(int i) {
+		return indexes[i];
+	}
+
+	/**
+	 * @return the score of the i-th best entry, once sorted
+	 */
+	public double score(int i) {
+		return scores[i];
+	}
+
+	private boolean better(int index, int count, double score, int i) {
+		if (count != counts[i]) {
+			return count > counts[i];
+		}
+		if (score != scores[i]) {
+			return score > scores[i];
+		}
+		return index > indexes[i];
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!better(indexes[parent], counts[parent], scores[parent], i)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && better(indexes[child], counts[child], scores[child], child + 1)) {
+				child++;
+			}
+			if (!better(indexes[i], counts[i], scores[i], child)) {
+				break;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		int index = indexes[i];
+		indexes[i] = indexes[j];
+		indexes[j] = index;
+		int count = counts[i];
+		counts[i] = counts[j];
+		counts[j] = count;
+		double score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+}
@@ -0,0 +1,58 @@
+package edu.ir.vsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class encodes every value on as few bytes as possible: 7 bits per
+ * byte, least significant bits first, the high bit of a byte telling whether
+ * another byte follows.
+ *
+ * @author YAN DENG
+ *
+ */
+public class VByteCodec implements PostingsCodec {
+
+	static final String NAME = "vbyte";
+
+	@Override
+	public String name() {
+		return NAME;
+	}
+
+	@Override
+	public void encode(int[] values, int count, ByteBuffer out) {
+		for (int i = 0; i < count; i++) {
+			putVInt(values[i], out);
+		}
+	}
+
+	@Override
+	public void decode(ByteBuffer in, int[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			values[i] = getVInt(in);
+		}
+	}
+
+	@Override
+	public int maxEncodedSize(int count) {
+		return 5 * count;
+	}
+
+	static void putVInt(int value, ByteBuffer out) {
+		while ((value & ~0x7F) != 0) {
+			out.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	static int getVInt(ByteBuffer in) {
+		byte b = in.get();
+		int value = b & 0x7F;
+		for (int shift = 7; b < 0; shift += 7) {
+			b = in.get();
+			value |= (b & 0x7F) << shift;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,97 @@
+package edu.ir.vsm;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class runs the loops of ScoringKernel with the Vector API, on the
+ * widest vectors of the processor: the postings of a term are added to the
+ * scores with a gather and a scatter of the scores of their documents, and
+ * the documents of a block are compared to the worst of the top documents
+ * a vector at a time. Only loaded by ScoringKernel.vector(), once the
+ * incubator module is known to be there.
+ *
+ * Every lane computes the same operations in the same order as the scalar
+ * kernel, a multiplication then an addition without fused multiply-add, so
+ * both kernels compute exactly the same scores.
+ *
+ * @author YAN DENG
+ *
+ */
+final class VectorScoringKernel extends ScoringKernel {
+
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	/* as many shorts as floats, null if the vectors are too short to hold them */
+	private static final VectorSpecies<Short> SHORTS = FLOATS.vectorBitSize() >= 128
+			? VectorSpecies.of(short.class, VectorShape.forBitSize(FLOATS.vectorBitSize() / 2))
+			: null;
+
+	@Override
+	public String name() {
+		return "vector";
+	}
+
+	@Override
+	void accumulate(float[] scores, int base, int[] docIds, short[] quanta, int from, int to, float scale) {
+		if (SHORTS == null) {
+			super.accumulate(scores, base, docIds, quanta, from, to, scale);
+			return;
+		}
+		int i = from;
+		for (int bound = from + FLOATS.loopBound(to - from); i < bound; i += FLOATS.length()) {
+			FloatVector weights = (FloatVector) ShortVector.fromArray(SHORTS, quanta, i)
+					.convertShape(VectorOperators.S2F, FLOATS, 0);
+			/* the documents of a term are distinct, so no lane scatters over another */
+			FloatVector.fromArray(FLOATS, scores, -base, docIds, i).add(weights.mul(scale))
+					.intoArray(scores, -base, docIds, i);
+		}
+		for (; i < to; i++) {
+			scores[docIds[i] - base] += quanta[i] * scale;
+		}
+	}
+
+	@Override
+	void normalize(float[] scores, int base, int n, float[] inverseNorms, float inverseQueryNorm) {
+		int i = 0;
+		for (int bound = FLOATS.loopBound(n); i < bound; i += FLOATS.length()) {
+			FloatVector.fromArray(FLOATS, scores, i).mul(FloatVector.fromArray(FLOATS, inverseNorms, base + i))
+					.mul(inverseQueryNorm).intoArray(scores, i);
+		}
+		for (; i < n; i++) {
+			scores[i] = scores[i] * inverseNorms[base + i] * inverseQueryNorm;
+		}
+	}
+
+	@Override
+	void select(float[] scores, int base, int n, TopKSelector top) {
+		int i = fill(scores, base, n, top);
+		if (i == n) {
+			return;
+		}
+		float min = (float) top.minScore();
+		for (int bound = i + FLOATS.loopBound(n - i); i < bound; i += FLOATS.length()) {
+			VectorMask<Float> candidates = FloatVector.fromArray(FLOATS, scores, i).compare(VectorOperators.GE, min);
+			if (!candidates.anyTrue()) {
+				continue;
+			}
+			/* offered in document order, each against the worst score so far */
+			for (long lanes = candidates.toLong(); lanes != 0; lanes &= lanes - 1) {
+				int doc = i + Long.numberOfTrailingZeros(lanes);
+				if (scores[doc] >= min) {
+					top.offer(base + doc, scores[doc]);
+					min = (float) top.minScore();
+				}
+			}
+		}
+		for (; i < n; i++) {
+			if (scores[i] >= min) {
+				top.offer(base + i, scores[i]);
+				min = (float) top.minScore();
+			}
+		}
+	}
+}
@@ -0,0 +1,2651 @@
+package edu.ir.vsm;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class build an index for single words.
+ * 
+ * Queries only read the index and keep their state in local variables, so a
+ * refreshed index may be queried by any number of threads. Updates are not
+ * synchronized: they are applied to a copy that is published once complete
+ * (see SnapshotManager).
+ * 
+ * The index may be one segment of a collection (see SegmentedIndex): its
+ * terms are then weighed with the df and N of the whole collection, so the
+ * scores of its documents can be compared with those of the other segments.
+ * 
+ * @author YAN DENG
+ *
+ */
+public class WordIndex {
+
+	/* Number of terms a wildcard pattern of a query is expanded to at most. */
+	public static final int MAX_EXPANSIONS = 1024;
+
+	private String path;
+	private TermTable dictionary; /*Used to check term's index*/
+	private HashMap<String, Integer> docsMap;/*Used to check document's index*/
+	private ArrayList<String> docsList;
+	private int numOfTerms;
+	private int numOfDocs;/*number of documents, not counting deleted ones*/
+	private ArrayList<DictEntry> invertedIndex;
+	private Norms norms;/*||v(d)|| of each document, read through docNorms()*/
+	private MaxWeights maxWeights;/*upper bounds of the terms for the norms, computed when first needed*/
+	private BitSet deletedDocs;/*indexes of deleted documents, never reused*/
+	private BitSet ownedEntries;/*entries not shared with another copy, null if none is shared*/
+	private ArrayList<int[]> docTermIndexes;/*term indexes of each document, built by the first delete, null until then*/
+	private boolean shared;/*the dictionary, the documents and the list of entries are shared with another copy*/
+	private boolean sharedNormSums;/*the norm sums are shared with another copy*/
+	private boolean positional;/*the postings keep the positions of the terms*/
+	private PostingsCodec codec;/*codec of the compressed postings, null if they are not compressed*/
+	private boolean normsDirty;/*the norms have to be recomputed*/
+	private ScoringKernel.InverseNorms inverseNorms;/*1 / ||v(d)|| for the scoring kernels, built from the norms when first needed*/
+	/*
+	 * Per document sums kept to update ||v(d)|| when df or N change, relative to
+	 * normBase = log10(N) when they were computed: with w = log2(1 + tf) and
+	 * c = normBase - log10(df), normSums0 = sum(w^2 c^2), normSums1 = sum(w^2 c)
+	 * and normSums2 = sum(w^2). Only allocated once the index is updated.
+	 */
+	private double normBase;
+	private double[] normSums0;
+	private double[] normSums1;
+	private double[] normSums2;
+	private CollectionStats stats;/*df and N of the collection the index is a segment of, null if it is the whole collection*/
+
+	/**
+	 * The document frequencies and the number of documents of a collection
+	 * split into several indexes (see SegmentedIndex). An index attached to
+	 * a collection weighs its terms with these statistics rather than with
+	 * its own, so the scores of all the indexes can be compared.
+	 */
+	interface CollectionStats {
+		/**
+		 * @return the number of documents of the collection, not counting
+		 *         deleted ones
+		 */
+		int numOfDocs();
+
+		/**
+		 * @param term
+		 * @return the number of documents of the collection containing the
+		 *         term
+		 */
+		int docFreq(String term);
+
+		/**
+		 * Called by an index adding or removing a posting of the term, so
+		 * that every index of the collection can update the norm sums of its
+		 * documents containing the term.
+		 * 
+		 * @param term
+		 * @param oldDf
+		 *            df of the term in the collection before the change
+		 * @param newDf
+		 *            df of the term in the collection after the change
+		 */
+		void docFreqChanged(String term, int oldDf, int newDf);
+	}
+
+	/**
+	 * Gets the name of a folder containing document collection as parameter.
+	 * 
+	 * @param path
+	 */
+	public WordIndex(String path) {
+		this(path, true);
+	}
+
+	/**
+	 * Creates the index of the given folder. When build is false the index
+	 * is left empty, so that an IndexBuilder can fill it.
+	 * 
+	 * @param path
+	 * @param build
+	 */
+	WordIndex(String path, boolean build) {
+		this(path, build, false);
+	}
+
+	/**
+	 * Creates the index of the given folder. A positional index keeps the
+	 * position of every occurrence of a term in a document, counted in terms
+	 * (STOP words are not counted), so that it can answer phrase and
+	 * proximity queries and rerank by biwords without a BiWordIndex.
+	 * 
+	 * @param path
+	 * @param build
+	 * @param positional
+	 */
+	WordIndex(String path, boolean build, boolean positional) {
+		this.path = path;
+		this.positional = positional;
+		dictionary = new TermTable();
+		docsMap = new HashMap<String, Integer>();
+		docsList = new ArrayList<String>();
+		this.numOfTerms = 0;
+		this.numOfDocs = 0;
+		this.invertedIndex = new ArrayList<DictEntry>();
+		this.deletedDocs = new BitSet();
+		this.normsDirty = false;
+		if (build) {
+			this.buildIndex();
+		}
+	}
+
+	/**
+	 * This method builds the inverted index. Go through all the documents in
+	 * the given folder and collect all terms and store them in the
+	 * dictionary.
+	 */
+	public void buildIndex() {
+		if(!(invertedIndex==null||invertedIndex.isEmpty())){
+			return;/*Inverted Index has already been builded.*/
+		}
+		new IndexBuilder(path, IndexBuilder.defaultNumOfThreads(), positional).build(this, null);
+	}
+
+	/**
+	 * @return true if the postings keep the positions of the terms
+	 */
+	public boolean isPositional() {
+		return positional;
+	}
+
+	/**
+	 * Append a document while the index is being built. Its postings are
+	 * appended to the growable buffers of each term, so they stay sorted by
+	 * document index. The norms are computed by finishBuild().
+	 * 
+	 * @param docName
+	 * @param docTerms
+	 *            the terms of the document with their #appears
+	 * @param docPositions
+	 *            the positions of the terms, null unless the index is
+	 *            positional
+	 * @return false if the document doesn't contain any term
+	 */
+	boolean appendDocument(String docName, HashMap<String, Integer> docTerms, HashMap<String, int[]> docPositions) {
+		docsList.add(docName);
+		docsMap.put(docName, numOfDocs);
+		if (docTerms == null || docTerms.size() == 0) {
+			numOfDocs++;
+			return false;
+		}
+		for (String s : docTerms.keySet()) {
+			getOrAddEntry(s).add(numOfDocs, docTerms.get(s), positional ? docPositions.get(s) : null);
+		}
+		numOfDocs++;
+		return true;
+	}
+
+	/**
+	 * Append a partial index built over the next segment of documents. The
+	 * documents of the segment get the indexes following the last indexed
+	 * document.
+	 * 
+	 * @param segment
+	 */
+	void merge(WordIndex segment) {
+		int offset = numOfDocs;
+		for (String docName : segment.docsList) {
+			docsList.add(docName);
+			docsMap.put(docName, numOfDocs);
+			numOfDocs++;
+		}
+		Iterator<String> terms = segment.dictionary.iterator();
+		for (DictEntry partial : segment.invertedIndex) {
+			getOrAddEntry(terms.next()).addAll(partial, offset);
+		}
+	}
+
+	/**
+	 * Append the documents of another index that are not deleted, with their
+	 * postings. The documents get the indexes following the last indexed
+	 * document, in the same order, so merging adjacent segments of a
+	 * collection keeps the order of its documents. The norms are computed
+	 * once the index is attached to the collection.
+	 * 
+	 * @param segment
+	 *            an index with the same positional flag
+	 */
+	void mergeLive(WordIndex segment) {
+		int[] newIds = new int[segment.docsList.size()];
+		for (int i = 0; i < newIds.length; i++) {
+			if (segment.deletedDocs.get(i)) {
+				newIds[i] = -1;
+			} else {
+				newIds[i] = docsList.size();
+				docsList.add(segment.docsList.get(i));
+				docsMap.put(segment.docsList.get(i), newIds[i]);
+				numOfDocs++;
+			}
+		}
+		Iterator<String> terms = segment.dictionary.iterator();
+		for (DictEntry source : segment.invertedIndex) {
+			String term = terms.next();
+			if (source.numOfDocs == 0) {
+				continue;/* the documents containing it were all deleted */
+			}
+			DictEntry entry = getOrAddEntry(term);
+			PostingsCursor cursor = source.cursor();
+			for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+				if (newIds[doc] >= 0) {
+					entry.add(source, cursor.index(), newIds[doc], cursor.freq());
+				}
+			}
+		}
+		codec = segment.codec;
+	}
+
+	/**
+	 * Called once all segments were merged: trims the postings buffers and
+	 * seals the dictionary.
+	 */
+	void finishMerge() {
+		for (DictEntry entry : invertedIndex) {
+			entry.trim();
+		}
+		sealTerms();
+	}
+
+	/**
+	 * Add a term whose complete postings were written to a mapped file, once
+	 * all the documents were appended without their terms. Used by
+	 * SpimiIndexer, so that the postings never have to fit in the heap.
+	 * 
+	 * @param term
+	 *            a term not in the dictionary yet
+	 * @param df
+	 * @param docIds
+	 * @param freqs
+	 * @param numOfPositions
+	 * @param positions
+	 *            null unless the index is positional
+	 * @param positionStarts
+	 *            null unless the index is positional
+	 */
+	void addMappedTerm(String term, int df, IntBuffer docIds, IntBuffer freqs, int numOfPositions,
+			IntBuffer positions, IntBuffer positionStarts) {
+		dictionary.add(term);
+		invertedIndex.add(new DictEntry(df, docIds, freqs, numOfPositions, positions, positionStarts, positional));
+		numOfTerms++;
+	}
+
+	/**
+	 * Set the codec the postings are compressed with when the index is
+	 * written, leaving them uncompressed in memory. The index must not be
+	 * queried afterwards.
+	 * 
+	 * @param codec
+	 *            may be null
+	 */
+	void setWriteCodec(PostingsCodec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Called once all documents were added: trims the postings buffers, seals
+	 * the dictionary and computes the document norms.
+	 */
+	void finishBuild() {
+		for (DictEntry entry : invertedIndex) {
+			entry.trim();
+		}
+		sealTerms();
+		computeDocNorms();
+		computeMaxWeights();
+		System.out.printf("Number of files: %d;\nNumber of terms: %d\n", numOfDocs,numOfTerms);
+	}
+
+	/**
+	 * Sort the terms into a compact TermDictionary, see TermTable. The term
+	 * indexes change, so the entries, the upper bounds of the terms and the
+	 * entries owned by this copy are put in the new order, and the term
+	 * indexes of the documents are built again by the next delete. Like any
+	 * update, it must not be applied to an index that is being queried.
+	 */
+	void sealTerms() {
+		own();
+		int[] oldIndexes = dictionary.seal();
+		if (oldIndexes == null) {
+			return;
+		}
+		ArrayList<DictEntry> entries = new ArrayList<DictEntry>(numOfTerms);
+		MaxWeights weights = maxWeights == null ? null : new MaxWeights(maxWeights.norms, numOfTerms);
+		BitSet owned = ownedEntries == null ? null : new BitSet();
+		for (int i = 0; i < numOfTerms; i++) {
+			entries.add(invertedIndex.get(oldIndexes[i]));
+			if (weights != null && oldIndexes[i] < maxWeights.size()) {
+				weights.copy(i, maxWeights, oldIndexes[i]);
+			}
+			if (owned != null && ownedEntries.get(oldIndexes[i])) {
+				owned.set(i);
+			}
+		}
+		invertedIndex = entries;
+		maxWeights = weights;
+		if (owned != null) {
+			ownedEntries = owned;
+		}
+		docTermIndexes = null;
+	}
+
+	/**
+	 * Write the postings and then the dictionary, the documents and their
+	 * norms to an index file. Compressed postings are written as their skip
+	 * data followed by their blocks.
+	 * 
+	 * @param out
+	 * @return the position of the dictionary in the file
+	 * @throws IOException
+	 */
+	long write(IndexFile.Output out) throws IOException {
+		refresh();
+		long[] docIdsOffsets = new long[numOfTerms];/*offset of the last documents of the blocks if compressed*/
+		long[] freqsOffsets = new long[numOfTerms];/*offset of the blocks if compressed*/
+		long[] blockOffsetsOffsets = new long[numOfTerms];
+		int[] dataLengths = new int[numOfTerms];
+		long[] positionsOffsets = new long[numOfTerms];
+		long[] positionStartsOffsets = new long[numOfTerms];
+		for (int i = 0; i < numOfTerms; i++) {
+			DictEntry entry = invertedIndex.get(i);
+			if (codec != null) {
+				BlockPostings blocks = entry.blocks != null ? entry.blocks
+						: BlockPostings.encode(entry.docIds, entry.freqs, entry.numOfDocs, codec);
+				int numOfBlocks = BlockPostings.numOfBlocks(entry.numOfDocs);
+				docIdsOffsets[i] = out.putInts(blocks.lastDocIds(), numOfBlocks);
+				blockOffsetsOffsets[i] = out.putInts(blocks.blockOffsets(), numOfBlocks);
+				ByteBuffer data = blocks.data();
+				dataLengths[i] = data.remaining();
+				freqsOffsets[i] = out.putBytes(data);
+			} else {
+				docIdsOffsets[i] = out.putInts(entry.docIds, entry.numOfDocs);
+				freqsOffsets[i] = out.putInts(entry.freqs, entry.numOfDocs);
+			}
+			if (positional) {
+				positionsOffsets[i] = out.putInts(entry.positions, entry.numOfPositions);
+				positionStartsOffsets[i] = out.putInts(entry.positionStarts, entry.numOfDocs);
+			}
+		}
+		double[] docNorms = docNorms();
+		long position = out.position();
+		out.putString(path == null ? "" : path);
+		out.putInt(positional ? 1 : 0);
+		out.putString(codec == null ? "" : codec.name());
+		out.putInt(docsList.size());
+		for (int i = 0; i < docsList.size(); i++) {
+			out.putString(docsList.get(i));
+			out.putDouble(docNorms[i]);
+			out.putInt(deletedDocs.get(i) ? 1 : 0);
+		}
+		out.putInt(numOfTerms);
+		Iterator<String> terms = dictionary.iterator();
+		for (int i = 0; i < numOfTerms; i++) {
+			DictEntry entry = invertedIndex.get(i);
+			out.putString(terms.next());
+			out.putInt(entry.numOfDocs);
+			out.putDouble(maxWeight(i, docNorms));
+			out.putLong(docIdsOffsets[i]);
+			out.putLong(freqsOffsets[i]);
+			if (codec != null) {
+				out.putLong(blockOffsetsOffsets[i]);
+				out.putInt(dataLengths[i]);
+			}
+			if (positional) {
+				out.putInt(entry.numOfPositions);
+				out.putLong(positionsOffsets[i]);
+				out.putLong(positionStartsOffsets[i]);
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Read a word index written by write(). The dictionary is loaded in
+	 * memory, the postings stay in the mapped file.
+	 * 
+	 * @param file
+	 * @param in
+	 *            positioned at the dictionary
+	 * @return the word index
+	 * @throws IOException
+	 */
+	static WordIndex read(IndexFile file, IndexFile.Input in) throws IOException {
+		String path = in.getString();
+		WordIndex index = new WordIndex(path, false, in.getInt() != 0);
+		String codecName = in.getString();
+		index.codec = codecName.isEmpty() ? null : PostingsCodec.forName(codecName);
+		int numOfSlots = in.getInt();
+		double[] docNorms = new double[numOfSlots];
+		for (int i = 0; i < numOfSlots; i++) {
+			String docName = in.getString();
+			index.docsList.add(docName);
+			docNorms[i] = in.getDouble();
+			if (in.getInt() != 0) {
+				index.deletedDocs.set(i);
+			} else {
+				index.docsMap.put(docName, i);
+				index.numOfDocs++;
+			}
+		}
+		index.norms = new Norms(index.numOfDocs, docNorms);
+		int numOfTerms = in.getInt();
+		index.maxWeights = new MaxWeights(docNorms, numOfTerms);
+		for (int i = 0; i < numOfTerms; i++) {
+			String term = in.getString();
+			int df = in.getInt();
+			index.maxWeights.set(i, in.getDouble());
+			IntBuffer docIds;
+			IntBuffer freqs;
+			BlockPostings blocks = null;
+			if (index.codec != null) {
+				int numOfBlocks = BlockPostings.numOfBlocks(df);
+				IntBuffer lastDocIds = file.ints(in.getLong(), numOfBlocks);
+				long dataOffset = in.getLong();
+				IntBuffer blockOffsets = file.ints(in.getLong(), numOfBlocks);
+				blocks = new BlockPostings(index.codec, df, lastDocIds, blockOffsets, file.bytes(dataOffset, in.getInt()));
+				docIds = null;
+				freqs = null;
+			} else {
+				docIds = file.ints(in.getLong(), df);
+				freqs = file.ints(in.getLong(), df);
+			}
+			DictEntry entry;
+			if (index.positional) {
+				int numOfPositions = in.getInt();
+				IntBuffer positions = file.ints(in.getLong(), numOfPositions);
+				IntBuffer positionStarts = file.ints(in.getLong(), df);
+				entry = new DictEntry(df, docIds, freqs, numOfPositions, positions, positionStarts, true);
+			} else {
+				entry = new DictEntry(df, docIds, freqs);
+			}
+			entry.blocks = blocks;
+			index.dictionary.add(term);
+			index.invertedIndex.add(entry);
+		}
+		index.numOfTerms = numOfTerms;
+		index.sealTerms();
+		return index;
+	}
+
+	/**
+	 * Copy the index so that it can be updated while this one is still being
+	 * queried. The copy shares all the data of the index: whichever index
+	 * updates it first copies the dictionary, the documents and the list of
+	 * entries, or the norm sums, before writing them, and an entry is copied
+	 * the first time either index updates it, so neither index ever sees an
+	 * update of the other. Copying an index the update doesn't write costs
+	 * a few fields.
+	 * 
+	 * @return a copy of the index
+	 */
+	WordIndex copy() {
+		refresh();
+		WordIndex copy = new WordIndex(path, false, positional);
+		copy.dictionary = dictionary;
+		copy.docsMap = docsMap;
+		copy.docsList = docsList;
+		copy.numOfTerms = numOfTerms;
+		copy.numOfDocs = numOfDocs;
+		copy.invertedIndex = invertedIndex;
+		copy.norms = norms;
+		copy.maxWeights = maxWeights;
+		copy.inverseNorms = inverseNorms;
+		copy.codec = codec;
+		copy.stats = stats;
+		copy.deletedDocs = deletedDocs;
+		copy.docTermIndexes = docTermIndexes;
+		copy.shared = true;
+		shared = true;
+		copy.ownedEntries = new BitSet();
+		ownedEntries = new BitSet();
+		copy.normBase = normBase;
+		copy.normSums0 = normSums0;
+		copy.normSums1 = normSums1;
+		copy.normSums2 = normSums2;
+		copy.sharedNormSums = true;
+		sharedNormSums = true;
+		return copy;
+	}
+
+	/**
+	 * Copy the dictionary, the documents and the list of entries before
+	 * writing them, if they are shared with another copy of the index.
+	 */
+	private void own() {
+		if (!shared) {
+			return;
+		}
+		dictionary = dictionary.copy();
+		docsMap = new HashMap<String, Integer>(docsMap);
+		docsList = new ArrayList<String>(docsList);
+		invertedIndex = new ArrayList<DictEntry>(invertedIndex);
+		deletedDocs = (BitSet) deletedDocs.clone();
+		if (docTermIndexes != null) {
+			docTermIndexes = new ArrayList<int[]>(docTermIndexes);
+		}
+		shared = false;
+	}
+
+	/**
+	 * Copy the norm sums before writing them, if they are shared with another
+	 * copy of the index.
+	 */
+	private void ownNormSums() {
+		if (!sharedNormSums) {
+			return;
+		}
+		normSums0 = normSums0.clone();
+		normSums1 = normSums1.clone();
+		normSums2 = normSums2.clone();
+		sharedNormSums = false;
+	}
+
+	/**
+	 * Add a new document of the folder to the index.
+	 * 
+	 * @param file
+	 * @throws IllegalArgumentException
+	 *             if a document with that name is already indexed
+	 */
+	public void addDocument(File file) {
+		if (docsMap.containsKey(file.getName()))
+			throw new IllegalArgumentException(file.getName() + " is already indexed.");
+		IndexBuilder.replaceDocument(file, this, null);
+	}
+
+	/**
+	 * Index the current content of a document, replacing the indexed one if
+	 * any.
+	 * 
+	 * @param file
+	 */
+	public void replaceDocument(File file) {
+		IndexBuilder.replaceDocument(file, this, null);
+	}
+
+	/**
+	 * Remove a document from the index. Its index becomes a tombstone and is
+	 * never given to another document.
+	 * 
+	 * @param docName
+	 * @return false if the document was not indexed
+	 */
+	public boolean deleteDocument(String docName) {
+		Integer docId = docsMap.get(docName);
+		if (docId == null) {
+			return false;
+		}
+		own();
+		ensureNormSums();
+		ownNormSums();
+		for (int i : termIndexesOf(docId)) {
+			DictEntry entry = ownedEntry(i);
+			String term = stats == null ? null : dictionary.term(i);
+			int df = docFreq(term, entry);
+			entry.remove(entry.indexOf(docId));
+			docFreqChanged(term, entry, df, df - 1);
+		}
+		docsMap.remove(docName);
+		docTermIndexes.set(docId, null);
+		deletedDocs.set(docId);
+		normSums0[docId] = 0;
+		normSums1[docId] = 0;
+		normSums2[docId] = 0;
+		numOfDocs--;
+		updated();
+		return true;
+	}
+
+	/**
+	 * Index the given terms as the content of a document, replacing the
+	 * indexed one if any.
+	 * 
+	 * @param docName
+	 * @param docTerms
+	 * @param docPositions
+	 *            null unless the index is positional
+	 */
+	void replaceDocument(String docName, HashMap<String, Integer> docTerms, HashMap<String, int[]> docPositions) {
+		deleteDocument(docName);
+		addDocument(docName, docTerms, docPositions);
+	}
+
+	/**
+	 * Add a document to a built index. The document gets the next unused
+	 * index, so the postings stay sorted; the df of its terms and the sums
+	 * behind the norms of the documents sharing them are updated.
+	 * 
+	 * @param docName
+	 * @param docTerms
+	 * @param docPositions
+	 *            null unless the index is positional
+	 */
+	void addDocument(String docName, HashMap<String, Integer> docTerms, HashMap<String, int[]> docPositions) {
+		own();
+		ensureNormSums();
+		ownNormSums();
+		int docId = docsList.size();
+		docsList.add(docName);
+		docsMap.put(docName, docId);
+		growNormSums(docId + 1);
+		int[] termIndexes = new int[docTerms.size()];
+		int n = 0;
+		for (String term : docTerms.keySet()) {
+			int index = addTerm(term);
+			termIndexes[n++] = index;
+			DictEntry entry = ownedEntry(index);
+			int df = docFreq(term, entry);
+			docFreqChanged(term, entry, df, df + 1);
+			int tf = docTerms.get(term);
+			entry.append(docId, tf, positional ? docPositions.get(term) : null);
+			double w = Math.log(1 + tf) / Math.log(2);
+			double c = normBase - Math.log10(df + 1);
+			normSums0[docId] += w * w * c * c;
+			normSums1[docId] += w * w * c;
+			normSums2[docId] += w * w;
+		}
+		if (docTermIndexes != null) {
+			docTermIndexes.add(termIndexes);
+		}
+		numOfDocs++;
+		updated();
+	}
+
+	/**
+	 * @param docId
+	 *            a document that is not deleted
+	 * @return the indexes of the terms of the document. They are collected
+	 *         for all documents with a pass over the postings the first time
+	 *         they are needed, so that deleting a document only reads the
+	 *         postings of its own terms.
+	 */
+	private int[] termIndexesOf(int docId) {
+		if (docTermIndexes == null) {
+			int numOfSlots = docsList.size();
+			int[] counts = new int[numOfSlots];
+			for (DictEntry entry : invertedIndex) {
+				PostingsCursor cursor = entry.cursor();
+				for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+					counts[doc]++;
+				}
+			}
+			int[][] indexes = new int[numOfSlots][];
+			for (int i = 0; i < numOfSlots; i++) {
+				indexes[i] = new int[counts[i]];
+				counts[i] = 0;
+			}
+			for (int t = 0; t < numOfTerms; t++) {
+				PostingsCursor cursor = invertedIndex.get(t).cursor();
+				for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+					indexes[doc][counts[doc]++] = t;
+				}
+			}
+			docTermIndexes = new ArrayList<int[]>(Arrays.asList(indexes));
+		}
+		return docTermIndexes.get(docId);
+	}
+
+	/**
+	 * @return the names of the indexed documents, in document index order
+	 */
+	ArrayList<String> documentNames() {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int i = 0; i < docsList.size(); i++) {
+			if (!deletedDocs.get(i)) {
+				names.add(docsList.get(i));
+			}
+		}
+		return names;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the number of documents, not counting deleted ones
+	 */
+	public int getNumOfDocs() {
+		return numOfDocs;
+	}
+
+	/**
+	 * @return the number of terms of the dictionary
+	 */
+	public int getNumOfTerms() {
+		return numOfTerms;
+	}
+
+	/**
+	 * Compress the documents and frequencies of all postings lists with the
+	 * given codec, or decompress them if codec is null. Postings updated
+	 * later are compressed again by refresh(). Like any update, it must not
+	 * be applied to an index that is being queried.
+	 * 
+	 * @param codec
+	 *            may be null
+	 */
+	public void compress(PostingsCodec codec) {
+		own();
+		this.codec = codec;
+		for (int i = 0; i < numOfTerms; i++) {
+			if (codec == null) {
+				if (invertedIndex.get(i).blocks != null) {
+					ownedEntry(i).decompress();
+				}
+			} else {
+				ownedEntry(i).compress(codec);
+			}
+		}
+	}
+
+	/**
+	 * @return the codec of the postings, or null if they are not compressed
+	 */
+	public PostingsCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * The norms depend on N, so they are recomputed by refresh() after
+	 * updates, and the upper bounds of the terms with them.
+	 */
+	private void updated() {
+		normsDirty = true;
+	}
+
+	/**
+	 * Recompute the norms of the documents if the index was updated. Queries
+	 * call it first, so that an updated index can be queried; an index shared
+	 * between threads must have been refreshed before it was published, so
+	 * that queries only read it. The postings that were updated are
+	 * compressed again: only the entries owned by this copy can have been
+	 * updated. The upper bounds of the terms are not computed here: the new
+	 * norms drop them, and a pruned query computes the bound of a term the
+	 * first time it reads it, see maxWeight().
+	 */
+	void refresh() {
+		if (normsDirty) {
+			if (codec != null) {
+				for (int i = nextOwnedEntry(0); i >= 0 && i < numOfTerms; i = nextOwnedEntry(i + 1)) {
+					if (invertedIndex.get(i).blocks == null) {
+						ownedEntry(i).compress(codec);
+					}
+				}
+			}
+			int n = collectionSize();
+			norms = new Norms(n, normsOf(n));
+			normsDirty = false;
+		}
+	}
+
+	/**
+	 * @param from
+	 * @return the first term index from on whose entry is owned by this copy,
+	 *         from if no entry is shared, -1 if there is none
+	 */
+	private int nextOwnedEntry(int from) {
+		return ownedEntries == null ? from : ownedEntries.nextSetBit(from);
+	}
+
+	/**
+	 * @return ||v(d)|| of each document, indexed by document index. Once the
+	 *         index keeps norm sums, the norms are those of the current N:
+	 *         when an update of the collection only changes N, the norms of
+	 *         this index are computed again from its norm sums by the first
+	 *         query reading them, so that the update doesn't have to copy or
+	 *         refresh it. Any other query would compute the same norms, so
+	 *         they need no lock.
+	 */
+	private double[] docNorms() {
+		Norms current = norms;
+		if (normSums0 != null) {
+			int n = collectionSize();
+			if (current == null || current.collectionSize != n) {
+				current = new Norms(n, normsOf(n));
+				norms = current;
+			}
+		}
+		return current.lengths;
+	}
+
+	/**
+	 * @param n
+	 *            N, the number of documents of the collection
+	 * @return the norms of the documents computed from the norm sums
+	 */
+	private double[] normsOf(int n) {
+		/* sum(w^2 (c + delta)^2) with delta = log10(N) - normBase */
+		double delta = n > 0 ? Math.log10(n) - normBase : 0;
+		double[] lengths = new double[docsList.size()];
+		for (int i = 0; i < lengths.length; i++) {
+			double square = normSums0[i] + 2 * delta * normSums1[i] + delta * delta * normSums2[i];
+			lengths[i] = deletedDocs.get(i) ? 0 : Math.sqrt(Math.max(0, square));
+		}
+		return lengths;
+	}
+
+	/**
+	 * Compute the sums behind the norms with a pass over the postings, the
+	 * first time the index is updated.
+	 */
+	private void ensureNormSums() {
+		if (normSums0 != null) {
+			return;
+		}
+		int numOfSlots = docsList.size();
+		int n = collectionSize();
+		normBase = n > 0 ? Math.log10(n) : 0;
+		normSums0 = new double[numOfSlots];
+		normSums1 = new double[numOfSlots];
+		normSums2 = new double[numOfSlots];
+		sharedNormSums = false;
+		Iterator<String> terms = stats == null ? null : dictionary.iterator();
+		for (DictEntry entry : invertedIndex) {
+			String term = terms == null ? null : terms.next();
+			if (entry.numOfDocs == 0) {
+				continue;
+			}
+			double c = normBase - Math.log10(docFreq(term, entry));
+			PostingsCursor cursor = entry.cursor();
+			for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+				double w = Math.log(1 + cursor.freq()) / Math.log(2);
+				normSums0[doc] += w * w * c * c;
+				normSums1[doc] += w * w * c;
+				normSums2[doc] += w * w;
+			}
+		}
+	}
+
+	private void growNormSums(int size) {
+		if (size > normSums0.length) {
+			int capacity = Math.max(size, normSums0.length * 2);
+			normSums0 = Arrays.copyOf(normSums0, capacity);
+			normSums1 = Arrays.copyOf(normSums1, capacity);
+			normSums2 = Arrays.copyOf(normSums2, capacity);
+		}
+	}
+
+	/**
+	 * Update the norm sums of the documents in the postings of a term whose
+	 * df changes.
+	 * 
+	 * @param entry
+	 * @param oldDf
+	 * @param newDf
+	 */
+	private void updateNormSums(DictEntry entry, int oldDf, int newDf) {
+		if (oldDf == 0 || newDf == 0) {
+			return;/* no other document contains the term */
+		}
+		ownNormSums();
+		double oldC = normBase - Math.log10(oldDf);
+		double newC = normBase - Math.log10(newDf);
+		PostingsCursor cursor = entry.cursor();
+		for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+			if (deletedDocs.get(doc)) {
+				continue;
+			}
+			double w = Math.log(1 + cursor.freq()) / Math.log(2);
+			normSums0[doc] += w * w * (newC * newC - oldC * oldC);
+			normSums1[doc] += w * w * (newC - oldC);
+		}
+	}
+
+	/**
+	 * The df of a term changes: update the norm sums of the documents
+	 * containing it in this index, or in every index of the collection.
+	 */
+	private void docFreqChanged(String term, DictEntry entry, int oldDf, int newDf) {
+		if (stats == null) {
+			updateNormSums(entry, oldDf, newDf);
+		} else {
+			stats.docFreqChanged(term, oldDf, newDf);
+		}
+	}
+
+	/**
+	 * Update the norm sums of the documents of this index containing a term
+	 * whose df changes in the collection, and recompute their norms with the
+	 * next refresh(). The index must have been prepared for the update; it
+	 * is left as it is if none of its documents contains the term.
+	 * 
+	 * @param term
+	 * @param oldDf
+	 * @param newDf
+	 */
+	void updateNormSums(String term, int oldDf, int newDf) {
+		int index = dictionary.indexOf(term);
+		if (index >= 0 && invertedIndex.get(index).numOfDocs > 0) {
+			updateNormSums(invertedIndex.get(index), oldDf, newDf);
+			updated();
+		}
+	}
+
+	/**
+	 * Weigh the terms with the statistics of the collection the index is a
+	 * segment of. The norms computed with the statistics of the index itself
+	 * are dropped.
+	 * 
+	 * @param stats
+	 */
+	void attach(CollectionStats stats) {
+		this.stats = stats;
+		normSums0 = null;
+		normSums1 = null;
+		normSums2 = null;
+		prepareUpdate();
+		updated();
+	}
+
+	/**
+	 * Weigh the terms with the statistics of the collection the index is a
+	 * shard of (see ShardedIndex). Unlike attach, the norms and the upper
+	 * bounds of the terms are computed again right away, the way a single
+	 * index of the collection computes them, so the scores of the shards are
+	 * exactly those of a single index. The index must not be updated
+	 * afterwards.
+	 *
+	 * @param stats
+	 */
+	void attachShard(CollectionStats stats) {
+		this.stats = stats;
+		normSums0 = null;
+		normSums1 = null;
+		normSums2 = null;
+		computeDocNorms();
+		computeMaxWeights();
+		normsDirty = false;
+	}
+
+	/**
+	 * @param terms
+	 *            receives the terms contained in some document, sorted as
+	 *            TermDictionary.compare sorts them
+	 * @return the number of documents of this index containing every term
+	 */
+	int[] termStats(ArrayList<String> terms) {
+		sealTerms();
+		int[] docFreqs = new int[numOfTerms];
+		int n = 0;
+		Iterator<String> names = dictionary.iterator();
+		for (DictEntry entry : invertedIndex) {
+			String term = names.next();
+			if (entry.numOfDocs > 0) {
+				terms.add(term);
+				docFreqs[n++] = entry.numOfDocs;
+			}
+		}
+		return Arrays.copyOf(docFreqs, n);
+	}
+
+	/**
+	 * Point a copy of a segment to the statistics of the copy of its
+	 * collection.
+	 * 
+	 * @param stats
+	 */
+	void setCollectionStats(CollectionStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * The df of some terms or N are about to change in the collection: the
+	 * norm sums are computed with the current statistics if they were never
+	 * computed. The norms are recomputed by the next refresh() if the update
+	 * changes the norm sums, or else by the first query after a change of
+	 * N, see docNorms().
+	 */
+	void prepareUpdate() {
+		ensureNormSums();
+	}
+
+	/**
+	 * @return N, the number of documents of the collection
+	 */
+	private int collectionSize() {
+		return stats == null ? numOfDocs : stats.numOfDocs();
+	}
+
+	/**
+	 * @param term
+	 *            the term of the entry, only read if the index is a segment
+	 * @param entry
+	 * @return the df of the term of the entry in the collection
+	 */
+	private int docFreq(String term, DictEntry entry) {
+		return stats == null ? entry.numOfDocs : stats.docFreq(term);
+	}
+
+	/**
+	 * @return the df of the term in the collection, 0 if no document
+	 *         contains it
+	 */
+	private int docFreq(String term) {
+		if (stats != null) {
+			return stats.docFreq(term);
+		}
+		DictEntry entry = entryOf(term);
+		return entry == null ? 0 : entry.numOfDocs;
+	}
+
+	/**
+	 * @return log10(N / df) of the term of the entry in the collection
+	 */
+	private double idf(String term, DictEntry entry) {
+		return Math.log10(collectionSize() / (double) docFreq(term, entry));
+	}
+
+	/**
+	 * @param term
+	 * @return the number of documents of this index containing the term
+	 */
+	int documentFrequency(String term) {
+		DictEntry entry = entryOf(term);
+		return entry == null ? 0 : entry.numOfDocs;
+	}
+
+	/**
+	 * Add the terms contained in some document to a set.
+	 * 
+	 * @param terms
+	 */
+	void collectTerms(HashSet<String> terms) {
+		Iterator<String> names = dictionary.iterator();
+		for (DictEntry entry : invertedIndex) {
+			String term = names.next();
+			if (entry.numOfDocs > 0) {
+				terms.add(term);
+			}
+		}
+	}
+
+	/**
+	 * @param docName
+	 * @return the index of the document, or -1 if it is not indexed
+	 */
+	int docIndex(String docName) {
+		Integer docId = docsMap.get(docName);
+		return docId == null ? -1 : docId;
+	}
+
+	/**
+	 * @param docId
+	 *            index of a document, deleted or not
+	 * @return the name of the document
+	 */
+	String documentName(int docId) {
+		return docsList.get(docId);
+	}
+
+	/**
+	 * @return the number of document indexes given, deleted documents
+	 *         included
+	 */
+	int getNumOfSlots() {
+		return docsList.size();
+	}
+
+	/**
+	 * @param term
+	 * @return the dictionary entry of the term, or null if no document
+	 *         contains it
+	 */
+	private DictEntry entryOf(String term) {
+		int index = dictionary.indexOf(term);
+		if (index < 0) {
+			return null;
+		}
+		DictEntry entry = invertedIndex.get(index);
+		return entry.numOfDocs == 0 ? null : entry;
+	}
+
+	/**
+	 * @param term
+	 * @return the dictionary entry of the term, created if it is a new term
+	 */
+	private DictEntry getOrAddEntry(String term) {
+		return ownedEntry(addTerm(term));
+	}
+
+	/**
+	 * @param term
+	 * @return the index of the term, added to the dictionary with an empty
+	 *         entry if it is a new term
+	 */
+	private int addTerm(String term) {
+		int index = dictionary.indexOf(term);
+		if (index >= 0) {
+			return index;
+		}
+		own();
+		dictionary.add(term);
+		invertedIndex.add(new DictEntry(positional));
+		if (ownedEntries != null) {
+			ownedEntries.set(numOfTerms);
+		}
+		return numOfTerms++;
+	}
+
+	/**
+	 * @param index
+	 * @return the entry of the given term index, copied first if it is shared
+	 *         with another copy of the index
+	 */
+	private DictEntry ownedEntry(int index) {
+		DictEntry entry = invertedIndex.get(index);
+		if (ownedEntries != null && !ownedEntries.get(index)) {
+			own();
+			DictEntry shared = entry;
+			entry = new DictEntry(shared.numOfDocs, shared.docIds, shared.freqs, shared.numOfPositions, shared.positions,
+					shared.positionStarts, shared.positional);
+			entry.blocks = shared.blocks;
+			entry.quantized = shared.quantized;
+			invertedIndex.set(index, entry);
+			ownedEntries.set(index);
+		}
+		return entry;
+	}
+
+	/**
+	 * Each item of the array list is a tuple consisting of document name d and
+	 * the frequency of term t in document d.
+	 * 
+	 * @param t
+	 *            given term
+	 * @return the ArrayList, empty if the term is not in the dictionary
+	 */
+	public ArrayList<PostListEntry> postingsList(String t) {
+		t=t.toLowerCase();
+		ArrayList<PostListEntry> postingsList = new ArrayList<PostListEntry>();
+		DictEntry entry = entryOf(t);
+		if(entry == null){
+			return postingsList;
+		}
+		PostingsCursor cursor = entry.cursor();
+		for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+			postingsList.add(new PostListEntry(docsList.get(doc), cursor.freq()));
+		}
+		return postingsList;
+	}
+
+	/**
+	 * Prints the contents of the list returned by postingsList(t) in a
+	 * human-readable form.
+	 * 
+	 * @param t
+	 *            given term
+	 */
+	public void printPostingsList(String t) {
+		System.out.println("Postings List of term '" + t + "':");
+		System.out.printf("%-25s| %-35s\n", "-----------------------", "-----------------------------------");
+		System.out.printf("%-25s| %-35s\n","Document Name","Number of Times " + t + " appears");
+		System.out.printf("%-25s+ %-35s\n", "-----------------------", "-----------------------------------");
+		ArrayList<PostListEntry> postList = this.postingsList(t);
+		if (postList.isEmpty()) {
+			System.out.println(t.toLowerCase() + " does not exist in dictionary.");
+		}
+		for (PostListEntry si : postList) {
+			System.out.printf("%-25s| %-35s\n",si.docName,si.numAppears);
+		}
+		System.out.printf("%-25s| %-35s\n\n", "-----------------------", "-----------------------------------");
+	}
+
+	/**
+	 * Returns the weight of term t in document d.
+	 * 
+	 * @param term
+	 *            given term
+	 * @param doc
+	 *            given document
+	 * @return the weight of term t in document d
+	 */
+	public double weight(String term, String doc) {
+		double weight = 0;
+		DictEntry entry = entryOf(term);
+		if (entry == null) {
+			return 0;
+		}
+		double dft = docFreq(term, entry);/* number of documents of the collection in which t appears */
+		double tftd;/* number of times term t appears in document d */
+		Integer docId = docsMap.get(doc);
+		PostingsCursor cursor = entry.cursor();
+		if (docId == null || cursor.advance(docId) != docId) {
+			return 0;
+		} else {
+			tftd = cursor.freq();
+		}
+		weight = (Math.log(1 + tftd) / Math.log(2)) * (Math.log10(collectionSize() / dft));
+		return weight;
+	}
+
+	/**
+	 * Calculate the cosine similarities between the query q and all documents
+	 * 
+	 * @param query
+	 * @return a ArrayList containing the <docName, cosine similarities> pairs
+	 */
+	public ArrayList<StringDoublePair> computeSimilarities(String query) {
+		double[] scores = computeScores(expandWildcards(readQuery(query)), new double[docsList.size()], null);
+		ArrayList<StringDoublePair> sims = new ArrayList<StringDoublePair>();
+		for (int l = 0; l < docsList.size(); l++) {
+			if (!deletedDocs.get(l)) {
+				sims.add(new StringDoublePair(docsList.get(l), scores[l]));
+			}
+		}
+		return sims;
+	}
+
+	/**
+	 * Calculate the cosine similarities between the query q and all documents
+	 * 
+	 * @param queryTerms
+	 *            the terms of the query with their #appears
+	 * @param scores
+	 *            zeros, at least one per document index
+	 * @param stats
+	 *            receives the number of postings evaluated, may be null
+	 * @return scores, holding the cosine similarities by document index,
+	 *         minus infinity for deleted documents
+	 */
+	private double[] computeScores(HashMap<String, Integer> queryTerms, double[] scores, QueryStats stats) {
+		refresh();
+		double[] length = docNorms();
+
+		for (String term : sortedTerms(queryTerms)) {
+			DictEntry entry = entryOf(term);
+			if (entry == null) {
+				continue;
+			}
+			double idf = idf(term, entry);
+			double weightTq = weightTq(term, queryTerms);
+			if (stats != null) {
+				stats.postingsEvaluated += entry.numOfDocs;
+			}
+			PostingsCursor cursor = entry.cursor();
+			for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+				double weightTd = (Math.log(1 + cursor.freq()) / Math.log(2)) * idf;
+				scores[doc] += weightTd * weightTq;
+			}
+		}
+		double vq = queryNorm(queryTerms);
+
+		for (int l = 0; l < docsList.size(); l++) {
+			/* A document or query without any weighted term matches nothing. */
+			scores[l] = length[l] == 0 || vq == 0 ? 0 : scores[l] / (length[l] * vq);
+		}
+		for (int l = deletedDocs.nextSetBit(0); l >= 0; l = deletedDocs.nextSetBit(l + 1)) {
+			scores[l] = Double.NEGATIVE_INFINITY;
+		}
+		return scores;
+	}
+
+	/**
+	 * Retrieve the terms of the query with their #appears. The query is
+	 * tokenized in memory, and every query gets its own map, so concurrent
+	 * queries never share any state.
+	 * 
+	 * @param query
+	 * @return the terms of the query with their #appears
+	 */
+	static HashMap<String, Integer> readQuery(String query) {
+		HashMap<String, Integer> queryTerms = new HashMap<String, Integer>();
+		new Tokenizer().tokenize(query, new TermCounter(queryTerms));
+		return queryTerms;
+	}
+
+	/**
+	 * @param queryTerms
+	 * @return true if a term of the query is a wildcard pattern
+	 */
+	static boolean hasWildcard(HashMap<String, Integer> queryTerms) {
+		for (String term : queryTerms.keySet()) {
+			if (term.indexOf(TermDictionary.WILDCARD) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replace the wildcard patterns of a query, such as comput*, by the terms
+	 * of the indexes matching them (see expand): every matching term counts
+	 * as many times in the query as the pattern.
+	 * 
+	 * @param queryTerms
+	 *            the terms of the query with their #appears
+	 * @param indexes
+	 *            the indexes of the collection
+	 * @return the expanded terms with their #appears, or queryTerms itself if
+	 *         no term is a pattern
+	 */
+	static HashMap<String, Integer> expandWildcards(HashMap<String, Integer> queryTerms, List<WordIndex> indexes) {
+		if (!hasWildcard(queryTerms)) {
+			return queryTerms;
+		}
+		HashMap<String, Integer> expanded = new HashMap<String, Integer>();
+		for (String term : queryTerms.keySet()) {
+			int count = queryTerms.get(term);
+			if (term.indexOf(TermDictionary.WILDCARD) < 0) {
+				expanded.merge(term, count, Integer::sum);
+				continue;
+			}
+			TreeSet<String> terms = new TreeSet<String>(TermDictionary::compare);
+			for (WordIndex index : indexes) {
+				index.expand(term, terms);
+			}
+			for (String match : terms) {
+				expanded.merge(match, count, Integer::sum);
+			}
+		}
+		return expanded;
+	}
+
+	private HashMap<String, Integer> expandWildcards(HashMap<String, Integer> queryTerms) {
+		return expandWildcards(queryTerms, Collections.singletonList(this));
+	}
+
+	/**
+	 * Find the terms matching a wildcard pattern, where * matches any
+	 * sequence of characters, without scanning the dictionary unless the
+	 * pattern starts with *.
+	 * 
+	 * @param pattern
+	 * @return the terms contained in some document that match the pattern,
+	 *         sorted, at most the first MAX_EXPANSIONS of them
+	 */
+	public ArrayList<String> expand(String pattern) {
+		TreeSet<String> terms = new TreeSet<String>(TermDictionary::compare);
+		expand(pattern.toLowerCase(), terms);
+		return new ArrayList<String>(terms);
+	}
+
+	/**
+	 * Add the terms contained in some document that match a pattern to a
+	 * set, keeping its first MAX_EXPANSIONS terms.
+	 * 
+	 * @param pattern
+	 * @param terms
+	 *            sorted as TermDictionary.compare sorts them
+	 */
+	void expand(String pattern, TreeSet<String> terms) {
+		dictionary.expand(pattern, (index, term) -> {
+			if (invertedIndex.get(index).numOfDocs > 0) {
+				terms.add(term);
+				if (terms.size() > MAX_EXPANSIONS) {
+					terms.pollLast();
+				}
+			}
+		});
+	}
+
+	/**
+	 * The scores are added up over the terms in this order, so queries with
+	 * the same terms get exactly the same scores whatever the order of their
+	 * terms (see QueryCache).
+	 * 
+	 * @param queryTerms
+	 * @return the terms of the query, sorted
+	 */
+	private static String[] sortedTerms(HashMap<String, Integer> queryTerms) {
+		String[] terms = queryTerms.keySet().toArray(new String[queryTerms.size()]);
+		Arrays.sort(terms);
+		return terms;
+	}
+
+	/**
+	 * Compute ||v(q)|| over the query terms that are in the dictionary of the
+	 * collection.
+	 * 
+	 * @param queryTerms
+	 * @return ||v(q)||
+	 */
+	private double queryNorm(HashMap<String, Integer> queryTerms) {
+		double vqSquare = 0;
+		for (String term : sortedTerms(queryTerms)) {
+			if (docFreq(term) == 0) {
+				continue;
+			}
+			vqSquare += Math.pow(weightTq(term, queryTerms), 2);
+		}
+		return Math.sqrt(vqSquare);
+	}
+
+	/**
+	 * Retrieve a set S consisting of top 2k documents, or of all documents if
+	 * there are less than 2k of them, and print it.
+	 * 
+	 * @param query
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> getTop2KDocs(String query, int k) {
+		System.out.println("Computing the cosine similarities between the query and " + numOfDocs + " files......");
+		ArrayList<StringDoublePair> result = searchTop2K(query, k);
+		outputTopKResult(result,result.size());
+		return result;
+	}
+
+	/**
+	 * Same as getTop2KDocs, without printing anything. The index is only
+	 * read, so any number of threads may call it at the same time.
+	 * 
+	 * @param query
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> searchTop2K(String query, int k) {
+		TopKSelector top = new TopKSelector(0);
+		selectTop2K(expandWildcards(readQuery(query)), k, false, null, new SearchResults(), top);
+		return top2KList(top);
+	}
+
+	/**
+	 * Select the top 2k documents of a query already tokenized, with or
+	 * without dynamic pruning, and sort them best first.
+	 * 
+	 * @param queryTerms
+	 *            the terms of the query with their #appears
+	 * @param k
+	 * @param prune
+	 * @param stats
+	 *            the postings evaluated and skipped and the time spent
+	 *            scoring and selecting are added to it, may be null
+	 * @param scratch
+	 *            provides the score accumulator, and the scoring kernel
+	 *            scoring the documents instead of computeScores if it has one
+	 * @param top
+	 *            reset to receive the document indexes and their scores
+	 */
+	void selectTop2K(HashMap<String, Integer> queryTerms, int k, boolean prune, QueryStats stats,
+			SearchResults scratch, TopKSelector top) {
+		if (prune) {
+			selectTop2KPruned(queryTerms, k, stats, top);
+			return;
+		}
+		if (scratch.getScoringKernel() != null) {
+			selectTop2KBlocked(queryTerms, k, stats, scratch.getScoringKernel(), scratch.blockScores(), top);
+			return;
+		}
+		long start = System.nanoTime();
+		double[] scores = this.computeScores(queryTerms, scratch.accumulator(docsList.size()), stats);
+		long scored = System.nanoTime();
+		/* Deleted documents score minus infinity, so they are never among the numOfDocs best. */
+		top.reset(Math.min(2 * k, numOfDocs));
+		for (int l = 0; l < docsList.size(); l++) {
+			top.offer(l, scores[l]);
+		}
+		top.sort();
+		if (stats != null) {
+			stats.scoringNanos += scored - start;
+			stats.selectionNanos += System.nanoTime() - scored;
+		}
+	}
+
+	/**
+	 * Same as selectTop2K without pruning, with the float scores of a
+	 * scoring kernel: the documents are scored one block of
+	 * ScoringKernel.BLOCK_SIZE documents at a time, every query term adding
+	 * its postings in the block, then the block is normalized and its best
+	 * documents are offered to top.
+	 */
+	private void selectTop2KBlocked(HashMap<String, Integer> queryTerms, int k, QueryStats stats,
+			ScoringKernel kernel, float[] block, TopKSelector top) {
+		long start = System.nanoTime();
+		refresh();
+		top.reset(Math.min(2 * k, numOfDocs));
+		if (top.isFull()) {
+			return;
+		}
+		double vq = queryNorm(queryTerms);
+		float inverseQueryNorm = vq == 0 ? 0 : (float) (1 / vq);
+
+		/* The query terms in the dictionary, in the order computeScores adds them up. */
+		ArrayList<ScoringKernel.QuantizedPostings> postings = new ArrayList<ScoringKernel.QuantizedPostings>();
+		ArrayList<Float> scales = new ArrayList<Float>();
+		for (String term : sortedTerms(queryTerms)) {
+			DictEntry entry = entryOf(term);
+			if (entry == null || entry.numOfDocs == 0) {
+				continue;
+			}
+			ScoringKernel.QuantizedPostings quantized = entry.quantized();
+			postings.add(quantized);
+			scales.add((float) (quantized.scale() * idf(term, entry) * weightTq(term, queryTerms)));
+			if (stats != null) {
+				stats.postingsEvaluated += entry.numOfDocs;
+			}
+		}
+		int n = postings.size();
+		int[] positions = new int[n];/*first posting of each term not added yet*/
+		float[] inverses = inverseNorms();
+		long selectionNanos = 0;
+		for (int base = 0; base < docsList.size(); base += ScoringKernel.BLOCK_SIZE) {
+			int size = Math.min(ScoringKernel.BLOCK_SIZE, docsList.size() - base);
+			Arrays.fill(block, 0, size, 0);
+			for (int i = 0; i < n; i++) {
+				ScoringKernel.QuantizedPostings quantized = postings.get(i);
+				int end = Arrays.binarySearch(quantized.docIds, positions[i], quantized.size, base + size);
+				end = end < 0 ? -end - 1 : end;
+				kernel.accumulate(block, base, quantized.docIds, quantized.quanta, positions[i], end, scales.get(i));
+				positions[i] = end;
+			}
+			kernel.normalize(block, base, size, inverses, inverseQueryNorm);
+			long selecting = System.nanoTime();
+			kernel.select(block, base, size, top);
+			selectionNanos += System.nanoTime() - selecting;
+		}
+		top.sort();
+		if (stats != null) {
+			stats.scoringNanos += System.nanoTime() - start - selectionNanos;
+			stats.selectionNanos += selectionNanos;
+		}
+	}
+
+	/**
+	 * @return 1 / ||v(d)|| of every document as floats, NaN for the deleted
+	 *         ones
+	 */
+	private float[] inverseNorms() {
+		ScoringKernel.InverseNorms inverses = inverseNorms;
+		double[] docNorms = docNorms();
+		/* the norms are replaced, never updated, whenever they or the deleted documents change */
+		if (inverses == null || inverses.norms != docNorms) {
+			inverses = new ScoringKernel.InverseNorms(docNorms, docsList.size(), deletedDocs);
+			inverseNorms = inverses;
+		}
+		return inverses.inverses;
+	}
+
+	/**
+	 * @param top
+	 *            sorted
+	 * @return the names and scores of the documents of top
+	 */
+	private ArrayList<StringDoublePair> top2KList(TopKSelector top) {
+		ArrayList<StringDoublePair> result = new ArrayList<StringDoublePair>();
+		for (int i = 0; i < top.size(); i++) {
+			result.add(new StringDoublePair(docsList.get(top.index(i)), top.score(i)));
+		}
+		return result;
+	}
+
+	/**
+	 * Retrieve and print the same set S of top 2k documents as getTop2KDocs,
+	 * with MaxScore dynamic pruning.
+	 * 
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            receives the number of postings evaluated and skipped, may be
+	 *            null
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> getTop2KDocsPruned(String query, int k, QueryStats stats) {
+		System.out.println("Computing the cosine similarities between the query and " + numOfDocs + " files......");
+		ArrayList<StringDoublePair> result = searchTop2KPruned(query, k, stats);
+		outputTopKResult(result,result.size());
+		return result;
+	}
+
+	/**
+	 * Retrieve the same set S of top 2k documents as searchTop2K, with
+	 * MaxScore dynamic pruning: the postings of the query terms are traversed
+	 * in document order, and a document is only fully scored if the upper
+	 * bounds of its terms can still bring it into the current top 2k. Query
+	 * terms are split into non-essential terms, whose upper bounds together
+	 * are below the lowest score kept, and essential terms; only documents
+	 * containing an essential term are candidates.
+	 * 
+	 * @param query
+	 * @param k
+	 * @param stats
+	 *            receives the number of postings evaluated and skipped and
+	 *            the time spent on every stage, may be null
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> searchTop2KPruned(String query, int k, QueryStats stats) {
+		if (stats != null) {
+			stats.reset();
+		}
+		long start = System.nanoTime();
+		HashMap<String, Integer> queryTerms = expandWildcards(readQuery(query));
+		if (stats != null) {
+			stats.tokenizeNanos = System.nanoTime() - start;
+		}
+		TopKSelector top = new TopKSelector(0);
+		selectTop2KPruned(queryTerms, k, stats, top);
+		return top2KList(top);
+	}
+
+	/**
+	 * Same as selectTop2K with pruning.
+	 */
+	private void selectTop2KPruned(HashMap<String, Integer> queryTerms, int k, QueryStats stats, TopKSelector top) {
+		long start = System.nanoTime();
+		refresh();
+		double vq = queryNorm(queryTerms);
+
+		/* The query terms in the dictionary, in the order computeScores adds them up. */
+		ArrayList<String> terms = new ArrayList<String>();
+		ArrayList<Integer> termIndexes = new ArrayList<Integer>();
+		ArrayList<Double> weightsTq = new ArrayList<Double>();
+		for (String term : sortedTerms(queryTerms)) {
+			int index = dictionary.indexOf(term);
+			if (index >= 0 && invertedIndex.get(index).numOfDocs > 0) {
+				terms.add(term);
+				termIndexes.add(index);
+				weightsTq.add(weightTq(term, queryTerms));
+			}
+		}
+		int n = termIndexes.size();
+		PostingsCursor[] cursors = new PostingsCursor[n];
+		double[] idfs = new double[n];
+		double[] wtqs = new double[n];
+		double[] bounds = new double[n];
+		double[] docNorms = docNorms();
+		long totalPostings = 0;
+		for (int i = 0; i < n; i++) {
+			DictEntry entry = invertedIndex.get(termIndexes.get(i));
+			cursors[i] = entry.cursor();
+			idfs[i] = idf(terms.get(i), entry);
+			wtqs[i] = weightsTq.get(i);
+			bounds[i] = vq == 0 ? 0 : maxWeight(termIndexes.get(i), docNorms) * wtqs[i] / vq;
+			totalPostings += entry.numOfDocs;
+		}
+		/* Terms by increasing upper bound, with the running sums of the bounds. */
+		Integer[] sortedTerms = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			sortedTerms[i] = i;
+		}
+		Arrays.sort(sortedTerms, (a, b) -> Double.compare(bounds[a], bounds[b]));
+		int[] order = new int[n];
+		double[] sumOfBounds = new double[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = sortedTerms[i];
+			sumOfBounds[i] = (i == 0 ? 0 : sumOfBounds[i - 1]) + bounds[order[i]];
+		}
+
+		top.reset(Math.min(2 * k, numOfDocs));
+		double[] contributions = new double[n];
+		long evaluated = 0;
+		int firstEssential = 0;
+		while (firstEssential < n) {
+			int doc = PostingsCursor.NO_MORE_DOCS;
+			for (int j = firstEssential; j < n; j++) {
+				doc = Math.min(doc, cursors[order[j]].docId());
+			}
+			if (doc == PostingsCursor.NO_MORE_DOCS) {
+				break;
+			}
+			Arrays.fill(contributions, 0);
+			double length = docNorms[doc];
+			double partial = 0;
+			for (int j = firstEssential; j < n; j++) {
+				int t = order[j];
+				if (cursors[t].docId() == doc) {
+					contributions[t] = (Math.log(1 + cursors[t].freq()) / Math.log(2)) * idfs[t] * wtqs[t];
+					partial += contributions[t];
+					evaluated++;
+					cursors[t].next();
+				}
+			}
+			boolean pruned = false;
+			for (int j = firstEssential - 1; j >= 0; j--) {
+				double score = length == 0 ? 0 : partial / (length * vq);
+				if (canBePruned(score + sumOfBounds[j], top)) {
+					pruned = true;
+					break;
+				}
+				int t = order[j];
+				if (cursors[t].advance(doc) == doc) {
+					contributions[t] = (Math.log(1 + cursors[t].freq()) / Math.log(2)) * idfs[t] * wtqs[t];
+					partial += contributions[t];
+					evaluated++;
+				}
+			}
+			if (pruned) {
+				continue;
+			}
+			/* Add up in the same order as computeScores, so the scores are identical. */
+			double sum = 0;
+			for (int t = 0; t < n; t++) {
+				sum += contributions[t];
+			}
+			top.offer(doc, length == 0 ? 0 : sum / (length * vq));
+			while (firstEssential < n && canBePruned(sumOfBounds[firstEssential], top)) {
+				firstEssential++;
+			}
+		}
+		if (!top.isFull()) {
+			/*
+			 * Less than 2k documents contain a query term: nothing was pruned,
+			 * and the rest of S are documents with a score of 0.
+			 */
+			int[] matched = new int[top.size()];
+			for (int i = 0; i < matched.length; i++) {
+				matched[i] = top.index(i);
+			}
+			Arrays.sort(matched);
+			for (int doc = docsList.size() - 1; doc >= 0 && !top.isFull(); doc--) {
+				if (!deletedDocs.get(doc) && Arrays.binarySearch(matched, doc) < 0) {
+					top.offer(doc, 0);
+				}
+			}
+		}
+		long scored = System.nanoTime();
+		top.sort();
+		if (stats != null) {
+			stats.postingsEvaluated += evaluated;
+			stats.postingsSkipped += totalPostings - evaluated;
+			stats.scoringNanos += scored - start;
+			stats.selectionNanos += System.nanoTime() - scored;
+		}
+	}
+
+	/**
+	 * Documents are scored in increasing document index, so a new document
+	 * enters a full top list as soon as its score reaches the lowest score
+	 * kept. The bound is widened slightly so that rounding can never prune a
+	 * document exhaustive scoring would keep.
+	 * 
+	 * @param upperBound
+	 *            upper bound of the score of a document
+	 * @param top
+	 * @return true if a document with that bound cannot enter the top list
+	 */
+	private static boolean canBePruned(double upperBound, TopKSelector top) {
+		return top.isFull() && top.size() > 0 && upperBound * (1 + 1e-9) < top.minScore();
+	}
+
+	/**
+	 * Retrieve the documents containing the terms of the phrase one after
+	 * the other. The index must be positional.
+	 * 
+	 * @param phrase
+	 * @return the names of the matching documents, in document index order
+	 */
+	public ArrayList<String> phraseQuery(String phrase) {
+		return documentNames(matchPositions(queryTerms(phrase), 0));
+	}
+
+	/**
+	 * Retrieve the documents containing all the terms of the query, in any
+	 * order, within window consecutive positions. The index must be
+	 * positional.
+	 * 
+	 * @param query
+	 * @param window
+	 *            the number of positions the terms must fit in
+	 * @return the names of the matching documents, in document index order
+	 */
+	public ArrayList<String> proximityQuery(String query, int window) {
+		if (window < 1)
+			throw new IllegalArgumentException("The window must be positive.");
+		ArrayList<String> terms = new ArrayList<String>();
+		for (String term : queryTerms(query)) {
+			if (!terms.contains(term)) {
+				terms.add(term);
+			}
+		}
+		return documentNames(matchPositions(terms, window));
+	}
+
+	/**
+	 * Count the biwords of the query each candidate document contains, from
+	 * the positions of the terms: a biword appears in a document if its
+	 * second term is right after its first term. The counts are the same as
+	 * BiWordIndex.countBiWords. The index must be positional.
+	 * 
+	 * @param query
+	 * @param candidates
+	 * @return the number of query biwords in each candidate, in the order of
+	 *         candidates
+	 */
+	public int[] countBiWords(String query, ArrayList<StringDoublePair> candidates) {
+		checkPositional();
+		int[] counts = new int[candidates.size()];
+		/* document index in the high half, position in candidates in the low half */
+		long[] sorted = new long[candidates.size()];
+		int numOfCandidates = 0;
+		for (int j = 0; j < candidates.size(); j++) {
+			Integer doc = docsMap.get(candidates.get(j).docName);
+			if (doc != null) {
+				sorted[numOfCandidates++] = ((long) doc << 32) | j;
+			}
+		}
+		Arrays.sort(sorted, 0, numOfCandidates);
+		countBiWords(query, sorted, numOfCandidates, counts);
+		return counts;
+	}
+
+	/**
+	 * Same as countBiWords, for candidates given by document index.
+	 * 
+	 * @param query
+	 * @param sorted
+	 *            the document index of every candidate in the high half and
+	 *            its position in counts in the low half, sorted
+	 * @param numOfCandidates
+	 * @param counts
+	 *            the number of query biwords in each candidate is added to it
+	 */
+	void countBiWords(String query, long[] sorted, int numOfCandidates, int[] counts) {
+		checkPositional();
+		ArrayList<String> terms = queryTerms(query);
+		HashSet<String> biWords = new HashSet<String>();
+		int[] first = new int[16];
+		int[] second = new int[16];
+		for (int i = 1; i < terms.size(); i++) {
+			DictEntry entry1 = entryOf(terms.get(i - 1));
+			DictEntry entry2 = entryOf(terms.get(i));
+			if (!biWords.add(terms.get(i - 1) + " " + terms.get(i)) || entry1 == null || entry2 == null) {
+				continue;
+			}
+			PostingsCursor cursor1 = entry1.cursor();
+			PostingsCursor cursor2 = entry2.cursor();
+			for (int c = 0; c < numOfCandidates; c++) {
+				int doc = (int) (sorted[c] >>> 32);
+				int found1 = cursor1.advance(doc);
+				int found2 = cursor2.advance(doc);
+				if (found1 == PostingsCursor.NO_MORE_DOCS || found2 == PostingsCursor.NO_MORE_DOCS) {
+					break;
+				}
+				if (found1 != doc || found2 != doc) {
+					continue;
+				}
+				first = ensureCapacity(first, cursor1.freq());
+				second = ensureCapacity(second, cursor2.freq());
+				int n1 = entry1.positions(cursor1.index(), cursor1.freq(), first);
+				int n2 = entry2.positions(cursor2.index(), cursor2.freq(), second);
+				/* Merge the two sorted lists looking for p and p + 1. */
+				for (int a = 0, b = 0; a < n1 && b < n2;) {
+					if (second[b] < first[a] + 1) {
+						b++;
+					} else if (second[b] > first[a] + 1) {
+						a++;
+					} else {
+						counts[(int) sorted[c]]++;
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keep the k documents of the list containing the most biwords of the
+	 * query, like BiWordIndex.rerank, using the positions of the terms. The
+	 * index must be positional.
+	 * 
+	 * @param query
+	 * @param list
+	 *            the top 2k documents by cosine similarity
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> rerank(String query, ArrayList<StringDoublePair> list, int k) {
+		return BiWordIndex.selectTopK(list, countBiWords(query, list), k);
+	}
+
+	/**
+	 * Same as rerank, and print the result like BiWordIndex.getTopKDocs.
+	 * 
+	 * @param query
+	 * @param list
+	 * @param k
+	 * @return
+	 */
+	public ArrayList<StringDoublePair> getTopKDocs(String query, ArrayList<StringDoublePair> list, int k) {
+		ArrayList<StringDoublePair> result = rerank(query, list, k);
+		BiWordIndex.printTopKResult(result, result.size());
+		return result;
+	}
+
+	/**
+	 * Find the documents containing all the given terms at matching
+	 * positions, by intersecting the postings of the terms and then their
+	 * positions in every common document.
+	 * 
+	 * @param terms
+	 * @param window
+	 *            0 to match the terms one after the other, in order;
+	 *            otherwise the number of positions the terms must fit in, in
+	 *            any order
+	 * @return the indexes of the matching documents, in increasing order
+	 */
+	private ArrayList<Integer> matchPositions(ArrayList<String> terms, int window) {
+		checkPositional();
+		ArrayList<Integer> docs = new ArrayList<Integer>();
+		int n = terms.size();
+		if (n == 0) {
+			return docs;
+		}
+		DictEntry[] entries = new DictEntry[n];
+		PostingsCursor[] cursors = new PostingsCursor[n];
+		int[][] positions = new int[n][];
+		int[] counts = new int[n];
+		for (int i = 0; i < n; i++) {
+			entries[i] = entryOf(terms.get(i));
+			if (entries[i] == null) {
+				return docs;
+			}
+			cursors[i] = entries[i].cursor();
+			positions[i] = new int[16];
+		}
+		int doc = cursors[0].docId();
+		while (doc != PostingsCursor.NO_MORE_DOCS) {
+			/* Move every cursor to doc; start over from a later document if one skips it. */
+			int next = doc;
+			for (int i = 0; i < n && next == doc; i++) {
+				next = cursors[i].advance(doc);
+			}
+			if (next != doc) {
+				doc = next;
+				continue;
+			}
+			for (int i = 0; i < n; i++) {
+				positions[i] = ensureCapacity(positions[i], cursors[i].freq());
+				counts[i] = entries[i].positions(cursors[i].index(), cursors[i].freq(), positions[i]);
+			}
+			if (window == 0 ? containsPhrase(positions, counts) : withinWindow(positions, counts, window)) {
+				docs.add(doc);
+			}
+			doc = cursors[0].next();
+		}
+		return docs;
+	}
+
+	/**
+	 * @return true if the i-th term is at p + i for some position p of the
+	 *         first term
+	 */
+	private static boolean containsPhrase(int[][] positions, int[] counts) {
+		for (int a = 0; a < counts[0]; a++) {
+			int i = 1;
+			while (i < counts.length && Arrays.binarySearch(positions[i], 0, counts[i], positions[0][a] + i) >= 0) {
+				i++;
+			}
+			if (i == counts.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Slide over the positions of all terms in increasing order, keeping one
+	 * position of every term, to find the smallest span covering all terms.
+	 * 
+	 * @return true if one position of every term fits in window consecutive
+	 *         positions
+	 */
+	private static boolean withinWindow(int[][] positions, int[] counts, int window) {
+		int n = counts.length;
+		int[] next = new int[n];
+		while (true) {
+			int min = 0;
+			int max = positions[0][next[0]];
+			for (int i = 1; i < n; i++) {
+				if (positions[i][next[i]] < positions[min][next[min]]) {
+					min = i;
+				}
+				max = Math.max(max, positions[i][next[i]]);
+			}
+			if (max - positions[min][next[min]] < window) {
+				return true;
+			}
+			if (++next[min] == counts[min]) {
+				return false;
+			}
+		}
+	}
+
+	private static int[] ensureCapacity(int[] values, int size) {
+		return size <= values.length ? values : new int[Math.max(size, values.length * 2)];
+	}
+
+	/**
+	 * @param query
+	 * @return the terms of the query in order, STOP words removed
+	 */
+	private static ArrayList<String> queryTerms(String query) {
+		final ArrayList<String> terms = new ArrayList<String>();
+		new Tokenizer().tokenize(query, term -> terms.add(term));
+		return terms;
+	}
+
+	private ArrayList<String> documentNames(ArrayList<Integer> docs) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (int doc : docs) {
+			names.add(docsList.get(doc));
+		}
+		return names;
+	}
+
+	private void checkPositional() {
+		if (!positional)
+			throw new IllegalStateException("The index doesn't keep the positions of the terms.");
+	}
+
+	/**
+	 * Output the Top k result only based on the  similarities
+	 * @param result
+	 * @param k
+	 */
+	public void outputTopKResult(ArrayList<StringDoublePair> result,int k) {
+		printTop2KResult(result, k);
+	}
+
+	public static void printTop2KResult(ArrayList<StringDoublePair> result, int k) {
+		System.out.println("Top " + k + " documents based on similarities:");
+		System.out.printf("%-25s| %-30s\n", "-----------------------", "------------------------------");
+		System.out.printf("%-25s| %-30s\n", "Document Name", "cosine similarites with query");
+		System.out.printf("%-25s+ %-30s\n", "-----------------------", "------------------------------");
+		for (StringDoublePair pair : result) {
+			System.out.printf("%-25s| %-30f\n", pair.docName, pair.num);
+		}
+		System.out.printf("%-25s| %-30s\n\n", "-----------------------", "------------------------------");				
+	}
+	
+	
+	
+	/**
+	 * Compute the ||v(di)|| of all documents with a single pass over the
+	 * postings lists, so queries never have to loop over the whole dictionary.
+	 */
+	private void computeDocNorms() {
+		double[] docNorms = new double[numOfDocs];
+		/* the terms are only needed to read the df of the collection */
+		Iterator<String> terms = stats == null ? null : dictionary.iterator();
+		for (DictEntry entry : invertedIndex) {
+			double idf = idf(terms == null ? null : terms.next(), entry);
+			PostingsCursor cursor = entry.cursor();
+			for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+				double weight = (Math.log(1 + cursor.freq()) / Math.log(2)) * idf;
+				docNorms[doc] += weight * weight;
+			}
+		}
+		for (int i = 0; i < numOfDocs; i++) {
+			docNorms[i] = Math.sqrt(docNorms[i]);
+		}
+		norms = new Norms(collectionSize(), docNorms);
+	}
+
+	/**
+	 * Compute the upper bounds of all terms at once, once the index is built
+	 * or attached to the collection of its shard, when a pass over all the
+	 * postings is being made anyway.
+	 */
+	private void computeMaxWeights() {
+		double[] docNorms = docNorms();
+		MaxWeights weights = new MaxWeights(docNorms, numOfTerms);
+		Iterator<String> terms = stats == null ? null : dictionary.iterator();
+		for (int t = 0; t < numOfTerms; t++) {
+			weights.set(t, computeMaxWeight(terms == null ? null : terms.next(), invertedIndex.get(t), docNorms));
+		}
+		maxWeights = weights;
+	}
+
+	/**
+	 * @param index
+	 *            the index of a term
+	 * @param norms
+	 *            the norms the query reads, docNorms()
+	 * @return the highest weight(t,d) / ||v(d)|| over the postings of the
+	 *         term, the upper bound used by getTop2KDocsPruned, computed the
+	 *         first time a query reads it with these norms
+	 */
+	private double maxWeight(int index, double[] norms) {
+		MaxWeights weights = maxWeights;
+		if (weights == null || weights.norms != norms || weights.size() <= index) {
+			weights = new MaxWeights(norms, numOfTerms);
+			maxWeights = weights;
+		}
+		double maxWeight = weights.get(index);
+		if (Double.isNaN(maxWeight)) {
+			String term = stats == null ? null : dictionary.term(index);
+			maxWeight = computeMaxWeight(term, invertedIndex.get(index), norms);
+			weights.set(index, maxWeight);
+		}
+		return maxWeight;
+	}
+
+	/**
+	 * @return the highest weight(t,d) / ||v(d)|| over the postings of the
+	 *         entry
+	 */
+	private double computeMaxWeight(String term, DictEntry entry, double[] norms) {
+		if (entry.numOfDocs == 0) {
+			return 0;
+		}
+		double idf = idf(term, entry);
+		double maxWeight = 0;
+		PostingsCursor cursor = entry.cursor();
+		for (int doc = cursor.docId(); doc != PostingsCursor.NO_MORE_DOCS; doc = cursor.next()) {
+			double length = norms[doc];
+			if (length > 0) {
+				double weight = (Math.log(1 + cursor.freq()) / Math.log(2)) * idf;
+				maxWeight = Math.max(maxWeight, weight / length);
+			}
+		}
+		return maxWeight;
+	}
+
+	/**
+	 * Compute the weight(t,q) for term t in query q
+	 * 
+	 * @param term
+	 * @param queryTerms
+	 * @return
+	 */
+	private double weightTq(String term, HashMap<String, Integer> queryTerms) {
+		double weight = 0;
+		double tftq;/*
+		 * number of times term t appears in document d
+		 */		
+		if (!queryTerms.containsKey(term)) {
+			return 0;
+		} else {
+			tftq = queryTerms.get(term);
+		}
+		weight = (Math.log(1 + tftq) / Math.log(2));
+		return weight;
+	}
+
+	/**
+	 * Collects the non-repeated terms of a token stream with their #appears.
+	 * 
+	 * @author YAN DENG
+	 *
+	 */
+	public static class TermCounter implements Tokenizer.TokenHandler {
+		private HashMap<String, Integer> terms;
+
+		public TermCounter(HashMap<String, Integer> terms) {
+			this.terms = terms;
+		}
+
+		@Override
+		public void token(String term) {
+			Integer num = terms.get(term);
+			terms.put(term, num == null ? 1 : num + 1);
+		}
+	}
+
+	/**
+	 * Collects the positions of the terms of a token stream. The array of a
+	 * term holds its #appears followed by its positions in increasing order.
+	 * 
+	 * @author YAN DENG
+	 *
+	 */
+	static class PositionCollector implements Tokenizer.TokenHandler {
+		private HashMap<String, int[]> positions;
+		private int position;
+
+		public PositionCollector(HashMap<String, int[]> positions) {
+			this.positions = positions;
+			this.position = 0;
+		}
+
+		@Override
+		public void token(String term) {
+			int[] termPositions = positions.get(term);
+			if (termPositions == null) {
+				termPositions = new int[4];
+				positions.put(term, termPositions);
+			} else if (termPositions[0] + 1 == termPositions.length) {
+				termPositions = Arrays.copyOf(termPositions, termPositions.length * 2);
+				positions.put(term, termPositions);
+			}
+			termPositions[++termPositions[0]] = position++;
+		}
+	}
+
+	/**
+	 * Binary search for key in the first size values of a sorted int buffer.
+	 * 
+	 * @return the position of key, or a negative value if it is not found
+	 */
+	static int binarySearch(IntBuffer values, int size, int key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = values.get(mid);
+			if (value < key) {
+				low = mid + 1;
+			} else if (value > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Inner class, to store the <docName, numAppears> pair.
+	 * 
+	 * @author YAN
+	 *
+	 */
+	public class PostListEntry implements Comparable<PostListEntry> {
+		public String docName;
+		public int numAppears;
+
+		public PostListEntry(String name, int num) {
+			this.docName = name;
+			this.numAppears = num;
+		}
+
+		@Override
+		public int compareTo(PostListEntry o) {
+			return docsMap.get(this.docName) - docsMap.get(o.docName);
+		}
+	}
+
+	/**
+	 * Inner class, to hold the norms of the documents with the size of the
+	 * collection they were computed for.
+	 * 
+	 * @author YAN DENG
+	 *
+	 */
+	private static final class Norms {
+		final int collectionSize;
+		final double[] lengths;
+
+		Norms(int collectionSize, double[] lengths) {
+			this.collectionSize = collectionSize;
+			this.lengths = lengths;
+		}
+	}
+
+	/**
+	 * Inner class, to hold the upper bounds of the terms computed with one
+	 * array of norms. A bound is computed by the first pruned query reading
+	 * its term, and any other query would compute the same value, so the
+	 * queries may fill the bounds concurrently without a lock. Unknown bounds
+	 * are NaN.
+	 * 
+	 * @author YAN DENG
+	 *
+	 */
+	private static final class MaxWeights {
+		final double[] norms;/*the norms the bounds are computed with*/
+		private final AtomicLongArray bits;/*the bounds as raw long bits*/
+
+		MaxWeights(double[] norms, int numOfTerms) {
+			this.norms = norms;
+			this.bits = new AtomicLongArray(numOfTerms);
+			long unknown = Double.doubleToRawLongBits(Double.NaN);
+			for (int i = 0; i < numOfTerms; i++) {
+				bits.set(i, unknown);
+			}
+		}
+
+		int size() {
+			return bits.length();
+		}
+
+		double get(int index) {
+			return Double.longBitsToDouble(bits.get(index));
+		}
+
+		void set(int index, double maxWeight) {
+			bits.set(index, Double.doubleToRawLongBits(maxWeight));
+		}
+
+		/**
+		 * Copy the bound of a term of other, known or not.
+		 */
+		void copy(int index, MaxWeights other, int otherIndex) {
+			bits.set(index, other.bits.get(otherIndex));
+		}
+	}
+
+	/**
+	 * Inner class, to store the inverted list entry. The postings are kept as
+	 * two parallel int buffers sorted by document index: docIds.get(i) is a
+	 * document containing the term and freqs.get(i) is the number of times the
+	 * term appears in it. In a positional index, the freqs.get(i) positions of
+	 * the term in that document start at positionStarts.get(i) in positions;
+	 * the first one is stored as is and the next ones as the difference with
+	 * the previous one. While the index is being built the buffers are filled
+	 * through growable arrays; an entry read from an index file points
+	 * directly into the mapped file. A compressed entry keeps its documents
+	 * and frequencies in blocks instead, docIds and freqs being null, so the
+	 * postings are read through cursor().
+	 * 
+	 * @author YAN DENG
+	 *
+	 */
+	static class DictEntry {
+		public int numOfDocs;
+		public IntBuffer docIds;
+		public IntBuffer freqs;
+		public int numOfPositions;
+		public IntBuffer positions;/*null unless the index is positional*/
+		public IntBuffer positionStarts;
+		public BlockPostings blocks;/*null unless the postings are compressed*/
+		private int[] docIdBuffer;/*growable buffers, only used while building*/
+		private int[] freqBuffer;
+		private int[] positionBuffer;
+		private int[] positionStartBuffer;
+		/*
+		 * The postings quantized for the scoring kernels, built by the first
+		 * query of a kernel reading the entry and dropped whenever a posting
+		 * is added or removed. Immutable, so it needs no lock.
+		 */
+		private ScoringKernel.QuantizedPostings quantized;
+		/*
+		 * Whether the entry keeps positions, passed in rather than read from
+		 * the index: the entries are shared between the copies of an index,
+		 * and must not keep the copy that created them reachable.
+		 */
+		private final boolean positional;
+
+		public DictEntry(boolean positional) {
+			this.positional = positional;
+			this.numOfDocs = 0;
+			this.docIdBuffer = new int[4];
+			this.freqBuffer = new int[4];
+			if (positional) {
+				this.positionBuffer = new int[4];
+				this.positionStartBuffer = new int[4];
+			}
+		}
+
+		public DictEntry(int num, IntBuffer docIds, IntBuffer freqs) {
+			this(num, docIds, freqs, 0, null, null, false);
+		}
+
+		public DictEntry(int num, IntBuffer docIds, IntBuffer freqs, int numOfPositions, IntBuffer positions,
+				IntBuffer positionStarts, boolean positional) {
+			this.positional = positional;
+			this.numOfDocs = num;
+			this.docIds = docIds;
+			this.freqs = freqs;
+			this.numOfPositions = numOfPositions;
+			this.positions = positions;
+			this.positionStarts = positionStarts;
+		}
+
+		/**
+		 * Append a posting. Documents are indexed in increasing order, so the
+		 * postings stay sorted by document index.
+		 * 
+		 * @param termPositions
+		 *            #appears followed by the positions of the term in the
+		 *            document, null unless the index is positional
+		 */
+		public void add(int docId, int freq, int[] termPositions) {
+			quantized = null;
+			grow();
+			docIdBuffer[numOfDocs] = docId;
+			freqBuffer[numOfDocs] = freq;
+			if (positionBuffer != null) {
+				positionStartBuffer[numOfDocs] = numOfPositions;
+				ensurePositionCapacity(numOfPositions + freq);
+				for (int i = 1; i <= freq; i++) {
+					positionBuffer[numOfPositions++] = i == 1 ? termPositions[i] : termPositions[i] - termPositions[i - 1];
+				}
+			}
+			numOfDocs++;
+		}
+
+		/**
+		 * Append the posting at position pos of another entry under a new
+		 * document index. The positions are copied as they are stored.
+		 */
+		public void add(DictEntry other, int pos, int docId, int freq) {
+			quantized = null;
+			grow();
+			docIdBuffer[numOfDocs] = docId;
+			freqBuffer[numOfDocs] = freq;
+			if (positionBuffer != null) {
+				positionStartBuffer[numOfDocs] = numOfPositions;
+				ensurePositionCapacity(numOfPositions + freq);
+				int start = other.positionStarts.get(pos);
+				for (int i = 0; i < freq; i++) {
+					positionBuffer[numOfPositions++] = other.positions.get(start + i);
+				}
+			}
+			numOfDocs++;
+		}
+
+		private void grow() {
+			if (numOfDocs == docIdBuffer.length) {
+				docIdBuffer = Arrays.copyOf(docIdBuffer, numOfDocs * 2);
+				freqBuffer = Arrays.copyOf(freqBuffer, numOfDocs * 2);
+				if (positionStartBuffer != null) {
+					positionStartBuffer = Arrays.copyOf(positionStartBuffer, numOfDocs * 2);
+				}
+			}
+		}
+
+		/**
+		 * Append a posting to an entry of a built index.
+		 */
+		public void append(int docId, int freq, int[] termPositions) {
+			ensureGrowable();
+			add(docId, freq, termPositions);
+			wrap();
+		}
+
+		/**
+		 * Remove the posting at the given position from an entry of a built
+		 * index.
+		 */
+		public void remove(int pos) {
+			quantized = null;
+			ensureGrowable();
+			if (positionBuffer != null) {
+				int start = positionStartBuffer[pos];
+				int length = freqBuffer[pos];
+				System.arraycopy(positionBuffer, start + length, positionBuffer, start, numOfPositions - start - length);
+				numOfPositions -= length;
+				for (int i = pos + 1; i < numOfDocs; i++) {
+					positionStartBuffer[i - 1] = positionStartBuffer[i] - length;
+				}
+			}
+			System.arraycopy(docIdBuffer, pos + 1, docIdBuffer, pos, numOfDocs - pos - 1);
+			System.arraycopy(freqBuffer, pos + 1, freqBuffer, pos, numOfDocs - pos - 1);
+			numOfDocs--;
+			wrap();
+		}
+
+		/**
+		 * Copy trimmed, mapped or compressed postings back into growable
+		 * buffers.
+		 */
+		private void ensureGrowable() {
+			if (docIdBuffer != null) {
+				return;
+			}
+			int capacity = Math.max(4, numOfDocs + numOfDocs / 2 + 1);
+			docIdBuffer = new int[capacity];
+			freqBuffer = new int[capacity];
+			if (blocks != null) {
+				blocks.decode(docIdBuffer, freqBuffer);
+				blocks = null;
+			} else {
+				docIds.duplicate().get(docIdBuffer, 0, numOfDocs);
+				freqs.duplicate().get(freqBuffer, 0, numOfDocs);
+			}
+			if (positional) {
+				positionStartBuffer = new int[capacity];
+				positionBuffer = new int[Math.max(4, numOfPositions + numOfPositions / 2 + 1)];
+				if (numOfDocs > 0) {
+					positionStarts.duplicate().get(positionStartBuffer, 0, numOfDocs);
+					positions.duplicate().get(positionBuffer, 0, numOfPositions);
+				}
+			}
+		}
+
+		private void ensurePositionCapacity(int size) {
+			if (size > positionBuffer.length) {
+				positionBuffer = Arrays.copyOf(positionBuffer, Math.max(size, positionBuffer.length * 2));
+			}
+		}
+
+		/**
+		 * Make the growable buffers the postings of the entry.
+		 */
+		private void wrap() {
+			docIds = IntBuffer.wrap(docIdBuffer, 0, numOfDocs);
+			freqs = IntBuffer.wrap(freqBuffer, 0, numOfDocs);
+			if (positionBuffer != null) {
+				positions = IntBuffer.wrap(positionBuffer, 0, numOfPositions);
+				positionStarts = IntBuffer.wrap(positionStartBuffer, 0, numOfDocs);
+			}
+		}
+
+		/**
+		 * Append all postings of another entry that is still being built,
+		 * shifting its document indexes by offset.
+		 */
+		public void addAll(DictEntry other, int offset) {
+			quantized = null;
+			int size = numOfDocs + other.numOfDocs;
+			if (size > docIdBuffer.length) {
+				int capacity = Math.max(size, docIdBuffer.length * 2);
+				docIdBuffer = Arrays.copyOf(docIdBuffer, capacity);
+				freqBuffer = Arrays.copyOf(freqBuffer, capacity);
+				if (positionStartBuffer != null) {
+					positionStartBuffer = Arrays.copyOf(positionStartBuffer, capacity);
+				}
+			}
+			for (int i = 0; i < other.numOfDocs; i++) {
+				docIdBuffer[numOfDocs + i] = other.docIdBuffer[i] + offset;
+			}
+			System.arraycopy(other.freqBuffer, 0, freqBuffer, numOfDocs, other.numOfDocs);
+			if (positionBuffer != null) {
+				for (int i = 0; i < other.numOfDocs; i++) {
+					positionStartBuffer[numOfDocs + i] = other.positionStartBuffer[i] + numOfPositions;
+				}
+				ensurePositionCapacity(numOfPositions + other.numOfPositions);
+				System.arraycopy(other.positionBuffer, 0, positionBuffer, numOfPositions, other.numOfPositions);
+				numOfPositions += other.numOfPositions;
+			}
+			numOfDocs = size;
+		}
+
+		/**
+		 * Shrink the growable buffers to the number of postings and make them
+		 * the postings of the entry.
+		 */
+		public void trim() {
+			if (docIdBuffer == null) {
+				return;
+			}
+			docIds = IntBuffer.wrap(Arrays.copyOf(docIdBuffer, numOfDocs));
+			freqs = IntBuffer.wrap(Arrays.copyOf(freqBuffer, numOfDocs));
+			docIdBuffer = null;
+			freqBuffer = null;
+			if (positionBuffer != null) {
+				positions = IntBuffer.wrap(Arrays.copyOf(positionBuffer, numOfPositions));
+				positionStarts = IntBuffer.wrap(Arrays.copyOf(positionStartBuffer, numOfDocs));
+				positionBuffer = null;
+				positionStartBuffer = null;
+			}
+		}
+
+		/**
+		 * Decode the positions of the term in the document of a posting.
+		 * 
+		 * @param pos
+		 *            position of the posting
+		 * @param freq
+		 *            frequency of the posting
+		 * @param out
+		 *            receives the positions, at least freq long
+		 * @return the number of positions
+		 */
+		public int positions(int pos, int freq, int[] out) {
+			int start = positionStarts.get(pos);
+			int position = 0;
+			for (int i = 0; i < freq; i++) {
+				position += positions.get(start + i);
+				out[i] = position;
+			}
+			return freq;
+		}
+
+		/**
+		 * @return the position of docId in the postings, or a negative value
+		 *         if the term does not appear in that document
+		 */
+		public int indexOf(int docId) {
+			if (blocks != null) {
+				PostingsCursor cursor = blocks.cursor();
+				return cursor.advance(docId) == docId ? cursor.index() : -1;
+			}
+			return binarySearch(docIds, numOfDocs, docId);
+		}
+
+		/**
+		 * @return the postings with their weights quantized
+		 */
+		ScoringKernel.QuantizedPostings quantized() {
+			ScoringKernel.QuantizedPostings postings = quantized;
+			if (postings == null) {
+				postings = new ScoringKernel.QuantizedPostings(cursor(), numOfDocs);
+				quantized = postings;
+			}
+			return postings;
+		}
+
+		/**
+		 * @return a new cursor positioned on the first posting
+		 */
+		public PostingsCursor cursor() {
+			return blocks != null ? blocks.cursor() : new PostingsCursor(docIds, freqs, numOfDocs);
+		}
+
+		/**
+		 * Replace the documents and frequencies of the postings by blocks
+		 * encoded with the given codec. The positions are left as they are.
+		 */
+		public void compress(PostingsCodec codec) {
+			if (blocks != null && blocks.getCodec().name().equals(codec.name())) {
+				return;
+			}
+			trim();
+			decompress();
+			blocks = BlockPostings.encode(docIds, freqs, numOfDocs, codec);
+			docIds = null;
+			freqs = null;
+		}
+
+		/**
+		 * Make the postings readable as int buffers again.
+		 */
+		public void decompress() {
+			if (blocks == null) {
+				return;
+			}
+			int[] docIdArray = new int[numOfDocs];
+			int[] freqArray = new int[numOfDocs];
+			blocks.decode(docIdArray, freqArray);
+			docIds = IntBuffer.wrap(docIdArray);
+			freqs = IntBuffer.wrap(freqArray);
+			blocks = null;
+		}
+	}
+}
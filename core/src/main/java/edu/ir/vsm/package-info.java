@@ -0,0 +1,36 @@
+/**
+ * The index and scoring engine: inverted indexes of the documents of a
+ * folder, ranked retrieval with the vector space model and biword
+ * reranking.
+ *
+ * The public classes and their public members are the API of the engine;
+ * package-private members may change. The entry points are:
+ * <ul>
+ * <li>IndexBuilder, to build a WordIndex and a BiWordIndex of a folder, or
+ * a positional WordIndex alone;</li>
+ * <li>IndexFile, to write built indexes to a file and to serve them from
+ * that file;</li>
+ * <li>SnapshotManager, to query the indexes from any number of threads
+ * while they are updated: the indexes become the first segment of a
+ * SegmentedIndex, which receives the new documents in new segments and
+ * whose segments are merged in the background. A query reads one
+ * IndexSnapshot, whose search methods return the top k documents as
+ * StringDoublePair results or fill a reusable SearchResults with their ids
+ * and scores, optionally passing them to a ResultSink such as the
+ * ConsoleSink;</li>
+ * <li>FolderWatcher, to keep the indexes of a folder up to date;</li>
+ * <li>ShardedIndex, to split a folder into shards of consecutive documents,
+ * held by IndexShards of this process or served by the ShardServers of other
+ * processes through RemoteShards, and to query them in parallel with the
+ * scores of a single index;</li>
+ * <li>ScoringKernel, given to a SearchResults to score the queries run
+ * without pruning in float precision, with the Vector API when the JVM has
+ * its incubator module;</li>
+ * <li>Metrics, whose registry records the latency of the stages of the
+ * queries and the size and build throughput of the indexes.</li>
+ * </ul>
+ *
+ * @author YAN DENG
+ *
+ */
+package edu.ir.vsm;
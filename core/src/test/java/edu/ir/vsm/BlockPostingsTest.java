@@ -0,0 +1,129 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks the cursors of compressed postings against plain arrays of
+ * document indexes and frequencies.
+ *
+ * @author YAN DENG
+ *
+ */
+class BlockPostingsTest {
+
+	private static final int[] SIZES = { 0, 1, 2, 127, 128, 129, 255, 256, 257, 1000, 5000 };
+
+	private int[] docIds;
+	private int[] freqs;
+
+	private BlockPostings encode(Random random, int size, int maxGap, String codec) {
+		docIds = new int[size];
+		freqs = new int[size];
+		int doc = -1;
+		for (int i = 0; i < size; i++) {
+			doc += 1 + random.nextInt(maxGap);
+			docIds[i] = doc;
+			freqs[i] = 1 + (random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(4));
+		}
+		return BlockPostings.encode(IntBuffer.wrap(docIds), IntBuffer.wrap(freqs), size,
+				PostingsCodec.forName(codec));
+	}
+
+	/**
+	 * @return the position of the first document not lower than target from
+	 *         position from on, by a linear scan
+	 */
+	private int firstNotLower(int from, int target) {
+		int i = from;
+		while (i < docIds.length && docIds[i] < target) {
+			i++;
+		}
+		return i;
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void decodesAllPostings(String codec) {
+		Random random = new Random(3);
+		for (int size : SIZES) {
+			BlockPostings blocks = encode(random, size, 50, codec);
+			assertEquals(size, blocks.size());
+			int[] decodedDocIds = new int[size];
+			int[] decodedFreqs = new int[size];
+			blocks.decode(decodedDocIds, decodedFreqs);
+			assertArrayEquals(docIds, decodedDocIds);
+			assertArrayEquals(freqs, decodedFreqs);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void iteratesLikeThePlainList(String codec) {
+		Random random = new Random(5);
+		for (int size : SIZES) {
+			PostingsCursor cursor = encode(random, size, 1000, codec).cursor();
+			for (int i = 0; i < size; i++) {
+				assertEquals(i, cursor.index());
+				assertEquals(docIds[i], cursor.docId());
+				assertEquals(freqs[i], cursor.freq());
+				cursor.next();
+			}
+			assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.docId());
+			assertEquals(PostingsCursor.NO_MORE_DOCS, cursor.next());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void advancesLikeThePlainList(String codec) {
+		Random random = new Random(7);
+		for (int size : SIZES) {
+			for (int n = 0; n < 20; n++) {
+				BlockPostings blocks = encode(random, size, 1 + random.nextInt(300), codec);
+				PostingsCursor compressed = blocks.cursor();
+				PostingsCursor plain = new PostingsCursor(IntBuffer.wrap(docIds), IntBuffer.wrap(freqs), size);
+				int last = size == 0 ? 10 : docIds[size - 1] + 10;
+				int pos = 0;
+				int target = 0;
+				while (pos < size) {
+					/* short steps within a block, and long ones skipping blocks */
+					target += random.nextInt(4) == 0 ? random.nextInt(last / 4 + 1) : random.nextInt(20);
+					pos = firstNotLower(pos, target);
+					int expected = pos < size ? docIds[pos] : PostingsCursor.NO_MORE_DOCS;
+					assertEquals(expected, compressed.advance(target), "advance(" + target + ")");
+					assertEquals(expected, plain.advance(target), "advance(" + target + ")");
+					if (pos < size) {
+						assertEquals(pos, compressed.index());
+						assertEquals(freqs[pos], compressed.freq());
+					}
+					/* a target behind the cursor never moves it backwards */
+					assertEquals(expected, compressed.advance(target - 100));
+				}
+				assertEquals(PostingsCursor.NO_MORE_DOCS, compressed.advance(last + 1000));
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void advancesToEveryBlockBoundary(String codec) {
+		BlockPostings blocks = encode(new Random(11), 1000, 3, codec);
+		for (int pos = 0; pos < 1000; pos += BlockPostings.BLOCK_SIZE) {
+			for (int offset : new int[] { -1, 0, 1 }) {
+				int i = Math.max(0, Math.min(999, pos + offset));
+				PostingsCursor cursor = blocks.cursor();
+				assertEquals(docIds[i], cursor.advance(docIds[i]));
+				assertEquals(i, cursor.index());
+				assertEquals(freqs[i], cursor.freq());
+				assertEquals(i + 1 < 1000 ? docIds[i + 1] : PostingsCursor.NO_MORE_DOCS, cursor.next());
+			}
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the queries of a positional WordIndex: the phrase and proximity
+ * queries against a scan of the terms of every document, and the biword
+ * counts of the rerank against those of a BiWordIndex of the same folder,
+ * in memory and once read back from an index file.
+ *
+ * @author YAN DENG
+ *
+ */
+class PositionalIndexTest {
+
+	private static final int NUM_OF_DOCS = 150;
+
+	@TempDir
+	static Path temp;
+
+	private static Path folder;
+	private static PrintStream out;
+	/* the terms of every document, STOP words dropped, by document name */
+	private static final TreeMap<String, List<String>> documents = new TreeMap<String, List<String>>();
+	private static List<String> docNames;/*in the order of the document indexes*/
+	private static final List<String> queries = new ArrayList<String>();
+	private static WordIndex positional;
+	private static WordIndex words;
+	private static BiWordIndex biWords;
+
+	@BeforeAll
+	static void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		folder = Files.createDirectory(temp.resolve("docs"));
+		Random random = new Random(42);
+		/* a small vocabulary, so that phrases occur; STOP words and punctuation are skipped by positions */
+		String[] vocabulary = { "alpha", "beta", "gamma", "delta", "epsilon", "zeta", "theta", "iota", "kappa",
+				"lambda", "the", "of", "a", "beta,", "Gamma." };
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			StringBuilder text = new StringBuilder();
+			for (int i = 1 + random.nextInt(40); i > 0; i--) {
+				text.append(vocabulary[random.nextInt(vocabulary.length)]).append(random.nextInt(8) == 0 ? '\n' : ' ');
+			}
+			String docName = String.format("doc%03d.txt", d);
+			Files.write(folder.resolve(docName), text.toString().getBytes(StandardCharsets.UTF_8));
+			List<String> terms = new ArrayList<String>();
+			new Tokenizer().tokenize(text, term -> terms.add(term));
+			documents.put(docName, terms);
+		}
+		for (int q = 0; q < 60; q++) {
+			StringBuilder query = new StringBuilder();
+			for (int i = 1 + random.nextInt(4); i > 0; i--) {
+				query.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+			}
+			queries.add(query.toString());
+		}
+		queries.add("alpha missing");
+		queries.add("beta beta");
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 2, true);
+		builder.build();
+		positional = builder.getWordIndex();
+		docNames = positional.documentNames();
+		builder = new IndexBuilder(folder.toString(), 2);
+		builder.build();
+		words = builder.getWordIndex();
+		biWords = builder.getBiWordIndex();
+	}
+
+	@AfterAll
+	static void restore() {
+		System.setOut(out);
+	}
+
+	private static List<String> terms(String query) {
+		List<String> terms = new ArrayList<String>();
+		new Tokenizer().tokenize(query, term -> terms.add(term));
+		return terms;
+	}
+
+	/**
+	 * @return the documents containing the terms one after the other, in
+	 *         document index order
+	 */
+	private static ArrayList<String> scanPhrase(List<String> phrase) {
+		ArrayList<String> names = new ArrayList<String>();
+		for (String docName : docNames) {
+			List<String> terms = documents.get(docName);
+			for (int i = 0; !phrase.isEmpty() && i + phrase.size() <= terms.size(); i++) {
+				if (terms.subList(i, i + phrase.size()).equals(phrase)) {
+					names.add(docName);
+					break;
+				}
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * @return the documents containing all the terms within window
+	 *         consecutive positions, in document index order
+	 */
+	private static ArrayList<String> scanProximity(List<String> query, int window) {
+		HashSet<String> distinct = new HashSet<String>(query);
+		ArrayList<String> names = new ArrayList<String>();
+		for (String docName : docNames) {
+			List<String> terms = documents.get(docName);
+			for (int i = 0; !distinct.isEmpty() && i < terms.size(); i++) {
+				if (new HashSet<String>(terms.subList(i, Math.min(terms.size(), i + window))).containsAll(distinct)) {
+					names.add(docName);
+					break;
+				}
+			}
+		}
+		return names;
+	}
+
+	private static void assertQueries(WordIndex index, String message) {
+		boolean matched = false;
+		for (String query : queries) {
+			ArrayList<String> phrase = index.phraseQuery(query);
+			assertEquals(scanPhrase(terms(query)), phrase, message + ", phrase " + query);
+			matched |= !phrase.isEmpty() && terms(query).size() > 1;
+			for (int window : new int[] { 1, 2, 3, 5, 10 }) {
+				assertEquals(scanProximity(terms(query), window), index.proximityQuery(query, window),
+						message + ", " + query + " within " + window);
+			}
+		}
+		assertTrue(matched, "no phrase of several terms matched");
+	}
+
+	@Test
+	void answersPhraseAndProximityQueries() {
+		assertQueries(positional, "in memory");
+		assertThrows(IllegalArgumentException.class, () -> positional.proximityQuery("alpha", 0));
+		assertThrows(IllegalStateException.class, () -> words.phraseQuery("alpha beta"));
+	}
+
+	@Test
+	void countsBiWordsAsTheBiWordIndex() {
+		assertCounts(positional, "in memory");
+	}
+
+	@Test
+	void answersTheSameOnceReadBack() throws IOException {
+		File file = temp.resolve("positional.idx").toFile();
+		IndexFile.write(file, positional, null);
+		WordIndex read = IndexFile.open(file).getWordIndex();
+		assertTrue(read.isPositional());
+		assertQueries(read, "read back");
+		assertCounts(read, "read back");
+	}
+
+	private static void assertCounts(WordIndex index, String message) {
+		ArrayList<StringDoublePair> candidates = new ArrayList<StringDoublePair>();
+		for (String docName : documents.descendingKeySet()) {
+			candidates.add(new StringDoublePair(docName, 0));
+		}
+		candidates.add(new StringDoublePair("not indexed", 0));
+		for (String query : queries) {
+			assertArrayEquals(biWords.countBiWords(query, candidates), index.countBiWords(query, candidates),
+					message + ", " + query);
+			for (int k : new int[] { 1, 5, 20 }) {
+				ArrayList<StringDoublePair> top2K = words.searchTop2K(query, k);
+				ArrayList<StringDoublePair> expected = biWords.rerank(query, top2K, k);
+				ArrayList<StringDoublePair> actual = index.rerank(query, top2K, k);
+				assertEquals(expected.size(), actual.size(), message + ", " + query);
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(expected.get(i).docName, actual.get(i).docName, message + ", " + query + " rank " + i);
+				}
+			}
+		}
+	}
+}
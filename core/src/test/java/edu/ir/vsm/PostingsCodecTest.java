@@ -0,0 +1,118 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Round trips of the blocks of values of the postings codecs.
+ *
+ * @author YAN DENG
+ *
+ */
+class PostingsCodecTest {
+
+	private static final int MARKER = 0x5A5A5A5A;
+
+	/**
+	 * Encode the values followed by a marker, decode them back and check
+	 * that the decoder read exactly the bytes of the block.
+	 */
+	private static void assertRoundTrip(PostingsCodec codec, int[] values) {
+		int count = values.length;
+		ByteBuffer buffer = ByteBuffer.allocate(codec.maxEncodedSize(count) + 4);
+		codec.encode(values, count, buffer);
+		assertTrue(buffer.position() <= codec.maxEncodedSize(count), "maxEncodedSize is not an upper bound");
+		int size = buffer.position();
+		buffer.putInt(MARKER);
+		buffer.flip();
+		int[] decoded = new int[count + 1];
+		decoded[count] = -1;
+		codec.decode(buffer, decoded, count);
+		assertEquals(size, buffer.position(), "the decoder did not read the bytes of the block");
+		assertEquals(MARKER, buffer.getInt());
+		assertArrayEquals(values, Arrays.copyOf(decoded, count));
+		assertEquals(-1, decoded[count], "the decoder wrote past count");
+	}
+
+	private static int[] randomValues(Random random, int count, int bound) {
+		int[] values = new int[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = random.nextInt(bound);
+		}
+		return values;
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void roundTripsEdgeBlocks(String name) {
+		PostingsCodec codec = PostingsCodec.forName(name);
+		assertRoundTrip(codec, new int[0]);
+		assertRoundTrip(codec, new int[] { 0 });
+		assertRoundTrip(codec, new int[] { Integer.MAX_VALUE });
+		assertRoundTrip(codec, new int[BlockPostings.BLOCK_SIZE]);
+		int[] max = new int[BlockPostings.BLOCK_SIZE];
+		Arrays.fill(max, Integer.MAX_VALUE);
+		assertRoundTrip(codec, max);
+		int[] powers = new int[32];
+		for (int i = 0; i < 31; i++) {
+			powers[i] = 1 << i;
+		}
+		powers[31] = (1 << 31) - 1;
+		assertRoundTrip(codec, powers);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void roundTripsEveryBlockLength(String name) {
+		PostingsCodec codec = PostingsCodec.forName(name);
+		Random random = new Random(13);
+		for (int count = 1; count <= BlockPostings.BLOCK_SIZE; count++) {
+			for (int bound : new int[] { 2, 100, 1 << 16, Integer.MAX_VALUE }) {
+				assertRoundTrip(codec, randomValues(random, count, bound));
+			}
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = { "vbyte", "pfordelta" })
+	void roundTripsExceptions(String name) {
+		PostingsCodec codec = PostingsCodec.forName(name);
+		Random random = new Random(17);
+		for (int n = 0; n < 500; n++) {
+			int count = 1 + random.nextInt(BlockPostings.BLOCK_SIZE);
+			int[] values = randomValues(random, count, 8);
+			/* a few values far above the others, patched in by PForDelta */
+			int numOfExceptions = random.nextInt(1 + count / 5);
+			for (int e = 0; e < numOfExceptions; e++) {
+				values[random.nextInt(count)] = random.nextInt(Integer.MAX_VALUE);
+			}
+			assertRoundTrip(codec, values);
+		}
+	}
+
+	@Test
+	void packsMostValuesOnFewBits() {
+		int[] values = new int[BlockPostings.BLOCK_SIZE];
+		Arrays.fill(values, 3);
+		values[5] = 1 << 30;
+		ByteBuffer out = ByteBuffer.allocate(new PForDeltaCodec().maxEncodedSize(values.length));
+		new PForDeltaCodec().encode(values, values.length, out);
+		/* b = 2 for 128 values is 4 longs, plus the header and one exception */
+		assertTrue(out.position() <= 1 + 1 + 32 + 1 + 5, "encoded on " + out.position() + " bytes");
+	}
+
+	@Test
+	void rejectsUnknownCodecs() {
+		assertThrows(IllegalArgumentException.class, () -> PostingsCodec.forName("zip"));
+	}
+}
@@ -0,0 +1,233 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the results of a QueryCache against the same queries answered
+ * without the cache, and its counters: a smaller k served from the top 2k
+ * cached for a larger one, the reranked top k reused only for the same
+ * terms in the same order and the same k, the entries dropped when a newer
+ * snapshot is read, the results of an older snapshot not stored, and the
+ * least recently used entries evicted.
+ *
+ * @author YAN DENG
+ *
+ */
+class QueryCacheTest {
+
+	private static final int NUM_OF_DOCS = 100;
+
+	@TempDir
+	Path folder;
+
+	private static PrintStream out;
+	private final Random random = new Random(42);
+	private final String[] vocabulary = new String[80];
+
+	@BeforeAll
+	static void silence() {
+		/* The engine prints its progress, which would only add noise to the output. */
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@AfterAll
+	static void restore() {
+		System.setOut(out);
+	}
+
+	QueryCacheTest() {
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = "word" + i;
+		}
+	}
+
+	private String text(int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append(vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1]).append(' ');
+		}
+		return text.toString();
+	}
+
+	private File write(String docName, String content) throws IOException {
+		Path file = folder.resolve(docName);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
+
+	private SnapshotManager build() throws IOException {
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			write(String.format("doc%03d.txt", d), text(10 + random.nextInt(50)));
+		}
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 1);
+		builder.build();
+		return new SnapshotManager(builder.getWordIndex(), builder.getBiWordIndex(), 16, new MergePolicy());
+	}
+
+	/**
+	 * Check the result against the query answered by the snapshot without
+	 * the cache.
+	 */
+	private static void assertUncached(IndexSnapshot snapshot, String query, int k, QueryCache.Result result) {
+		ArrayList<StringDoublePair> top2K = snapshot.getIndex().searchTop2K(query, k);
+		assertSameList(top2K, result.top2K, query + ", k = " + k + ", top 2k");
+		assertSameList(snapshot.rerank(query, top2K, k), result.topK, query + ", k = " + k + ", top k");
+	}
+
+	private static void assertSameList(List<StringDoublePair> expected, List<StringDoublePair> actual,
+			String message) {
+		assertEquals(expected.size(), actual.size(), message);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).docName, actual.get(i).docName, message + " rank " + i);
+			assertEquals(expected.get(i).num, actual.get(i).num, 0, message + " rank " + i);
+		}
+	}
+
+	private static void assertCounters(QueryCache cache, long hits, long partialHits, long misses) {
+		assertEquals(hits, cache.getHits(), "hits");
+		assertEquals(partialHits, cache.getPartialHits(), "partial hits");
+		assertEquals(misses, cache.getMisses(), "misses");
+	}
+
+	@Test
+	void servesASmallerKFromALargerOne() throws IOException {
+		IndexSnapshot snapshot = build().snapshot();
+		QueryCache cache = new QueryCache(10);
+		String query = "word0 word3 word7";
+		QueryCache.Result result = cache.search(snapshot, query, 20, null);
+		assertFalse(result.cached);
+		assertUncached(snapshot, query, 20, result);
+		assertCounters(cache, 0, 0, 1);
+		for (int k : new int[] { 1, 2, 5, 19 }) {
+			result = cache.search(snapshot, query, k, null);
+			assertFalse(result.cached, "k = " + k);
+			assertUncached(snapshot, query, k, result);
+		}
+		assertCounters(cache, 0, 4, 1);
+		/* a larger k than the cached one is computed again */
+		result = cache.search(snapshot, query, 30, null);
+		assertUncached(snapshot, query, 30, result);
+		assertCounters(cache, 0, 4, 2);
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	void reusesTheRerankOnlyForTheSameOrderAndK() throws IOException {
+		IndexSnapshot snapshot = build().snapshot();
+		QueryCache cache = new QueryCache(10);
+		cache.search(snapshot, "word1 word2 word4", 5, null);
+		QueryCache.Result result = cache.search(snapshot, "word1 word2 word4", 5, null);
+		assertTrue(result.cached);
+		assertUncached(snapshot, "word1 word2 word4", 5, result);
+		assertCounters(cache, 1, 0, 1);
+		/* stop words are not part of the key nor of the order of the terms */
+		result = cache.search(snapshot, "the word1 of word2 word4", 5, null);
+		assertTrue(result.cached);
+		assertCounters(cache, 2, 0, 1);
+		/* the same terms in another order rerank differently, from the cached top 2k */
+		result = cache.search(snapshot, "word4 word2 word1", 5, null);
+		assertFalse(result.cached);
+		assertUncached(snapshot, "word4 word2 word1", 5, result);
+		assertCounters(cache, 2, 1, 1);
+		/* the entry now holds the rerank of the last order */
+		result = cache.search(snapshot, "word4 word2 word1", 5, null);
+		assertTrue(result.cached);
+		assertUncached(snapshot, "word4 word2 word1", 5, result);
+		result = cache.search(snapshot, "word1 word2 word4", 5, null);
+		assertFalse(result.cached);
+		assertUncached(snapshot, "word1 word2 word4", 5, result);
+		/* a smaller k reranks again and doesn't replace the entry */
+		result = cache.search(snapshot, "word1 word2 word4", 3, null);
+		assertFalse(result.cached);
+		assertUncached(snapshot, "word1 word2 word4", 3, result);
+		result = cache.search(snapshot, "word1 word2 word4", 5, null);
+		assertTrue(result.cached);
+		assertCounters(cache, 4, 3, 1);
+	}
+
+	@Test
+	void dropsTheEntriesOfOlderSnapshots() throws IOException {
+		SnapshotManager snapshots = build();
+		QueryCache cache = new QueryCache(100);
+		ArrayList<String> queries = new ArrayList<String>();
+		for (int q = 0; q < 10; q++) {
+			queries.add(text(1 + random.nextInt(3)));
+		}
+		long hits = 0;
+		int next = NUM_OF_DOCS;
+		for (int round = 0; round < 12; round++) {
+			IndexSnapshot snapshot = snapshots.snapshot();
+			int cached = 0;
+			for (int i = 0; i < 30; i++) {
+				String query = queries.get(random.nextInt(queries.size()));
+				int k = 1 + random.nextInt(8);
+				QueryCache.Result result = cache.search(snapshot, query, k, random.nextBoolean() ? new QueryStats() : null);
+				assertUncached(snapshot, query, k, result);
+				cached += result.cached ? 1 : 0;
+			}
+			hits += cached;
+			assertEquals(hits, cache.getHits());
+			long invalidations = cache.getInvalidations();
+			int size = cache.size();
+			/* interleave an update: the next query reads a newer snapshot and drops every entry */
+			if (round % 3 == 2) {
+				String docName = String.format("doc%03d.txt", random.nextInt(NUM_OF_DOCS));
+				snapshots.update(index -> index.deleteDocument(docName));
+			} else {
+				File file = write(String.format("doc%03d.txt", next++), text(10 + random.nextInt(50)));
+				snapshots.update(index -> index.replaceDocument(file));
+			}
+			cache.search(snapshots.snapshot(), queries.get(0), 3, null);
+			assertEquals(invalidations + size, cache.getInvalidations(), "round " + round);
+			assertEquals(1, cache.size(), "round " + round);
+
+			/* a query still reading the older snapshot is answered, but not stored */
+			long misses = cache.getMisses();
+			QueryCache.Result result = cache.search(snapshot, queries.get(1), 3, null);
+			assertFalse(result.cached);
+			assertUncached(snapshot, queries.get(1), 3, result);
+			result = cache.search(snapshot, queries.get(1), 3, null);
+			assertFalse(result.cached);
+			assertEquals(misses + 2, cache.getMisses(), "round " + round);
+			assertEquals(1, cache.size(), "round " + round);
+		}
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedEntries() throws IOException {
+		IndexSnapshot snapshot = build().snapshot();
+		QueryCache cache = new QueryCache(2);
+		cache.search(snapshot, "word1", 5, null);
+		cache.search(snapshot, "word2", 5, null);
+		assertTrue(cache.search(snapshot, "word1", 5, null).cached);
+		cache.search(snapshot, "word3", 5, null);
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2, cache.size());
+		/* word2 was the least recently used */
+		assertTrue(cache.search(snapshot, "word1", 5, null).cached);
+		assertTrue(cache.search(snapshot, "word3", 5, null).cached);
+		assertFalse(cache.search(snapshot, "word2", 5, null).cached);
+		assertEquals(2, cache.getEvictions());
+		assertCounters(cache, 3, 0, 4);
+		assertEquals(3 / 7.0, cache.hitRatio(), 1e-12);
+	}
+}
@@ -0,0 +1,163 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Bounds the error of the quantized float scores of the scoring kernels
+ * against the exact scores, and checks that the vector kernel computes the
+ * same scores as the scalar kernel.
+ *
+ * @author YAN DENG
+ *
+ */
+class ScoringKernelTest {
+
+	/* largest difference allowed between a kernel score and the exact score */
+	private static final double TOLERANCE = 1e-4;
+	private static final int NUM_OF_DOCS = 6000;/* more than one block */
+
+	@TempDir
+	static Path folder;
+
+	private static SegmentedIndex index;
+	private static List<String> queries = new ArrayList<String>();
+
+	@BeforeAll
+	static void buildIndex() throws IOException {
+		Random random = new Random(42);
+		String[] vocabulary = new String[3000];
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = "term" + i;
+		}
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			StringBuilder text = new StringBuilder();
+			int length = d % 500 == 0 ? 0 : 20 + random.nextInt(200);
+			for (int i = 0; i < length; i++) {
+				/* skewed, so that some terms appear many times in a document */
+				int rank = (int) Math.pow(vocabulary.length, random.nextDouble());
+				text.append(vocabulary[rank - 1]).append(i % 10 == 9 ? ".\n" : " ");
+			}
+			Files.write(folder.resolve(String.format("doc%05d.txt", d)), text.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		/* The engine prints its progress, which would only add noise to the output. */
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 2);
+		try {
+			builder.build();
+		} finally {
+			System.setOut(out);
+		}
+		SnapshotManager snapshots = new SnapshotManager(builder.getWordIndex(), builder.getBiWordIndex());
+		/* some deleted documents, which must never be retrieved */
+		snapshots.update(segments -> {
+			for (int d = 7; d < NUM_OF_DOCS; d += 101) {
+				segments.deleteDocument(String.format("doc%05d.txt", d));
+			}
+		});
+		index = snapshots.snapshot().getIndex();
+		for (int q = 0; q < 200; q++) {
+			StringBuilder query = new StringBuilder();
+			int length = 1 + random.nextInt(6);
+			for (int i = 0; i < length; i++) {
+				query.append(vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1]).append(' ');
+			}
+			queries.add(q % 50 == 0 ? query + "unknownterm" : query.toString());
+		}
+		queries.add("unknownterm");
+	}
+
+	@Test
+	void quantizesWeightsWithinHalfAQuantum() {
+		int[] docIds = new int[1000];
+		int[] freqs = new int[1000];
+		Random random = new Random(1);
+		for (int i = 0; i < docIds.length; i++) {
+			docIds[i] = 3 * i;
+			freqs[i] = 1 + (random.nextInt(20) == 0 ? random.nextInt(5000) : random.nextInt(10));
+		}
+		ScoringKernel.QuantizedPostings postings = new ScoringKernel.QuantizedPostings(
+				new PostingsCursor(IntBuffer.wrap(docIds), IntBuffer.wrap(freqs), docIds.length), docIds.length);
+		for (int i = 0; i < docIds.length; i++) {
+			assertEquals(docIds[i], postings.docIds[i]);
+			double weight = ScoringKernel.logWeight(freqs[i]);
+			assertEquals(weight, postings.quanta[i] * postings.scale(), postings.scale() / 2 + 1e-12);
+		}
+	}
+
+	@Test
+	void scalarKernelIsCloseToTheExactScores() {
+		assertCloseToExact(ScoringKernel.scalar());
+	}
+
+	/* surefire adds the Vector API module, so fastest() is the vector kernel */
+	@Test
+	void vectorKernelIsCloseToTheExactScores() {
+		assertCloseToExact(ScoringKernel.fastest());
+	}
+
+	@Test
+	void vectorKernelComputesTheScalarScores() {
+		SearchResults scalar = new SearchResults(ScoringKernel.scalar());
+		SearchResults vector = new SearchResults(ScoringKernel.fastest());
+		for (String query : queries) {
+			int n = index.searchTop2K(query, 50, false, null, scalar);
+			assertEquals(n, index.searchTop2K(query, 50, false, null, vector), query);
+			for (int i = 0; i < n; i++) {
+				assertEquals(scalar.docId(i), vector.docId(i), query);
+				assertEquals(scalar.similarity(i), vector.similarity(i), 0, query);
+			}
+		}
+	}
+
+	/**
+	 * Check that every document retrieved by the kernel scores within
+	 * TOLERANCE of its exact score, and that it is one of the top documents
+	 * unless its exact score is within the tolerance of the worst of them.
+	 */
+	private static void assertCloseToExact(ScoringKernel kernel) {
+		SearchResults exact = new SearchResults();
+		SearchResults approximate = new SearchResults(kernel);
+		HashMap<Integer, Double> exactScores = new HashMap<Integer, Double>();
+		for (String query : queries) {
+			for (int k : new int[] { 1, 5, 20, NUM_OF_DOCS }) {
+				int n = index.searchTop2K(query, k, false, null, exact);
+				assertEquals(n, index.searchTop2K(query, k, false, null, approximate), query);
+				double worst = n == 0 ? 0 : exact.similarity(n - 1);
+				exactScores.clear();
+				for (int i = 0; i < n; i++) {
+					exactScores.put(exact.docId(i), exact.similarity(i));
+				}
+				for (int i = 0; i < n; i++) {
+					Double score = exactScores.get(approximate.docId(i));
+					if (score == null) {
+						/* swapped with a document of about the same score at the end of the list */
+						assertTrue(approximate.similarity(i) >= worst - 2 * TOLERANCE, query + " k=" + k);
+						continue;
+					}
+					assertEquals(score, approximate.similarity(i), TOLERANCE, query + " k=" + k);
+				}
+				for (int i = 1; i < n; i++) {
+					assertTrue(approximate.similarity(i) <= approximate.similarity(i - 1), "not sorted");
+				}
+			}
+		}
+	}
+}
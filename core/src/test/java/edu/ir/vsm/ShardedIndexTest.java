@@ -0,0 +1,176 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a collection split into shards answers every query exactly as
+ * a single index of the collection: the same documents in the same order
+ * with bit-identical scores, for several numbers of shards, with and
+ * without pruning, in biword and in positional mode, and through
+ * RemoteShards served by ShardServers on the loopback interface. The
+ * collection has documents of equal content, whose scores tie, and
+ * documents containing none of the terms of the queries.
+ *
+ * @author YAN DENG
+ *
+ */
+class ShardedIndexTest {
+
+	private static final int NUM_OF_DOCS = 80;
+	private static final int[] NUM_OF_SHARDS = { 1, 2, 3, 5 };
+	private static final int[] KS = { 1, 3, 10, 100 };
+
+	@TempDir
+	static Path folder;
+
+	private static PrintStream out;
+	private static final List<String> queries = new ArrayList<String>();
+
+	@BeforeAll
+	static void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		Random random = new Random(42);
+		String[] vocabulary = new String[60];
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = "word" + i;
+		}
+		ArrayList<String> contents = new ArrayList<String>();
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			String content;
+			if (d % 9 == 4) {
+				content = contents.get(random.nextInt(contents.size()));/* ties with an earlier document */
+			} else if (d % 13 == 6) {
+				content = "other words only";/* scores 0 for every query */
+			} else {
+				StringBuilder text = new StringBuilder();
+				for (int i = 5 + random.nextInt(40); i > 0; i--) {
+					text.append(vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1]).append(' ');
+				}
+				content = text.toString();
+			}
+			contents.add(content);
+			Files.write(folder.resolve(String.format("doc%03d.txt", d)), content.getBytes(StandardCharsets.UTF_8));
+		}
+		for (int q = 0; q < 20; q++) {
+			StringBuilder query = new StringBuilder();
+			for (int i = 1 + random.nextInt(3); i > 0; i--) {
+				query.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+			}
+			queries.add(query.toString());
+		}
+		queries.add("word1*");
+		queries.add("word0 word1 word2 word3");
+		queries.add("word5 missing");
+		queries.add("missing");
+	}
+
+	@AfterAll
+	static void restore() {
+		System.setOut(out);
+	}
+
+	private WordIndex wordIndex;
+	private BiWordIndex biWordIndex;
+
+	private void buildSingleIndex(boolean positional) {
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 1, positional);
+		builder.build();
+		wordIndex = builder.getWordIndex();
+		biWordIndex = builder.getBiWordIndex();
+	}
+
+	@Test
+	void shardsAnswerAsASingleIndex() throws IOException {
+		buildSingleIndex(false);
+		for (int numOfShards : NUM_OF_SHARDS) {
+			try (ShardedIndex sharded = ShardedIndex.build(folder.toString(), numOfShards, false, null)) {
+				assertSameAnswers(sharded, numOfShards + " shards");
+			}
+		}
+	}
+
+	@Test
+	void positionalShardsAnswerAsASingleIndex() throws IOException {
+		buildSingleIndex(true);
+		for (int numOfShards : NUM_OF_SHARDS) {
+			try (ShardedIndex sharded = ShardedIndex.build(folder.toString(), numOfShards, true, null)) {
+				assertSameAnswers(sharded, numOfShards + " positional shards");
+			}
+		}
+	}
+
+	@Test
+	void remoteShardsAnswerAsASingleIndex() throws IOException {
+		buildSingleIndex(false);
+		int numOfShards = 3;
+		ArrayList<ShardServer> servers = new ArrayList<ShardServer>();
+		ArrayList<RemoteShard> remotes = new ArrayList<RemoteShard>();
+		try {
+			for (int i = 0; i < numOfShards; i++) {
+				ShardServer server = new ShardServer(IndexShard.build(folder.toString(), i, numOfShards, 1, false, null),
+						e -> {
+							throw new AssertionError("The shard server failed", e);
+						});
+				server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+				servers.add(server);
+				remotes.add(new RemoteShard(server.getAddress().getHostString(), server.getAddress().getPort()));
+			}
+			try (ShardedIndex sharded = new ShardedIndex(remotes)) {
+				assertSameAnswers(sharded, numOfShards + " remote shards");
+			}
+		} finally {
+			for (ShardServer server : servers) {
+				server.stop();
+			}
+		}
+	}
+
+	private void assertSameAnswers(ShardedIndex sharded, String message) {
+		assertEquals(wordIndex.getNumOfDocs(), sharded.getNumOfDocs(), message);
+		for (String query : queries) {
+			for (int k : KS) {
+				String context = message + ", " + query + ", k = " + k;
+				ArrayList<StringDoublePair> top2K = wordIndex.searchTop2K(query, k);
+				assertSameList(top2K, sharded.searchTop2K(query, k, false, null), context);
+				assertSameList(wordIndex.searchTop2KPruned(query, k, null), sharded.searchTop2K(query, k, true, null),
+						context + ", pruned");
+				ArrayList<StringDoublePair> topK = biWordIndex != null ? biWordIndex.rerank(query, top2K, k)
+						: wordIndex.rerank(query, top2K, k);
+				assertSameList(topK, sharded.search(query, k, null), context + ", reranked");
+			}
+		}
+	}
+
+	/**
+	 * Check that the lists hold the same documents in the same order, with
+	 * exactly the same scores.
+	 */
+	private static void assertSameList(ArrayList<StringDoublePair> expected, ArrayList<StringDoublePair> actual,
+			String message) {
+		assertEquals(expected.size(), actual.size(), message);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).docName, actual.get(i).docName, message + " rank " + i);
+			assertEquals(Double.doubleToLongBits(expected.get(i).num), Double.doubleToLongBits(actual.get(i).num),
+					message + " rank " + i + ": " + expected.get(i).num + " != " + actual.get(i).num);
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Queries snapshots from several reader threads while a writer adds,
+ * replaces and deletes documents, and checks the results of every version
+ * read against an index rebuilt from scratch with the documents of that
+ * version, and the pruned results against the exhaustive ones. Every
+ * version published is queried again once the writer is done. Also checks
+ * that a replaced version can be garbage collected. The throughput of
+ * concurrent readers is measured by ConcurrentSearchBenchmark.
+ *
+ * @author YAN DENG
+ *
+ */
+class SnapshotManagerTest {
+
+	private static final int NUM_OF_DOCS = 300;
+	private static final int NUM_OF_UPDATES = 40;
+	private static final int NUM_OF_READERS = 4;
+	private static final int K = 5;
+
+	@TempDir
+	Path temp;
+
+	private static PrintStream out;
+	private final Random random = new Random(42);
+	private final String[] vocabulary = new String[400];
+	private final List<String> queries = new ArrayList<String>();
+
+	@BeforeAll
+	static void silence() {
+		/* The engine prints its progress, which would only add noise to the output. */
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@AfterAll
+	static void restore() {
+		System.setOut(out);
+	}
+
+	SnapshotManagerTest() {
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = "word" + i;
+		}
+		for (int q = 0; q < 30; q++) {
+			queries.add(text(1 + random.nextInt(3)));
+		}
+	}
+
+	private String text(int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append(vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1]).append(' ');
+		}
+		return text.toString();
+	}
+
+	private static void write(Path folder, String docName, String content) throws IOException {
+		Files.write(folder.resolve(docName), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static SnapshotManager build(Path folder) {
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 1);
+		builder.build();
+		return new SnapshotManager(builder.getWordIndex(), builder.getBiWordIndex(), 16, new MergePolicy());
+	}
+
+	@Test
+	void readersSeeTheVersionsOfTheWriter() throws Exception {
+		Path folder = Files.createDirectory(temp.resolve("live"));
+		/* the documents of every version, by name */
+		List<TreeMap<String, String>> versions = new ArrayList<TreeMap<String, String>>();
+		TreeMap<String, String> documents = new TreeMap<String, String>();
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			String docName = String.format("doc%04d.txt", d);
+			documents.put(docName, text(10 + random.nextInt(60)));
+			write(folder, docName, documents.get(docName));
+		}
+		versions.add(new TreeMap<String, String>(documents));
+		SnapshotManager snapshots = build(folder);
+		/* every version published, queried again once the writer is done */
+		List<IndexSnapshot> published = new ArrayList<IndexSnapshot>();
+		published.add(snapshots.snapshot());
+
+		/* results read by the readers, by version and query */
+		Map<Long, Map<String, ArrayList<StringDoublePair>>> seen = new ConcurrentHashMap<Long, Map<String, ArrayList<StringDoublePair>>>();
+		Map<Long, Integer> seenNumOfDocs = new ConcurrentHashMap<Long, Integer>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		CountDownLatch started = new CountDownLatch(NUM_OF_READERS);
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int r = 0; r < NUM_OF_READERS; r++) {
+			int reader = r;
+			Thread thread = new Thread(() -> {
+				started.countDown();
+				try {
+					int q = reader;
+					do {
+						IndexSnapshot snapshot = snapshots.snapshot();
+						String query = queries.get(q++ % queries.size());
+						ArrayList<StringDoublePair> top = snapshot.getIndex().searchTop2K(query, K);
+						/* the upper bounds of the pruned search are computed by the queries of each version */
+						ArrayList<StringDoublePair> pruned = snapshot.getIndex().searchTop2KPruned(query, K, null);
+						assertEquals(top.size(), pruned.size(), query);
+						for (int i = 0; i < top.size(); i++) {
+							assertEquals(top.get(i).num, pruned.get(i).num, 1e-12, query + " rank " + i);
+						}
+						seen.computeIfAbsent(snapshot.getVersion(), v -> new ConcurrentHashMap<String, ArrayList<StringDoublePair>>())
+								.putIfAbsent(query, top);
+						seenNumOfDocs.putIfAbsent(snapshot.getVersion(), snapshot.getIndex().getNumOfDocs());
+					} while (writing.get());
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			thread.start();
+			readers.add(thread);
+		}
+		started.await();
+
+		int next = NUM_OF_DOCS;
+		for (int u = 0; u < NUM_OF_UPDATES; u++) {
+			int kind = u % 3;
+			if (kind == 0) {
+				String docName = String.format("doc%04d.txt", next++);
+				documents.put(docName, text(10 + random.nextInt(60)));
+				File file = folder.resolve(docName).toFile();
+				write(folder, docName, documents.get(docName));
+				snapshots.update(index -> index.replaceDocument(file));
+			} else if (kind == 1) {
+				String docName = randomDocument(documents);
+				documents.put(docName, text(10 + random.nextInt(60)));
+				File file = folder.resolve(docName).toFile();
+				write(folder, docName, documents.get(docName));
+				snapshots.update(index -> index.replaceDocument(file));
+			} else {
+				String docName = randomDocument(documents);
+				documents.remove(docName);
+				Files.delete(folder.resolve(docName));
+				snapshots.update(index -> index.deleteDocument(docName));
+			}
+			versions.add(new TreeMap<String, String>(documents));
+			published.add(snapshots.snapshot());
+			Thread.sleep(2);
+		}
+		writing.set(false);
+		for (Thread thread : readers) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError("A reader failed", failure.get());
+		}
+		assertEquals(NUM_OF_UPDATES, snapshots.snapshot().getVersion());
+		assertTrue(seen.size() > 1, "the readers only saw " + seen.size() + " versions");
+
+		for (long version = 0; version <= NUM_OF_UPDATES; version++) {
+			TreeMap<String, String> expected = versions.get((int) version);
+			Path copy = Files.createDirectory(temp.resolve("v" + version));
+			for (Map.Entry<String, String> document : expected.entrySet()) {
+				write(copy, document.getKey(), document.getValue());
+			}
+			SegmentedIndex rebuilt = build(copy).snapshot().getIndex();
+			if (seen.containsKey(version)) {
+				assertEquals(expected.size(), (int) seenNumOfDocs.get(version), "version " + version);
+				for (Map.Entry<String, ArrayList<StringDoublePair>> result : seen.get(version).entrySet()) {
+					assertSameRanking(rebuilt, result.getKey(), result.getValue(), "version " + version);
+				}
+			}
+			/* the later versions share the segments they didn't update with this one, which they must not change */
+			SegmentedIndex index = published.get((int) version).getIndex();
+			assertEquals(expected.size(), index.getNumOfDocs(), "published version " + version);
+			for (String query : queries) {
+				assertSameRanking(rebuilt, query, index.searchTop2K(query, K), "published version " + version);
+			}
+		}
+	}
+
+	private String randomDocument(TreeMap<String, String> documents) {
+		ArrayList<String> names = new ArrayList<String>(documents.keySet());
+		return names.get(random.nextInt(names.size()));
+	}
+
+	/**
+	 * Check that the results are a top 2k of the rebuilt index: the same
+	 * scores in the same order, every document with its score in the
+	 * rebuilt index. Documents of equal scores may come in another order,
+	 * since a replaced document is numbered after the others.
+	 */
+	private static void assertSameRanking(SegmentedIndex rebuilt, String query, ArrayList<StringDoublePair> results,
+			String message) {
+		ArrayList<StringDoublePair> expected = rebuilt.searchTop2K(query, K);
+		HashMap<String, Double> scores = new HashMap<String, Double>();
+		for (StringDoublePair document : rebuilt.searchTop2K(query, rebuilt.getNumOfDocs())) {
+			scores.put(document.docName, document.num);
+		}
+		assertEquals(expected.size(), results.size(), message + ", " + query);
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(expected.get(i).num, results.get(i).num, 1e-12, message + ", " + query + " rank " + i);
+			Double score = scores.get(results.get(i).docName);
+			assertNotNull(score, message + ", " + query + ": " + results.get(i).docName + " is not indexed");
+			assertEquals(score, results.get(i).num, 1e-12, message + ", " + query + ": " + results.get(i).docName);
+		}
+	}
+
+	@Test
+	void releasesTheReplacedSnapshots() throws Exception {
+		Path folder = Files.createDirectory(temp.resolve("released"));
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			write(folder, String.format("doc%04d.txt", d), text(10 + random.nextInt(60)));
+		}
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 1);
+		builder.build();
+		/* the default buffer, which the updates share between the versions as it fills */
+		SnapshotManager snapshots = new SnapshotManager(builder.getWordIndex(), builder.getBiWordIndex());
+		/* the index of a replaced version and the indexes of its segments */
+		List<WeakReference<Object>> replaced = new ArrayList<WeakReference<Object>>();
+		for (int u = 0; u < 200; u++) {
+			String docName = String.format("new%04d.txt", u);
+			write(folder, docName, text(10 + random.nextInt(60)));
+			File file = folder.resolve(docName).toFile();
+			snapshots.update(index -> index.replaceDocument(file));
+			if (u == 10) {
+				SegmentedIndex index = snapshots.snapshot().getIndex();
+				replaced.add(new WeakReference<Object>(index));
+				for (Segment segment : index.getSegments()) {
+					replaced.add(new WeakReference<Object>(segment.getWordIndex()));
+					replaced.add(new WeakReference<Object>(segment.getBiWordIndex()));
+				}
+			}
+		}
+		snapshots.snapshot().getIndex().searchTop2K(queries.get(0), K);
+		for (int i = 0; i < 50 && replaced.stream().anyMatch(r -> r.get() != null); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		for (WeakReference<Object> index : replaced) {
+			assertNull(index.get(), "a replaced snapshot is still reachable from the current one");
+		}
+	}
+}
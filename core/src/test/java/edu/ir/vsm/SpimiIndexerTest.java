@@ -0,0 +1,154 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that an index file built by SpimiIndexer with a memory budget small
+ * enough to write several runs answers every query exactly as the index file
+ * IndexBuilder and IndexFile.write produce, in biword and in positional
+ * mode, with and without compressed postings.
+ *
+ * @author YAN DENG
+ *
+ */
+class SpimiIndexerTest {
+
+	private static final int NUM_OF_DOCS = 120;
+	private static final long MEMORY_BUDGET = 20000;
+	private static final int[] KS = { 1, 5, 100 };
+
+	@TempDir
+	static Path temp;
+
+	private static Path folder;
+	private static PrintStream out;
+	private static final List<String> queries = new ArrayList<String>();
+
+	@BeforeAll
+	static void setUp() throws IOException {
+		/* The engine prints its progress, which would only add noise to the output. */
+		out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		folder = Files.createDirectory(temp.resolve("docs"));
+		Random random = new Random(42);
+		String[] vocabulary = new String[300];
+		for (int i = 0; i < vocabulary.length; i++) {
+			vocabulary[i] = "word" + i;
+		}
+		for (int d = 0; d < NUM_OF_DOCS; d++) {
+			StringBuilder text = new StringBuilder();
+			if (d != 17) {/* a document without any term */
+				for (int i = 10 + random.nextInt(80); i > 0; i--) {
+					text.append(vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1]).append(' ');
+				}
+			}
+			Files.write(folder.resolve(String.format("doc%03d.txt", d)),
+					text.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		for (int q = 0; q < 25; q++) {
+			StringBuilder query = new StringBuilder();
+			for (int i = 1 + random.nextInt(3); i > 0; i--) {
+				query.append(vocabulary[(int) Math.pow(vocabulary.length, random.nextDouble()) - 1]).append(' ');
+			}
+			queries.add(query.toString());
+		}
+		queries.add("word1*");
+		queries.add("missing word2");
+	}
+
+	@AfterAll
+	static void restore() {
+		System.setOut(out);
+	}
+
+	@Test
+	void answersAsIndexBuilder() throws IOException {
+		assertSameAnswers(false, null);
+	}
+
+	@Test
+	void answersAsIndexBuilderWithCompressedPostings() throws IOException {
+		assertSameAnswers(false, PostingsCodec.forName("pfordelta"));
+	}
+
+	@Test
+	void answersAsIndexBuilderWhenPositional() throws IOException {
+		assertSameAnswers(true, null);
+	}
+
+	private void assertSameAnswers(boolean positional, PostingsCodec codec) throws IOException {
+		String mode = (positional ? "positional" : "biword") + (codec == null ? "" : ", " + codec.name());
+		File built = temp.resolve("built-" + positional + "-" + (codec == null ? "none" : codec.name())).toFile();
+		IndexBuilder builder = new IndexBuilder(folder.toString(), 1, positional);
+		builder.build();
+		builder.getWordIndex().compress(codec);
+		IndexFile.write(built, builder.getWordIndex(), builder.getBiWordIndex());
+		File spimi = temp.resolve("spimi-" + positional + "-" + (codec == null ? "none" : codec.name())).toFile();
+		SpimiIndexer indexer = new SpimiIndexer(folder.toString(), MEMORY_BUDGET, positional);
+		indexer.build(spimi, codec);
+		assertTrue(indexer.getNumOfRuns() > 2, mode + ": only " + indexer.getNumOfRuns() + " runs");
+		assertEquals(List.of("doc017.txt"), indexer.getEmptyDocuments(), mode);
+
+		IndexFile expected = IndexFile.open(built);
+		IndexFile actual = IndexFile.open(spimi);
+		WordIndex expectedWords = expected.getWordIndex();
+		WordIndex actualWords = actual.getWordIndex();
+		assertEquals(expectedWords.getNumOfDocs(), actualWords.getNumOfDocs(), mode);
+		assertEquals(expectedWords.getNumOfTerms(), actualWords.getNumOfTerms(), mode);
+		if (!positional) {
+			assertEquals(expected.getBiWordIndex().getNumOfBiWords(), actual.getBiWordIndex().getNumOfBiWords(), mode);
+		}
+		for (String query : queries) {
+			for (int k : KS) {
+				String context = mode + ", " + query + ", k = " + k;
+				ArrayList<StringDoublePair> top2K = expectedWords.searchTop2K(query, k);
+				assertSameList(top2K, actualWords.searchTop2K(query, k), context);
+				assertSameList(expectedWords.searchTop2KPruned(query, k, null),
+						actualWords.searchTop2KPruned(query, k, null), context + ", pruned");
+				if (positional) {
+					assertSameList(expectedWords.rerank(query, top2K, k), actualWords.rerank(query, top2K, k),
+							context + ", reranked");
+				} else {
+					assertSameList(expected.getBiWordIndex().rerank(query, top2K, k),
+							actual.getBiWordIndex().rerank(query, top2K, k), context + ", reranked");
+				}
+			}
+			if (positional) {
+				assertEquals(expectedWords.phraseQuery(query), actualWords.phraseQuery(query), mode + ", " + query);
+				assertEquals(expectedWords.proximityQuery(query, 5), actualWords.proximityQuery(query, 5),
+						mode + ", " + query);
+			}
+		}
+	}
+
+	/**
+	 * Check that the lists hold the same documents in the same order, with
+	 * exactly the same scores.
+	 */
+	private static void assertSameList(ArrayList<StringDoublePair> expected, ArrayList<StringDoublePair> actual,
+			String message) {
+		assertEquals(expected.size(), actual.size(), message);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).docName, actual.get(i).docName, message + " rank " + i);
+			assertEquals(Double.doubleToLongBits(expected.get(i).num), Double.doubleToLongBits(actual.get(i).num),
+					message + " rank " + i + ": " + expected.get(i).num + " != " + actual.get(i).num);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the lookups of a TermDictionary against a scan of the sorted list
+ * of its terms: the ordinals and the terms, the prefix ranges and the
+ * expansion of wildcard patterns, matched with a regular expression. The
+ * terms mix ASCII, accented, other BMP and supplementary characters, and
+ * the dictionaries have sizes around the multiples of the block size.
+ *
+ * @author YAN DENG
+ *
+ */
+class TermDictionaryTest {
+
+	/* a character of each length in UTF-8, a character after the surrogates, and a supplementary one */
+	private static final String[] ALPHABET = { "a", "b", "z", "é", "ж", "中", "￠", "😀" };
+
+	private final Random random = new Random(42);
+
+	private String randomString(int maxLength) {
+		StringBuilder s = new StringBuilder();
+		for (int i = random.nextInt(maxLength + 1); i > 0; i--) {
+			s.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+		}
+		return s.toString();
+	}
+
+	private List<String> randomTerms(int size) {
+		TreeSet<String> terms = new TreeSet<String>(TermDictionary::compare);
+		while (terms.size() < size) {
+			String term = randomString(6);
+			if (!term.isEmpty()) {
+				terms.add(term);
+			}
+		}
+		return new ArrayList<String>(terms);
+	}
+
+	@Test
+	void comparesByCodePoint() {
+		List<String> stringOrder = List.of("a", "ab", "b", "é", "中", "😀", "￠");
+		for (int i = 0; i < ALPHABET.length; i++) {
+			for (int j = 0; j < ALPHABET.length; j++) {
+				String a = ALPHABET[i];
+				String b = ALPHABET[j];
+				assertEquals(Integer.signum(Integer.compare(a.codePointAt(0), b.codePointAt(0))),
+						Integer.signum(TermDictionary.compare(a, b)), a + " " + b);
+			}
+		}
+		/* String.compareTo puts the surrogate pair before U+FFE0, the dictionary after it */
+		assertTrue(TermDictionary.compare("😀", "￠") > 0);
+		assertThrows(IllegalArgumentException.class, () -> new TermDictionary(stringOrder));
+		assertThrows(IllegalArgumentException.class, () -> new TermDictionary(List.of("a", "a")));
+	}
+
+	@Test
+	void emptyDictionary() {
+		TermDictionary dictionary = new TermDictionary(new ArrayList<String>());
+		assertEquals(0, dictionary.size());
+		assertEquals(-1, dictionary.ordinal("a"));
+		assertEquals(-1, dictionary.ordinal(""));
+		assertArrayEquals(new int[] { 0, 0 }, dictionary.prefixRange("a"));
+		assertArrayEquals(new int[] { 0, 0 }, dictionary.prefixRange(""));
+		assertFalse(dictionary.iterator().hasNext());
+		assertThrows(IndexOutOfBoundsException.class, () -> dictionary.term(0));
+		dictionary.expand("*", (ordinal, term) -> {
+			throw new AssertionError(term);
+		});
+	}
+
+	@Test
+	void looksUpTermsAndOrdinals() {
+		int b = TermDictionary.BLOCK_SIZE;
+		for (int size : new int[] { 1, 2, b - 1, b, b + 1, 2 * b, 3 * b + 5, 500 }) {
+			List<String> terms = randomTerms(size);
+			TermDictionary dictionary = new TermDictionary(terms);
+			assertEquals(size, dictionary.size());
+			Iterator<String> iterator = dictionary.iterator();
+			for (int i = 0; i < size; i++) {
+				assertEquals(terms.get(i), dictionary.term(i), "size " + size);
+				assertEquals(i, dictionary.ordinal(terms.get(i)), terms.get(i));
+				assertEquals(terms.get(i), iterator.next());
+			}
+			assertFalse(iterator.hasNext());
+			assertThrows(IndexOutOfBoundsException.class, () -> dictionary.term(size));
+			for (int from : new int[] { 0, b - 1, b, size - 1 }) {
+				if (from >= 0 && from < size) {
+					assertEquals(terms.get(from), dictionary.iterator(from).next(), "from " + from);
+				}
+			}
+			for (int q = 0; q < 1000; q++) {
+				String key = randomString(4);
+				assertEquals(terms.indexOf(key), dictionary.ordinal(key), key);
+			}
+		}
+	}
+
+	@Test
+	void findsTheRangesOfPrefixes() {
+		for (int size : new int[] { 1, TermDictionary.BLOCK_SIZE, 300 }) {
+			List<String> terms = randomTerms(size);
+			TermDictionary dictionary = new TermDictionary(terms);
+			assertArrayEquals(new int[] { 0, size }, dictionary.prefixRange(""));
+			for (int q = 0; q < 1000; q++) {
+				String prefix = q < size ? terms.get(q).substring(0, terms.get(q).offsetByCodePoints(0, 1))
+						: randomString(3);
+				int from = 0;
+				while (from < size && TermDictionary.compare(terms.get(from), prefix) < 0) {
+					from++;
+				}
+				int to = from;
+				while (to < size && terms.get(to).startsWith(prefix)) {
+					to++;
+				}
+				assertArrayEquals(new int[] { from, to }, dictionary.prefixRange(prefix), prefix);
+			}
+		}
+	}
+
+	@Test
+	void expandsPatterns() {
+		List<String> terms = randomTerms(400);
+		TermDictionary dictionary = new TermDictionary(terms);
+		ArrayList<String> patterns = new ArrayList<String>();
+		patterns.add("*");
+		patterns.add("**");
+		for (int q = 0; q < 300; q++) {
+			StringBuilder pattern = new StringBuilder(randomString(2));
+			for (int i = random.nextInt(3); i >= 0; i--) {
+				pattern.insert(random.nextInt(pattern.length() + 1), TermDictionary.WILDCARD);
+			}
+			/* a wildcard in the middle of a surrogate pair is not a pattern of code points */
+			if (!splitsSurrogatePair(pattern)) {
+				patterns.add(pattern.toString());
+			}
+		}
+		patterns.add(terms.get(7));
+		patterns.add(terms.get(7) + "*");
+		for (String pattern : patterns) {
+			Pattern compiled = Pattern.compile(toRegex(pattern));
+			ArrayList<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < terms.size(); i++) {
+				if (compiled.matcher(terms.get(i)).matches()) {
+					expected.add(i);
+				}
+			}
+			ArrayList<Integer> ordinals = new ArrayList<Integer>();
+			dictionary.expand(pattern, (ordinal, term) -> {
+				assertEquals(terms.get(ordinal), term, pattern);
+				ordinals.add(ordinal);
+			});
+			assertEquals(expected, ordinals, pattern);
+		}
+	}
+
+	private static boolean splitsSurrogatePair(CharSequence pattern) {
+		for (int i = 0; i + 1 < pattern.length(); i++) {
+			if (Character.isHighSurrogate(pattern.charAt(i)) && !Character.isLowSurrogate(pattern.charAt(i + 1))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return a regular expression matching what the pattern matches
+	 */
+	private static String toRegex(String pattern) {
+		StringBuilder regex = new StringBuilder();
+		int start = 0;
+		for (int i = pattern.indexOf(TermDictionary.WILDCARD); i >= 0; i = pattern.indexOf(TermDictionary.WILDCARD,
+				start)) {
+			regex.append(Pattern.quote(pattern.substring(start, i))).append("(?s:.*)");
+			start = i + 1;
+		}
+		return regex.append(Pattern.quote(pattern.substring(start))).toString();
+	}
+}
@@ -0,0 +1,140 @@
+package edu.ir.vsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the Tokenizer gives the terms of the rule it replaced: every
+ * line read by a Scanner split on [,.:;\s']+, lower-cased, without the
+ * words shorter than 3 characters and "the".
+ *
+ * @author YAN DENG
+ *
+ */
+class TokenizerTest {
+
+	/**
+	 * The terms of a text with the rule the Tokenizer replaced.
+	 */
+	private static List<String> oldRule(String text) {
+		List<String> terms = new ArrayList<String>();
+		Scanner scanner = new Scanner(text);
+		while (scanner.hasNextLine()) {
+			for (String word : scanner.nextLine().split("[,.:;\\s\\']+")) {
+				word = word.toLowerCase();
+				if (word.length() < 3 || word.equals("the")) {
+					continue;
+				}
+				terms.add(word);
+			}
+		}
+		scanner.close();
+		return terms;
+	}
+
+	private static List<String> tokenize(String text) {
+		List<String> terms = new ArrayList<String>();
+		new Tokenizer().tokenize(text, terms::add);
+		return terms;
+	}
+
+	private static List<String> tokenizeReader(String text) throws IOException {
+		List<String> terms = new ArrayList<String>();
+		new Tokenizer().tokenize(new StringReader(text), terms::add);
+		return terms;
+	}
+
+	private static void assertSameTerms(String text) throws IOException {
+		List<String> expected = oldRule(text);
+		assertEquals(expected, tokenize(text), text);
+		assertEquals(expected, tokenizeReader(text), text);
+	}
+
+	@Test
+	void splitsOnTheSeparators() throws IOException {
+		assertSameTerms("alpha,beta.gamma:delta;epsilon zeta\teta\u000Btheta\fiota\rkappa\nlambda");
+		assertSameTerms("many,,..::;;  separators\t\t\tbetween  ,. words");
+		assertSameTerms("hyphen-ated under_score slash/term (paren) \"quoted\" question? bang!");
+	}
+
+	@Test
+	void splitsOnApostrophes() throws IOException {
+		assertSameTerms("don't won't it's o'clock rock'n'roll 'quoted' ''double''");
+		assertSameTerms("l'homme d'affaires aujourd'hui");
+	}
+
+	@Test
+	void lowerCasesMixedCase() throws IOException {
+		assertSameTerms("Vector SPACE Model iNvErTeD InDeX");
+		assertSameTerms("Ärger ÜBER Straße ΣΊΣΥΦΟΣ İstanbul ǅungla");
+	}
+
+	@Test
+	void dropsStopWordsAndEmptyTokens() throws IOException {
+		assertSameTerms("");
+		assertSameTerms(",.:; '\n\r\n");
+		assertSameTerms("the THE The tHe a an of to in is at by");
+		assertSameTerms("then there other the,the.the theory");
+		assertSameTerms(" leading and trailing separators ");
+	}
+
+	@Test
+	void splitsOnLineSeparators() throws IOException {
+		assertSameTerms("first line\r\nsecond line\rthird line\nfourth\u0085fifth sixth seventh");
+		assertSameTerms("no newline at the end");
+		assertSameTerms("\n\n\nblank lines\n\n");
+	}
+
+	@Test
+	void keepsTermsAcrossReadBuffers() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			text.append("word").append(i).append(i % 7 == 0 ? ", " : " ");
+		}
+		assertSameTerms(text.toString());
+		StringBuilder longTerm = new StringBuilder("start ");
+		for (int i = 0; i < 20000; i++) {
+			longTerm.append((char) ('a' + i % 26));
+		}
+		assertSameTerms(longTerm.append(" end").toString());
+	}
+
+	@Test
+	void matchesTheOldRuleOnRandomText() throws IOException {
+		String alphabet = "abcXYZthe,.:;' \t\n\r\u000B\f\u0085  éÉßİıΣς-_/0123😀";
+		Random random = new Random(42);
+		for (int n = 0; n < 2000; n++) {
+			StringBuilder text = new StringBuilder();
+			int length = random.nextInt(200);
+			for (int i = 0; i < length; i++) {
+				char c = alphabet.charAt(random.nextInt(alphabet.length()));
+				if (Character.isHighSurrogate(c)) {
+					text.append(c).append('\uDE00');
+				} else if (!Character.isLowSurrogate(c)) {
+					text.append(c);
+				}
+			}
+			assertSameTerms(text.toString());
+		}
+	}
+
+	@Test
+	void followsTheLocaleCasingRules() throws IOException {
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(new Locale("tr"));
+			assertSameTerms("ISTANBUL Iğdır İzmir TITLE tItLe");
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+#!/bin/sh
+# Load test of the HTTP search endpoint, reporting the throughput and the
+# p50/p99 latencies seen by the clients.
+#
+# Usage: scripts/loadtest.sh url queryFile [number of clients [number of requests]]
+#
+# Start the server first, e.g. java -jar cli/target/vsm.jar -serve 8080 folder,
+# and build the project with mvn package.
+JAR="$(dirname "$0")/../cli/target/vsm.jar"
+if [ ! -f "$JAR" ]; then
+	echo "$JAR not found, run mvn package first." >&2
+	exit 1
+fi
+exec java -cp "$JAR" edu.ir.vsm.cli.LoadTest "$@"